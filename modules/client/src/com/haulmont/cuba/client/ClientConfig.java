@@ -76,6 +76,15 @@ public interface ClientConfig extends Config {
     @DefaultBoolean(true)
     boolean getCollectionDatasourceDbSortEnabled();
 
+    /**
+     * @return Whether collection datasources should load the next page by keyset (the sort value and ID of the last
+     * loaded instance) instead of the results offset, if the datasource is sorted on DB by a mandatory persistent
+     * attribute.
+     */
+    @Property("cuba.collectionDatasourceKeysetPagingEnabled")
+    @DefaultBoolean(false)
+    boolean getCollectionDatasourceKeysetPagingEnabled();
+
     /**
      * @return If true, client will try to find missing localized messages on the server.
      */
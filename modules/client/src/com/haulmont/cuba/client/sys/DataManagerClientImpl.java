@@ -17,11 +17,13 @@
 
 package com.haulmont.cuba.client.sys;
 
+import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.KeyValueEntity;
 import com.haulmont.cuba.core.global.*;
+import org.apache.commons.lang.StringUtils;
 
 import org.springframework.stereotype.Component;
 import javax.annotation.Nonnull;
@@ -31,6 +33,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerClientImpl implements DataManager {
@@ -53,6 +56,41 @@ public class DataManagerClientImpl implements DataManager {
         return dataService.loadList(context);
     }
 
+    @Override
+    public <E extends Entity> void loadByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        Preconditions.checkNotNullArgument(consumer, "consumer is null");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+
+        LoadContext.Query query = context.getQuery();
+        if (query == null || StringUtils.isBlank(query.getQueryString()))
+            throw new IllegalArgumentException("Query string is required to load by chunks");
+        if (query.getFirstResult() != 0)
+            throw new IllegalArgumentException("First result is not supported when loading by chunks");
+
+        KeysetPosition keyset = query.getKeyset();
+        if (keyset == null) {
+            keyset = KeysetPosition.create(metadata.getClassNN(context.getMetaClass()), query.getQueryString());
+        }
+
+        int maxResults = query.getMaxResults();
+        int loaded = 0;
+        while (maxResults == 0 || loaded < maxResults) {
+            int size = maxResults == 0 ? chunkSize : Math.min(chunkSize, maxResults - loaded);
+
+            List<E> chunk = loadList(createChunkContext(context, keyset, size));
+            if (chunk.isEmpty())
+                break;
+
+            loaded += chunk.size();
+            keyset = keyset.after(chunk.get(chunk.size() - 1));
+            consumer.accept(chunk);
+
+            if (chunk.size() < size)
+                break;
+        }
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         return dataService.getCount(context);
@@ -141,4 +179,15 @@ public class DataManagerClientImpl implements DataManager {
     public DataManager secure() {
         return this;
     }
-}
\ No newline at end of file
+
+    @SuppressWarnings("unchecked")
+    protected <E extends Entity> LoadContext<E> createChunkContext(LoadContext<E> context, KeysetPosition keyset,
+                                                                   int size) {
+        LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+        chunkContext.setLoadPartialEntities(context.isLoadPartialEntities());
+        chunkContext.getQuery()
+                .setKeyset(keyset)
+                .setMaxResults(size);
+        return chunkContext;
+    }
+}
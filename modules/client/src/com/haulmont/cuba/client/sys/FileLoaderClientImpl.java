@@ -24,6 +24,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.remoting.LocalFileExchangeService;
 import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
+import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -102,6 +103,18 @@ public class FileLoaderClientImpl implements FileLoader {
         }
     }
 
+    @Override
+    public InputStream openStream(FileDescriptor fd, long position) throws FileStorageException {
+        checkNotNullArgument(fd);
+
+        String useLocalInvocation = AppContext.getProperty("cuba.useLocalServiceInvocation");
+        if (Boolean.parseBoolean(useLocalInvocation) || position <= 0) {
+            return FileLoader.super.openStream(fd, position);
+        } else {
+            return openStreamWithServlet(fd, position);
+        }
+    }
+
     @Override
     public void removeFile(FileDescriptor fd) throws FileStorageException {
         checkNotNullArgument(fd);
@@ -193,6 +206,10 @@ public class FileLoaderClientImpl implements FileLoader {
     }
 
     protected InputStream openStreamWithServlet(FileDescriptor fd) throws FileStorageException {
+        return openStreamWithServlet(fd, 0);
+    }
+
+    protected InputStream openStreamWithServlet(FileDescriptor fd, long position) throws FileStorageException {
         ClientConfig clientConfig = configuration.getConfig(ClientConfig.class);
         String fileDownloadContext = clientConfig.getFileDownloadContext();
 
@@ -212,14 +229,27 @@ public class FileLoaderClientImpl implements FileLoader {
                     .build();
 
             HttpGet httpGet = new HttpGet(url);
+            if (position > 0) {
+                httpGet.setHeader("Range", "bytes=" + position + "-");
+            }
 
             try {
                 HttpResponse httpResponse = httpClient.execute(httpGet);
                 int httpStatus = httpResponse.getStatusLine().getStatusCode();
-                if (httpStatus == HttpStatus.SC_OK) {
+                if (httpStatus == HttpStatus.SC_OK || httpStatus == HttpStatus.SC_PARTIAL_CONTENT) {
                     HttpEntity httpEntity = httpResponse.getEntity();
                     if (httpEntity != null) {
-                        return httpEntity.getContent();
+                        InputStream inputStream = httpEntity.getContent();
+                        if (httpStatus == HttpStatus.SC_OK && position > 0) {
+                            // the middleware has ignored the range, so the stream contains the whole file
+                            try {
+                                IOUtils.skipFully(inputStream, position);
+                            } catch (IOException e) {
+                                IOUtils.closeQuietly(inputStream);
+                                throw e;
+                            }
+                        }
+                        return inputStream;
                     } else {
                         log.debug("Unable to download file from {}\nHttpEntity is null", url);
                         selectedUrl = failAndGetNextUrl(context);
@@ -17,10 +17,13 @@
 
 package com.haulmont.cuba.core;
 
+import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.Security;
 import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.security.entity.ConstraintOperationType;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 
 /**
@@ -106,6 +109,28 @@ public interface PersistenceSecurity extends Security {
      */
     void checkSecurityToken(Entity entity, View view);
 
+    /**
+     * Reads security tokens and restores security state and filtered data of many entities at once
+     * @param entities - entities to restore
+     */
+    void restoreSecurityStateAndFilteredData(Collection<Entity> entities);
+
+    /**
+     * Validate that security tokens exist for many entities at once, see {@link #checkSecurityToken(Entity, View)}
+     * @param entities - entities to check security tokens
+     * @param view - view for the entities
+     */
+    void checkSecurityToken(Collection<Entity> entities, @Nullable View view);
+
+    /**
+     * Checks in-memory constraints of the operation for many entities at once
+     * @param entities - entities to check
+     * @param operationType - operation type
+     * @return the first entity which is not permitted, or null if all entities are permitted
+     */
+    @Nullable
+    Entity findNotPermitted(Collection<Entity> entities, ConstraintOperationType operationType);
+
     /**
      * Calculate filtered data
      * @param entity for which will calculate filtered data
@@ -117,4 +142,13 @@ public interface PersistenceSecurity extends Security {
      * @param entities - collection of entities for which will calculate filtered data
      */
     void calculateFilteredData(Collection<Entity> entities);
+
+    /**
+     * Creates a view containing only the attributes used by in-memory read constraints of the entity.
+     * The attributes are found by paths following the {@code {E}} placeholder in the constraint Groovy scripts.
+     * @param metaClass - entity meta-class
+     * @return the view, or null if a constraint script uses the entity in a way that cannot be analyzed
+     */
+    @Nullable
+    View createInMemoryConstraintsView(MetaClass metaClass);
 }
@@ -66,4 +66,45 @@ public interface ClusterConfig extends Config {
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return whether cluster messages are encoded by the {@link ClusterMessageCodec} bean ({@link KryoClusterMessageCodec}
+     * by default) and sent in frames which can contain batches of messages. Otherwise, each message is sent separately
+     * using the standard serialization, as in previous platform versions.
+     * <p>Nodes with different values cannot exchange messages, so all nodes of a cluster must have the same value.
+     * Do not change it in a rolling upgrade from a version without this property, update all nodes at once.</p>
+     */
+    @Property("cuba.cluster.compactMessagesEnabled")
+    @DefaultBoolean(false)
+    boolean getCompactMessagesEnabled();
+
+    /**
+     * @return whether asynchronously sent messages are coalesced into batches, each batch is sent as a single
+     * cluster message. Takes effect only if {@link #getCompactMessagesEnabled()} is true.
+     * All nodes of a cluster must have the same value.
+     */
+    @Property("cuba.cluster.messageBatchingEnabled")
+    @DefaultBoolean(false)
+    boolean getMessageBatchingEnabled();
+
+    /**
+     * @return maximum time in milliseconds to wait for more messages before sending a batch
+     */
+    @Property("cuba.cluster.messageBatchMaxDelay")
+    @DefaultInt(5)
+    int getMessageBatchMaxDelay();
+
+    /**
+     * @return maximum number of messages in a batch
+     */
+    @Property("cuba.cluster.messageBatchMaxSize")
+    @DefaultInt(100)
+    int getMessageBatchMaxSize();
+
+    /**
+     * @return size in bytes of encoded messages upon reaching which a batch is sent without waiting for more messages
+     */
+    @Property("cuba.cluster.messageBatchMaxBytes")
+    @DefaultInt(65536)
+    int getMessageBatchMaxBytes();
 }
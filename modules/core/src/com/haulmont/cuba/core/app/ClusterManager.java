@@ -43,10 +43,10 @@ import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -74,12 +74,24 @@ public class ClusterManager implements ClusterManagerAPI {
     @Inject
     protected ClusterConfig clusterConfig;
 
+    @Inject
+    protected ClusterMessageCodec messageCodec;
+
+    protected boolean compactMessages;
+
     protected ThreadLocal<Boolean> forceSyncSending = new ThreadLocal<>();
 
     protected Map<String, MessageStat> messagesStat = new ConcurrentHashMap<>();
 
+    protected BlockingQueue<Serializable> batchQueue;
+
+    protected AtomicBoolean batchScheduled = new AtomicBoolean();
+
     protected static final String STATE_MAGIC = "CUBA_STATE";
 
+    protected static final byte FRAME_SINGLE = 1;
+    protected static final byte FRAME_BATCH = 2;
+
     public JChannel getChannel() {
         return channel;
     }
@@ -93,10 +105,23 @@ public class ClusterManager implements ClusterManagerAPI {
                 new RejectedExecutionHandler() {
                     @Override
                     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                        SendMessageRunnable sendMessageRunnable = (SendMessageRunnable) r;
-                        log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                        if (r instanceof SendMessageRunnable) {
+                            SendMessageRunnable sendMessageRunnable = (SendMessageRunnable) r;
+                            log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                        } else {
+                            batchScheduled.set(false);
+                            log.info("Unable to send batch of messages. Queued messages: {}", batchQueue.size());
+                        }
                     }
                 });
+        compactMessages = clusterConfig.getCompactMessagesEnabled();
+        if (clusterConfig.getMessageBatchingEnabled()) {
+            if (compactMessages) {
+                batchQueue = new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity());
+            } else {
+                log.warn("Message batching requires cuba.cluster.compactMessagesEnabled=true, messages are sent separately");
+            }
+        }
     }
 
     @EventListener(AppContextInitializedEvent.class)
@@ -121,6 +146,13 @@ public class ClusterManager implements ClusterManagerAPI {
         Boolean sync = forceSyncSending.get();
         if (sync != null && sync) {
             internalSend(message, true);
+        } else if (batchQueue != null) {
+            log.trace("Submitting message: {}: {} to send in batch", message.getClass(), message);
+            if (batchQueue.offer(message)) {
+                scheduleBatch();
+            } else {
+                log.info("Queue capacity is exceeded. Message: {}: {}", message.getClass(), message);
+            }
         } else {
             log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
             executor.execute(new SendMessageRunnable(message));
@@ -138,23 +170,173 @@ public class ClusterManager implements ClusterManagerAPI {
     protected void internalSend(Serializable message, boolean sync) {
         StopWatch sw = new Slf4JStopWatch(String.format("sendClusterMessage(%s)", message.getClass().getSimpleName()));
         try {
-            byte[] bytes = SerializationSupport.serialize(message);
+            byte[] bytes = encode(message);
             log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
             MessageStat stat = messagesStat.get(message.getClass().getName());
             if (stat != null) {
                 stat.updateSent(bytes.length);
             }
-            Message msg = new Message(null, null, bytes);
-            if (sync) {
-                msg.setFlag(Message.Flag.RSVP);
+            // without compact messages the message is sent unframed, as in previous versions
+            sendFrame(compactMessages ? createFrame(Collections.singletonList(bytes)) : bytes, sync);
+        } finally {
+            sw.stop();
+        }
+    }
+
+    protected void scheduleBatch() {
+        if (batchScheduled.compareAndSet(false, true)) {
+            executor.execute(new SendBatchRunnable());
+        }
+    }
+
+    /**
+     * Takes messages from the batch queue until the batch is full or no more messages arrive in
+     * {@link ClusterConfig#getMessageBatchMaxDelay()} milliseconds, and sends them as a single frame.
+     */
+    protected void sendBatch() {
+        int maxSize = clusterConfig.getMessageBatchMaxSize();
+        int maxBytes = clusterConfig.getMessageBatchMaxBytes();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(clusterConfig.getMessageBatchMaxDelay());
+
+        List<byte[]> batch = new ArrayList<>();
+        int batchBytes = 0;
+        while (batch.size() < maxSize && batchBytes < maxBytes) {
+            Serializable message;
+            try {
+                long timeout = deadline - System.nanoTime();
+                message = timeout > 0 ? batchQueue.poll(timeout, TimeUnit.NANOSECONDS) : batchQueue.poll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
+            if (message == null)
+                break;
+
+            byte[] bytes;
             try {
-                channel.send(msg);
-            } catch (Exception e) {
-                log.error("Error sending message", e);
+                bytes = encode(message);
+            } catch (RuntimeException e) {
+                log.error("Error encoding message: " + message.getClass(), e);
+                continue;
+            }
+            log.debug("Sending message in batch: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
+            MessageStat stat = messagesStat.get(message.getClass().getName());
+            if (stat != null) {
+                stat.updateSent(bytes.length);
+            }
+            batch.add(bytes);
+            batchBytes += bytes.length;
+        }
+
+        if (!batch.isEmpty()) {
+            StopWatch sw = new Slf4JStopWatch("sendClusterBatch");
+            try {
+                log.debug("Sending batch of {} messages ({} bytes)", batch.size(), batchBytes);
+                sendFrame(createFrame(batch), false);
+            } finally {
+                sw.stop();
+            }
+        }
+    }
+
+    /**
+     * Creates a frame containing encoded messages. A frame starts with the {@link #FRAME_SINGLE} byte followed by
+     * an encoded message, or with the {@link #FRAME_BATCH} byte followed by the number of messages and the
+     * length-prefixed encoded messages.
+     */
+    protected byte[] createFrame(List<byte[]> messages) {
+        if (messages.size() == 1) {
+            byte[] bytes = messages.get(0);
+            byte[] frame = new byte[bytes.length + 1];
+            frame[0] = FRAME_SINGLE;
+            System.arraycopy(bytes, 0, frame, 1, bytes.length);
+            return frame;
+        }
+
+        int length = 1 + 4;
+        for (byte[] bytes : messages) {
+            length += 4 + bytes.length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put(FRAME_BATCH);
+        frame.putInt(messages.size());
+        for (byte[] bytes : messages) {
+            frame.putInt(bytes.length);
+            frame.put(bytes);
+        }
+        return frame.array();
+    }
+
+    protected byte[] encode(Serializable message) {
+        return compactMessages ? messageCodec.encode(message) : SerializationSupport.serialize(message);
+    }
+
+    protected Serializable decode(byte[] bytes, int offset, int length) {
+        return compactMessages ?
+                messageCodec.decode(bytes, offset, length) :
+                (Serializable) SerializationSupport.deserialize(new ByteArrayInputStream(bytes, offset, length));
+    }
+
+    protected void sendFrame(byte[] frame, boolean sync) {
+        JChannel channel = this.channel;
+        if (channel == null)
+            return;
+
+        Message msg = new Message(null, null, frame);
+        if (sync) {
+            msg.setFlag(Message.Flag.RSVP);
+        }
+        try {
+            channel.send(msg);
+        } catch (Exception e) {
+            log.error("Error sending message", e);
+        }
+    }
+
+    protected void receiveFrame(byte[] frame, int offset, int length) {
+        if (length == 0) {
+            log.debug("Empty frame received");
+            return;
+        }
+        byte type = frame[offset];
+        if (type == FRAME_SINGLE) {
+            receiveMessage(frame, offset + 1, length - 1);
+        } else if (type == FRAME_BATCH) {
+            ByteBuffer buffer = ByteBuffer.wrap(frame, offset + 1, length - 1);
+            int count = buffer.getInt();
+            log.debug("Received batch of {} messages ({} bytes)", count, length);
+            for (int i = 0; i < count; i++) {
+                int messageLength = buffer.getInt();
+                try {
+                    receiveMessage(frame, buffer.position(), messageLength);
+                } catch (RuntimeException e) {
+                    log.error("Error receiving message", e);
+                }
+                buffer.position(buffer.position() + messageLength);
+            }
+        } else {
+            log.warn("Invalid frame type received: {}", type);
+        }
+    }
+
+    protected void receiveMessage(byte[] bytes, int offset, int length) {
+        StopWatch sw = new Slf4JStopWatch();
+        String simpleClassName = null;
+        try {
+            Serializable data = decode(bytes, offset, length);
+            String className = data.getClass().getName();
+            simpleClassName = data.getClass().getSimpleName();
+            log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, length);
+            MessageStat stat = messagesStat.get(className);
+            if (stat != null) {
+                stat.updateReceived(length);
+            }
+            ClusterListener listener = listeners.get(className);
+            if (listener != null) {
+                listener.receive(data);
             }
         } finally {
-            sw.stop();
+            sw.stop(String.format("receiveClusterMessage(%s)", simpleClassName));
         }
     }
 
@@ -172,6 +354,17 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    @Override
+    public ClusterMessageCodec getMessageCodec() {
+        return messageCodec;
+    }
+
+    @Override
+    public void setMessageCodec(ClusterMessageCodec messageCodec) {
+        Preconditions.checkNotNullArgument(messageCodec, "messageCodec is null");
+        this.messageCodec = messageCodec;
+    }
+
     @Override
     public synchronized void addListener(Class messageClass, ClusterListener listener) {
         String className = messageClass.getName();
@@ -269,7 +462,7 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @Override
     public int getMessagesCount() {
-        return executor.getQueue().size();
+        return executor.getQueue().size() + (batchQueue != null ? batchQueue.size() : 0);
     }
 
     @Override
@@ -388,28 +581,15 @@ public class ClusterManager implements ClusterManagerAPI {
 
         @Override
         public void receive(Message msg) {
-            byte[] bytes = msg.getBuffer();
+            byte[] bytes = msg.getRawBuffer();
             if (bytes == null) {
                 log.debug("Null buffer received");
                 return;
             }
-            StopWatch sw = new Slf4JStopWatch();
-            String simpleClassName = null;
-            try {
-                Serializable data = (Serializable) SerializationSupport.deserialize(bytes);
-                String className = data.getClass().getName();
-                simpleClassName = data.getClass().getSimpleName();
-                log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
-                MessageStat stat = messagesStat.get(className);
-                if (stat != null) {
-                    stat.updateReceived(bytes.length);
-                }
-                ClusterListener listener = listeners.get(className);
-                if (listener != null) {
-                    listener.receive(data);
-                }
-            } finally {
-                sw.stop(String.format("receiveClusterMessage(%s)", simpleClassName));
+            if (compactMessages) {
+                receiveFrame(bytes, msg.getOffset(), msg.getLength());
+            } else {
+                receiveMessage(bytes, msg.getOffset(), msg.getLength());
             }
         }
 
@@ -519,6 +699,20 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    protected class SendBatchRunnable implements Runnable {
+        @Override
+        public void run() {
+            try {
+                sendBatch();
+            } finally {
+                batchScheduled.set(false);
+                if (!batchQueue.isEmpty()) {
+                    scheduleBatch();
+                }
+            }
+        }
+    }
+
     protected class MessageStat {
         protected LongAdder sentBytes = new LongAdder();
         protected LongAdder receivedBytes = new LongAdder();
@@ -53,6 +53,18 @@ public interface ClusterManagerAPI {
      */
     void setSyncSendingForCurrentThread(boolean sync);
 
+    /**
+     * @return codec used to encode and decode cluster messages
+     */
+    ClusterMessageCodec getMessageCodec();
+
+    /**
+     * Set the codec used to encode and decode cluster messages. All nodes of a cluster must use the same codec.
+     *
+     * @param messageCodec codec instance
+     */
+    void setMessageCodec(ClusterMessageCodec messageCodec);
+
     /**
      * Subscribe to messages from other cluster nodes.
      *
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import java.io.Serializable;
+
+/**
+ * Converts cluster messages to bytes and back if {@link ClusterConfig#getCompactMessagesEnabled()} is true.
+ * The platform uses {@link KryoClusterMessageCodec} by default, the implementation can be replaced by registering
+ * another bean with the {@link #NAME} in {@code spring.xml}.
+ * <p>
+ * All nodes of a cluster must use the same codec.
+ */
+public interface ClusterMessageCodec {
+
+    String NAME = "cuba_ClusterMessageCodec";
+
+    /**
+     * Encode the message.
+     *
+     * @param message serializable message
+     * @return encoded message
+     */
+    byte[] encode(Serializable message);
+
+    /**
+     * Decode a message from a region of the byte array.
+     *
+     * @param bytes  array containing the encoded message
+     * @param offset start of the encoded message in the array
+     * @param length length of the encoded message
+     * @return decoded message
+     */
+    Serializable decode(byte[] bytes, int offset, int length);
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.PersistenceTools;
+import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.listener.BeforeCommitTransactionListener;
+import com.haulmont.cuba.core.sys.AppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps recent counts of entities with in-memory security constraints calculated by
+ * {@link RdbmsStore#getCount(LoadContext)}.
+ * <p>Counts are cached per user session and query for {@link ServerConfig#getInMemoryConstraintsCountCacheExpireSec()}
+ * seconds. A count is discarded earlier when an instance of an entity used by the query or by the constraints is
+ * created, changed or removed on any node of the cluster. Changes made by JPQL update statements or native SQL are
+ * not tracked.</p>
+ */
+@Component(ConstrainedCountCache.NAME)
+public class ConstrainedCountCache implements BeforeCommitTransactionListener {
+
+    public static final String NAME = "cuba_ConstrainedCountCache";
+
+    protected static final int MAX_SIZE = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(ConstrainedCountCache.class);
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected Metadata metadata;
+
+    @Inject
+    protected PersistenceTools persistenceTools;
+
+    @Inject
+    protected UserSessionSource userSessionSource;
+
+    @Inject
+    protected ClusterManagerAPI clusterManager;
+
+    protected Cache<CountKey, CachedCount> cache;
+
+    @PostConstruct
+    public void init() {
+        int expireSec = serverConfig.getInMemoryConstraintsCountCacheExpireSec();
+        if (expireSec > 0) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(MAX_SIZE)
+                    .expireAfterWrite(expireSec, TimeUnit.SECONDS)
+                    .build();
+        }
+
+        clusterManager.addListener(InvalidateCountsMsg.class, new ClusterListenerAdapter<InvalidateCountsMsg>() {
+            @Override
+            public void receive(InvalidateCountsMsg message) {
+                invalidate(message.typeNames);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the cached count for the query of the context, or null if it is not cached
+     */
+    @Nullable
+    public Long get(LoadContext<?> context) {
+        if (cache == null)
+            return null;
+
+        CachedCount cachedCount = cache.getIfPresent(new CountKey(getSessionId(), context));
+        return cachedCount != null ? cachedCount.count : null;
+    }
+
+    /**
+     * Caches the count for the query of the context.
+     * @param view  view used to evaluate the constraints, its entities are tracked together with entities of the query
+     */
+    public void put(LoadContext<?> context, @Nullable View view, long count) {
+        if (cache == null)
+            return;
+
+        Set<String> typeNames = new HashSet<>();
+        typeNames.add(getTypeName(metadata.getClassNN(context.getMetaClass())));
+        for (String entityName : QueryTransformerFactory.createParser(context.getQuery().getQueryString()).getAllEntityNames()) {
+            MetaClass metaClass = metadata.getClass(entityName);
+            if (metaClass != null) {
+                typeNames.add(getTypeName(metaClass));
+            }
+        }
+        if (view != null) {
+            collectTypeNames(view, typeNames);
+        }
+
+        cache.put(new CountKey(getSessionId(), context), new CachedCount(count, typeNames));
+    }
+
+    /**
+     * Discards counts depending on the given entities on this node.
+     */
+    public void invalidate(Collection<String> typeNames) {
+        if (cache == null)
+            return;
+
+        log.trace("Invalidating counts for {}", typeNames);
+        cache.asMap().values().removeIf(cachedCount -> !Collections.disjoint(cachedCount.typeNames, typeNames));
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void beforeCommit(EntityManager entityManager, Collection<Entity> managedEntities) {
+        if (cache == null)
+            return;
+
+        Set<String> typeNames = new HashSet<>();
+        for (Entity entity : managedEntities) {
+            if (entity instanceof BaseGenericIdEntity && isChanged((BaseGenericIdEntity) entity)) {
+                MetaClass metaClass = entity.getMetaClass();
+                typeNames.add(getTypeName(metaClass));
+                for (MetaClass ancestor : metaClass.getAncestors()) {
+                    typeNames.add(getTypeName(ancestor));
+                }
+            }
+        }
+        if (typeNames.isEmpty())
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                invalidate(typeNames);
+                clusterManager.send(new InvalidateCountsMsg(typeNames));
+            }
+        });
+    }
+
+    protected boolean isChanged(BaseGenericIdEntity entity) {
+        return BaseEntityInternalAccess.isNew(entity)
+                || BaseEntityInternalAccess.isRemoved(entity)
+                || persistenceTools.isDirty(entity);
+    }
+
+    protected void collectTypeNames(View view, Set<String> typeNames) {
+        typeNames.add(getTypeName(metadata.getClassNN(view.getEntityClass())));
+        for (ViewProperty property : view.getProperties()) {
+            if (property.getView() != null) {
+                collectTypeNames(property.getView(), typeNames);
+            }
+        }
+    }
+
+    protected String getTypeName(MetaClass metaClass) {
+        return metadata.getExtendedEntities().getOriginalOrThisMetaClass(metaClass).getName();
+    }
+
+    @Nullable
+    protected UUID getSessionId() {
+        return AppContext.getSecurityContext() != null ? userSessionSource.getUserSession().getId() : null;
+    }
+
+    protected static class CountKey {
+        protected final UUID sessionId;
+        protected final String metaClass;
+        protected final String queryString;
+        protected final Map<String, Object> parameters;
+        protected final boolean softDeletion;
+        protected final Map<String, Object> dbHints;
+
+        public CountKey(@Nullable UUID sessionId, LoadContext<?> context) {
+            this.sessionId = sessionId;
+            this.metaClass = context.getMetaClass();
+            this.queryString = context.getQuery().getQueryString();
+            this.parameters = new HashMap<>(context.getQuery().getParameters());
+            this.softDeletion = context.isSoftDeletion();
+            this.dbHints = new HashMap<>(context.getDbHints());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            CountKey that = (CountKey) o;
+
+            return softDeletion == that.softDeletion
+                    && Objects.equals(sessionId, that.sessionId)
+                    && metaClass.equals(that.metaClass)
+                    && queryString.equals(that.queryString)
+                    && parameters.equals(that.parameters)
+                    && dbHints.equals(that.dbHints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionId, metaClass, queryString, parameters, softDeletion, dbHints);
+        }
+    }
+
+    protected static class CachedCount {
+        protected final long count;
+        protected final Set<String> typeNames;
+
+        public CachedCount(long count, Set<String> typeNames) {
+            this.count = count;
+            this.typeNames = typeNames;
+        }
+    }
+
+    protected static class InvalidateCountsMsg implements Serializable {
+        private static final long serialVersionUID = 4125870613527781104L;
+
+        protected Set<String> typeNames;
+
+        public InvalidateCountsMsg(Set<String> typeNames) {
+            this.typeNames = typeNames;
+        }
+    }
+}
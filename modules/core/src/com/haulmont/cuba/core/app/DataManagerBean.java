@@ -17,12 +17,14 @@
 
 package com.haulmont.cuba.core.app;
 
+import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.app.EntityLogAPI;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -34,6 +36,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerBean implements DataManager {
@@ -86,6 +89,41 @@ public class DataManagerBean implements DataManager {
         return entities;
     }
 
+    @Override
+    public <E extends Entity> void loadByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        Preconditions.checkNotNullArgument(consumer, "consumer is null");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+
+        LoadContext.Query query = context.getQuery();
+        if (query == null || StringUtils.isBlank(query.getQueryString()))
+            throw new IllegalArgumentException("Query string is required to load by chunks");
+        if (query.getFirstResult() != 0)
+            throw new IllegalArgumentException("First result is not supported when loading by chunks");
+
+        KeysetPosition keyset = query.getKeyset();
+        if (keyset == null) {
+            keyset = KeysetPosition.create(metadata.getClassNN(context.getMetaClass()), query.getQueryString());
+        }
+
+        int maxResults = query.getMaxResults();
+        int loaded = 0;
+        while (maxResults == 0 || loaded < maxResults) {
+            int size = maxResults == 0 ? chunkSize : Math.min(chunkSize, maxResults - loaded);
+
+            List<E> chunk = loadList(createChunkContext(context, keyset, size));
+            if (chunk.isEmpty())
+                break;
+
+            loaded += chunk.size();
+            keyset = keyset.after(chunk.get(chunk.size() - 1));
+            consumer.accept(chunk);
+
+            if (chunk.size() < size)
+                break;
+        }
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
@@ -264,10 +302,22 @@ public class DataManagerBean implements DataManager {
                 && ((BaseGenericIdEntity) entity).getDynamicAttributes() != null;
     }
 
+    @SuppressWarnings("unchecked")
+    protected <E extends Entity> LoadContext<E> createChunkContext(LoadContext<E> context, KeysetPosition keyset,
+                                                                   int size) {
+        LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+        chunkContext.setLoadPartialEntities(context.isLoadPartialEntities());
+        chunkContext.getQuery()
+                .setKeyset(keyset)
+                .setMaxResults(size);
+        return chunkContext;
+    }
+
     protected CommitContext createCommitContext(CommitContext context) {
         CommitContext newCtx = new CommitContext();
         newCtx.setSoftDeletion(context.isSoftDeletion());
         newCtx.setDiscardCommitted(context.isDiscardCommitted());
+        newCtx.setBulkMode(context.isBulkMode());
         return newCtx;
     }
 
@@ -47,6 +47,8 @@ public class DataServiceQueryBuilder {
 
     private static final Logger log = LoggerFactory.getLogger(DataServiceQueryBuilder.class);
 
+    protected static final String KEYSET_PARAM = "_keyset";
+
     protected String queryString;
     protected Map<String, Object> queryParams;
     protected String entityName;
@@ -109,6 +111,53 @@ public class DataServiceQueryBuilder {
         this.queryParams.put("_qr_sessionId", sessionId);
     }
 
+    public void restrictByPreviousResults(Collection<?> ids) {
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
+        if (primaryKey == null)
+            throw new IllegalStateException(String.format("Entity %s has no primary key", entityName));
+        transformer.addWhere(String.format("{E}.%s in :_qr_ids", primaryKey.getName()));
+        queryString = transformer.getResult();
+        this.queryParams.put("_qr_ids", ids);
+    }
+
+    /**
+     * Orders the query by the keyset properties and, if the keyset contains last seen values, restricts it to
+     * instances following them. The row value comparison {@code (k1, k2) > (:v1, :v2)} is expanded to
+     * {@code k1 > :v1 or (k1 = :v1 and k2 > :v2)} as it is not supported by JPQL.
+     */
+    public void applyKeyset(KeysetPosition keyset) {
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        List<String> properties = keyset.getProperties();
+        transformer.replaceOrderBy(keyset.isDescending(), properties.toArray(new String[properties.size()]));
+
+        List<Object> values = keyset.getValues();
+        if (values != null) {
+            String operator = keyset.isDescending() ? " < " : " > ";
+            StringBuilder where = new StringBuilder();
+            for (int i = 0; i < properties.size(); i++) {
+                if (i > 0)
+                    where.append(" or ");
+                where.append("(");
+                for (int j = 0; j < i; j++) {
+                    where.append("{E}.").append(properties.get(j)).append(" = :").append(KEYSET_PARAM).append(j)
+                            .append(" and ");
+                }
+                where.append("{E}.").append(properties.get(i)).append(operator).append(":").append(KEYSET_PARAM).append(i)
+                        .append(")");
+            }
+            transformer.addWhere(where.toString());
+
+            // do not add the parameters to the map passed to init()
+            queryParams = new HashMap<>(queryParams);
+            for (int i = 0; i < values.size(); i++) {
+                queryParams.put(KEYSET_PARAM + i, values.get(i));
+            }
+        }
+        queryString = transformer.getResult();
+    }
+
     public Query getQuery(EntityManager em) {
         Query query = em.createQuery(queryString);
 
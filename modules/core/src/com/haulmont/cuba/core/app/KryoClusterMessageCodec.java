@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.serialization.KryoSerialization;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+
+/**
+ * Default {@link ClusterMessageCodec} based on {@link KryoSerialization}.
+ */
+@Component(ClusterMessageCodec.NAME)
+public class KryoClusterMessageCodec implements ClusterMessageCodec {
+
+    protected KryoSerialization serialization = new KryoSerialization();
+
+    @Override
+    public byte[] encode(Serializable message) {
+        return serialization.serialize(message);
+    }
+
+    @Override
+    public Serializable decode(byte[] bytes, int offset, int length) {
+        return (Serializable) serialization.deserialize(new ByteArrayInputStream(bytes, offset, length));
+    }
+}
@@ -33,6 +33,8 @@ import com.haulmont.cuba.security.entity.ConstraintOperationType;
 import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
+import org.perf4j.StopWatch;
+import org.perf4j.slf4j.Slf4JStopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
@@ -95,6 +97,9 @@ public class RdbmsStore implements DataStore {
     @Inject
     protected EntityFetcher entityFetcher;
 
+    @Inject
+    protected ConstrainedCountCache constrainedCountCache;
+
     protected String storeName;
 
     public RdbmsStore(String storeName) {
@@ -176,7 +181,8 @@ public class RdbmsStore implements DataStore {
                     + (context.getPrevQueries().isEmpty() ? "" : ", from selected")
                     + ", query=" + (context.getQuery() == null ? null : DataServiceQueryBuilder.printQuery(context.getQuery().getQueryString()))
                     + (context.getQuery() == null || context.getQuery().getFirstResult() == 0 ? "" : ", first=" + context.getQuery().getFirstResult())
-                    + (context.getQuery() == null || context.getQuery().getMaxResults() == 0 ? "" : ", max=" + context.getQuery().getMaxResults()));
+                    + (context.getQuery() == null || context.getQuery().getMaxResults() == 0 ? "" : ", max=" + context.getQuery().getMaxResults())
+                    + (context.getQuery() == null || context.getQuery().getKeyset() == null ? "" : ", keyset=" + context.getQuery().getKeyset()));
 
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
 
@@ -251,6 +257,13 @@ public class RdbmsStore implements DataStore {
 
         if (security.hasInMemoryConstraints(metaClass, ConstraintOperationType.READ, ConstraintOperationType.ALL)) {
             context = context.copy();
+            context.getQuery().setKeyset(null);
+
+            MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
+            if (primaryKey != null && !metadata.getTools().hasCompositePrimaryKey(metaClass)) {
+                return getCountWithInMemoryConstraints(context, primaryKey);
+            }
+
             List resultList;
             try (Transaction tx = createLoadTransaction()) {
                 EntityManager em = persistence.getEntityManager(storeName);
@@ -282,6 +295,7 @@ public class RdbmsStore implements DataStore {
             transformer.replaceWithCount();
             context = context.copy();
             context.getQuery().setQueryString(transformer.getResult());
+            context.getQuery().setKeyset(null);
 
             Number result;
             try (Transaction tx = createLoadTransaction()) {
@@ -299,6 +313,89 @@ public class RdbmsStore implements DataStore {
         }
     }
 
+    /**
+     * Counts instances permitted by in-memory constraints. The instances are loaded by chunks ordered by the primary
+     * key with a view containing only attributes used by the constraints, so a single chunk is kept in memory.
+     */
+    @SuppressWarnings("unchecked")
+    protected long getCountWithInMemoryConstraints(LoadContext<? extends Entity> context, MetaProperty primaryKey) {
+        // results of previous queries are restricted in the database, so they are not tracked by the cache
+        boolean cacheable = context.getPrevQueries().isEmpty();
+        if (cacheable) {
+            Long cachedCount = constrainedCountCache.get(context);
+            if (cachedCount != null) {
+                log.debug("Count is found in cache: {}", cachedCount);
+                return cachedCount;
+            }
+        }
+
+        LoadContext<? extends Entity> chunkContext = context.copy();
+        boolean ensureDistinct = false;
+        if (serverConfig.getInMemoryDistinct()) {
+            QueryTransformer transformer = queryTransformerFactory.transformer(chunkContext.getQuery().getQueryString());
+            ensureDistinct = transformer.removeDistinct();
+            if (ensureDistinct) {
+                chunkContext.getQuery().setQueryString(transformer.getResult());
+            }
+        }
+
+        View constraintsView = security.createInMemoryConstraintsView(metadata.getClassNN(context.getMetaClass()));
+        View view;
+        if (constraintsView != null) {
+            view = View.copy(attributeSecurity.createRestrictedView(constraintsView));
+            view.setLoadPartialEntities(true);
+        } else {
+            view = createRestrictedView(chunkContext);
+        }
+
+        int chunkSize = serverConfig.getInMemoryConstraintsCountChunkSize();
+        int limit = serverConfig.getInMemoryConstraintsCountLimit();
+        chunkContext.getQuery().setFirstResult(0);
+        chunkContext.getQuery().setMaxResults(chunkSize);
+        KeysetPosition keyset = KeysetPosition.of(false, primaryKey.getName());
+
+        long count = 0;
+        boolean limitExceeded = false;
+        while (true) {
+            chunkContext.getQuery().setKeyset(keyset);
+            List<Entity> chunk;
+            try (Transaction tx = createLoadTransaction()) {
+                EntityManager em = persistence.getEntityManager(storeName);
+                em.setSoftDeletion(chunkContext.isSoftDeletion());
+                persistence.getEntityManagerContext(storeName).setDbHints(chunkContext.getDbHints());
+
+                Query query = createQuery(em, chunkContext, false);
+                query.setView(view);
+                chunk = executeQuery(query, false);
+                if (!chunk.isEmpty()) {
+                    // rows are ordered by ID, so duplicates of the last instance cannot appear in the next chunk
+                    keyset = keyset.after(chunk.get(chunk.size() - 1));
+
+                    Collection<Entity> permitted = ensureDistinct ? new LinkedHashSet<>(chunk) : new ArrayList<>(chunk);
+                    security.filterByConstraints(permitted);
+                    count += permitted.size();
+                }
+
+                tx.commit();
+            }
+
+            if (limit > 0 && count > limit) {
+                count = limit + 1;
+                limitExceeded = true;
+                break;
+            }
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        log.debug("Counted {}{} permitted instances", limitExceeded ? "more than " : "", limitExceeded ? limit : count);
+
+        if (cacheable) {
+            constrainedCountCache.put(context, view, count);
+        }
+        return count;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Set<Entity> commit(CommitContext context) {
@@ -306,6 +403,10 @@ public class RdbmsStore implements DataStore {
             log.debug("commit: commitInstances=" + context.getCommitInstances()
                     + ", removeInstances=" + context.getRemoveInstances());
 
+        if (context.isBulkMode()) {
+            return commitBulk(context);
+        }
+
         Set<Entity> res = new HashSet<>();
         List<Entity> persisted = new ArrayList<>();
         List<BaseGenericIdEntity> identityEntitiesToStoreDynamicAttributes = new ArrayList<>();
@@ -397,22 +498,7 @@ public class RdbmsStore implements DataStore {
                 }
 
                 if (entityHasDynamicAttributes(entity)) {
-                    Map<String, CategoryAttributeValue> dynamicAttributes = ((BaseGenericIdEntity) entity).getDynamicAttributes();
-
-                    //dynamicAttributes checked for null in entityHasDynamicAttributes()
-                    //noinspection ConstantConditions
-                    for (CategoryAttributeValue categoryAttributeValue : dynamicAttributes.values()) {
-                        if (!PersistenceHelper.isNew(categoryAttributeValue)) {
-                            if (Stores.isMain(storeName)) {
-                                em.remove(categoryAttributeValue);
-                            } else {
-                                attributeValuesToRemove.add(categoryAttributeValue);
-                            }
-                            if (!context.isDiscardCommitted()) {
-                                res.add(categoryAttributeValue);
-                            }
-                        }
-                    }
+                    removeDynamicAttributes(em, (BaseGenericIdEntity) entity, context, res, attributeValuesToRemove);
                 }
 
                 if (!context.isDiscardCommitted() && isAuthorizationRequired() && userSessionSource.getUserSession().hasConstraints()) {
@@ -423,6 +509,168 @@ public class RdbmsStore implements DataStore {
             tx.commit();
         }
 
+        afterCommit(context, res, persisted, identityEntitiesToStoreDynamicAttributes, attributeValuesToRemove);
+
+        return res;
+    }
+
+    /**
+     * Commits instances of the context in bulk mode: all new instances are persisted, then all other instances are
+     * merged, and security tokens and row-level constraints are checked for all instances of a phase at once.
+     * Duration of each phase is logged by perf4j under {@code RdbmsStore.commitBulk.*} tags.
+     */
+    @SuppressWarnings("unchecked")
+    protected Set<Entity> commitBulk(CommitContext context) {
+        StopWatch sw = new Slf4JStopWatch();
+
+        Set<Entity> res = new HashSet<>();
+        List<Entity> persisted = new ArrayList<>();
+        List<BaseGenericIdEntity> identityEntitiesToStoreDynamicAttributes = new ArrayList<>();
+        List<CategoryAttributeValue> attributeValuesToRemove = new ArrayList<>();
+
+        try (Transaction tx = persistence.createTransaction(storeName)) {
+            EntityManager em = persistence.getEntityManager(storeName);
+            checkPermissions(context);
+
+            if (!context.isSoftDeletion())
+                em.setSoftDeletion(false);
+
+            persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
+
+            List<Entity> toMerge = new ArrayList<>();
+            for (Entity entity : context.getCommitInstances()) {
+                if (!PersistenceHelper.isNew(entity)) {
+                    toMerge.add(entity);
+                }
+            }
+            List<Entity> toRemove = new ArrayList<>(context.getRemoveInstances());
+
+            List<Entity> detached = new ArrayList<>(toMerge);
+            detached.addAll(toRemove);
+            if (isAuthorizationRequired()) {
+                security.checkSecurityToken(detached, null);
+            }
+            security.restoreSecurityStateAndFilteredData(detached);
+            sw.lap("RdbmsStore.commitBulk.securityTokens");
+
+            List<BaseGenericIdEntity> entitiesToStoreDynamicAttributes = new ArrayList<>();
+
+            // persist new
+            for (Entity entity : context.getCommitInstances()) {
+                if (PersistenceHelper.isNew(entity)) {
+                    attributeSecurity.beforePersist(entity);
+                    em.persist(entity);
+                    if (!context.isDiscardCommitted()) {
+                        entityFetcher.fetch(entity, getViewFromContextOrNull(context, entity), true);
+                        res.add(entity);
+                    }
+                    persisted.add(entity);
+
+                    if (entityHasDynamicAttributes(entity)) {
+                        if (entity instanceof BaseDbGeneratedIdEntity) {
+                            identityEntitiesToStoreDynamicAttributes.add((BaseGenericIdEntity) entity);
+                        } else {
+                            entitiesToStoreDynamicAttributes.add((BaseGenericIdEntity) entity);
+                        }
+                    }
+                }
+            }
+            checkOperationPermitted(persisted, ConstraintOperationType.CREATE);
+            sw.lap("RdbmsStore.commitBulk.persist");
+
+            // merge the rest, merged instances are not needed to be fetched if the calling code discards them
+            List<Entity> merged = new ArrayList<>(toMerge.size());
+            for (Entity entity : toMerge) {
+                attributeSecurity.beforeMerge(entity);
+
+                Entity mergedEntity = em.merge(entity);
+                if (!context.isDiscardCommitted()) {
+                    entityFetcher.fetch(mergedEntity, getViewFromContext(context, entity));
+                    attributeSecurity.afterMerge(mergedEntity);
+                    res.add(mergedEntity);
+                }
+                merged.add(mergedEntity);
+
+                if (entityHasDynamicAttributes(entity)) {
+                    BaseGenericIdEntity mergedBaseGenericIdEntity = (BaseGenericIdEntity) mergedEntity;
+                    mergedBaseGenericIdEntity.setDynamicAttributes(((BaseGenericIdEntity) entity).getDynamicAttributes());
+                    entitiesToStoreDynamicAttributes.add(mergedBaseGenericIdEntity);
+                }
+            }
+            checkOperationPermitted(merged, ConstraintOperationType.UPDATE);
+            sw.lap("RdbmsStore.commitBulk.merge");
+
+            for (BaseGenericIdEntity entity : entitiesToStoreDynamicAttributes) {
+                dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
+            }
+            sw.lap("RdbmsStore.commitBulk.dynamicAttributes");
+
+            // remove
+            List<Entity> removed = new ArrayList<>(toRemove.size());
+            for (Entity entity : toRemove) {
+                Entity e;
+                if (entity instanceof SoftDelete) {
+                    attributeSecurity.beforeMerge(entity);
+                    e = em.merge(entity);
+                    if (!context.isDiscardCommitted()) {
+                        entityFetcher.fetch(e, getViewFromContext(context, entity));
+                        attributeSecurity.afterMerge(e);
+                    }
+                } else {
+                    e = em.merge(entity);
+                }
+                removed.add(e);
+
+                if (entityHasDynamicAttributes(entity)) {
+                    removeDynamicAttributes(em, (BaseGenericIdEntity) entity, context, res, attributeValuesToRemove);
+                }
+            }
+            checkOperationPermitted(removed, ConstraintOperationType.DELETE);
+            for (Entity e : removed) {
+                em.remove(e);
+                if (!context.isDiscardCommitted()) {
+                    res.add(e);
+                }
+            }
+            if (!removed.isEmpty() && !context.isDiscardCommitted()
+                    && isAuthorizationRequired() && userSessionSource.getUserSession().hasConstraints()) {
+                security.filterByConstraints(res);
+            }
+            sw.lap("RdbmsStore.commitBulk.remove");
+
+            tx.commit();
+            sw.lap("RdbmsStore.commitBulk.flush");
+        }
+
+        afterCommit(context, res, persisted, identityEntitiesToStoreDynamicAttributes, attributeValuesToRemove);
+        sw.stop("RdbmsStore.commitBulk.afterCommit");
+
+        return res;
+    }
+
+    protected void removeDynamicAttributes(EntityManager em, BaseGenericIdEntity entity, CommitContext context,
+                                           Set<Entity> res, List<CategoryAttributeValue> attributeValuesToRemove) {
+        Map<String, CategoryAttributeValue> dynamicAttributes = entity.getDynamicAttributes();
+
+        //dynamicAttributes checked for null in entityHasDynamicAttributes()
+        //noinspection ConstantConditions
+        for (CategoryAttributeValue categoryAttributeValue : dynamicAttributes.values()) {
+            if (!PersistenceHelper.isNew(categoryAttributeValue)) {
+                if (Stores.isMain(storeName)) {
+                    em.remove(categoryAttributeValue);
+                } else {
+                    attributeValuesToRemove.add(categoryAttributeValue);
+                }
+                if (!context.isDiscardCommitted()) {
+                    res.add(categoryAttributeValue);
+                }
+            }
+        }
+    }
+
+    protected void afterCommit(CommitContext context, Set<Entity> res, List<Entity> persisted,
+                               List<BaseGenericIdEntity> identityEntitiesToStoreDynamicAttributes,
+                               List<CategoryAttributeValue> attributeValuesToRemove) {
         if (!attributeValuesToRemove.isEmpty()) {
             try (Transaction tx = persistence.createTransaction()) {
                 EntityManager em = persistence.getEntityManager();
@@ -452,8 +700,6 @@ public class RdbmsStore implements DataStore {
             }
             updateReferences(persisted, res);
         }
-
-        return res;
     }
 
     @Override
@@ -527,7 +773,7 @@ public class RdbmsStore implements DataStore {
     protected View getViewFromContext(CommitContext context, Entity entity) {
         View view = context.getViews().get(entity);
         if (view == null) {
-            view = viewRepository.getView(entity.getClass(), View.LOCAL);
+            view = viewRepository.getSharedView(entity.getClass(), View.LOCAL);
         }
         return attributeSecurity.createRestrictedView(view);
     }
@@ -551,6 +797,19 @@ public class RdbmsStore implements DataStore {
         }
     }
 
+    protected void checkOperationPermitted(Collection<Entity> entities, ConstraintOperationType operationType) {
+        if (entities.isEmpty()
+                || !isAuthorizationRequired()
+                || !userSessionSource.getUserSession().hasConstraints()) {
+            return;
+        }
+        Entity notPermitted = security.findNotPermitted(entities, operationType);
+        if (notPermitted != null) {
+            throw new RowLevelSecurityException(
+                    operationType + " is not permitted for entity " + notPermitted, notPermitted.getMetaClass().getName(), operationType);
+        }
+    }
+
     protected boolean entityHasDynamicAttributes(Entity entity) {
         return entity instanceof BaseGenericIdEntity
                 && ((BaseGenericIdEntity) entity).getDynamicAttributes() != null;
@@ -573,7 +832,10 @@ public class RdbmsStore implements DataStore {
 
         if (!context.getPrevQueries().isEmpty()) {
             log.debug("Restrict query by previous results");
-            queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), context.getQueryKey());
+            queryResultsManager.restrictByPreviousResults(queryBuilder, context.getQueryKey());
+        }
+        if (contextQuery != null && contextQuery.getKeyset() != null) {
+            queryBuilder.applyKeyset(contextQuery.getKeyset());
         }
         Query query = queryBuilder.getQuery(em);
 
@@ -592,7 +854,7 @@ public class RdbmsStore implements DataStore {
 
     protected View createRestrictedView(LoadContext context) {
         View view = context.getView() != null ? context.getView() :
-                viewRepository.getView(metadata.getClassNN(context.getMetaClass()), View.LOCAL);
+                viewRepository.getSharedView(metadata.getClassNN(context.getMetaClass()), View.LOCAL);
         View copy = View.copy(attributeSecurity.createRestrictedView(view));
         if (context.isLoadPartialEntities()
                 && !needToApplyInMemoryReadConstraints(context)
@@ -21,8 +21,12 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.*;
+import com.haulmont.cuba.core.config.type.CommaSeparatedStringListTypeFactory;
+import com.haulmont.cuba.core.config.type.Factory;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 
+import java.util.List;
+
 /**
  * Configuration parameters interface used by the CORE layer.
  */
@@ -86,8 +90,9 @@ public interface ServerConfig extends Config {
 
     /**
      * @return User session ping timeout in cluster.
-     * If ping is performed by {@link UserSessionsAPI#getAndRefresh}, user session is sent to the cluster only
-     * after this timeout
+     * If ping is performed by {@link UserSessionsAPI#getAndRefresh}, the last usage time of the user session is sent
+     * to the cluster only after this timeout. Usage times of all sessions are sent in a single message not more often
+     * than once per this timeout.
      */
     @Property("cuba.userSessionSendTimeoutSec")
     @DefaultInt(10)
@@ -131,6 +136,16 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(true)
     boolean getImmutableFileStorage();
 
+    /**
+     * A content-addressed file storage keeps a single copy of equal files. Each file descriptor path is a hard link
+     * to the shared content, and the content is deleted when the last file referencing it is removed.
+     *
+     * @return whether file storage deduplicates files by content.
+     */
+    @Property("cuba.contentAddressedFileStorage")
+    @DefaultBoolean(false)
+    boolean getContentAddressedFileStorage();
+
     /**
      * @return Scheduled tasks execution control.
      */
@@ -157,6 +172,26 @@ public interface ServerConfig extends Config {
     int getSchedulingThreadPoolSize();
     void setSchedulingThreadPoolSize(int value);
 
+    /**
+     * @return Whether the scheduler should compute the next check time of each task and skip scheduling intervals
+     * when no task is due, instead of reading and evaluating all active tasks on every interval.
+     * Changes of {@link com.haulmont.cuba.core.entity.ScheduledTask} instances are propagated through the cluster.
+     */
+    @Property("cuba.schedulingEventDriven")
+    @DefaultBoolean(false)
+    boolean getSchedulingEventDriven();
+    void setSchedulingEventDriven(boolean value);
+
+    /**
+     * @return Maximum time in milliseconds between two readings of active tasks when
+     * {@link #getSchedulingEventDriven()} is true. Allows the server to detect changes made by other servers,
+     * e.g. switching of the master or starting of singleton tasks.
+     */
+    @Property("cuba.schedulingMaxIdleInterval")
+    @DefaultLong(60000)
+    long getSchedulingMaxIdleInterval();
+    void setSchedulingMaxIdleInterval(long value);
+
     /**
      * @return Tells DataService to ensure distinct results by processing them in memory, instead of issue
      * 'select distinct' to the database.
@@ -262,6 +297,23 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(false)
     boolean getLogInternalServiceInvocation();
 
+    /**
+     * @return percentage of service invocations from clients whose execution time is recorded in the latency
+     * histograms of {@link ServiceStatisticsAccumulator}. Invocations and errors are counted for all invocations.
+     * 0 disables the service statistics.
+     */
+    @Property("cuba.serviceStatisticsSamplingPercent")
+    @DefaultInt(100)
+    int getServiceStatisticsSamplingPercent();
+
+    /**
+     * @return whether the service statistics are available in plain text at the {@code /metrics} URL of the
+     * middleware block, next to the health check URL
+     */
+    @Property("cuba.serviceStatisticsEndpointEnabled")
+    @DefaultBoolean(false)
+    boolean getServiceStatisticsEndpointEnabled();
+
     /**
      * @return batch size for loading related entities from different data stores
      */
@@ -293,4 +345,114 @@ public interface ServerConfig extends Config {
     @Property("cuba.useEntityDataStoreForIdSequence")
     @DefaultBoolean(false)
     boolean getUseEntityDataStoreForIdSequence();
-}
\ No newline at end of file
+
+    /**
+     * @return whether results of previous queries of sequential filters are kept in memory of the middleware
+     * instead of the SYS_QUERY_RESULT table. The results are available only on the middleware node which executed
+     * the previous query, so enable it only if a client session always works with the same node (sticky sessions)
+     * and no failover to other nodes is expected.
+     */
+    @Property("cuba.queryResultsInMemory")
+    @DefaultBoolean(false)
+    boolean getQueryResultsInMemory();
+
+    /**
+     * @return maximum number of identifiers of a sequential filter result kept in memory. Larger results are
+     * saved in the SYS_QUERY_RESULT table.
+     */
+    @Property("cuba.queryResultsInMemoryMaxSize")
+    @DefaultInt(1000000)
+    int getQueryResultsInMemoryMaxSize();
+
+    /**
+     * @return maximum number of identifiers of a sequential filter result passed to a query as a parameter.
+     * Larger results are saved in the SYS_QUERY_RESULT table before executing the query.
+     */
+    @Property("cuba.queryResultsMaxInListSize")
+    @DefaultInt(500)
+    int getQueryResultsMaxInListSize();
+
+    /**
+     * @return number of instances loaded at once when counting entities with in-memory security constraints
+     */
+    @Property("cuba.inMemoryConstraintsCountChunkSize")
+    @DefaultInt(1000)
+    int getInMemoryConstraintsCountChunkSize();
+
+    /**
+     * @return if greater than zero, counting of entities with in-memory security constraints stops as soon as
+     * the number of permitted instances exceeds this value, and the value plus one is returned as the count
+     */
+    @Property("cuba.inMemoryConstraintsCountLimit")
+    @DefaultInt(0)
+    int getInMemoryConstraintsCountLimit();
+
+    /**
+     * @return time in seconds to keep counts of entities with in-memory security constraints in the cache.
+     * A cached count is discarded earlier if an entity used by the query or the constraints is changed.
+     * Zero disables the cache.
+     */
+    @Property("cuba.inMemoryConstraintsCountCacheExpireSec")
+    @DefaultInt(0)
+    int getInMemoryConstraintsCountCacheExpireSec();
+
+    /**
+     * @return maximum number of entities whose dynamic attribute values are cached in memory of the middleware.
+     * 0 disables the cache. The value is applied when the cache is used for the first time.
+     */
+    @Property("cuba.dynamicAttributeValuesCacheMaxSize")
+    @DefaultInt(0)
+    int getDynamicAttributeValuesCacheMaxSize();
+
+    /**
+     * @return time in seconds after which cached dynamic attribute values expire, 0 means no expiration
+     */
+    @Property("cuba.dynamicAttributeValuesCacheExpireSec")
+    @DefaultInt(300)
+    int getDynamicAttributeValuesCacheExpireSec();
+
+    /**
+     * @return number of entities whose dynamic attribute values are loaded by a single query. The value is reduced
+     * if the database limits the size of IN lists, see
+     * {@link com.haulmont.cuba.core.sys.persistence.DbmsFeatures#getMaxInListSize()}.
+     */
+    @Property("cuba.dynamicAttributeValuesBatchSize")
+    @DefaultInt(100)
+    int getDynamicAttributeValuesBatchSize();
+
+    /**
+     * @return number of entities that are loaded by a single query and committed in a single transaction by the
+     * streaming import of {@link com.haulmont.cuba.core.app.importexport.EntityImportExportAPI}. The value is reduced
+     * if the database limits the size of IN lists, see
+     * {@link com.haulmont.cuba.core.sys.persistence.DbmsFeatures#getMaxInListSize()}.
+     */
+    @Property("cuba.entityImportExportChunkSize")
+    @DefaultInt(500)
+    int getEntityImportExportChunkSize();
+
+    /**
+     * @return maximum number of fetch plans cached by {@link com.haulmont.cuba.core.sys.FetchGroupManager}.
+     * A fetch plan contains the fetch group and fetch hints computed for a view and a query. 0 disables the cache.
+     */
+    @Property("cuba.fetchPlanCacheSize")
+    @DefaultInt(1000)
+    int getFetchPlanCacheSize();
+
+    /**
+     * @return Domains of {@link UniqueNumbersAPI} for which numbers are reserved in blocks and handed out from memory.
+     * Numbers of such domains are unique, but can have gaps and are not ordered between cluster nodes.
+     * <p>Do not remove a domain from this list after it was used, because the block mode uses a separate sequence
+     * and the standard sequence of the domain is not advanced.</p>
+     */
+    @Property("cuba.uniqueNumbersBlockDomains")
+    @Factory(factory = CommaSeparatedStringListTypeFactory.class)
+    List<String> getUniqueNumbersBlockDomains();
+
+    /**
+     * @return Number of unique numbers reserved at once for the domains listed in
+     * {@link #getUniqueNumbersBlockDomains()}
+     */
+    @Property("cuba.uniqueNumbersBlockSize")
+    @DefaultInt(100)
+    int getUniqueNumbersBlockSize();
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.LatencyHistogram;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Collects number of invocations, errors and latency histograms of the middleware service methods invoked by clients.
+ * <p>Latency of a fraction of invocations defined by {@link ServerConfig#getServiceStatisticsSamplingPercent()} is
+ * recorded, invocations and errors are counted always.</p>
+ */
+@Component(ServiceStatisticsAccumulator.NAME)
+public class ServiceStatisticsAccumulator {
+
+    public static final String NAME = "cuba_ServiceStatisticsAccumulator";
+
+    protected static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected volatile int samplingPercent;
+
+    protected volatile Map<Method, MethodStatistics> statistics = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void init() {
+        samplingPercent = serverConfig.getServiceStatisticsSamplingPercent();
+    }
+
+    /**
+     * @return percentage of invocations whose latency is recorded, 0 if the statistics are disabled
+     */
+    public int getSamplingPercent() {
+        return samplingPercent;
+    }
+
+    /**
+     * Sets percentage of invocations whose latency is recorded. The value is in effect until the server restart.
+     *
+     * @param samplingPercent value from 0 to 100, 0 disables the statistics
+     */
+    public void setSamplingPercent(int samplingPercent) {
+        if (samplingPercent < 0 || samplingPercent > 100) {
+            throw new IllegalArgumentException("Sampling percent must be between 0 and 100");
+        }
+        this.samplingPercent = samplingPercent;
+    }
+
+    /**
+     * Invoked before a service method.
+     *
+     * @return value to be passed to {@link #endInvocation(Signature, long, boolean)}
+     */
+    public long startInvocation() {
+        int percent = samplingPercent;
+        if (percent >= 100 || percent > 0 && ThreadLocalRandom.current().nextInt(100) < percent) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    /**
+     * Invoked after a service method.
+     *
+     * @param signature method signature
+     * @param startTime value returned by {@link #startInvocation()}
+     * @param failed    whether the method has thrown an exception
+     */
+    public void endInvocation(Signature signature, long startTime, boolean failed) {
+        if (samplingPercent == 0 || !(signature instanceof MethodSignature)) {
+            return;
+        }
+        Method method = ((MethodSignature) signature).getMethod();
+        long duration = startTime == NOT_SAMPLED ? 0 : System.nanoTime() - startTime;
+
+        Map<Method, MethodStatistics> statistics = this.statistics;
+        MethodStatistics methodStatistics = statistics.get(method);
+        if (methodStatistics == null) {
+            methodStatistics = statistics.computeIfAbsent(method, MethodStatistics::new);
+        }
+        methodStatistics.invocations.increment();
+        if (failed) {
+            methodStatistics.errors.increment();
+        }
+        if (startTime != NOT_SAMPLED) {
+            methodStatistics.latency.record(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return statistics of invoked methods sorted by name
+     */
+    public List<MethodStatistics> getStatistics() {
+        return statistics.values().stream()
+                .sorted(Comparator.comparing(MethodStatistics::getName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Discards collected statistics.
+     */
+    public void reset() {
+        statistics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return statistics of invoked methods in plain text, one method per line. Latencies are in milliseconds.
+     */
+    public String printStatistics() {
+        StringBuilder sb = new StringBuilder();
+        for (MethodStatistics methodStatistics : getStatistics()) {
+            LatencyHistogram latency = methodStatistics.getLatency();
+            sb.append(methodStatistics.getName())
+                    .append(" invocations=").append(methodStatistics.getInvocations())
+                    .append(" errors=").append(methodStatistics.getErrors())
+                    .append(" sampled=").append(latency.getCount())
+                    .append(String.format(Locale.US, " mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f",
+                            latency.getMean() / 1000,
+                            latency.getValueAtPercentile(50) / 1000.0,
+                            latency.getValueAtPercentile(90) / 1000.0,
+                            latency.getValueAtPercentile(99) / 1000.0,
+                            latency.getValueAtPercentile(99.9) / 1000.0,
+                            latency.getMax() / 1000.0))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static class MethodStatistics {
+
+        protected final String name;
+        protected final LongAdder invocations = new LongAdder();
+        protected final LongAdder errors = new LongAdder();
+        protected final LatencyHistogram latency = new LatencyHistogram();
+
+        public MethodStatistics(Method method) {
+            name = method.getDeclaringClass().getSimpleName() + "." + method.getName() + Arrays.stream(method.getParameterTypes())
+                    .map(Class::getSimpleName)
+                    .collect(Collectors.joining(",", "(", ")"));
+        }
+
+        /**
+         * @return service and method signature, e.g. {@code DataService.load(LoadContext)}
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
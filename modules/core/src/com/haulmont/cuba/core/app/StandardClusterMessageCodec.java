@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+
+/**
+ * {@link ClusterMessageCodec} using the serialization configured by the {@code cuba.serialization.impl} property,
+ * which is the standard Java serialization by default. Register it in {@code spring.xml} to use it instead of
+ * {@link KryoClusterMessageCodec}:
+ * <pre>
+ * &lt;bean id="cuba_ClusterMessageCodec" class="com.haulmont.cuba.core.app.StandardClusterMessageCodec"/&gt;
+ * </pre>
+ */
+public class StandardClusterMessageCodec implements ClusterMessageCodec {
+
+    @Override
+    public byte[] encode(Serializable message) {
+        return SerializationSupport.serialize(message);
+    }
+
+    @Override
+    public Serializable decode(byte[] bytes, int offset, int length) {
+        return (Serializable) SerializationSupport.deserialize(new ByteArrayInputStream(bytes, offset, length));
+    }
+}
@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core.app;
 
+import com.google.common.base.Strings;
 import com.haulmont.bali.db.DbUtils;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
@@ -26,10 +27,13 @@ import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import com.haulmont.cuba.core.sys.persistence.SequenceSupport;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrTokenizer;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.annotation.concurrent.GuardedBy;
-import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -37,22 +41,155 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 
 /**
  * Provides unique numbers based on database sequences.
+ * <p>Numbers of the domains listed in {@link ServerConfig#getUniqueNumbersBlockDomains()} are reserved in blocks
+ * using a separate sequence with the increment equal to the block size, and handed out from memory. The next block is
+ * reserved asynchronously before the current one is exhausted.</p>
  */
 @Component(UniqueNumbersAPI.NAME)
 public class UniqueNumbers implements UniqueNumbersAPI {
 
+    private static final Logger log = LoggerFactory.getLogger(UniqueNumbers.class);
+
+    /**
+     * Range of reserved numbers.
+     */
+    protected static class NumberBlock {
+        protected final AtomicLong counter;
+        protected final long last;
+
+        protected NumberBlock(long first, long last) {
+            this.counter = new AtomicLong(first - 1);
+            this.last = last;
+        }
+
+        /**
+         * @return next number or -1 if the block is exhausted
+         */
+        protected long getNext() {
+            long next = counter.incrementAndGet();
+            return next <= last ? next : -1;
+        }
+    }
+
+    /**
+     * Numbers of a domain working in the block mode.
+     */
+    protected class BlockNumbers {
+        protected final String domain;
+        protected final int blockSize;
+
+        protected volatile NumberBlock block;
+
+        @GuardedBy("this")
+        protected NumberBlock prefetchedBlock;
+        @GuardedBy("this")
+        protected boolean prefetching;
+        @GuardedBy("this")
+        protected long generation;
+
+        protected final AtomicLong hits = new AtomicLong();
+        protected final AtomicLong refills = new AtomicLong();
+        protected final AtomicLong prefetches = new AtomicLong();
+
+        protected BlockNumbers(String domain, int blockSize) {
+            this.domain = domain;
+            this.blockSize = blockSize;
+        }
+
+        protected long getNext() {
+            while (true) {
+                NumberBlock current = block;
+                if (current != null) {
+                    long next = current.getNext();
+                    if (next != -1) {
+                        hits.incrementAndGet();
+                        // only one thread gets this number, so the prefetch is requested once per block
+                        if (current.last - next == getPrefetchThreshold(blockSize)) {
+                            prefetch();
+                        }
+                        return next;
+                    }
+                }
+                refill(current);
+            }
+        }
+
+        protected synchronized void refill(NumberBlock exhausted) {
+            if (block != exhausted) {
+                // already replaced by another thread
+                return;
+            }
+            if (prefetchedBlock != null) {
+                block = prefetchedBlock;
+                prefetchedBlock = null;
+            } else {
+                block = reserveBlock(domain, blockSize);
+                refills.incrementAndGet();
+            }
+        }
+
+        protected void prefetch() {
+            long prefetchGeneration;
+            synchronized (this) {
+                if (prefetching || prefetchedBlock != null)
+                    return;
+                prefetching = true;
+                prefetchGeneration = generation;
+            }
+            prefetchExecutor.submit(() -> {
+                try {
+                    // reserved under the monitor, so a block cannot be taken from the sequence being restarted
+                    synchronized (this) {
+                        if (generation != prefetchGeneration) {
+                            // requested before the sequence was restarted
+                            return;
+                        }
+                        prefetchedBlock = reserveBlock(domain, blockSize);
+                    }
+                    prefetches.incrementAndGet();
+                } catch (Throwable e) {
+                    log.error("Unable to prefetch unique numbers for domain {}", domain, e);
+                } finally {
+                    synchronized (this) {
+                        prefetching = false;
+                    }
+                }
+            });
+        }
+
+        protected synchronized void reset() {
+            block = null;
+            prefetchedBlock = null;
+            generation++;
+        }
+    }
+
     @Inject
     protected Persistence persistence;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected ConcurrentMap<String, BlockNumbers> blockNumbers = new ConcurrentHashMap<>();
+
+    protected ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "UniqueNumbersPrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
 
     @GuardedBy("lock")
@@ -60,8 +197,18 @@ public class UniqueNumbers implements UniqueNumbersAPI {
 
     public static final Pattern SEQ_PATTERN = Pattern.compile("[a-zA-Z0-9_]+");
 
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
     @Override
     public long getNextNumber(String domain) {
+        BlockNumbers numbers = getBlockNumbers(domain);
+        if (numbers != null) {
+            return numbers.getNext();
+        }
+
         String sqlScript = getSequenceSupport(domain).getNextValueSql(getSequenceName(domain));
         try {
             lock.readLock().lock();
@@ -73,6 +220,14 @@ public class UniqueNumbers implements UniqueNumbersAPI {
 
     @Override
     public long getCurrentNumber(String domain) {
+        BlockNumbers numbers = getBlockNumbers(domain);
+        if (numbers != null) {
+            NumberBlock block = numbers.block;
+            if (block != null) {
+                return Math.min(block.counter.get(), block.last);
+            }
+        }
+
         String sqlScript = getSequenceSupport(domain).getCurrentValueSql(getSequenceName(domain));
         try {
             lock.readLock().lock();
@@ -84,6 +239,12 @@ public class UniqueNumbers implements UniqueNumbersAPI {
 
     @Override
     public void setCurrentNumber(String domain, long value) {
+        BlockNumbers numbers = getBlockNumbers(domain);
+        if (numbers != null) {
+            setCurrentBlockNumber(numbers, value);
+            return;
+        }
+
         String sqlScript = getSequenceSupport(domain).modifySequenceSql(getSequenceName(domain), value);
 
         Transaction tx = persistence.getTransaction(getDataStore(domain));
@@ -98,31 +259,149 @@ public class UniqueNumbers implements UniqueNumbersAPI {
         }
     }
 
+    protected void setCurrentBlockNumber(BlockNumbers numbers, long value) {
+        // no block can be reserved by this server between the restart and the reset, so the next number is value + 1
+        // blocks reserved by other servers of the cluster are used until exhausted
+        synchronized (numbers) {
+            restartBlockSequence(numbers.domain, value, numbers.blockSize);
+            numbers.reset();
+        }
+    }
+
+    /**
+     * Restarts the block sequence, so that the next reserved block starts with {@code value + 1}.
+     */
+    protected void restartBlockSequence(String domain, long value, int blockSize) {
+        // the increment must stay equal to the block size, otherwise reserved blocks overlap
+        String sqlScript = getSequenceSupport(domain).modifySequenceSql(getBlockSequenceName(domain), value, blockSize);
+
+        Transaction tx = persistence.createTransaction(getDataStore(domain));
+        try {
+            lock.readLock().lock();
+            checkBlockSequenceExists(domain, blockSize);
+            executeScript(domain, sqlScript);
+            tx.commit();
+        } finally {
+            lock.readLock().unlock();
+            tx.end();
+        }
+    }
+
     @Override
     public void deleteSequence(String domain) {
         String seqName = getSequenceName(domain);
+        String blockSeqName = getBlockSequenceName(domain);
 
-        if (!containsSequence(seqName)) {
+        if (!containsSequence(seqName) && !containsSequence(blockSeqName)) {
             throw new IllegalStateException("Attempt to delete nonexistent sequence " + domain);
         }
-        
-        String sqlScript = getSequenceSupport(domain).deleteSequenceSql(seqName);
 
         Transaction tx = persistence.getTransaction(getDataStore(domain));
         try {
             lock.writeLock().lock();
-            if (!containsSequence(seqName)) {
+            if (!containsSequence(seqName) && !containsSequence(blockSeqName)) {
                 tx.commit();
                 return;
             }
 
-            executeScript(domain, sqlScript);
+            if (containsSequence(seqName)) {
+                executeScript(domain, getSequenceSupport(domain).deleteSequenceSql(seqName));
+            }
+            if (containsSequence(blockSeqName)) {
+                executeScript(domain, getSequenceSupport(domain).deleteSequenceSql(blockSeqName));
+            }
             tx.commit();
             existingSequences.remove(seqName);
+            existingSequences.remove(blockSeqName);
         } finally {
             lock.writeLock().unlock();
             tx.end();
         }
+        // reset outside of the lock, because a refilling thread holds the monitor of BlockNumbers while taking it
+        BlockNumbers numbers = blockNumbers.remove(domain);
+        if (numbers != null) {
+            numbers.reset();
+        }
+    }
+
+    @Override
+    public String printBlockStat() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Strings.padEnd("Domain", 30, ' ')).append(Strings.padEnd("Block size", 12, ' '))
+                .append(Strings.padEnd("Hits", 15, ' ')).append(Strings.padEnd("Refills", 12, ' '))
+                .append("Prefetches").append("\n");
+        for (BlockNumbers numbers : new TreeMap<>(blockNumbers).values()) {
+            sb.append(Strings.padEnd(numbers.domain, 30, ' '))
+                    .append(Strings.padEnd(String.valueOf(numbers.blockSize), 12, ' '))
+                    .append(Strings.padEnd(String.valueOf(numbers.hits.get()), 15, ' '))
+                    .append(Strings.padEnd(String.valueOf(numbers.refills.get()), 12, ' '))
+                    .append(numbers.prefetches.get()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Override this method if you want to control the block size for a particular domain.
+     *
+     * @param domain    sequence identifier passed to the interface methods
+     * @return          number of values reserved at once, or 0 to get each value from the database
+     */
+    protected int getBlockSize(String domain) {
+        List<String> blockDomains = serverConfig.getUniqueNumbersBlockDomains();
+        if (blockDomains != null && blockDomains.contains(domain)) {
+            return serverConfig.getUniqueNumbersBlockSize();
+        }
+        return 0;
+    }
+
+    /**
+     * @param blockSize number of values in a block
+     * @return          number of values left in the current block when the next block is reserved asynchronously
+     */
+    protected int getPrefetchThreshold(int blockSize) {
+        return blockSize / 4;
+    }
+
+    @Nullable
+    protected BlockNumbers getBlockNumbers(String domain) {
+        BlockNumbers numbers = blockNumbers.get(domain);
+        if (numbers == null) {
+            int blockSize = getBlockSize(domain);
+            if (blockSize <= 0) {
+                return null;
+            }
+            getSequenceName(domain); // validate the domain
+            numbers = new BlockNumbers(domain, blockSize);
+            BlockNumbers existing = blockNumbers.putIfAbsent(domain, numbers);
+            if (existing != null) {
+                numbers = existing;
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Reserves a block of numbers in a separate transaction, so the reservation is not rolled back together with
+     * the invoking code on databases emulating sequences by tables.
+     */
+    protected NumberBlock reserveBlock(String domain, int blockSize) {
+        String sqlScript = getSequenceSupport(domain).getNextValueSql(getBlockSequenceName(domain));
+        try {
+            lock.readLock().lock();
+            Transaction tx = persistence.createTransaction(getDataStore(domain));
+            try {
+                checkBlockSequenceExists(domain, blockSize);
+
+                long value = convertValue(executeScript(domain, sqlScript));
+                tx.commit();
+                log.debug("Reserved unique numbers {}..{} for domain {}", value + 1, value + blockSize, domain);
+                return new NumberBlock(value + 1, value + blockSize);
+            } finally {
+                tx.end();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -146,23 +425,27 @@ public class UniqueNumbers implements UniqueNumbersAPI {
 
             Object value = executeScript(domain, sqlScript);
             tx.commit();
-            if (value instanceof Long)
-                return (Long) value;
-            else if (value instanceof BigDecimal)
-                return ((BigDecimal) value).longValue();
-            else if (value instanceof BigInteger)
-                return ((BigInteger) value).longValue();
-            else if (value instanceof String)
-                return Long.parseLong((String) value);
-            else if (value == null)
-                throw new IllegalStateException("No value returned");
-            else
-                throw new IllegalStateException("Unsupported value type: " + value.getClass());
+            return convertValue(value);
         } finally {
             tx.end();
         }
     }
 
+    protected long convertValue(Object value) {
+        if (value instanceof Long)
+            return (Long) value;
+        else if (value instanceof BigDecimal)
+            return ((BigDecimal) value).longValue();
+        else if (value instanceof BigInteger)
+            return ((BigInteger) value).longValue();
+        else if (value instanceof String)
+            return Long.parseLong((String) value);
+        else if (value == null)
+            throw new IllegalStateException("No value returned");
+        else
+            throw new IllegalStateException("Unsupported value type: " + value.getClass());
+    }
+
     protected Object executeScript(String domain, String sqlScript) {
         EntityManager em = persistence.getEntityManager(getDataStore(domain));
         StrTokenizer tokenizer = new StrTokenizer(sqlScript, SequenceSupport.SQL_DELIMITER);
@@ -217,6 +500,40 @@ public class UniqueNumbers implements UniqueNumbersAPI {
         }
     }
 
+    protected void checkBlockSequenceExists(String domain, int blockSize) {
+        String blockSeqName = getBlockSequenceName(domain);
+        if (containsSequence(blockSeqName))
+            return;
+
+        Transaction tx = persistence.createTransaction(getDataStore(domain));
+        try {
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+
+            EntityManager em = persistence.getEntityManager(getDataStore(domain));
+            SequenceSupport sequenceSupport = getSequenceSupport(domain);
+
+            Query query = em.createNativeQuery(sequenceSupport.sequenceExistsSql(blockSeqName));
+            if (query.getResultList().isEmpty()) {
+                // continue numbering after the values already issued by the standard sequence of the domain
+                long startValue = 0;
+                String seqName = getSequenceName(domain);
+                query = em.createNativeQuery(sequenceSupport.sequenceExistsSql(seqName));
+                if (!query.getResultList().isEmpty()) {
+                    startValue = convertValue(executeScript(domain, sequenceSupport.getNextValueSql(seqName)));
+                }
+                query = em.createNativeQuery(sequenceSupport.createSequenceSql(blockSeqName, startValue, blockSize));
+                query.executeUpdate();
+            }
+            tx.commit();
+            existingSequences.add(blockSeqName);
+        } finally {
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+            tx.end();
+        }
+    }
+
     protected boolean containsSequence(String name) {
         try {
             lock.readLock().lock();
@@ -234,4 +551,8 @@ public class UniqueNumbers implements UniqueNumbersAPI {
 
         return "seq_un_" + domain;
     }
-}
\ No newline at end of file
+
+    protected String getBlockSequenceName(String domain) {
+        return "seq_unb_" + domain;
+    }
+}
@@ -57,4 +57,10 @@ public interface UniqueNumbersAPI {
      * @throws java.lang.IllegalStateException if sequence does not exist
      */
     void deleteSequence(String domain);
+
+    /**
+     * @return statistics of the domains which numbers are reserved in blocks, see
+     * {@link ServerConfig#getUniqueNumbersBlockDomains()}
+     */
+    String printBlockStat();
 }
@@ -37,10 +37,16 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Cache for application objects.
+ * <p>
+ * Secondary indexes on entity attributes can be declared with {@link #setIndexes(List)}. They are built when
+ * the cache is loaded and kept up to date on incremental updates, so that queries with {@link PropertyPredicate}s
+ * on indexed attributes do not scan all cached objects.
+ * <p>
+ * Readers are never blocked: each update builds a new snapshot of the cache which shares unchanged items and
+ * indexes with the previous one (see {@link DeltaCollection}) and publishes it atomically.
  *
  * @deprecated Will be removed in release 7.0.
  */
@@ -50,17 +56,18 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
     private static final Logger log = LoggerFactory.getLogger(ObjectsCache.class);
 
     protected String name;
-    protected CacheSet cacheSet;
+    protected volatile CacheSet cacheSet;
     protected CacheLoader loader;
     protected boolean logUpdateEvent = false;
+    protected List<CacheIndex> indexes = new ArrayList<>();
 
-    protected ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
     protected ReentrantLock updateDataLock = new ReentrantLock();
 
     protected Date lastUpdateTime;
     protected long lastUpdateDuration;
 
     protected final static int UPDATE_COUNT_FOR_AVERAGE_DURATION = 10;
+    protected final static int MIN_COMPACTION_THRESHOLD = 1000;
     protected List<Long> updateDurations = new ArrayList<>(UPDATE_COUNT_FOR_AVERAGE_DURATION);
     protected int updateDurationsIndex = 0;
 
@@ -96,6 +103,67 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
         this.loader = loader;
     }
 
+    public List<CacheIndex> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Declares secondary indexes of cached objects. Takes effect on the next cache reload.
+     */
+    public void setIndexes(List<CacheIndex> indexes) {
+        this.indexes = indexes != null ? new ArrayList<>(indexes) : new ArrayList<>();
+    }
+
+    /**
+     * Declares a secondary index on the entity attribute. Takes effect on the next cache reload.
+     */
+    public void addIndex(String property, CacheIndex.Type type) {
+        indexes.add(new CacheIndex(property, type));
+    }
+
+    protected void buildIndexes(CacheSet cacheSet) {
+        for (CacheIndex index : indexes) {
+            cacheSet.addIndex(index.createEmpty());
+        }
+    }
+
+    /**
+     * Creates a new snapshot of the cache set for modification. Unchanged items and indexes are shared with
+     * the source set, which is compacted if it has accumulated too many changes.
+     */
+    protected CacheSet deriveCacheSet(CacheSet source) {
+        Collection<Object> sourceItems = source.getItems();
+        if (!(sourceItems instanceof DeltaCollection)) {
+            return createSnapshot(sourceItems);
+        }
+
+        DeltaCollection items = (DeltaCollection) sourceItems;
+        if (items.getDeltaSize() > getCompactionThreshold(items.size())) {
+            return createSnapshot(items);
+        }
+
+        CacheSet derived = createCacheSet(items.derive());
+        List<CacheIndex> derivedIndexes = new ArrayList<>();
+        for (CacheIndex index : source.getIndexes()) {
+            derivedIndexes.add(index.derive());
+        }
+        derived.setIndexes(derivedIndexes);
+        return derived;
+    }
+
+    protected CacheSet createSnapshot(Collection<Object> items) {
+        CacheSet snapshot = createCacheSet(new DeltaCollection(items));
+        buildIndexes(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * @return number of accumulated changes after which a snapshot is rebuilt without sharing data
+     */
+    protected int getCompactionThreshold(int size) {
+        return Math.max(MIN_COMPACTION_THRESHOLD, size / 8);
+    }
+
     public boolean isLogUpdateEvent() {
         return logUpdateEvent;
     }
@@ -136,6 +204,8 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
                 return;
             }
 
+            CacheSet snapshot = createSnapshot(data.getItems());
+
             Date updateEnd = timeSource.currentTimestamp();
 
             this.lastUpdateDuration = updateEnd.getTime() - updateStart.getTime();
@@ -147,12 +217,13 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
 
             updateDurationsIndex = (updateDurationsIndex + 1) % UPDATE_COUNT_FOR_AVERAGE_DURATION;
 
-            cacheLock.writeLock().lock();
-
-            // Modify cache set
-            this.cacheSet = data;
-
-            cacheLock.writeLock().unlock();
+            updateDataLock.lock();
+            try {
+                // Modify cache set
+                this.cacheSet = snapshot;
+            } finally {
+                updateDataLock.unlock();
+            }
 
             this.lastUpdateTime = timeSource.currentTimestamp();
 
@@ -165,8 +236,6 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
     @Override
     public CacheStatistics getStatistics() {
 
-        cacheLock.readLock().lock();
-
         CacheStatistics stats = new CacheStatistics(this);
         stats.setObjectsCount(cacheSet.getSize());
         stats.setLastUpdateTime(lastUpdateTime);
@@ -185,8 +254,6 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
             averageDurationTime = Math.round(durationSumm / durationsCount);
         stats.setAverageUpdateDuration(averageDurationTime);
 
-        cacheLock.readLock().unlock();
-
         return stats;
     }
 
@@ -194,10 +261,8 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
     public Collection execute(CacheSelector cacheSelector) {
         Collection result;
 
-        cacheLock.readLock().lock();
-
         if (cacheSelector != null) {
-            // Select from cache copy
+            // Select from cache copy, items are copied on write only
             CacheSet temporaryCacheSet;
             try {
                 temporaryCacheSet = (CacheSet) cacheSet.clone();
@@ -208,33 +273,17 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
         } else
             result = Collections.emptyList();
 
-        cacheLock.readLock().unlock();
-
         return result;
     }
 
     @Override
     public int count(Predicate... selectors) {
-        cacheLock.readLock().lock();
-
-        int count;
-        try {
-            count = cacheSet.countConjunction(selectors);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
-
-        return count;
+        return cacheSet.countConjunction(selectors);
     }
 
     @Override
     public Pair<Integer, Integer> count(Collection<Predicate> selectors, Predicate amplifyingSelector) {
-        cacheLock.readLock().lock();
-        try {
-            return cacheSet.countConjunction(selectors, amplifyingSelector);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return cacheSet.countConjunction(selectors, amplifyingSelector);
     }
 
     @Override
@@ -254,16 +303,9 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
             updateDataLock.lock();
 
             try {
-                // Modify cache copy
-                CacheSet temporaryCacheSet;
-                try {
-                    cacheLock.readLock().lock();
-
-                    temporaryCacheSet = createCacheSet(new ArrayList<>(cacheSet.getItems()));
-                    temporaryCacheSet.setForUpdate(true);
-                } finally {
-                    cacheLock.readLock().unlock();
-                }
+                // Modify cache snapshot
+                CacheSet temporaryCacheSet = deriveCacheSet(cacheSet);
+                temporaryCacheSet.setForUpdate(true);
 
                 try {
                     loader.updateData(temporaryCacheSet, params);
@@ -273,17 +315,11 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
                     return;
                 }
 
-                cacheLock.writeLock().lock();
-
-                try {
-                    temporaryCacheSet.setForUpdate(false);
-                    // Modify cache set
-                    this.cacheSet = temporaryCacheSet;
-                    sendCacheUpdateMessage(cacheSet.getRemovedItems(),
-                            cacheSet.getAddedItems());
-                } finally {
-                    cacheLock.writeLock().unlock();
-                }
+                temporaryCacheSet.setForUpdate(false);
+                // Modify cache set
+                this.cacheSet = temporaryCacheSet;
+                sendCacheUpdateMessage(temporaryCacheSet.getRemovedItems(),
+                        temporaryCacheSet.getAddedItems());
             } finally {
                 updateDataLock.unlock();
             }
@@ -320,23 +356,24 @@ public class ObjectsCache implements ObjectsCacheInstance, ObjectsCacheControlle
         if (isValidState()) {
             updateDataLock.lock();
             try {
-                cacheLock.writeLock().lock();
-                try {
-                    Collection<Object> itemsToRemove = msg.getItemsToRemove();
-                    Collection<Object> itemsToAdd = msg.getItemsToAdd();
+                Collection<Object> itemsToRemove = msg.getItemsToRemove();
+                Collection<Object> itemsToAdd = msg.getItemsToAdd();
 
-                    if (CollectionUtils.isNotEmpty(itemsToRemove))
-                        cacheSet.getItems().removeAll(itemsToRemove);
+                CacheSet temporaryCacheSet = deriveCacheSet(cacheSet);
+                temporaryCacheSet.setForUpdate(true);
+                Collection<Object> items = temporaryCacheSet.getItems();
 
-                    if (CollectionUtils.isNotEmpty(itemsToAdd))
-                        cacheSet.getItems().addAll(itemsToAdd);
+                if (CollectionUtils.isNotEmpty(itemsToRemove))
+                    items.removeAll(itemsToRemove);
 
-                } finally {
-                    cacheLock.writeLock().unlock();
-                }
+                if (CollectionUtils.isNotEmpty(itemsToAdd))
+                    items.addAll(itemsToAdd);
+
+                temporaryCacheSet.setForUpdate(false);
+                this.cacheSet = temporaryCacheSet;
             } finally {
                 updateDataLock.unlock();
             }
         }
     }
-}
\ No newline at end of file
+}
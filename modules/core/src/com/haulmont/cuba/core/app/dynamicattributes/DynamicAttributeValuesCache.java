@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.PersistenceTools;
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.entity.CategoryAttributeValue;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.listener.BeforeCommitTransactionListener;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps dynamic attribute values loaded by {@link DynamicAttributesManager} per entity id.
+ * <p>The cache is enabled by {@link ServerConfig#getDynamicAttributeValuesCacheMaxSize()}. Values are stored in
+ * serialized form, so each reader gets its own detached copy. Values of an entity are discarded when a
+ * {@link CategoryAttributeValue} of the entity is created, changed or removed on any node of the cluster, and all
+ * values are discarded when categories are reloaded. Instance names of entities referenced by the values are not
+ * tracked and can be outdated until the values expire.</p>
+ */
+@Component(DynamicAttributeValuesCache.NAME)
+public class DynamicAttributeValuesCache implements BeforeCommitTransactionListener {
+
+    public static final String NAME = "cuba_DynamicAttributeValuesCache";
+
+    private static final Logger log = LoggerFactory.getLogger(DynamicAttributeValuesCache.class);
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected PersistenceTools persistenceTools;
+
+    @Inject
+    protected ClusterManagerAPI clusterManager;
+
+    protected volatile Cache<Object, CachedValues> cache;
+
+    protected final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        clusterManager.addListener(InvalidateValuesMsg.class, new ClusterListenerAdapter<InvalidateValuesMsg>() {
+            @Override
+            public void receive(InvalidateValuesMsg message) {
+                invalidate(message.entityIds);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return serverConfig.getDynamicAttributeValuesCacheMaxSize() > 0;
+    }
+
+    /**
+     * @return the number of invalidations happened on this node. It should be obtained before loading values
+     * and passed to {@link #putAfterCommit(String, Map, long)}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return a copy of cached values of the entity, or null if they are not cached
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public List<CategoryAttributeValue> get(String entityName, Object entityId) {
+        Cache<Object, CachedValues> cache = this.cache;
+        if (cache == null)
+            return null;
+
+        CachedValues cachedValues = cache.getIfPresent(entityId);
+        if (cachedValues == null || !cachedValues.entityName.equals(entityName))
+            return null;
+
+        return (List<CategoryAttributeValue>) SerializationSupport.deserialize(cachedValues.data);
+    }
+
+    /**
+     * Caches values of entities when the current transaction is committed. The values are not cached if any
+     * invalidation has happened since the given version was obtained.
+     *
+     * @param entityName    name of the original meta-class of the entities
+     * @param values        values by entity id, including empty collections for entities without values
+     * @param version       result of {@link #getVersion()} obtained before loading the values
+     */
+    public void putAfterCommit(String entityName, Map<Object, Collection<CategoryAttributeValue>> values, long version) {
+        if (!isEnabled() || values.isEmpty())
+            return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    // values are serialized when they are detached
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        put(entityName, values, version);
+                    }
+                }
+            });
+        } else {
+            put(entityName, values, version);
+        }
+    }
+
+    protected void put(String entityName, Map<Object, Collection<CategoryAttributeValue>> values, long version) {
+        Cache<Object, CachedValues> cache = getCache();
+        for (Map.Entry<Object, Collection<CategoryAttributeValue>> entry : values.entrySet()) {
+            if (this.version.get() != version) {
+                log.trace("Values have been invalidated while loading, skip caching");
+                return;
+            }
+            byte[] data = SerializationSupport.serialize(new ArrayList<>(entry.getValue()));
+            cache.put(entry.getKey(), new CachedValues(entityName, data));
+        }
+    }
+
+    protected Cache<Object, CachedValues> getCache() {
+        if (cache == null) {
+            synchronized (this) {
+                if (cache == null) {
+                    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                            .maximumSize(serverConfig.getDynamicAttributeValuesCacheMaxSize());
+                    int expireSec = serverConfig.getDynamicAttributeValuesCacheExpireSec();
+                    if (expireSec > 0) {
+                        builder.expireAfterWrite(expireSec, TimeUnit.SECONDS);
+                    }
+                    cache = builder.build();
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Discards values of the given entities on this node.
+     */
+    public void invalidate(Collection<Object> entityIds) {
+        version.incrementAndGet();
+        Cache<Object, CachedValues> cache = this.cache;
+        if (cache != null) {
+            log.trace("Invalidating dynamic attribute values of {}", entityIds);
+            cache.invalidateAll(entityIds);
+        }
+    }
+
+    /**
+     * Discards values of the given entities on all nodes of the cluster when the current transaction is committed.
+     */
+    public void invalidateAfterCommit(Collection<Object> entityIds) {
+        if (!isEnabled() || entityIds.isEmpty())
+            return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateInCluster(entityIds);
+                }
+            });
+        } else {
+            invalidateInCluster(entityIds);
+        }
+    }
+
+    protected void invalidateInCluster(Collection<Object> entityIds) {
+        invalidate(entityIds);
+        clusterManager.send(new InvalidateValuesMsg(new HashSet<>(entityIds)));
+    }
+
+    /**
+     * Discards all values on this node.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        Cache<Object, CachedValues> cache = this.cache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void beforeCommit(EntityManager entityManager, Collection<Entity> managedEntities) {
+        if (!isEnabled())
+            return;
+
+        Set<Object> entityIds = new HashSet<>();
+        for (Entity entity : managedEntities) {
+            if (entity instanceof CategoryAttributeValue) {
+                CategoryAttributeValue value = (CategoryAttributeValue) entity;
+                if (value.getObjectEntityId() != null
+                        && (BaseEntityInternalAccess.isNew(value)
+                        || BaseEntityInternalAccess.isRemoved(value)
+                        || persistenceTools.isDirty(value))) {
+                    entityIds.add(value.getObjectEntityId());
+                }
+            }
+        }
+        invalidateAfterCommit(entityIds);
+    }
+
+    protected static class CachedValues {
+        protected final String entityName;
+        protected final byte[] data;
+
+        public CachedValues(String entityName, byte[] data) {
+            this.entityName = entityName;
+            this.data = data;
+        }
+    }
+
+    protected static class InvalidateValuesMsg implements Serializable {
+        private static final long serialVersionUID = -6047414452165328317L;
+
+        protected Set<Object> entityIds;
+
+        public InvalidateValuesMsg(Set<Object> entityIds) {
+            this.entityIds = entityIds;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app.dynamicattributes;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -27,8 +28,10 @@ import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.BooleanUtils;
 import org.slf4j.Logger;
@@ -47,6 +50,10 @@ import static java.lang.String.format;
 
 @Component(DynamicAttributesManagerAPI.NAME)
 public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
+    /**
+     * @deprecated the batch size is defined by {@link ServerConfig#getDynamicAttributeValuesBatchSize()}
+     */
+    @Deprecated
     public static final int MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH = 100;
 
     private static final Logger log = LoggerFactory.getLogger(DynamicAttributesManager.class);
@@ -66,6 +73,12 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     @Inject
     protected ReferenceToEntitySupport referenceToEntitySupport;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected DynamicAttributeValuesCache attributeValuesCache;
+
     protected ClusterManagerAPI clusterManager;
 
     protected ReentrantLock loadCacheLock = new ReentrantLock();
@@ -126,6 +139,7 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                 tx.commit();
 
                 dynamicAttributesCache = new DynamicAttributesCache(categoriesCache, attributesCache, timeSource.currentTimestamp());
+                attributeValuesCache.invalidateAll();
                 if (sendClusterMessage) {
                     clusterManager.send(new ReloadCacheMsg());
                 }
@@ -279,6 +293,8 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
             }
 
             entity.setDynamicAttributes(mergedDynamicAttributes);
+            attributeValuesCache.invalidateAfterCommit(
+                    Collections.singleton(referenceToEntitySupport.getReferenceId(entity)));
         }
     }
 
@@ -320,21 +336,37 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     }
 
     protected void doFetchDynamicAttributes(MetaClass metaClass, Collection<BaseGenericIdEntity> entities) {
-        List<Object> ids = entities.stream()
-                .map(e -> referenceToEntitySupport.getReferenceId(e))
-                .collect(Collectors.toList());
+        boolean useCache = attributeValuesCache.isEnabled();
+        long cacheVersion = attributeValuesCache.getVersion();
 
         Multimap<Object, CategoryAttributeValue> allAttributeValues = HashMultimap.create();
 
-        List<Object> currentIds = new ArrayList<>();
-        for (Object id : ids) {
-            currentIds.add(id);
-            if (currentIds.size() >= MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH) {
-                handleAttributeValuesForIds(metaClass, currentIds, allAttributeValues);
-                currentIds = new ArrayList<>();
+        Set<Object> ids = new LinkedHashSet<>();
+        for (BaseGenericIdEntity entity : entities) {
+            Object id = referenceToEntitySupport.getReferenceId(entity);
+            List<CategoryAttributeValue> cachedValues = useCache ? attributeValuesCache.get(metaClass.getName(), id) : null;
+            if (cachedValues != null) {
+                allAttributeValues.putAll(id, cachedValues);
+            } else {
+                ids.add(id);
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            Multimap<Object, CategoryAttributeValue> loadedAttributeValues = HashMultimap.create();
+            for (List<Object> currentIds : Lists.partition(new ArrayList<>(ids), getAttributeValuesBatchSize())) {
+                handleAttributeValuesForIds(metaClass, currentIds, loadedAttributeValues);
+            }
+            allAttributeValues.putAll(loadedAttributeValues);
+
+            if (useCache) {
+                Map<Object, Collection<CategoryAttributeValue>> valuesToCache = new HashMap<>();
+                for (Object id : ids) {
+                    valuesToCache.put(id, loadedAttributeValues.get(id));
+                }
+                attributeValuesCache.putAfterCommit(metaClass.getName(), valuesToCache, cacheVersion);
             }
         }
-        handleAttributeValuesForIds(metaClass, currentIds, allAttributeValues);
 
         for (BaseGenericIdEntity entity : entities) {
             Collection<CategoryAttributeValue> entityAttributeValues = allAttributeValues.get(referenceToEntitySupport.getReferenceId(entity));
@@ -458,13 +490,15 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
 
             if (!ids.isEmpty()) {
                 String pkName = referenceToEntitySupport.getPrimaryKeyForLoadingEntity(metaClass);
-                List<BaseGenericIdEntity> entitiesValues = em.createQuery(format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName))
-                        .setParameter("ids", ids)
-                        .setView(metaClass.getJavaClass(), View.MINIMAL)
-                        .getResultList();
-
-                for (BaseGenericIdEntity entity : entitiesValues) {
-                    idToEntityMap.put(entity.getId(), entity);
+                for (List<Object> currentIds : Lists.partition(new ArrayList<>(ids), getAttributeValuesBatchSize())) {
+                    List<BaseGenericIdEntity> entitiesValues = em.createQuery(format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName))
+                            .setParameter("ids", currentIds)
+                            .setView(metaClass.getJavaClass(), View.MINIMAL)
+                            .getResultList();
+
+                    for (BaseGenericIdEntity entity : entitiesValues) {
+                        idToEntityMap.put(entity.getId(), entity);
+                    }
                 }
             }
 
@@ -488,10 +522,23 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                 .map(BaseUuidEntity::getId)
                 .collect(Collectors.toList());
 
-        return em.createQuery("select cav from sys$CategoryAttributeValue cav where cav.id in :ids", CategoryAttributeValue.class)
-                .setParameter("ids", ids)
-                .setView(view)
-                .getResultList();
+        List<CategoryAttributeValue> result = new ArrayList<>();
+        for (List<UUID> currentIds : Lists.partition(ids, getAttributeValuesBatchSize())) {
+            result.addAll(em.createQuery("select cav from sys$CategoryAttributeValue cav where cav.id in :ids", CategoryAttributeValue.class)
+                    .setParameter("ids", currentIds)
+                    .setView(view)
+                    .getResultList());
+        }
+        return result;
+    }
+
+    /**
+     * @return number of values passed to an IN list of a query loading attribute values or related entities
+     */
+    protected int getAttributeValuesBatchSize() {
+        int batchSize = Math.max(serverConfig.getDynamicAttributeValuesBatchSize(), 1);
+        int maxInListSize = DbmsSpecificFactory.getDbmsFeatures().getMaxInListSize();
+        return maxInListSize > 0 ? Math.min(batchSize, maxInListSize) : batchSize;
     }
 
     private static class ReloadCacheMsg implements Serializable {
@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core.app.filestorage;
 
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.cuba.core.app.FileStorageAPI;
 import com.haulmont.cuba.core.app.ServerConfig;
@@ -23,6 +24,8 @@ import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -30,17 +33,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
 
 import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
 
@@ -49,6 +59,12 @@ public class FileStorage implements FileStorageAPI {
 
     private static final Logger log = LoggerFactory.getLogger(FileStorage.class);
 
+    protected static final String CONTENT_DIR = "content";
+
+    protected static final String TEMP_DIR = "tmp";
+
+    protected static final String HASH_FILE_SUFFIX = ".sha256";
+
     @Inject
     protected UserSessionSource userSessionSource;
 
@@ -60,6 +76,10 @@ public class FileStorage implements FileStorageAPI {
 
     protected boolean isImmutableFileStorage;
 
+    protected boolean isContentAddressedFileStorage;
+
+    protected Striped<Lock> contentLocks = Striped.lazyWeakLock(64);
+
     protected ExecutorService writeExecutor = Executors.newFixedThreadPool(5,
             new ThreadFactoryBuilder().setNameFormat("FileStorageWriter-%d").build());
 
@@ -67,7 +87,9 @@ public class FileStorage implements FileStorageAPI {
 
     @PostConstruct
     public void init() {
-        this.isImmutableFileStorage = configuration.getConfig(ServerConfig.class).getImmutableFileStorage();
+        ServerConfig serverConfig = configuration.getConfig(ServerConfig.class);
+        this.isImmutableFileStorage = serverConfig.getImmutableFileStorage();
+        this.isContentAddressedFileStorage = serverConfig.getContentAddressedFileStorage();
     }
 
     /**
@@ -114,6 +136,11 @@ public class FileStorage implements FileStorageAPI {
 
         final File file = new File(dir, getFileName(fileDescr));
         checkFileExists(file);
+        releaseContent(file);
+
+        if (isContentAddressedFileStorage) {
+            return saveContentAddressedStream(fileDescr, inputStream, roots, file);
+        }
 
         long size = 0;
         OutputStream os = null;
@@ -148,6 +175,7 @@ public class FileStorage implements FileStorageAPI {
                 public void run() {
                     try {
                         AppContext.setSecurityContext(securityContext);
+                        releaseContent(fileCopy);
                         FileUtils.copyFile(file, fileCopy, true);
                         writeLog(fileCopy, false);
                     } catch (Exception e) {
@@ -162,6 +190,206 @@ public class FileStorage implements FileStorageAPI {
         return size;
     }
 
+    protected long saveContentAddressedStream(FileDescriptor fileDescr, InputStream inputStream, File[] roots,
+                                              File file) throws FileStorageException {
+        File tempDir = new File(roots[0], CONTENT_DIR + "/" + TEMP_DIR);
+        tempDir.mkdirs();
+        checkDirectoryExists(tempDir);
+
+        // Hash the content while storing it to a temporary file, then move it to its content path if it is new
+
+        File tempFile = new File(tempDir, fileDescr.getId().toString());
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        long size;
+        try (OutputStream os = FileUtils.openOutputStream(tempFile)) {
+            size = IOUtils.copyLarge(new DigestInputStream(inputStream, digest), os);
+            os.flush();
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tempFile);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
+        }
+        String hash = Hex.encodeHexString(digest.digest());
+
+        Lock lock = contentLocks.get(hash);
+        lock.lock();
+        try {
+            File contentFile = getContentFile(roots[0], hash);
+            if (contentFile.exists()) {
+                FileUtils.deleteQuietly(tempFile);
+            } else {
+                contentFile.getParentFile().mkdirs();
+                Files.move(tempFile.toPath(), contentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                writeLog(contentFile, false);
+            }
+            addContentReference(contentFile, file, hash);
+            writeLog(file, false);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tempFile);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+
+        // Copy the content to secondary storages asynchronously only if they don't have it yet
+
+        final SecurityContext securityContext = AppContext.getSecurityContext();
+        for (int i = 1; i < roots.length; i++) {
+            if (!roots[i].exists()) {
+                log.error("Error saving {} into {} : directory doesn't exist", fileDescr, roots[i]);
+                continue;
+            }
+
+            File primaryContentFile = getContentFile(roots[0], hash);
+            File contentCopy = getContentFile(roots[i], hash);
+            File fileCopy = new File(getStorageDir(roots[i], fileDescr), getFileName(fileDescr));
+
+            writeExecutor.submit(() -> {
+                try {
+                    AppContext.setSecurityContext(securityContext);
+                    releaseContent(fileCopy);
+                    copyContent(primaryContentFile, contentCopy, fileCopy, hash);
+                } catch (Exception e) {
+                    log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
+                } finally {
+                    AppContext.setSecurityContext(null);
+                }
+            });
+        }
+
+        return size;
+    }
+
+    protected void copyContent(File contentFile, File contentCopy, File fileCopy, String hash) throws IOException {
+        Lock lock = contentLocks.get(hash);
+        lock.lock();
+        try {
+            if (!contentCopy.exists()) {
+                FileUtils.copyFile(contentFile, contentCopy, true);
+                writeLog(contentCopy, false);
+            }
+            addContentReference(contentCopy, fileCopy, hash);
+            writeLog(fileCopy, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers the file as a reference to the content and makes the file a hard link to it. If the file system
+     * doesn't support hard links, the content is copied.
+     */
+    protected void addContentReference(File contentFile, File file, String hash) throws IOException {
+        File referencesDir = getContentReferencesDir(contentFile);
+        FileUtils.touch(new File(referencesDir, getReferenceName(file)));
+
+        FileUtils.forceMkdir(file.getParentFile());
+        Files.deleteIfExists(file.toPath());
+        try {
+            Files.createLink(file.toPath(), contentFile.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            log.warn("Unable to create hard link {} to {}, the content is copied and takes additional storage space: {}",
+                    file, contentFile, e.toString());
+            FileUtils.copyFile(contentFile, file, true);
+        }
+        FileUtils.writeStringToFile(getContentHashFile(file), hash, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes the file if it references a content and deletes the content if no other files reference it.
+     * Files saved without deduplication are left intact.
+     */
+    protected void releaseContent(File file) throws FileStorageException {
+        File hashFile = getContentHashFile(file);
+        if (!hashFile.exists()) {
+            return;
+        }
+
+        try {
+            String hash = FileUtils.readFileToString(hashFile, StandardCharsets.UTF_8).trim();
+            File rootDir = getStorageRoot(file);
+            if (rootDir == null) {
+                log.warn("Unable to release content of {}: the file is outside of the storage roots", file);
+                return;
+            }
+            File contentFile = getContentFile(rootDir, hash);
+
+            Lock lock = contentLocks.get(hash);
+            lock.lock();
+            try {
+                deleteFile(file);
+                deleteFile(hashFile);
+
+                File referencesDir = getContentReferencesDir(contentFile);
+                deleteFile(new File(referencesDir, getReferenceName(file)));
+                String[] references = referencesDir.list();
+                if (references == null || references.length == 0) {
+                    deleteFile(contentFile);
+                    FileUtils.deleteQuietly(referencesDir);
+                    writeLog(contentFile, true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return the configured storage root containing the file or null if the file is outside of the storage roots
+     */
+    @Nullable
+    protected File getStorageRoot(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        for (File root : getStorageRoots()) {
+            if (path.startsWith(root.toPath().toAbsolutePath().normalize())) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * INTERNAL. Don't use in application code.
+     *
+     * @return true if the file is a part of the content-addressed storage structure: shared content, its references
+     * and temporary files, or a hash file of a stored file
+     */
+    public boolean isContentStorageFile(File rootDir, File file) {
+        if (file.getName().endsWith(HASH_FILE_SUFFIX)) {
+            return true;
+        }
+        Path contentDir = new File(rootDir, CONTENT_DIR).toPath().toAbsolutePath().normalize();
+        return file.toPath().toAbsolutePath().normalize().startsWith(contentDir);
+    }
+
+    protected void deleteFile(File file) throws FileStorageException {
+        if (file.exists() && !file.delete()) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, "Unable to delete file " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * INTERNAL. Don't use in application code.
+     *
+     * @return the shared file with the given SHA-256 hash of the content in a content-addressed storage
+     */
+    public File getContentFile(File rootDir, String hash) {
+        return new File(rootDir, CONTENT_DIR + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash);
+    }
+
+    protected File getContentReferencesDir(File contentFile) {
+        return new File(contentFile.getPath() + ".refs");
+    }
+
+    protected File getContentHashFile(File file) {
+        return new File(file.getPath() + HASH_FILE_SUFFIX);
+    }
+
+    protected String getReferenceName(File file) {
+        return file.getName();
+    }
+
     protected void checkFileExists(File file) throws FileStorageException {
         if (file.exists() && isImmutableFileStorage)
             throw new FileStorageException(FileStorageException.Type.FILE_ALREADY_EXISTS, file.getAbsolutePath());
@@ -231,7 +459,10 @@ public class FileStorage implements FileStorageAPI {
         for (File root : roots) {
             File dir = getStorageDir(root, fileDescr);
             File file = new File(dir, getFileName(fileDescr));
-            if (file.exists()) {
+            if (getContentHashFile(file).exists()) {
+                releaseContent(file);
+                writeLog(file, true);
+            } else if (file.exists()) {
                 if (!file.delete()) {
                     throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, "Unable to delete file " + file.getAbsolutePath());
                 } else {
@@ -307,6 +538,24 @@ public class FileStorage implements FileStorageAPI {
         return false;
     }
 
+    /**
+     * INTERNAL. Don't use in application code.
+     *
+     * @return the first existing file of the file descriptor in storage directories, or null if the file is not found
+     */
+    @Nullable
+    public File findFile(FileDescriptor fileDescr) {
+        checkFileDescriptor(fileDescr);
+
+        for (File root : getStorageRoots()) {
+            File file = new File(getStorageDir(root, fileDescr), getFileName(fileDescr));
+            if (file.exists()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
     /**
      * INTERNAL. Don't use in application code.
      */
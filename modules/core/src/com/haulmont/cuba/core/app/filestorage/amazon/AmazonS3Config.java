@@ -41,4 +41,34 @@ public interface AmazonS3Config extends Config {
     @Property("cuba.amazonS3.chunkSize")
     @DefaultInt(8192)
     int getChunkSize();
+
+    /**
+     * @return URL of an S3 compatible service, e.g. {@code http://localhost:9000}. Objects are addressed in the path
+     * style if the URL is set, otherwise the virtual host endpoint of the bucket in Amazon S3 is used
+     */
+    @Property("cuba.amazonS3.endpointUrl")
+    String getEndpointUrl();
+
+    /**
+     * @return size in bytes of parts in which larger files are uploaded by the multipart upload and downloaded by
+     * ranged requests. Amazon S3 requires parts of at least 5 MB except the last one
+     */
+    @Property("cuba.amazonS3.partSize")
+    @DefaultInt(8388608)
+    int getPartSize();
+
+    /**
+     * @return maximum number of parts of a file uploaded or downloaded in parallel. Also defines the size of the
+     * thread pool shared by all transfers, which is created on the first transfer
+     */
+    @Property("cuba.amazonS3.parallelism")
+    @DefaultInt(4)
+    int getParallelism();
+
+    /**
+     * @return number of times a failed part request is repeated
+     */
+    @Property("cuba.amazonS3.maxRetries")
+    @DefaultInt(3)
+    int getMaxRetries();
 }
\ No newline at end of file
@@ -17,42 +17,61 @@
 
 package com.haulmont.cuba.core.app.filestorage.amazon;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.bali.util.Dom4j;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.cuba.core.app.FileStorageAPI;
 import com.haulmont.cuba.core.app.filestorage.amazon.auth.AWS4SignerBase;
 import com.haulmont.cuba.core.app.filestorage.amazon.auth.AWS4SignerForAuthorizationHeader;
 import com.haulmont.cuba.core.app.filestorage.amazon.auth.AWS4SignerForChunkedUpload;
+import com.haulmont.cuba.core.app.filestorage.amazon.util.BinaryUtils;
 import com.haulmont.cuba.core.app.filestorage.amazon.util.HttpUtils;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import java.io.ByteArrayInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
 
 public class AmazonS3FileStorage implements FileStorageAPI {
 
+    private static final Logger log = LoggerFactory.getLogger(AmazonS3FileStorage.class);
+
     @Inject
     protected AmazonS3Config amazonS3Config;
 
+    protected volatile ExecutorService transferExecutor;
+
     @Override
     public long saveStream(FileDescriptor fileDescr, InputStream inputStream) throws FileStorageException {
         Preconditions.checkNotNullArgument(fileDescr.getSize());
 
+        if (fileDescr.getSize() > getPartSize()) {
+            saveStreamByParts(fileDescr, inputStream);
+        } else {
+            saveStreamInSingleRequest(fileDescr, inputStream);
+        }
+        return fileDescr.getSize();
+    }
+
+    protected void saveStreamInSingleRequest(FileDescriptor fileDescr, InputStream inputStream) throws FileStorageException {
         int chunkSize = amazonS3Config.getChunkSize();
         long fileSize = fileDescr.getSize();
         URL amazonUrl = getAmazonUrl(fileDescr);
@@ -131,8 +150,157 @@ public class AmazonS3FileStorage implements FileStorageAPI {
         } catch (IOException e) {
             throw new RuntimeException("Error when sending chunked upload request", e);
         }
+    }
 
-        return fileDescr.getSize();
+    /**
+     * Uploads the file by the multipart upload. Parts are read from the stream one by one and uploaded in parallel
+     * by the transfer executor, no more than {@link AmazonS3Config#getParallelism()} parts are kept in memory.
+     */
+    protected void saveStreamByParts(FileDescriptor fileDescr, InputStream inputStream) throws FileStorageException {
+        String uploadId = initiateMultipartUpload(fileDescr);
+
+        int partSize = getPartSize();
+        Semaphore semaphore = new Semaphore(getParallelism());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<String>> partETags = new ArrayList<>();
+        try {
+            byte[] part;
+            int partNumber = 1;
+            while (failure.get() == null && (part = readPart(inputStream, partSize)) != null) {
+                semaphore.acquire();
+                int number = partNumber++;
+                byte[] data = part;
+                try {
+                    partETags.add(getTransferExecutor().submit(() -> {
+                        try {
+                            return uploadPart(fileDescr, uploadId, number, data);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            semaphore.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    semaphore.release();
+                    throw e;
+                }
+            }
+
+            List<String> eTags = new ArrayList<>(partETags.size());
+            for (Future<String> partETag : partETags) {
+                eTags.add(partETag.get());
+            }
+            completeMultipartUpload(fileDescr, uploadId, eTags);
+        } catch (Exception e) {
+            for (Future<String> partETag : partETags) {
+                partETag.cancel(true);
+            }
+            abortMultipartUpload(fileDescr, uploadId);
+
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof FileStorageException) {
+                throw (FileStorageException) cause;
+            }
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                    "Could not save file " + getFileName(fileDescr), cause);
+        }
+    }
+
+    /**
+     * @return next part of the stream, or null if the stream is exhausted
+     */
+    @Nullable
+    protected byte[] readPart(InputStream inputStream, int partSize) throws IOException {
+        byte[] buffer = new byte[partSize];
+        int bytesRead = IOUtils.read(inputStream, buffer, 0, partSize);
+        if (bytesRead == 0) {
+            return null;
+        }
+        return bytesRead < partSize ? Arrays.copyOf(buffer, bytesRead) : buffer;
+    }
+
+    protected String initiateMultipartUpload(FileDescriptor fileDescr) throws FileStorageException {
+        Map<String, String> queryParameters = Collections.singletonMap("uploads", "");
+        return executeWithRetries(() -> {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("x-amz-storage-class", "REDUCED_REDUNDANCY");
+            Element result = executeXmlRequest(getAmazonUrl(fileDescr, queryParameters), "POST",
+                    headers, queryParameters, null);
+            if (result == null || result.element("UploadId") == null) {
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                        "Could not initiate multipart upload of file " + getFileName(fileDescr));
+            }
+            return result.elementText("UploadId");
+        });
+    }
+
+    /**
+     * @return ETag of the uploaded part
+     */
+    protected String uploadPart(FileDescriptor fileDescr, String uploadId, int partNumber, byte[] data)
+            throws FileStorageException {
+        Map<String, String> queryParameters = new HashMap<>();
+        queryParameters.put("partNumber", String.valueOf(partNumber));
+        queryParameters.put("uploadId", uploadId);
+        return executeWithRetries(() -> {
+            URL amazonUrl = getAmazonUrl(fileDescr, queryParameters);
+            HttpURLConnection connection = sendRequest(amazonUrl, "PUT", new HashMap<>(), queryParameters, data);
+            HttpUtils.HttpResponse httpResponse = HttpUtils.executeHttpRequest(connection);
+            String eTag = connection.getHeaderField("ETag");
+            if (!httpResponse.isStatusOk() || eTag == null) {
+                String message = String.format("Could not upload part %d of file %s. %s",
+                        partNumber, getFileName(fileDescr), getInputStreamContent(httpResponse));
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, message);
+            }
+            IOUtils.closeQuietly(httpResponse.getInputStream());
+            return eTag;
+        });
+    }
+
+    protected void completeMultipartUpload(FileDescriptor fileDescr, String uploadId, List<String> eTags)
+            throws FileStorageException {
+        Document document = DocumentHelper.createDocument();
+        Element rootElement = document.addElement("CompleteMultipartUpload");
+        for (int i = 0; i < eTags.size(); i++) {
+            Element partElement = rootElement.addElement("Part");
+            partElement.addElement("PartNumber").setText(String.valueOf(i + 1));
+            partElement.addElement("ETag").setText(eTags.get(i));
+        }
+        byte[] body = document.asXML().getBytes(StandardCharsets.UTF_8);
+
+        Map<String, String> queryParameters = Collections.singletonMap("uploadId", uploadId);
+        executeWithRetries(() -> {
+            // the request can fail after the response status is sent, so the error is returned in the body
+            Element result = executeXmlRequest(getAmazonUrl(fileDescr, queryParameters), "POST",
+                    new HashMap<>(), queryParameters, body);
+            if (result == null || "Error".equals(result.getName())) {
+                String message = String.format("Could not complete multipart upload of file %s. %s",
+                        getFileName(fileDescr), result != null ? result.asXML() : null);
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, message);
+            }
+            return null;
+        });
+    }
+
+    protected void abortMultipartUpload(FileDescriptor fileDescr, String uploadId) {
+        Map<String, String> queryParameters = Collections.singletonMap("uploadId", uploadId);
+        try {
+            URL amazonUrl = getAmazonUrl(fileDescr, queryParameters);
+            HttpURLConnection connection = sendRequest(amazonUrl, "DELETE", new HashMap<>(), queryParameters, null);
+            HttpUtils.HttpResponse httpResponse = HttpUtils.executeHttpRequest(connection);
+            if (!httpResponse.isStatusOk()) {
+                log.warn("Could not abort multipart upload of file {}. {}",
+                        getFileName(fileDescr), getInputStreamContent(httpResponse));
+            } else {
+                IOUtils.closeQuietly(httpResponse.getInputStream());
+            }
+        } catch (Exception e) {
+            log.warn("Could not abort multipart upload of file {}", getFileName(fileDescr), e);
+        }
     }
 
     @Override
@@ -162,6 +330,22 @@ public class AmazonS3FileStorage implements FileStorageAPI {
 
     @Override
     public InputStream openStream(FileDescriptor fileDescr) throws FileStorageException {
+        Long size = fileDescr.getSize();
+        if (size != null && size > getPartSize() && getParallelism() > 1) {
+            ParallelRangeInputStream inputStream = new ParallelRangeInputStream(fileDescr, size);
+            try {
+                // the first part is awaited to report a missing file here rather than on reading
+                inputStream.nextPart();
+            } catch (IOException e) {
+                IOUtils.closeQuietly(inputStream);
+                if (e.getCause() instanceof FileStorageException) {
+                    throw (FileStorageException) e.getCause();
+                }
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, getFileName(fileDescr), e);
+            }
+            return inputStream;
+        }
+
         URL amazonUrl = getAmazonUrl(fileDescr);
 
         // for a simple GET, we have no body so supply the precomputed 'empty' hash
@@ -185,6 +369,47 @@ public class AmazonS3FileStorage implements FileStorageAPI {
         }
     }
 
+    /**
+     * Downloads the given range of the file.
+     *
+     * @param start position of the first byte
+     * @param end   position of the last byte, inclusive
+     */
+    protected byte[] downloadRange(FileDescriptor fileDescr, long start, long end) throws FileStorageException {
+        return executeWithRetries(() -> {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Range", "bytes=" + start + "-" + end);
+            HttpURLConnection connection = sendRequest(getAmazonUrl(fileDescr), "GET", headers, null, null);
+            HttpUtils.HttpResponse httpResponse = HttpUtils.executeHttpRequest(connection);
+            if (httpResponse.isStatusNotFound()) {
+                throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND,
+                        "File not found" + getFileName(fileDescr));
+            } else if (httpResponse.getStatus() != HttpURLConnection.HTTP_PARTIAL) {
+                String details;
+                if (httpResponse.isStatusOk()) {
+                    // the whole file is returned if the service ignores the range
+                    IOUtils.closeQuietly(httpResponse.getInputStream());
+                    details = "Range requests are not supported";
+                } else {
+                    details = getInputStreamContent(httpResponse);
+                }
+                String message = String.format("Could not get range %d-%d of file %s. %s",
+                        start, end, getFileName(fileDescr), details);
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, message);
+            }
+
+            byte[] data;
+            try (InputStream inputStream = httpResponse.getInputStream()) {
+                data = IOUtils.toByteArray(inputStream);
+            }
+            if (data.length != end - start + 1) {
+                throw new IOException(String.format("Unexpected size %d of range %d-%d of file %s",
+                        data.length, start, end, getFileName(fileDescr)));
+            }
+            return data;
+        });
+    }
+
     @Override
     public byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException {
         InputStream inputStream = openStream(fileDescr);
@@ -231,10 +456,26 @@ public class AmazonS3FileStorage implements FileStorageAPI {
     }
 
     protected URL getAmazonUrl(FileDescriptor fileDescr) {
-        // the region-specific endpoint to the target object expressed in path style
+        return getAmazonUrl(fileDescr, null);
+    }
+
+    protected URL getAmazonUrl(FileDescriptor fileDescr, @Nullable Map<String, String> queryParameters) {
+        String endpointUrl = amazonS3Config.getEndpointUrl();
+        String url;
+        if (StringUtils.isNotBlank(endpointUrl)) {
+            // the custom endpoint to the target object expressed in path style
+            url = String.format("%s/%s/%s", StringUtils.removeEnd(endpointUrl, "/"),
+                    amazonS3Config.getBucket(), resolveFileName(fileDescr));
+        } else {
+            // the bucket endpoint to the target object expressed in virtual host style
+            url = String.format("https://%s.s3.amazonaws.com/%s",
+                    amazonS3Config.getBucket(), resolveFileName(fileDescr));
+        }
+        if (queryParameters != null && !queryParameters.isEmpty()) {
+            url = url + "?" + AWS4SignerBase.getCanonicalizedQueryString(queryParameters);
+        }
         try {
-            return new URL(String.format("https://%s.s3.amazonaws.com/%s",
-                    amazonS3Config.getBucket(), resolveFileName(fileDescr)));
+            return new URL(url);
         } catch (MalformedURLException e) {
             throw new RuntimeException("Unable to parse service endpoint: " + e.getMessage());
         }
@@ -249,15 +490,125 @@ public class AmazonS3FileStorage implements FileStorageAPI {
     }
 
     protected String createAuthorizationHeader(URL endpointUrl, String method, Map<String, String> headers) {
+        return createAuthorizationHeader(endpointUrl, method, headers, null, AWS4SignerBase.EMPTY_BODY_SHA256);
+    }
+
+    protected String createAuthorizationHeader(URL endpointUrl, String method, Map<String, String> headers,
+                                               @Nullable Map<String, String> queryParameters, String bodyHash) {
         AWS4SignerForAuthorizationHeader signer = new AWS4SignerForAuthorizationHeader(
                 endpointUrl, method, "s3", amazonS3Config.getRegionName());
         return signer.computeSignature(headers,
-                null, // no query parameters
-                AWS4SignerBase.EMPTY_BODY_SHA256,
+                queryParameters,
+                bodyHash,
                 amazonS3Config.getAccessKey(),
                 amazonS3Config.getSecretAccessKey());
     }
 
+    /**
+     * Signs the request and sends it with the given body.
+     *
+     * @return connection to get the response from
+     */
+    protected HttpURLConnection sendRequest(URL amazonUrl, String method, Map<String, String> headers,
+                                            @Nullable Map<String, String> queryParameters,
+                                            @Nullable byte[] body) throws IOException {
+        String bodyHash = body != null ? BinaryUtils.toHex(AWS4SignerBase.hash(body)) : AWS4SignerBase.EMPTY_BODY_SHA256;
+        headers.put("x-amz-content-sha256", bodyHash);
+        if (body != null) {
+            headers.put("content-length", String.valueOf(body.length));
+        }
+        headers.put("Authorization", createAuthorizationHeader(amazonUrl, method, headers, queryParameters, bodyHash));
+
+        HttpURLConnection connection = HttpUtils.createHttpConnection(amazonUrl, method, headers);
+        if (body != null) {
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * @return root element of the response, or null if the response is empty
+     */
+    @Nullable
+    protected Element executeXmlRequest(URL amazonUrl, String method, Map<String, String> headers,
+                                        @Nullable Map<String, String> queryParameters,
+                                        @Nullable byte[] body) throws IOException, FileStorageException {
+        HttpURLConnection connection = sendRequest(amazonUrl, method, headers, queryParameters, body);
+        HttpUtils.HttpResponse httpResponse = HttpUtils.executeHttpRequest(connection);
+        if (!httpResponse.isStatusOk()) {
+            String message = String.format("Request %s %s failed. %s",
+                    method, amazonUrl.getPath(), getInputStreamContent(httpResponse));
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, message);
+        }
+        String content;
+        try (InputStream inputStream = httpResponse.getInputStream()) {
+            content = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        return StringUtils.isBlank(content) ? null : Dom4j.readDocument(content).getRootElement();
+    }
+
+    /**
+     * Executes the request, repeating it up to {@link AmazonS3Config#getMaxRetries()} times if it fails. Requests
+     * to missing files are not repeated.
+     */
+    protected <T> T executeWithRetries(Callable<T> request) throws FileStorageException {
+        int maxRetries = Math.max(amazonS3Config.getMaxRetries(), 0);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return request.call();
+            } catch (Exception e) {
+                boolean fileNotFound = e instanceof FileStorageException
+                        && ((FileStorageException) e).getType() == FileStorageException.Type.FILE_NOT_FOUND;
+                if (fileNotFound || attempt >= maxRetries || Thread.currentThread().isInterrupted()) {
+                    if (e instanceof FileStorageException) {
+                        throw (FileStorageException) e;
+                    }
+                    throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, e.getMessage(), e);
+                }
+                log.debug("Request to Amazon S3 failed, retrying: {}", e.toString());
+                try {
+                    Thread.sleep(100L << attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    protected int getPartSize() {
+        return Math.max(amazonS3Config.getPartSize(), 1);
+    }
+
+    protected int getParallelism() {
+        return Math.max(amazonS3Config.getParallelism(), 1);
+    }
+
+    protected ExecutorService getTransferExecutor() {
+        if (transferExecutor == null) {
+            synchronized (this) {
+                if (transferExecutor == null) {
+                    transferExecutor = Executors.newFixedThreadPool(getParallelism(),
+                            new ThreadFactoryBuilder()
+                                    .setNameFormat("AmazonS3Transfer-%d")
+                                    .setDaemon(true)
+                                    .build());
+                }
+            }
+        }
+        return transferExecutor;
+    }
+
+    @PreDestroy
+    protected void stopTransferExecutor() {
+        if (transferExecutor != null) {
+            transferExecutor.shutdownNow();
+        }
+    }
+
     protected String getInputStreamContent(HttpUtils.HttpResponse httpResponse) {
         try {
             return IOUtils.toString(httpResponse.getInputStream(), StandardCharsets.UTF_8);
@@ -265,4 +616,102 @@ public class AmazonS3FileStorage implements FileStorageAPI {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Stream that downloads a file by ranges of {@link AmazonS3Config#getPartSize()} bytes. Up to
+     * {@link AmazonS3Config#getParallelism()} ranges following the current position are downloaded in parallel.
+     */
+    protected class ParallelRangeInputStream extends InputStream {
+
+        protected final FileDescriptor fileDescr;
+        protected final long size;
+        protected final int partSize;
+        protected final int parallelism;
+
+        protected final Deque<Future<byte[]>> parts = new ArrayDeque<>();
+        protected long nextPartStart;
+        protected byte[] currentPart;
+        protected int position;
+
+        public ParallelRangeInputStream(FileDescriptor fileDescr, long size) {
+            this.fileDescr = fileDescr;
+            this.size = size;
+            this.partSize = getPartSize();
+            this.parallelism = getParallelism();
+            requestParts();
+        }
+
+        protected void requestParts() {
+            while (parts.size() < parallelism && nextPartStart < size) {
+                long start = nextPartStart;
+                long end = Math.min(start + partSize, size) - 1;
+                parts.add(getTransferExecutor().submit(() -> downloadRange(fileDescr, start, end)));
+                nextPartStart = end + 1;
+            }
+        }
+
+        /**
+         * Waits for the next downloaded part and makes it current.
+         *
+         * @return false if there are no more parts
+         */
+        protected boolean nextPart() throws IOException {
+            Future<byte[]> part = parts.poll();
+            if (part == null) {
+                return false;
+            }
+            try {
+                currentPart = part.get();
+                position = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Downloading has been interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException("Could not get file " + getFileName(fileDescr), e.getCause());
+            }
+            requestParts();
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (currentPart == null || position >= currentPart.length) {
+                if (!nextPart()) {
+                    return -1;
+                }
+            }
+            return currentPart[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (currentPart == null || position >= currentPart.length) {
+                if (!nextPart()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, currentPart.length - position);
+            System.arraycopy(currentPart, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return currentPart != null ? currentPart.length - position : 0;
+        }
+
+        @Override
+        public void close() {
+            for (Future<byte[]> part : parts) {
+                part.cancel(true);
+            }
+            parts.clear();
+            nextPartStart = size;
+            currentPart = null;
+        }
+    }
+}
@@ -18,6 +18,8 @@
 package com.haulmont.cuba.core.app.importexport;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -27,6 +29,7 @@ import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.app.DataStore;
 import com.haulmont.cuba.core.app.RdbmsStore;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.app.StoreFactory;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
@@ -36,6 +39,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.global.validation.CustomValidationException;
 import com.haulmont.cuba.core.global.validation.EntityValidationException;
 import com.haulmont.cuba.core.global.validation.groups.RestApiChecks;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
@@ -48,11 +52,10 @@ import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import javax.validation.groups.Default;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.zip.CRC32;
 
@@ -91,6 +94,9 @@ public class EntityImportExport implements EntityImportExportAPI {
     @Inject
     protected ReferenceToEntitySupport referenceToEntitySupport;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
     @Override
     public byte[] exportEntitiesToZIP(Collection<? extends Entity> entities, View view) {
         return exportEntitiesToZIP(reloadEntities(entities, view));
@@ -118,6 +124,27 @@ public class EntityImportExport implements EntityImportExportAPI {
         return byteArrayOutputStream.toByteArray();
     }
 
+    @Override
+    public void exportEntitiesToZIP(Collection<? extends Entity> entities, View view, OutputStream outputStream) {
+        exportEntitiesToZIP(reloadEntities(entities, view), outputStream);
+    }
+
+    @Override
+    public void exportEntitiesToZIP(Collection<? extends Entity> entities, OutputStream outputStream) {
+        //the size and the checksum of the entry are unknown before it is written, so the entry is deflated
+        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        zipOutputStream.setEncoding(StandardCharsets.UTF_8.name());
+        try {
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry("entities.json"));
+            Writer writer = new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8);
+            entitySerialization.toJson(entities, null, writer, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+            zipOutputStream.closeArchiveEntry();
+            zipOutputStream.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error on creating zip archive during entities export", e);
+        }
+    }
+
     @Override
     public String exportEntitiesToJSON(Collection<? extends Entity> entities, View view) {
         return exportEntitiesToJSON(reloadEntities(entities, view));
@@ -129,19 +156,34 @@ public class EntityImportExport implements EntityImportExportAPI {
                 EntitySerializationOption.COMPACT_REPEATED_ENTITIES, EntitySerializationOption.PRETTY_PRINT);
     }
 
+    @Override
+    public void exportEntitiesToJSON(Collection<? extends Entity> entities, View view, OutputStream outputStream) {
+        exportEntitiesToJSON(reloadEntities(entities, view), outputStream);
+    }
+
+    @Override
+    public void exportEntitiesToJSON(Collection<? extends Entity> entities, OutputStream outputStream) {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        entitySerialization.toJson(entities, null, writer,
+                EntitySerializationOption.COMPACT_REPEATED_ENTITIES, EntitySerializationOption.PRETTY_PRINT);
+    }
+
     protected Collection<? extends Entity> reloadEntities(Collection<? extends Entity> entities, View view) {
         List<Object> ids = entities.stream()
                 .map(Entity::getId)
                 .collect(Collectors.toList());
 
         MetaClass metaClass = metadata.getClassNN(view.getEntityClass());
-        LoadContext.Query query = LoadContext.createQuery("select e from " + metaClass.getName() + " e where e.id in :ids")
-                .setParameter("ids", ids);
-        LoadContext<? extends Entity> ctx = LoadContext.create(view.getEntityClass())
-                .setQuery(query)
-                .setView(view);
-
-        return dataManager.loadList(ctx);
+        List<Entity> result = new ArrayList<>(ids.size());
+        for (List<Object> idsChunk : Lists.partition(ids, getChunkSize())) {
+            LoadContext.Query query = LoadContext.createQuery("select e from " + metaClass.getName() + " e where e.id in :ids")
+                    .setParameter("ids", idsChunk);
+            LoadContext<? extends Entity> ctx = LoadContext.create(view.getEntityClass())
+                    .setQuery(query)
+                    .setView(view);
+            result.addAll(dataManager.loadList(ctx));
+        }
+        return result;
     }
 
     protected ArchiveEntry newStoredEntry(String name, byte[] data) {
@@ -188,6 +230,32 @@ public class EntityImportExport implements EntityImportExportAPI {
         return result;
     }
 
+    @Override
+    public int importEntitiesFromJson(InputStream inputStream, EntityImportView importView) {
+        return importEntitiesFromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), importView);
+    }
+
+    @Override
+    public int importEntitiesFromZIP(InputStream inputStream, EntityImportView importView) {
+        int count = 0;
+        ZipArchiveInputStream archiveReader = new ZipArchiveInputStream(inputStream);
+        try {
+            while (archiveReader.getNextZipEntry() != null) {
+                count += importEntitiesFromJson(new InputStreamReader(archiveReader, StandardCharsets.UTF_8), importView);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Exception occurred while importing entities", e);
+        }
+        return count;
+    }
+
+    protected int importEntitiesFromJson(Reader reader, EntityImportView importView) {
+        ChunkedImport chunkedImport = new ChunkedImport(importView);
+        entitySerialization.entitiesFromJson(reader, null, getChunkSize(), chunkedImport,
+                EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+        return chunkedImport.getImportedCount();
+    }
+
     protected byte[] readBytesFromEntry(ZipArchiveInputStream archiveReader) throws IOException {
         return IOUtils.toByteArray(archiveReader);
     }
@@ -199,6 +267,21 @@ public class EntityImportExport implements EntityImportExportAPI {
 
     @Override
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate) {
+        CommitContext commitContext = createImportCommitContext(entities, importView, validate);
+        return dataManager.secure().commit(commitContext);
+    }
+
+    /**
+     * Method imports the entities into a new commit context.
+     *
+     * @param entities   entities that came to the {@code EntityImportExport} bean
+     * @param importView importView used for importing the entities
+     * @param validate   whether the imported entities must be validated
+     * @return commit context containing entities that must be committed or deleted
+     */
+    protected CommitContext createImportCommitContext(Collection<? extends Entity> entities,
+                                                      EntityImportView importView,
+                                                      boolean validate) {
         List<ReferenceInfo> referenceInfoList = new ArrayList<>();
         CommitContext commitContext = new CommitContext();
         commitContext.setSoftDeletion(false);
@@ -208,25 +291,24 @@ public class EntityImportExport implements EntityImportExportAPI {
         //
         //1. entities that should be persisted are processed first, fields that should be references to existing entities
         //are stored in the referenceInfoList variable
+        View regularView = buildViewFromImportView(importView);
+        Map<Entity, Entity> dstEntities = loadExistingEntities(entities, regularView);
         for (Entity srcEntity : entities) {
-            View regularView = buildViewFromImportView(importView);
-            //set softDeletion to false because we can import deleted entity, so we'll restore it and update
-            LoadContext<? extends Entity> ctx = LoadContext.create(srcEntity.getClass())
-                    .setSoftDeletion(false)
-                    .setView(regularView)
-                    .setId(srcEntity.getId());
-            Entity dstEntity = dataManager.secure().load(ctx);
-
-            importEntity(srcEntity, dstEntity, importView, regularView, commitContext, referenceInfoList);
+            importEntity(srcEntity, dstEntities.get(srcEntity), importView, regularView, commitContext, referenceInfoList);
         }
 
         //2. references to existing entities are processed
 
-        //store a list of loaded entities in the collection to prevent unnecessary database requests for searching the
-        //same instance
-        Set<Entity> loadedEntities = new HashSet<>();
+        //referenced entities are loaded by batches and stored in the map to prevent unnecessary database requests
+        //for searching the same instance
+        Map<Entity, Entity> loadedEntities = new HashMap<>();
+        Map<Entity, Entity> commitInstances = new HashMap<>();
+        for (Entity commitInstance : commitContext.getCommitInstances()) {
+            commitInstances.putIfAbsent(commitInstance, commitInstance);
+        }
+        loadReferences(referenceInfoList, commitInstances, loadedEntities);
         for (ReferenceInfo referenceInfo : referenceInfoList) {
-            processReferenceInfo(referenceInfo, commitContext, loadedEntities);
+            processReferenceInfo(referenceInfo, commitContext, commitInstances, loadedEntities);
         }
 
         for (Entity commitInstance : commitContext.getCommitInstances()) {
@@ -255,7 +337,122 @@ public class EntityImportExport implements EntityImportExportAPI {
             commitContext.setSoftDeletion(true);
         }
 
-        return dataManager.secure().commit(commitContext);
+        return commitContext;
+    }
+
+    /**
+     * Loads the existing instances of the imported entities. Entities of the same class are loaded by a single query
+     * for each chunk of ids.
+     *
+     * @return map of source entities to the loaded instances, there are no values for entities that don't exist
+     */
+    protected Map<Entity, Entity> loadExistingEntities(Collection<? extends Entity> entities, View regularView) {
+        Multimap<MetaClass, Entity> entitiesByClass = LinkedHashMultimap.create();
+        for (Entity entity : entities) {
+            entitiesByClass.put(entity.getMetaClass(), entity);
+        }
+        Map<Entity, Entity> result = new HashMap<>();
+        for (MetaClass metaClass : entitiesByClass.keySet()) {
+            //set softDeletion to false because we can import deleted entity, so we'll restore it and update
+            loadEntities(metaClass, entitiesByClass.get(metaClass), regularView, true, result);
+        }
+        return result;
+    }
+
+    /**
+     * Loads entities referenced by the reference infos which are neither imported nor loaded before.
+     */
+    @SuppressWarnings("unchecked")
+    protected void loadReferences(Collection<ReferenceInfo> referenceInfoList,
+                                  Map<Entity, Entity> commitInstances,
+                                  Map<Entity, Entity> loadedEntities) {
+        Multimap<MetaClass, Entity> minimalViewReferences = LinkedHashMultimap.create();
+        Multimap<MetaClass, Entity> localViewReferences = LinkedHashMultimap.create();
+        for (ReferenceInfo referenceInfo : referenceInfoList) {
+            Object propertyValue = referenceInfo.getPropertyValue();
+            if (propertyValue instanceof Collection) {
+                for (Entity entity : (Collection<Entity>) propertyValue) {
+                    if (!commitInstances.containsKey(entity) && !loadedEntities.containsKey(entity)) {
+                        minimalViewReferences.put(entity.getMetaClass(), entity);
+                    }
+                }
+            } else if (propertyValue instanceof Entity) {
+                Entity entity = (Entity) propertyValue;
+                if (!commitInstances.containsKey(entity) && !loadedEntities.containsKey(entity)) {
+                    localViewReferences.put(entity.getMetaClass(), entity);
+                }
+            }
+        }
+        for (MetaClass metaClass : minimalViewReferences.keySet()) {
+            View view = viewRepository.getSharedView(metaClass, View.MINIMAL);
+            loadEntities(metaClass, minimalViewReferences.get(metaClass), view, false, loadedEntities);
+        }
+        for (MetaClass metaClass : localViewReferences.keySet()) {
+            View view = viewRepository.getSharedView(metaClass, View.LOCAL);
+            loadEntities(metaClass, localViewReferences.get(metaClass), view, false, loadedEntities);
+        }
+    }
+
+    /**
+     * Loads instances of the given entities including soft deleted ones and puts them to the result map. If an entity
+     * doesn't exist, a null value is put for it.
+     */
+    protected void loadEntities(MetaClass metaClass, Collection<Entity> entities, View view, boolean secure,
+                                Map<Entity, Entity> result) {
+        MetadataTools metadataTools = metadata.getTools();
+        DataStore dataStore = storeFactory.get(metadataTools.getStoreName(metaClass));
+        //IN lists are used only for simple primary keys of entities from RdbmsStore
+        if (!(dataStore instanceof RdbmsStore) || metadataTools.hasCompositePrimaryKey(metaClass)) {
+            for (Entity entity : entities) {
+                LoadContext<? extends Entity> ctx = LoadContext.create(entity.getClass())
+                        .setSoftDeletion(false)
+                        .setView(view)
+                        .setId(entity.getId());
+                result.put(entity, secure ? dataManager.secure().load(ctx) : dataManager.load(ctx));
+            }
+            return;
+        }
+
+        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
+        for (List<Entity> chunk : Lists.partition(new ArrayList<>(entities), getChunkSize())) {
+            List<Object> ids = chunk.stream()
+                    .map(entity -> getIdValue(entity))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            Map<Object, Entity> loadedById = new HashMap<>();
+            if (!ids.isEmpty()) {
+                LoadContext.Query query = LoadContext.createQuery(
+                        "select e from " + metaClass.getName() + " e where e." + primaryKeyName + " in :ids")
+                        .setParameter("ids", ids);
+                LoadContext<? extends Entity> ctx = LoadContext.create(chunk.get(0).getClass())
+                        .setSoftDeletion(false)
+                        .setQuery(query)
+                        .setView(view);
+                List<? extends Entity> loadedEntities = secure ? dataManager.secure().loadList(ctx) : dataManager.loadList(ctx);
+                for (Entity loadedEntity : loadedEntities) {
+                    loadedById.put(getIdValue(loadedEntity), loadedEntity);
+                }
+            }
+            for (Entity entity : chunk) {
+                Object id = getIdValue(entity);
+                result.put(entity, id != null ? loadedById.get(id) : null);
+            }
+        }
+    }
+
+    @Nullable
+    protected Object getIdValue(Entity entity) {
+        Object id = entity.getId();
+        return id instanceof IdProxy ? ((IdProxy) id).get() : id;
+    }
+
+    /**
+     * @return number of entities loaded by a single query or committed in a single transaction
+     */
+    protected int getChunkSize() {
+        int chunkSize = Math.max(serverConfig.getEntityImportExportChunkSize(), 1);
+        int maxInListSize = DbmsSpecificFactory.getDbmsFeatures().getMaxInListSize();
+        return maxInListSize > 0 ? Math.min(chunkSize, maxInListSize) : chunkSize;
     }
 
     /**
@@ -538,7 +735,8 @@ public class EntityImportExport implements EntityImportExportAPI {
      * Method finds and set a reference value to the entity or throws EntityImportException if ERROR_ON_MISSING policy
      * is violated
      */
-    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext, Set<Entity> loadedEntities) {
+    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext,
+                                        Map<Entity, Entity> commitInstances, Map<Entity, Entity> loadedEntities) {
         Entity entity = referenceInfo.getEntity();
         String propertyName = referenceInfo.getViewProperty().getName();
         MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(propertyName);
@@ -557,28 +755,13 @@ public class EntityImportExport implements EntityImportExportAPI {
             }
 
             for (Entity childEntity : propertyValue) {
-                Entity entityFromLoadedEntities = findEntityInCollection(loadedEntities, childEntity);
-                if (entityFromLoadedEntities != null) {
-                    collection.add(entityFromLoadedEntities);
-                } else {
-                    Entity entityFromCommitContext = findEntityInCollection(commitContext.getCommitInstances(), childEntity);
-                    if (entityFromCommitContext != null) {
-                        collection.add(entityFromCommitContext);
-                    } else {
-                        LoadContext<? extends Entity> ctx = LoadContext.create(childEntity.getClass())
-                                .setSoftDeletion(false)
-                                .setView(View.MINIMAL)
-                                .setId(childEntity.getId());
-                        Entity loadedReference = dataManager.load(ctx);
-                        if (loadedReference == null) {
-                            if (referenceInfo.getViewProperty().getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
-                                throw new EntityImportException("Referenced entity for property '" + propertyName + "' with id = " + entity.getId() + " is missing");
-                            }
-                        } else {
-                            collection.add(loadedReference);
-                            loadedEntities.add(loadedReference);
-                        }
+                Entity reference = findReference(childEntity, View.MINIMAL, commitInstances, loadedEntities);
+                if (reference == null) {
+                    if (referenceInfo.getViewProperty().getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
+                        throw new EntityImportException("Referenced entity for property '" + propertyName + "' with id = " + entity.getId() + " is missing");
                     }
+                } else {
+                    collection.add(reference);
                 }
             }
 
@@ -621,34 +804,42 @@ public class EntityImportExport implements EntityImportExportAPI {
                     }
                 }
             } else {
-                Entity entityFromLoadedEntities = findEntityInCollection(loadedEntities, propertyValue);
-                if (entityFromLoadedEntities != null) {
-                    entity.setValue(propertyName, entityFromLoadedEntities);
-                } else {
-                    Entity entityFromCommitContext = findEntityInCollection(commitContext.getCommitInstances(), propertyValue);
-
-                    if (entityFromCommitContext != null) {
-                        entity.setValue(propertyName, entityFromCommitContext);
-                    } else {
-                        LoadContext<? extends Entity> ctx = LoadContext.create(propertyValue.getClass())
-                                .setSoftDeletion(false)
-                                .setId(propertyValue.getId());
-                        dataManager.load(ctx);
-                        Entity loadedReference = dataManager.load(ctx);
-                        if (loadedReference == null) {
-                            if (referenceInfo.getViewProperty().getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
-                                throw new EntityImportException("Referenced entity for property '" + propertyName + "' with id = " + propertyValue.getId() + " is missing");
-                            }
-                        } else {
-                            entity.setValue(propertyName, loadedReference);
-                            loadedEntities.add(loadedReference);
-                        }
+                Entity reference = findReference(propertyValue, View.LOCAL, commitInstances, loadedEntities);
+                if (reference == null) {
+                    if (referenceInfo.getViewProperty().getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
+                        throw new EntityImportException("Referenced entity for property '" + propertyName + "' with id = " + propertyValue.getId() + " is missing");
                     }
+                } else {
+                    entity.setValue(propertyName, reference);
                 }
             }
         }
     }
 
+    /**
+     * Method finds a referenced entity among the imported or already loaded entities, or loads it from the database.
+     *
+     * @return found entity or null if the entity doesn't exist
+     */
+    @Nullable
+    protected Entity findReference(Entity entity, String viewName,
+                                   Map<Entity, Entity> commitInstances, Map<Entity, Entity> loadedEntities) {
+        Entity entityFromCommitContext = commitInstances.get(entity);
+        if (entityFromCommitContext != null) {
+            return entityFromCommitContext;
+        }
+        if (loadedEntities.containsKey(entity)) {
+            return loadedEntities.get(entity);
+        }
+        LoadContext<? extends Entity> ctx = LoadContext.create(entity.getClass())
+                .setSoftDeletion(false)
+                .setView(viewName)
+                .setId(entity.getId());
+        Entity loadedReference = dataManager.load(ctx);
+        loadedEntities.put(entity, loadedReference);
+        return loadedReference;
+    }
+
     /**
      * Method builds a regular {@link View} from the {@link EntityImportView}. The regular view will include all
      * properties defined in the import view.
@@ -716,4 +907,34 @@ public class EntityImportExport implements EntityImportExportAPI {
             return createOp;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Consumer of the chunks of entities read from a stream. Each chunk is committed in a separate transaction.
+     */
+    protected class ChunkedImport implements Consumer<List<Entity>> {
+        protected EntityImportView importView;
+        protected int importedCount;
+
+        public ChunkedImport(EntityImportView importView) {
+            this.importView = importView;
+        }
+
+        /**
+         * Imports and commits a chunk of entities. Referenced entities are loaded for each chunk, so nothing is kept
+         * after the chunk is committed.
+         */
+        @Override
+        public void accept(List<Entity> chunk) {
+            CommitContext commitContext = createImportCommitContext(chunk, importView, false);
+            commitContext.setDiscardCommitted(true);
+            commitContext.setBulkMode(true);
+            dataManager.secure().commit(commitContext);
+
+            importedCount += chunk.size();
+        }
+
+        public int getImportedCount() {
+            return importedCount;
+        }
+    }
+}
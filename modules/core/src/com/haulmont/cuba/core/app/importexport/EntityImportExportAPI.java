@@ -20,6 +20,8 @@ package com.haulmont.cuba.core.app.importexport;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 
 /**
@@ -40,6 +42,25 @@ public interface EntityImportExportAPI {
      */
     byte[] exportEntitiesToZIP(Collection<? extends Entity> entities, View view);
 
+    /**
+     * Works like {@link #exportEntitiesToZIP(Collection)}, but writes the ZIP archive to the given stream without
+     * building the JSON and the archive in memory. The stream is not closed.
+     *
+     * @param entities     a collection of entities to export
+     * @param outputStream a stream to write the archive to
+     */
+    void exportEntitiesToZIP(Collection<? extends Entity> entities, OutputStream outputStream);
+
+    /**
+     * Works like {@link #exportEntitiesToZIP(Collection, View)}, but writes the ZIP archive to the given stream
+     * without building the JSON and the archive in memory. The stream is not closed.
+     *
+     * @param entities     a collection of entities to export
+     * @param view         before serialization to JSON entities will be reloaded with this view
+     * @param outputStream a stream to write the archive to
+     */
+    void exportEntitiesToZIP(Collection<? extends Entity> entities, View view, OutputStream outputStream);
+
     /**
      * See documentation for {@link EntityImportExportService#exportEntitiesToJSON(Collection, View)}
      */
@@ -50,6 +71,25 @@ public interface EntityImportExportAPI {
      */
     String exportEntitiesToJSON(Collection<? extends Entity> entities);
 
+    /**
+     * Works like {@link #exportEntitiesToJSON(Collection)}, but writes UTF-8 encoded JSON to the given stream without
+     * building the JSON string in memory. The stream is not closed.
+     *
+     * @param entities     a collection of entities to export
+     * @param outputStream a stream to write the JSON to
+     */
+    void exportEntitiesToJSON(Collection<? extends Entity> entities, OutputStream outputStream);
+
+    /**
+     * Works like {@link #exportEntitiesToJSON(Collection, View)}, but writes UTF-8 encoded JSON to the given stream
+     * without building the JSON string in memory. The stream is not closed.
+     *
+     * @param entities     a collection of entities to export
+     * @param view         before serialization to JSON entities will be reloaded with this view
+     * @param outputStream a stream to write the JSON to
+     */
+    void exportEntitiesToJSON(Collection<? extends Entity> entities, View view, OutputStream outputStream);
+
     /**
      * See documentation for {@link EntityImportExportService#importEntitiesFromJSON(String, EntityImportView)}
      */
@@ -60,6 +100,32 @@ public interface EntityImportExportAPI {
      */
     Collection<Entity> importEntitiesFromZIP(byte[] zipBytes, EntityImportView entityImportView);
 
+    /**
+     * Imports entities from UTF-8 encoded JSON read from the given stream. Unlike
+     * {@link #importEntitiesFromJson(String, EntityImportView)}, entities are read incrementally and imported by
+     * chunks of {@link com.haulmont.cuba.core.app.ServerConfig#getEntityImportExportChunkSize()} instances, each chunk
+     * is committed in a separate transaction. Existing and referenced entities of a chunk are loaded by a single query
+     * for each entity class, and are not kept after the chunk is committed. Entities repeated in the compact form
+     * are resolved to the instances read earlier from the stream. The stream is not closed.
+     * <p>A reference to an entity that is imported in one of the following chunks is resolved only if the entity
+     * already exists in the database.</p>
+     *
+     * @param inputStream a stream providing a JSON array of entities
+     * @param importView  import view that describes how the entities are imported
+     * @return number of imported entities read from the stream
+     */
+    int importEntitiesFromJson(InputStream inputStream, EntityImportView importView);
+
+    /**
+     * Works like {@link #importEntitiesFromJson(InputStream, EntityImportView)} for JSON files of the ZIP archive
+     * read from the given stream. The stream is not closed.
+     *
+     * @param inputStream a stream providing a ZIP archive created by the export
+     * @param importView  import view that describes how the entities are imported
+     * @return number of imported entities read from the archive
+     */
+    int importEntitiesFromZIP(InputStream inputStream, EntityImportView importView);
+
     /**
      * See documentation for {@link EntityImportExportService#importEntities(Collection, EntityImportView)}
      */
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default {@link QueryResultsStore} keeping results in memory.
+ */
+@Component(QueryResultsStore.NAME)
+public class InMemoryQueryResultsStore implements QueryResultsStore {
+
+    protected Map<UUID, Map<Integer, SavedQueryResults>> sessions = new ConcurrentHashMap<>();
+
+    @Nullable
+    @Override
+    public SavedQueryResults get(UUID sessionId, int queryKey) {
+        Map<Integer, SavedQueryResults> results = sessions.get(sessionId);
+        return results != null ? results.get(queryKey) : null;
+    }
+
+    @Override
+    public void put(UUID sessionId, int queryKey, SavedQueryResults results) {
+        sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(queryKey, results);
+    }
+
+    @Override
+    public void remove(UUID sessionId, int queryKey) {
+        Map<Integer, SavedQueryResults> results = sessions.get(sessionId);
+        if (results != null) {
+            results.remove(queryKey);
+        }
+    }
+
+    @Override
+    public void removeForSession(UUID sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    @Override
+    public void retainSessions(Set<UUID> sessionIds) {
+        sessions.keySet().retainAll(sessionIds);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Immutable compact set of entity identifiers selected by a query. Identifiers are kept in sorted primitive arrays,
+ * which makes the set several times smaller than a collection of boxed values and allows binary search.
+ */
+public abstract class QueryResultIds implements Serializable {
+
+    private static final long serialVersionUID = 8469315063421829364L;
+
+    public static final QueryResultIds EMPTY = new EmptyIds();
+
+    /**
+     * Creates a set of the given identifiers. All identifiers must have the same type:
+     * {@code UUID}, {@code Long}, {@code Integer} or {@code String}.
+     */
+    public static QueryResultIds of(Collection<?> ids) {
+        if (ids.isEmpty())
+            return EMPTY;
+
+        Object first = ids.iterator().next();
+        if (first instanceof UUID) {
+            return new UuidIds(ids);
+        } else if (first instanceof Long) {
+            return new LongIds(ids);
+        } else if (first instanceof Integer) {
+            return new IntIds(ids);
+        } else if (first instanceof String) {
+            return new StringIds(ids);
+        } else {
+            throw new IllegalArgumentException("Unsupported identifier type: " + first.getClass());
+        }
+    }
+
+    /**
+     * @return number of identifiers in the set
+     */
+    public abstract int size();
+
+    /**
+     * @return true if the set contains the identifier
+     */
+    public abstract boolean contains(Object id);
+
+    /**
+     * @return identifiers in the natural order
+     */
+    public abstract List<Object> toList();
+
+    /**
+     * @return new set containing only the identifiers which are both in this set and in the given collection
+     */
+    public QueryResultIds intersect(Collection<?> ids) {
+        List<Object> result = new ArrayList<>();
+        for (Object id : ids) {
+            if (contains(id)) {
+                result.add(id);
+            }
+        }
+        return of(result);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{size=" + size() + "}";
+    }
+
+    protected static class EmptyIds extends QueryResultIds {
+        private static final long serialVersionUID = 3311567380938573458L;
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public boolean contains(Object id) {
+            return false;
+        }
+
+        @Override
+        public List<Object> toList() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public QueryResultIds intersect(Collection<?> ids) {
+            return this;
+        }
+
+        protected Object readResolve() {
+            return EMPTY;
+        }
+    }
+
+    protected static class IntIds extends QueryResultIds {
+        private static final long serialVersionUID = -6183766404355426411L;
+
+        protected final int[] values;
+
+        protected IntIds(Collection<?> ids) {
+            int[] array = new int[ids.size()];
+            int i = 0;
+            for (Object id : ids) {
+                array[i++] = (Integer) id;
+            }
+            Arrays.sort(array);
+            int size = 0;
+            for (int j = 0; j < array.length; j++) {
+                if (size == 0 || array[size - 1] != array[j]) {
+                    array[size++] = array[j];
+                }
+            }
+            values = size == array.length ? array : Arrays.copyOf(array, size);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(Object id) {
+            return id instanceof Integer && Arrays.binarySearch(values, (Integer) id) >= 0;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(values.length);
+            for (int value : values) {
+                list.add(value);
+            }
+            return list;
+        }
+    }
+
+    protected static class LongIds extends QueryResultIds {
+        private static final long serialVersionUID = 4733447402669016416L;
+
+        protected final long[] values;
+
+        protected LongIds(Collection<?> ids) {
+            long[] array = new long[ids.size()];
+            int i = 0;
+            for (Object id : ids) {
+                array[i++] = (Long) id;
+            }
+            Arrays.sort(array);
+            int size = 0;
+            for (int j = 0; j < array.length; j++) {
+                if (size == 0 || array[size - 1] != array[j]) {
+                    array[size++] = array[j];
+                }
+            }
+            values = size == array.length ? array : Arrays.copyOf(array, size);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(Object id) {
+            return id instanceof Long && Arrays.binarySearch(values, (Long) id) >= 0;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(values.length);
+            for (long value : values) {
+                list.add(value);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Keeps the most and the least significant bits of each UUID in adjacent array elements.
+     */
+    protected static class UuidIds extends QueryResultIds {
+        private static final long serialVersionUID = -2206936372432364047L;
+
+        protected final long[] values;
+
+        protected UuidIds(Collection<?> ids) {
+            UUID[] array = ids.toArray(new UUID[0]);
+            Arrays.sort(array);
+            long[] bits = new long[array.length * 2];
+            int size = 0;
+            for (int j = 0; j < array.length; j++) {
+                if (j == 0 || !array[j - 1].equals(array[j])) {
+                    bits[size * 2] = array[j].getMostSignificantBits();
+                    bits[size * 2 + 1] = array[j].getLeastSignificantBits();
+                    size++;
+                }
+            }
+            values = size == array.length ? bits : Arrays.copyOf(bits, size * 2);
+        }
+
+        @Override
+        public int size() {
+            return values.length / 2;
+        }
+
+        @Override
+        public boolean contains(Object id) {
+            if (!(id instanceof UUID))
+                return false;
+
+            // the same order as UUID.compareTo()
+            long msb = ((UUID) id).getMostSignificantBits();
+            long lsb = ((UUID) id).getLeastSignificantBits();
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midMsb = values[mid * 2];
+                long midLsb = values[mid * 2 + 1];
+                int cmp = midMsb != msb ? Long.compare(midMsb, msb) : Long.compare(midLsb, lsb);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(size());
+            for (int i = 0; i < values.length; i += 2) {
+                list.add(new UUID(values[i], values[i + 1]));
+            }
+            return list;
+        }
+    }
+
+    protected static class StringIds extends QueryResultIds {
+        private static final long serialVersionUID = 1541009327339498375L;
+
+        protected final String[] values;
+
+        protected StringIds(Collection<?> ids) {
+            Set<String> set = new TreeSet<>();
+            for (Object id : ids) {
+                set.add((String) id);
+            }
+            values = set.toArray(new String[0]);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(Object id) {
+            return id instanceof String && Arrays.binarySearch(values, id) >= 0;
+        }
+
+        @Override
+        public List<Object> toList() {
+            return Arrays.asList((Object[]) values);
+        }
+    }
+}
@@ -14,7 +14,6 @@
  * limitations under the License.
  *
  */
-
 package com.haulmont.cuba.core.app.queryresults;
 
 import com.haulmont.bali.db.QueryRunner;
@@ -24,6 +23,7 @@ import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.DataServiceQueryBuilder;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryHolder;
@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.sql.SQLException;
 import java.util.*;
@@ -41,6 +42,10 @@ import java.util.stream.Collectors;
 
 /**
  * Supports functionality that allows queries from previously selected results.
+ * <p>
+ * If {@link ServerConfig#getQueryResultsInMemory()} is true, results are kept in {@link QueryResultsStore} and
+ * passed to queries as a collection parameter. The {@code SYS_QUERY_RESULT} table is used only for results
+ * which are too large. The store is local to the middleware node, so this mode requires sticky sessions.
  */
 @Component(QueryResultsManagerAPI.NAME)
 public class QueryResultsManager implements QueryResultsManagerAPI {
@@ -65,8 +70,15 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
     @Inject
     protected Metadata metadata;
 
+    @Inject
+    protected QueryResultsStore queryResultsStore;
+
     private static final int BATCH_SIZE = 100;
 
+    protected ServerConfig getServerConfig() {
+        return configuration.getConfig(ServerConfig.class);
+    }
+
     @Override
     public void savePreviousQueryResults(LoadContext loadContext) {
         List<LoadContext.Query> prevQueries = loadContext.getPrevQueries();
@@ -82,9 +94,113 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
         int queryKey = loadContext.getQueryKey();
 
+        if (getServerConfig().getQueryResultsInMemory()) {
+            saveResultsInStore(loadContext, queryKey);
+            return;
+        }
+
         if (resultsAlreadySaved(queryKey, contextQuery))
             return;
 
+        List idList = loadIds(loadContext, contextQuery,
+                prevQueries.size() > 1 ? Restriction.PERSISTED_RESULTS : Restriction.NONE, null);
+
+        delete(queryKey);
+        insert(queryKey, idList);
+    }
+
+    /**
+     * Saves results to {@link QueryResultsStore}. If the store contains results of all previous queries except
+     * the last one, only the last query is executed and restricted by the saved results. Otherwise, all queries
+     * are executed again.
+     */
+    protected void saveResultsInStore(LoadContext loadContext, int queryKey) {
+        UUID sessionId = userSessionSource.getUserSession().getId();
+        List<LoadContext.Query> prevQueries = loadContext.getPrevQueries();
+        List<QueryHolder> queryHolders = prevQueries.stream()
+                .map(QueryHolder::new)
+                .collect(Collectors.toList());
+
+        SavedQueryResults saved = queryResultsStore.get(sessionId, queryKey);
+        if (saved != null && saved.getQueries().equals(queryHolders))
+            return;
+
+        boolean persisted = saved != null && saved.isPersisted();
+        int start = 0;
+        if (saved != null && saved.getQueries().equals(queryHolders.subList(0, queryHolders.size() - 1))) {
+            start = queryHolders.size() - 1;
+        } else {
+            saved = null;
+        }
+
+        for (int i = start; i < prevQueries.size(); i++) {
+            LoadContext.Query query = prevQueries.get(i);
+            List<QueryHolder> queries = queryHolders.subList(0, i + 1);
+
+            QueryResultIds previousIds = saved != null ? saved.getIds() : null;
+            boolean restrictInQuery = previousIds != null && previousIds.size() <= getServerConfig().getQueryResultsMaxInListSize();
+            List idList;
+            if (saved == null) {
+                idList = loadIds(loadContext, query, Restriction.NONE, null);
+            } else if (previousIds == null) {
+                // previous results are in SYS_QUERY_RESULT
+                idList = loadIds(loadContext, query, Restriction.PERSISTED_RESULTS, null);
+            } else if (previousIds.size() == 0) {
+                idList = Collections.emptyList();
+            } else if (restrictInQuery) {
+                idList = loadIds(loadContext, query, Restriction.PREVIOUS_IDS, previousIds.toList());
+            } else {
+                // too many previous results for a parameter, so they are restricted by SYS_QUERY_RESULT
+                deletePersisted(queryKey);
+                insert(queryKey, previousIds.toList());
+                persisted = true;
+                idList = loadIds(loadContext, query, Restriction.PERSISTED_RESULTS, null);
+            }
+
+            QueryResultIds ids = QueryResultIds.of(idList);
+            if (ids.size() > getServerConfig().getQueryResultsInMemoryMaxSize()) {
+                log.debug("Query results for {} / {} are too large to be kept in memory: {}", sessionId, queryKey, ids.size());
+                deletePersisted(queryKey);
+                insert(queryKey, ids.toList());
+                persisted = true;
+                saved = new SavedQueryResults(null, new ArrayList<>(queries), true);
+            } else {
+                saved = new SavedQueryResults(ids, new ArrayList<>(queries), false);
+            }
+        }
+        if (persisted && !saved.isPersisted()) {
+            deletePersisted(queryKey);
+        }
+        queryResultsStore.put(sessionId, queryKey, saved);
+    }
+
+    /**
+     * Defines how a query is restricted by results of the previous queries.
+     */
+    protected enum Restriction {
+        /**
+         * The query is not restricted.
+         */
+        NONE,
+        /**
+         * The query is restricted by the collection of previously selected identifiers.
+         */
+        PREVIOUS_IDS,
+        /**
+         * The query is restricted by results saved in the {@code SYS_QUERY_RESULT} table.
+         */
+        PERSISTED_RESULTS
+    }
+
+    /**
+     * Loads identifiers of entities selected by the query.
+     *
+     * @param restriction how the query is restricted by results of the previous queries
+     * @param previousIds previously selected identifiers if the restriction is {@link Restriction#PREVIOUS_IDS}
+     */
+    protected List loadIds(LoadContext loadContext, LoadContext.Query contextQuery, Restriction restriction,
+                           @Nullable Collection<?> previousIds) {
+        String entityName = loadContext.getMetaClass();
         List idList;
         Transaction tx = persistence.createTransaction();
         try {
@@ -98,8 +214,10 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
             DataServiceQueryBuilder queryBuilder = AppBeans.get(DataServiceQueryBuilder.NAME);
             queryBuilder.init(queryString, contextQuery.getParameters(), null, entityName);
-            if (prevQueries.size() > 1) {
+            if (restriction == Restriction.PERSISTED_RESULTS) {
                 queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), loadContext.getQueryKey());
+            } else if (restriction == Restriction.PREVIOUS_IDS) {
+                queryBuilder.restrictByPreviousResults(previousIds);
             }
             Query query = queryBuilder.getQuery(em);
 
@@ -114,9 +232,33 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         } finally {
             tx.end();
         }
+        return idList;
+    }
 
-        delete(queryKey);
-        insert(queryKey, idList);
+    @Override
+    public void restrictByPreviousResults(DataServiceQueryBuilder queryBuilder, int queryKey) {
+        UUID sessionId = userSessionSource.getUserSession().getId();
+        SavedQueryResults saved = null;
+        if (getServerConfig().getQueryResultsInMemory()) {
+            saved = queryResultsStore.get(sessionId, queryKey);
+            if (saved == null) {
+                log.warn("Results of previous queries for {} / {} are not found in memory of this node, " +
+                        "the query is restricted by SYS_QUERY_RESULT. Results in memory require sticky sessions",
+                        sessionId, queryKey);
+            }
+        }
+        if (saved != null && !saved.isPersisted()) {
+            QueryResultIds ids = saved.getIds();
+            //noinspection ConstantConditions
+            if (ids.size() <= getServerConfig().getQueryResultsMaxInListSize()) {
+                queryBuilder.restrictByPreviousResults(ids.toList());
+                return;
+            }
+            deletePersisted(queryKey);
+            insert(queryKey, ids.toList());
+            saved.setPersisted(true);
+        }
+        queryBuilder.restrictByPreviousResults(sessionId, queryKey);
     }
 
     private boolean resultsAlreadySaved(Integer queryKey, LoadContext.Query query) {
@@ -195,17 +337,22 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void delete(int queryKey) {
+        queryResultsStore.remove(userSessionSource.getUserSession().getId(), queryKey);
+        deletePersisted(queryKey);
+    }
+
+    protected void deletePersisted(int queryKey) {
         UUID userSessionId = userSessionSource.getUserSession().getId();
         long start = System.currentTimeMillis();
         String logMsg = "Delete query results for " + userSessionId + " / " + queryKey;
         log.debug(logMsg);
 
-        String sql = "delete from SYS_QUERY_RESULT where SESSION_ID = '"
-                + userSessionId + "' and QUERY_KEY = " + queryKey;
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        String sql = "delete from SYS_QUERY_RESULT where SESSION_ID = ? and QUERY_KEY = ?";
 
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
-            runner.update(sql);
+            runner.update(sql, new Object[]{converter.getSqlObject(userSessionId), queryKey});
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -214,6 +361,8 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void deleteForCurrentSession() {
+        queryResultsStore.removeForSession(userSessionSource.getUserSession().getId());
+
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
             runner.update("delete from SYS_QUERY_RESULT where SESSION_ID = '"
@@ -225,8 +374,17 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void deleteForInactiveSessions() {
-        if (!AppContext.isStarted() || !clusterManager.isMaster()
-                || !configuration.getConfig(GlobalConfig.class).getAllowQueryFromSelected())
+        if (!AppContext.isStarted())
+            return;
+
+        // results in memory are kept on each node
+        if (getServerConfig().getQueryResultsInMemory()) {
+            queryResultsStore.retainSessions(userSessions.getUserSessionsStream()
+                    .map(UserSession::getId)
+                    .collect(Collectors.toSet()));
+        }
+
+        if (!clusterManager.isMaster() || !configuration.getConfig(GlobalConfig.class).getAllowQueryFromSelected())
             return;
 
         log.debug("Delete query results for inactive user sessions");
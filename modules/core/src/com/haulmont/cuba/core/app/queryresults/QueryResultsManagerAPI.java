@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.core.app.queryresults;
 
+import com.haulmont.cuba.core.app.DataServiceQueryBuilder;
 import com.haulmont.cuba.core.global.LoadContext;
 
 import java.util.List;
@@ -32,6 +33,14 @@ public interface QueryResultsManagerAPI {
 
     void savePreviousQueryResults(LoadContext loadContext);
 
+    /**
+     * Restricts the query by the results saved by {@link #savePreviousQueryResults(LoadContext)}.
+     *
+     * @param queryBuilder query builder to restrict
+     * @param queryKey     query key of the sequential filter
+     */
+    void restrictByPreviousResults(DataServiceQueryBuilder queryBuilder, int queryKey);
+
     void insert(int queryKey, List idList);
 
     void delete(int queryKey);
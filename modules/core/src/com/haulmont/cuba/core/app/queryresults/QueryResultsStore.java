@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stores results of previous queries used by sequential filtering. The default implementation keeps results
+ * in memory of the current middleware block, it can be replaced by registering another bean with the {@link #NAME}
+ * in {@code spring.xml}.
+ */
+public interface QueryResultsStore {
+
+    String NAME = "cuba_QueryResultsStore";
+
+    /**
+     * @return saved results or null if there are no results for the session and query key
+     */
+    @Nullable
+    SavedQueryResults get(UUID sessionId, int queryKey);
+
+    void put(UUID sessionId, int queryKey, SavedQueryResults results);
+
+    void remove(UUID sessionId, int queryKey);
+
+    void removeForSession(UUID sessionId);
+
+    /**
+     * Removes results of all sessions except the given ones.
+     */
+    void retainSessions(Set<UUID> sessionIds);
+}
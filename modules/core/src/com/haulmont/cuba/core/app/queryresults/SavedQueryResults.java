@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import com.haulmont.cuba.core.sys.QueryHolder;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Results of previous queries of a sequential filter saved in {@link QueryResultsStore}.
+ */
+public class SavedQueryResults implements Serializable {
+
+    private static final long serialVersionUID = -3018463416366524005L;
+
+    protected final QueryResultIds ids;
+    protected final List<QueryHolder> queries;
+    protected volatile boolean persisted;
+
+    public SavedQueryResults(@Nullable QueryResultIds ids, List<QueryHolder> queries, boolean persisted) {
+        this.ids = ids;
+        this.queries = queries;
+        this.persisted = persisted;
+    }
+
+    /**
+     * @return identifiers selected by the queries, or null if they are kept only in the {@code SYS_QUERY_RESULT} table
+     */
+    @Nullable
+    public QueryResultIds getIds() {
+        return ids;
+    }
+
+    /**
+     * @return sequentially applied queries which produced the results
+     */
+    public List<QueryHolder> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return whether the identifiers are saved in the {@code SYS_QUERY_RESULT} table
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    public void setPersisted(boolean persisted) {
+        this.persisted = persisted;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.scheduling;
+
+import com.google.common.collect.ImmutableSet;
+import com.haulmont.cuba.core.PersistenceTools;
+import com.haulmont.cuba.core.entity.ScheduledTask;
+import com.haulmont.cuba.core.listener.AfterDeleteEntityListener;
+import com.haulmont.cuba.core.listener.AfterInsertEntityListener;
+import com.haulmont.cuba.core.listener.AfterUpdateEntityListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.inject.Inject;
+import java.sql.Connection;
+import java.util.Set;
+
+/**
+ * Notifies {@link SchedulingAPI} about changes of {@link ScheduledTask} instances after the transaction is committed.
+ */
+@Component("cuba_ScheduledTaskEntityListener")
+public class ScheduledTaskEntityListener implements AfterInsertEntityListener<ScheduledTask>,
+        AfterUpdateEntityListener<ScheduledTask>, AfterDeleteEntityListener<ScheduledTask> {
+
+    protected static final String RESOURCE_KEY = ScheduledTaskEntityListener.class.getName();
+
+    /**
+     * Attributes updated by each run of a singleton task. Their changes do not require reloading the tasks.
+     */
+    protected static final Set<String> RUN_ATTRIBUTES = ImmutableSet.of("lastStartTime", "lastStartServer");
+
+    @Inject
+    protected SchedulingAPI scheduling;
+
+    @Inject
+    protected PersistenceTools persistenceTools;
+
+    @Override
+    public void onAfterInsert(ScheduledTask entity, Connection connection) {
+        invalidateTasksOnCommit();
+    }
+
+    @Override
+    public void onAfterUpdate(ScheduledTask entity, Connection connection) {
+        Set<String> dirtyFields = persistenceTools.getDirtyFields(entity);
+        if (dirtyFields.isEmpty() || !RUN_ATTRIBUTES.containsAll(dirtyFields)) {
+            invalidateTasksOnCommit();
+        }
+    }
+
+    @Override
+    public void onAfterDelete(ScheduledTask entity, Connection connection) {
+        invalidateTasksOnCommit();
+    }
+
+    protected void invalidateTasksOnCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scheduling.invalidateTasks();
+            return;
+        }
+        // notify once per transaction
+        if (TransactionSynchronizationManager.hasResource(RESOURCE_KEY))
+            return;
+
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                scheduling.invalidateTasks();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+            }
+        });
+    }
+}
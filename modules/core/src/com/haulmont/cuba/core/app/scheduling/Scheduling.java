@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.core.app.scheduling;
 
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.app.ServerInfoAPI;
@@ -40,7 +41,9 @@ import org.springframework.scheduling.support.CronSequenceGenerator;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -88,6 +91,24 @@ public class Scheduling implements SchedulingAPI {
 
     protected volatile long schedulingStartTime;
 
+    protected Map<UUID, Long> nextCheckTimes = new ConcurrentHashMap<>();
+
+    protected Set<UUID> finishedTasks = ConcurrentHashMap.newKeySet();
+
+    protected volatile long nextCheckTime;
+
+    protected volatile boolean tasksChanged;
+
+    @PostConstruct
+    public void init() {
+        clusterManager.addListener(TasksChangedMsg.class, new ClusterListenerAdapter<TasksChangedMsg>() {
+            @Override
+            public void receive(TasksChangedMsg message) {
+                tasksChanged = true;
+            }
+        });
+    }
+
     @Override
     public void processScheduledTasks() {
         if (AppContext.isStarted()) {
@@ -100,6 +121,22 @@ public class Scheduling implements SchedulingAPI {
         if (onlyIfActive && !isActive())
             return;
 
+        boolean eventDriven = onlyIfActive && isEventDriven();
+        if (eventDriven) {
+            if (!tasksChanged && timeSource.currentTimeMillis() < nextCheckTime) {
+                log.trace("No tasks to check until {}", nextCheckTime);
+                return;
+            }
+            if (tasksChanged) {
+                tasksChanged = false;
+                nextCheckTimes.clear();
+            }
+        } else {
+            // changes are not sent through the cluster in this mode, so the next check times are recalculated
+            // if the event-driven mode is switched on later
+            tasksChanged = true;
+        }
+
         log.debug("Processing scheduled tasks");
         if (schedulingStartTime == 0)
             schedulingStartTime = timeSource.currentTimeMillis();
@@ -109,8 +146,12 @@ public class Scheduling implements SchedulingAPI {
             StopWatch sw = new Slf4JStopWatch("Scheduling.processTasks");
             Coordinator.Context context = coordinator.begin();
             try {
-                for (ScheduledTask task : context.getTasks()) {
-                    processTask(task);
+                if (eventDriven) {
+                    processDueTasks(context.getTasks());
+                } else {
+                    for (ScheduledTask task : context.getTasks()) {
+                        processTask(task);
+                    }
                 }
             } finally {
                 coordinator.end(context);
@@ -140,6 +181,17 @@ public class Scheduling implements SchedulingAPI {
     @Override
     public void setFinished(ScheduledTask task) {
         lastFinishCache.put(task, timeSource.currentTimeMillis());
+        finishedTasks.add(task.getId());
+        nextCheckTime = 0;
+    }
+
+    @Override
+    public void invalidateTasks() {
+        tasksChanged = true;
+        // other servers keep no next check times unless they are in the event-driven mode too
+        if (isEventDriven()) {
+            clusterManager.send(new TasksChangedMsg());
+        }
     }
 
     @Override
@@ -177,6 +229,117 @@ public class Scheduling implements SchedulingAPI {
         return configuration.getConfig(ServerConfig.class).getSchedulingInterval();
     }
 
+    protected long getSchedulingMaxIdleInterval() {
+        return configuration.getConfig(ServerConfig.class).getSchedulingMaxIdleInterval();
+    }
+
+    protected boolean isEventDriven() {
+        return configuration.getConfig(ServerConfig.class).getSchedulingEventDriven();
+    }
+
+    /**
+     * Processes only the tasks which next check time has come, and calculates new check times for them.
+     * Tasks finished since the previous invocation are always processed.
+     */
+    protected void processDueTasks(List<ScheduledTask> tasks) {
+        for (UUID taskId : finishedTasks) {
+            finishedTasks.remove(taskId);
+            nextCheckTimes.remove(taskId);
+        }
+
+        long now = timeSource.currentTimeMillis();
+        long minCheckTime = now + getSchedulingMaxIdleInterval();
+        Set<UUID> taskIds = new HashSet<>();
+        for (ScheduledTask task : tasks) {
+            taskIds.add(task.getId());
+            Long checkTime = nextCheckTimes.get(task.getId());
+            if (checkTime == null || checkTime <= now) {
+                processTask(task);
+                checkTime = calculateNextCheckTime(task, timeSource.currentTimeMillis());
+                nextCheckTimes.put(task.getId(), checkTime);
+            }
+            minCheckTime = Math.min(minCheckTime, checkTime);
+        }
+        nextCheckTimes.keySet().retainAll(taskIds);
+
+        nextCheckTime = minCheckTime;
+        // a task could finish while we were iterating
+        if (!finishedTasks.isEmpty()) {
+            nextCheckTime = 0;
+        }
+        log.trace("Next check of scheduled tasks at {}", nextCheckTime);
+    }
+
+    /**
+     * Calculates the time when the task must be checked again in the event-driven mode. The result can be earlier
+     * than the actual start of the task but never later, so {@link #processTask(ScheduledTask)} makes the final
+     * decision as usual.
+     */
+    protected long calculateNextCheckTime(ScheduledTask task, long now) {
+        long maxCheckTime = now + getSchedulingMaxIdleInterval();
+        try {
+            if (isRunning(task)) {
+                // will be checked when finished, see setFinished()
+                return maxCheckTime;
+            }
+
+            Integer serverPriority = getServerPriority(task, serverInfo.getServerId());
+            if (serverPriority == null) {
+                return maxCheckTime;
+            }
+            if (task.getStartDate() != null && task.getStartDate().getTime() > now) {
+                return Math.min(task.getStartDate().getTime(), maxCheckTime);
+            }
+
+            long period = task.getPeriod() != null ? task.getPeriod() * 1000 : 0;
+            long frame = task.getTimeFrame() != null ? task.getTimeFrame() * 1000 : period / 2;
+            if (frame == 0) {
+                frame = getSchedulingInterval();
+            }
+
+            boolean singleton = BooleanUtils.isTrue(task.getSingleton());
+            long lastStart = singleton ? task.getLastStart() : lastStartCache.getOrDefault(task, 0L);
+
+            long next;
+            if (task.getStartDate() != null || SchedulingType.CRON == task.getSchedulingType()) {
+                long currentStart;
+                if (SchedulingType.FIXED_DELAY == task.getSchedulingType()) {
+                    long lastFinish = singleton ? coordinator.getLastFinished(task) : lastFinishCache.getOrDefault(task, 0L);
+                    currentStart = calculateNextDelayDate(task, lastStart, lastFinish, now, frame, period);
+                    next = currentStart + period;
+                } else if (SchedulingType.CRON == task.getSchedulingType()) {
+                    currentStart = calculateNextCronDate(task, lastStart, now, frame);
+                    next = new CronSequenceGenerator(task.getCron(), getCurrentTimeZone()).next(new Date(now)).getTime();
+                } else {
+                    currentStart = calculateNextPeriodDate(task, lastStart, now, frame, period);
+                    next = currentStart + period;
+                }
+                if (needToStartInTimeFrame(now, frame, lastStart, currentStart)) {
+                    // has not been started in the current time frame yet
+                    next = now;
+                }
+            } else if (SchedulingType.FIXED_DELAY == task.getSchedulingType()) {
+                if (singleton) {
+                    next = coordinator.getLastFinished(task) + period;
+                } else {
+                    long lastFinish = lastFinishCache.getOrDefault(task, 0L);
+                    next = lastStart != 0 && lastStart >= lastFinish ? maxCheckTime : lastFinish + period;
+                }
+            } else {
+                next = lastStart + period;
+            }
+
+            if (next <= now) {
+                // due but not started, e.g. the previous execution on another server is not finished
+                next = now + getSchedulingInterval();
+            }
+            return Math.min(next, maxCheckTime);
+        } catch (Throwable throwable) {
+            log.error("Unable to calculate next check time of " + task, throwable);
+            return maxCheckTime;
+        }
+    }
+
     protected void processTask(ScheduledTask task) {
         if (isRunning(task)) {
             log.trace("{} is running", task);
@@ -418,4 +581,13 @@ public class Scheduling implements SchedulingAPI {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    public static class TasksChangedMsg implements Serializable {
+        private static final long serialVersionUID = -3512440312367459398L;
+
+        @Override
+        public String toString() {
+            return "TasksChangedMsg";
+        }
+    }
+}
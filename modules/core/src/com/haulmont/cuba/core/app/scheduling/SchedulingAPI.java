@@ -70,6 +70,13 @@ public interface SchedulingAPI {
      */
     void setFinished(ScheduledTask task);
 
+    /**
+     * Notify all servers of the cluster that scheduled tasks have been changed, so the calculated next check times
+     * must be discarded. Matters only if {@link com.haulmont.cuba.core.app.ServerConfig#getSchedulingEventDriven()}
+     * is true. This method should not be used in the application code.
+     */
+    void invalidateTasks();
+
     /**
      * @return a list of active task instances in detached state
      */
@@ -19,15 +19,16 @@ package com.haulmont.cuba.core.controllers;
 import com.haulmont.bali.util.URLEncodeUtils;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.app.FileStorageAPI;
+import com.haulmont.cuba.core.app.filestorage.FileStorage;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
 import com.haulmont.cuba.core.global.FileTypesHelper;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
+import com.haulmont.cuba.core.sys.servlet.FileDownloadRange;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.global.UserSession;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +36,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +44,10 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
 /**
@@ -54,6 +60,12 @@ public class FileDownloadController {
 
     private static final Logger log = LoggerFactory.getLogger(FileDownloadController.class);
 
+    // request attributes of Tomcat used to send files without copying them to the user space
+    protected static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    protected static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    protected static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    protected static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Inject
     private UserSessionsAPI userSessions;
 
@@ -85,28 +97,98 @@ public class FileDownloadController {
             response.setIntHeader("Expires", -1);
             response.setHeader("Content-Type", FileTypesHelper.DEFAULT_MIME_TYPE);
 
-            InputStream is = null;
-            ServletOutputStream os = null;
             try {
-                is = fd != null ? fileStorage.openStream(fd) : FileUtils.openInputStream(file);
-                os = response.getOutputStream();
-                IOUtils.copy(is, os);
-                os.flush();
+                File localFile = fd != null ? findLocalFile(fd) : file;
+                FileDownloadRange range;
+                if (fd != null) {
+                    Long size = localFile != null ? localFile.length() : fd.getSize();
+                    range = FileDownloadRange.prepare(fd, size, request, response);
+                } else {
+                    range = FileDownloadRange.prepare(null, file.lastModified(), file.length(), request, response);
+                }
+                if (range == null)
+                    return;
+
+                if (localFile != null) {
+                    writeLocalFile(localFile, range, request, response);
+                } else {
+                    writeStream(fd, range, response);
+                }
             } catch (FileStorageException e) {
                 log.error("Unable to download file", e);
                 response.sendError(e.getType().getHttpStatus());
             } catch (Exception ex) {
                 log.error("Unable to download file", ex);
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            } finally {
-                IOUtils.closeQuietly(is);
-                IOUtils.closeQuietly(os);
             }
         } finally {
             AppContext.setSecurityContext(null);
         }
     }
 
+    /**
+     * @return file of the local file storage, or null if the file storage is not local
+     */
+    @Nullable
+    protected File findLocalFile(FileDescriptor fd) {
+        if (fileStorage instanceof FileStorage) {
+            return ((FileStorage) fileStorage).findFile(fd);
+        }
+        return null;
+    }
+
+    protected void writeLocalFile(File file, FileDownloadRange range,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = range.getLength();
+        if (!range.isPartial()) {
+            response.setHeader("Content-Length", String.valueOf(length));
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR)) && length > 0) {
+            // the servlet container writes the file directly to the socket after the request is processed
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, range.getStart());
+            request.setAttribute(SENDFILE_END_ATTR, range.getStart() + length);
+            return;
+        }
+
+        ServletOutputStream os = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(os);
+            long position = range.getStart();
+            long end = position + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0)
+                    break;
+                position += transferred;
+            }
+            os.flush();
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
+    protected void writeStream(FileDescriptor fd, FileDownloadRange range, HttpServletResponse response)
+            throws IOException, FileStorageException {
+        InputStream is = null;
+        ServletOutputStream os = null;
+        try {
+            is = fileStorage.openStream(fd);
+            range.skipToStart(is);
+            os = response.getOutputStream();
+            if (range.isPartial()) {
+                IOUtils.copyLarge(is, os, 0, range.getLength());
+            } else {
+                IOUtils.copyLarge(is, os);
+            }
+            os.flush();
+        } finally {
+            IOUtils.closeQuietly(is);
+            IOUtils.closeQuietly(os);
+        }
+    }
+
     protected UserSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
         UUID sessionId;
         try {
@@ -17,6 +17,8 @@
 package com.haulmont.cuba.core.controllers;
 
 import com.google.common.base.Strings;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.app.ServiceStatisticsAccumulator;
 import com.haulmont.cuba.core.global.Events;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.HealthCheckEvent;
@@ -31,9 +33,10 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Provides health check URL for the middleware block.
+ * Provides health check and service statistics URLs for the middleware block.
  */
 @Controller
 public class HealthCheckController {
@@ -46,6 +49,12 @@ public class HealthCheckController {
     @Inject
     protected Events events;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected ServiceStatisticsAccumulator serviceStatisticsAccumulator;
+
     @RequestMapping(value = "/health", method = RequestMethod.GET)
     public void healthCheck(HttpServletRequest request, HttpServletResponse response) throws IOException {
         log.trace("Health check request {} from {}", request.getRequestURI(), request.getRemoteAddr());
@@ -62,4 +71,17 @@ public class HealthCheckController {
             response.getOutputStream().print("not ready");
         }
     }
+
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET)
+    public void metrics(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!serverConfig.getServiceStatisticsEndpointEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        log.trace("Metrics request {} from {}", request.getRequestURI(), request.getRemoteAddr());
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+
+        response.getOutputStream().write(serviceStatisticsAccumulator.printStatistics().getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.global.Messages;
 import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.core.global.ViewRepository;
 import com.haulmont.cuba.core.sys.AbstractViewRepository;
+import com.haulmont.cuba.core.sys.FetchGroupManager;
 import com.haulmont.cuba.security.app.EntityLogAPI;
 
 import org.springframework.stereotype.Component;
@@ -48,6 +49,9 @@ public class CachingFacade implements CachingFacadeMBean {
     @Inject
     protected DynamicAttributesManagerAPI dynamicAttributesManagerAPI;
 
+    @Inject
+    protected FetchGroupManager fetchGroupManager;
+
     @Override
     public int getMessagesCacheSize() {
         return messages.getCacheSize();
@@ -82,4 +86,14 @@ public class CachingFacade implements CachingFacadeMBean {
     public void clearViewRepositoryCache() {
         ((AbstractViewRepository) viewRepository).reset();
     }
-}
\ No newline at end of file
+
+    @Override
+    public String printFetchPlanCacheStatistics() {
+        return fetchGroupManager.printFetchPlanCacheStatistics();
+    }
+
+    @Override
+    public void clearFetchPlanCache() {
+        fetchGroupManager.clearFetchPlanCache();
+    }
+}
@@ -31,4 +31,8 @@ public interface CachingFacadeMBean {
     void clearViewRepositoryCache();
 
     void clearDynamicAttributesCache();
+
+    String printFetchPlanCacheStatistics();
+
+    void clearFetchPlanCache();
 }
\ No newline at end of file
@@ -118,6 +118,10 @@ public class FileStorage implements FileStorageMBean {
         Collection<File> filesInRootFolder = FileUtils.listFiles(storageFolder, null, false);
         //remove files of root storage folder (e.g. storage.log) from files collection
         systemFiles.removeAll(filesInRootFolder);
+        //remove shared content and hash files of the content-addressed storage
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage =
+                (com.haulmont.cuba.core.app.filestorage.FileStorage) fileStorageAPI;
+        systemFiles.removeIf(file -> fileStorage.isContentStorageFile(storageFolder, file));
 
         List<FileDescriptor> fileDescriptors;
         Transaction tx = persistence.createTransaction();
@@ -17,6 +17,7 @@
 package com.haulmont.cuba.core.jmx;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import com.haulmont.cuba.core.global.UuidProvider;
 import com.haulmont.cuba.core.sys.entitycache.QueryCache;
 import com.haulmont.cuba.core.sys.entitycache.QueryCacheManager;
@@ -45,6 +46,31 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
         return queryCache.size();
     }
 
+    @Override
+    public long getWeight() {
+        return queryCache.getWeight();
+    }
+
+    @Override
+    public double getHitRate() {
+        return queryCacheMgr.getStatistics().hitRate();
+    }
+
+    @Override
+    public long getHitCount() {
+        return queryCacheMgr.getStatistics().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return queryCacheMgr.getStatistics().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return queryCacheMgr.getStatistics().evictionCount();
+    }
+
     @Override
     public String evictAll() {
         queryCacheMgr.invalidateAll(true);
@@ -89,6 +115,28 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
         return builder.toString();
     }
 
+    @Override
+    public String printStatistics() {
+        CacheStats stats = queryCacheMgr.getStatistics();
+        StringBuilder builder = new StringBuilder();
+        builder.append("size: ").append(queryCache.size())
+                .append(", weight: ").append(queryCache.getWeight())
+                .append(", hits: ").append(stats.hitCount())
+                .append(", misses: ").append(stats.missCount())
+                .append(", hit rate: ").append(String.format("%.3f", stats.hitRate()))
+                .append(", evictions: ").append(stats.evictionCount())
+                .append("\n");
+        for (Map.Entry<String, QueryCacheManager.TypeStatistics> entry : queryCacheMgr.getTypeStatistics().entrySet()) {
+            QueryCacheManager.TypeStatistics typeStats = entry.getValue();
+            builder.append(entry.getKey())
+                    .append(": hits: ").append(typeStats.getHitCount())
+                    .append(", misses: ").append(typeStats.getMissCount())
+                    .append(", hit rate: ").append(String.format("%.3f", typeStats.getHitRate()))
+                    .append("\n");
+        }
+        return builder.toString();
+    }
+
     @Override
     public String printQueryResultsByQueryId(String queryId) {
         if (Strings.isNullOrEmpty(queryId)) {
@@ -21,12 +21,27 @@ import org.springframework.jmx.export.annotation.*;
 @ManagedResource(description = "Manages query cache")
 public interface QueryCacheSupportMBean {
 
-    @ManagedAttribute(description = "Maximum number of cached queries")
+    @ManagedAttribute(description = "Maximum number of cached queries, or maximum weight in bytes if it is set")
     long getMaxSize();
 
     @ManagedAttribute(description = "Current number of cached queries")
     long getSize();
 
+    @ManagedAttribute(description = "Estimated size of cached query results in bytes")
+    long getWeight();
+
+    @ManagedAttribute(description = "Ratio of cache requests which were hits")
+    double getHitRate();
+
+    @ManagedAttribute(description = "Number of cache requests which were hits")
+    long getHitCount();
+
+    @ManagedAttribute(description = "Number of cache requests which were misses")
+    long getMissCount();
+
+    @ManagedAttribute(description = "Number of evicted cached queries")
+    long getEvictionCount();
+
     @ManagedOperation(description = "Discard all query results in the cache")
     String evictAll();
 
@@ -45,6 +60,9 @@ public interface QueryCacheSupportMBean {
     @ManagedOperation(description = "Print all cached queries (query id, string and count of returned objects)")
     String printCacheContent();
 
+    @ManagedOperation(description = "Print cache statistics, including hits and misses by entity")
+    String printStatistics();
+
     @ManagedOperation(description = "Print cached results for query")
     @ManagedOperationParameters({
             @ManagedOperationParameter(name = "id", description = "query identifier")
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import com.haulmont.cuba.core.app.ServiceStatisticsAccumulator;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+@Component("cuba_ServiceStatisticsMBean")
+public class ServiceStatistics implements ServiceStatisticsMBean {
+
+    @Inject
+    protected ServiceStatisticsAccumulator accumulator;
+
+    @Override
+    public int getSamplingPercent() {
+        return accumulator.getSamplingPercent();
+    }
+
+    @Override
+    public void setSamplingPercent(int samplingPercent) {
+        accumulator.setSamplingPercent(samplingPercent);
+    }
+
+    @Override
+    public String printStatistics() {
+        return accumulator.printStatistics();
+    }
+
+    @Override
+    public void reset() {
+        accumulator.reset();
+    }
+}
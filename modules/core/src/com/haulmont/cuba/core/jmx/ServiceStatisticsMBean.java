@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * JMX interface for {@link com.haulmont.cuba.core.app.ServiceStatisticsAccumulator}.
+ */
+@ManagedResource(description = "Provides invocations, errors and latencies of middleware service methods")
+public interface ServiceStatisticsMBean {
+
+    int getSamplingPercent();
+
+    @ManagedOperation(description = "Set percentage of invocations whose latency is recorded, 0 disables statistics")
+    @ManagedOperationParameters({@ManagedOperationParameter(name = "samplingPercent", description = "From 0 to 100")})
+    void setSamplingPercent(int samplingPercent);
+
+    @ManagedOperation(description = "Print statistics of service methods, latencies are in milliseconds")
+    String printStatistics();
+
+    @ManagedOperation(description = "Discard collected statistics")
+    void reset();
+}
@@ -42,4 +42,9 @@ public class UniqueNumbers implements UniqueNumbersMBean {
     public long getNextNumber(String domain) {
         return uniqueNumbers.getNextNumber(domain);
     }
-}
\ No newline at end of file
+
+    @Override
+    public String printBlockStat() {
+        return uniqueNumbers.printBlockStat();
+    }
+}
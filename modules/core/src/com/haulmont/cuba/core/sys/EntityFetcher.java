@@ -72,7 +72,7 @@ public class EntityFetcher {
     public void fetch(Entity instance, String viewName) {
         if (viewName == null)
             return;
-        View view = viewRepository.getView(instance.getClass(), viewName);
+        View view = viewRepository.getSharedView(instance.getClass(), viewName);
         fetch(instance, view, new HashMap<>(), false);
     }
 
@@ -99,7 +99,7 @@ public class EntityFetcher {
     public void fetch(Entity instance, String viewName, boolean optimizeForDetached) {
         if (viewName == null)
             return;
-        View view = viewRepository.getView(instance.getClass(), viewName);
+        View view = viewRepository.getSharedView(instance.getClass(), viewName);
         fetch(instance, view, new HashMap<>(), optimizeForDetached);
     }
 
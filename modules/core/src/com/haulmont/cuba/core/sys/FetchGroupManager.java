@@ -17,11 +17,14 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.chile.core.model.Range;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.BaseUuidEntity;
 import com.haulmont.cuba.core.entity.EmbeddableEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -39,9 +42,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Component(FetchGroupManager.NAME)
@@ -60,6 +66,27 @@ public class FetchGroupManager {
     @Inject
     private ViewRepository viewRepository;
 
+    @Inject
+    private ServerConfig serverConfig;
+
+    private volatile Cache<FetchPlanKey, FetchPlan> fetchPlans;
+
+    private Cache<View, String> frozenViewKeys = CacheBuilder.newBuilder().weakKeys().build();
+
+    private volatile long viewsVersion;
+
+    private final LongAdder planBuildCount = new LongAdder();
+
+    private final LongAdder planBuildTime = new LongAdder();
+
+    private final LongAdder savedPlanBuildTime = new LongAdder();
+
+    @PostConstruct
+    protected void init() {
+        int cacheSize = serverConfig.getFetchPlanCacheSize();
+        fetchPlans = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build() : null;
+    }
+
     public void setView(JpaQuery query, String queryString, @Nullable View view, boolean singleResultExpected) {
         Preconditions.checkNotNullArgument(query, "query is null");
         if (view != null) {
@@ -96,6 +123,102 @@ public class FetchGroupManager {
 
         boolean useFetchGroup = attrGroup instanceof FetchGroup;
 
+        FetchPlan plan = getFetchPlan(queryString, view, useFetchGroup, singleResultExpected);
+
+        if (attrGroup instanceof FetchGroup)
+            ((FetchGroup) attrGroup).setShouldLoadAll(true);
+
+        if (log.isTraceEnabled())
+            log.trace((useFetchGroup ? "Fetch" : "Load") + " group for " + view + ":\n" + plan.attributes.stream().collect(Collectors.joining("\n")));
+        for (String attribute : plan.attributes) {
+            attrGroup.addAttribute(attribute);
+        }
+
+        if (plan.setAttributeGroup) {
+            query.setHint(useFetchGroup ? QueryHints.FETCH_GROUP : QueryHints.LOAD_GROUP, attrGroup);
+        }
+
+        if (log.isDebugEnabled()) {
+            String fetchModes = plan.fetchHints.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + (e.getValue().equals(QueryHints.LEFT_FETCH) ? "JOIN" : "BATCH"))
+                    .collect(Collectors.joining(", "));
+            log.debug("Fetch modes for " + view + ": " + (fetchModes.equals("") ? "<none>" : fetchModes));
+        }
+        for (Map.Entry<String, String> entry : plan.fetchHints.entrySet()) {
+            query.setHint(entry.getValue(), entry.getKey());
+        }
+
+        if (plan.hasBatches) {
+            query.setHint(QueryHints.BATCH_TYPE, "IN");
+        }
+    }
+
+    private FetchPlan getFetchPlan(String queryString, View view, boolean useFetchGroup, boolean singleResultExpected) {
+        Cache<FetchPlanKey, FetchPlan> fetchPlans = this.fetchPlans;
+        if (fetchPlans == null) {
+            return buildFetchPlan(queryString, view, useFetchGroup, singleResultExpected);
+        }
+
+        long viewsVersion = viewRepository instanceof AbstractViewRepository ?
+                ((AbstractViewRepository) viewRepository).getVersion() : 0;
+        if (viewsVersion != this.viewsVersion) {
+            // views are redeployed, so plans built with previous nested and related views are not valid anymore
+            this.viewsVersion = viewsVersion;
+            fetchPlans.invalidateAll();
+        }
+
+        FetchPlanKey key = new FetchPlanKey(getViewKey(view), queryString, useFetchGroup, singleResultExpected, viewsVersion);
+        FetchPlan plan = fetchPlans.getIfPresent(key);
+        if (plan == null) {
+            plan = buildFetchPlan(queryString, view, useFetchGroup, singleResultExpected);
+            fetchPlans.put(key, plan);
+        } else {
+            savedPlanBuildTime.add(plan.buildTime);
+        }
+        return plan;
+    }
+
+    private String getViewKey(View view) {
+        if (!view.isFrozen()) {
+            return createViewKey(view);
+        }
+        // shared views cannot change, so their keys are computed once
+        String key = frozenViewKeys.getIfPresent(view);
+        if (key == null) {
+            key = createViewKey(view);
+            frozenViewKeys.put(view, key);
+        }
+        return key;
+    }
+
+    private String createViewKey(View view) {
+        StringBuilder sb = new StringBuilder();
+        appendViewKey(sb, view);
+        return sb.toString();
+    }
+
+    private void appendViewKey(StringBuilder sb, View view) {
+        sb.append(view.getEntityClass().getName());
+        if (view.loadPartialEntities()) {
+            sb.append('*');
+        }
+        sb.append('{');
+        for (ViewProperty property : view.getProperties()) {
+            sb.append(property.getName());
+            if (property.getFetchMode() != FetchMode.AUTO) {
+                sb.append(':').append(property.getFetchMode());
+            }
+            if (property.getView() != null) {
+                appendViewKey(sb, property.getView());
+            }
+            sb.append(',');
+        }
+        sb.append('}');
+    }
+
+    private FetchPlan buildFetchPlan(String queryString, View view, boolean useFetchGroup, boolean singleResultExpected) {
+        long start = System.nanoTime();
+
         Set<FetchGroupField> fetchGroupFields = new LinkedHashSet<>();
         processView(view, null, fetchGroupFields, useFetchGroup);
 
@@ -105,8 +228,6 @@ public class FetchGroupManager {
         for (FetchGroupField field : fetchGroupFields) {
             fetchGroupAttributes.add(field.path());
         }
-        if (attrGroup instanceof FetchGroup)
-            ((FetchGroup) attrGroup).setShouldLoadAll(true);
 
         List<FetchGroupField> refFields = new ArrayList<>();
         for (FetchGroupField field : fetchGroupFields) {
@@ -258,29 +379,37 @@ public class FetchGroupManager {
             }
         }
 
-        if (log.isTraceEnabled())
-            log.trace((useFetchGroup ? "Fetch" : "Load") + " group for " + view + ":\n" + fetchGroupAttributes.stream().collect(Collectors.joining("\n")));
-        for (String attribute : fetchGroupAttributes) {
-            attrGroup.addAttribute(attribute);
-        }
+        long buildTime = System.nanoTime() - start;
+        planBuildCount.increment();
+        planBuildTime.add(buildTime);
 
-        if (!metadataTools.isCacheable(metaClass)) {
-            query.setHint(useFetchGroup ? QueryHints.FETCH_GROUP : QueryHints.LOAD_GROUP, attrGroup);
-        }
+        return new FetchPlan(fetchGroupAttributes, fetchHints, hasBatches, !metadataTools.isCacheable(metaClass), buildTime);
+    }
 
-        if (log.isDebugEnabled()) {
-            String fetchModes = fetchHints.entrySet().stream()
-                    .map(e -> e.getKey() + "=" + (e.getValue().equals(QueryHints.LEFT_FETCH) ? "JOIN" : "BATCH"))
-                    .collect(Collectors.joining(", "));
-            log.debug("Fetch modes for " + view + ": " + (fetchModes.equals("") ? "<none>" : fetchModes));
-        }
-        for (Map.Entry<String, String> entry : fetchHints.entrySet()) {
-            query.setHint(entry.getValue(), entry.getKey());
-        }
+    /**
+     * Discards all cached fetch plans and resets the statistics.
+     */
+    public void clearFetchPlanCache() {
+        init();
+        planBuildCount.reset();
+        planBuildTime.reset();
+        savedPlanBuildTime.reset();
+    }
 
-        if (hasBatches) {
-            query.setHint(QueryHints.BATCH_TYPE, "IN");
+    /**
+     * @return statistics of the fetch plan cache: number of cached plans, cache hits, number of built plans,
+     * average time of building a plan and the total build time of the plans taken from the cache
+     */
+    public String printFetchPlanCacheStatistics() {
+        Cache<FetchPlanKey, FetchPlan> fetchPlans = this.fetchPlans;
+        if (fetchPlans == null) {
+            return "Fetch plan cache is disabled";
         }
+        long builds = planBuildCount.sum();
+        long avgBuildTime = builds > 0 ? planBuildTime.sum() / builds : 0;
+        return String.format("Cached plans: %d, hits: %d, built plans: %d, average build time: %d us, saved time: %d ms",
+                fetchPlans.size(), fetchPlans.stats().hitCount(), builds,
+                TimeUnit.NANOSECONDS.toMicros(avgBuildTime), TimeUnit.NANOSECONDS.toMillis(savedPlanBuildTime.sum()));
     }
 
     private boolean isTransitiveSelfReference(FetchGroupField root, FetchGroupField current) {
@@ -382,7 +511,7 @@ public class FetchGroupManager {
                     FetchGroupField field = createFetchGroupField(entityClass, parentField, relatedProperty);
                     fetchGroupFields.add(field);
                     if (relatedMetaProp.getRange().isClass()) {
-                        View relatedView = viewRepository.getView(relatedMetaProp.getRange().asClass(), View.MINIMAL);
+                        View relatedView = viewRepository.getSharedView(relatedMetaProp.getRange().asClass(), View.MINIMAL);
                         processView(relatedView, field, fetchGroupFields, useFetchGroup);
                     }
                 }
@@ -467,4 +596,65 @@ public class FetchGroupManager {
             return path();
         }
     }
+
+    /**
+     * Fetch group attributes and fetch hints computed for a view and a query.
+     */
+    protected static class FetchPlan {
+        private final List<String> attributes;
+        private final Map<String, String> fetchHints;
+        private final boolean hasBatches;
+        private final boolean setAttributeGroup;
+        private final long buildTime;
+
+        public FetchPlan(Set<String> attributes, Map<String, String> fetchHints, boolean hasBatches,
+                         boolean setAttributeGroup, long buildTime) {
+            this.attributes = Collections.unmodifiableList(new ArrayList<>(attributes));
+            this.fetchHints = Collections.unmodifiableMap(new LinkedHashMap<>(fetchHints));
+            this.hasBatches = hasBatches;
+            this.setAttributeGroup = setAttributeGroup;
+            this.buildTime = buildTime;
+        }
+    }
+
+    protected static class FetchPlanKey {
+        private final String viewKey;
+        private final String queryString;
+        private final boolean useFetchGroup;
+        private final boolean singleResultExpected;
+        private final long viewsVersion;
+
+        public FetchPlanKey(String viewKey, String queryString, boolean useFetchGroup, boolean singleResultExpected,
+                            long viewsVersion) {
+            this.viewKey = viewKey;
+            this.queryString = queryString;
+            this.useFetchGroup = useFetchGroup;
+            this.singleResultExpected = singleResultExpected;
+            this.viewsVersion = viewsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            FetchPlanKey that = (FetchPlanKey) o;
+
+            return useFetchGroup == that.useFetchGroup
+                    && singleResultExpected == that.singleResultExpected
+                    && viewsVersion == that.viewsVersion
+                    && viewKey.equals(that.viewKey)
+                    && Objects.equals(queryString, that.queryString);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = viewKey.hashCode();
+            result = 31 * result + Objects.hashCode(queryString);
+            result = 31 * result + (useFetchGroup ? 1 : 0);
+            result = 31 * result + (singleResultExpected ? 1 : 0);
+            result = 31 * result + Long.hashCode(viewsVersion);
+            return result;
+        }
+    }
 }
\ No newline at end of file
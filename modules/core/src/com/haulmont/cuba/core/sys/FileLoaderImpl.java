@@ -20,10 +20,12 @@ import com.haulmont.cuba.core.app.FileStorageAPI;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileLoader;
 import com.haulmont.cuba.core.global.FileStorageException;
+import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.function.Supplier;
 
@@ -49,6 +51,22 @@ public class FileLoaderImpl implements FileLoader {
         return fileStorageAPI.openStream(fd);
     }
 
+    @Override
+    public InputStream openStream(FileDescriptor fd, long position) throws FileStorageException {
+        InputStream inputStream = fileStorageAPI.openStream(fd);
+        try {
+            // file streams change the position without reading the skipped bytes
+            long skipped = inputStream.skip(position);
+            if (skipped < position) {
+                IOUtils.skipFully(inputStream, position - Math.max(skipped, 0));
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fd.getName(), e);
+        }
+        return inputStream;
+    }
+
     @Override
     public void removeFile(FileDescriptor fd) throws FileStorageException {
         fileStorageAPI.removeFile(fd);
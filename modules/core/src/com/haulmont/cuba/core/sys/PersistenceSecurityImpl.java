@@ -38,9 +38,12 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.Serializable;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static java.lang.String.format;
 
@@ -48,6 +51,17 @@ import static java.lang.String.format;
 public class PersistenceSecurityImpl extends SecurityImpl implements PersistenceSecurity {
     private final Logger log = LoggerFactory.getLogger(PersistenceSecurityImpl.class);
 
+    protected static final String CONSTRAINT_ENTITY_PLACEHOLDER = "{E}";
+
+    protected static final Pattern CONSTRAINT_PATH_SEGMENT_PATTERN = Pattern.compile("\\s*\\??\\.\\s*(\\w+)(\\s*\\(\\s*\\))?");
+
+    protected static final Pattern GETTER_PATTERN = Pattern.compile("(get|is)([A-Z]\\w*)");
+
+    protected static final Pattern COLLECTION_SIZE_PATTERN =
+            Pattern.compile("\\s*\\??\\.\\s*(size\\s*\\(\\s*\\)|isEmpty\\s*\\(\\s*\\)|empty\\b)");
+
+    protected static final Pattern REFERENCE_COMPARISON_PATTERN = Pattern.compile("\\s*[=!]=");
+
     @Inject
     protected SecurityTokenManager securityTokenManager;
 
@@ -127,9 +141,10 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     @Override
     public boolean filterByConstraints(Collection<Entity> entities) {
         boolean filtered = false;
+        InMemoryConstraintsEvaluator evaluator = createInMemoryReadConstraintsEvaluator();
         for (Iterator<Entity> iterator = entities.iterator(); iterator.hasNext(); ) {
             Entity entity = iterator.next();
-            if (!isPermittedInMemory(entity)) {
+            if (!evaluator.isPermitted(entity)) {
                 //we ignore situations when the collection is immutable
                 iterator.remove();
                 filtered = true;
@@ -145,24 +160,26 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
 
     @Override
     public void applyConstraints(Collection<Entity> entities) {
-        Set<EntityId> handled = new LinkedHashSet<>();
+        Set<Entity> handled = Collections.newSetFromMap(new IdentityHashMap<>());
         entities.forEach(entity -> applyConstraints(entity, handled));
     }
 
     @Override
     public void applyConstraints(Entity entity) {
-        applyConstraints(entity, new HashSet<>());
+        applyConstraints(entity, Collections.newSetFromMap(new IdentityHashMap<>()));
     }
 
     @Override
     public void calculateFilteredData(Entity entity) {
-        calculateFilteredData(entity, new HashSet<>(), false);
+        calculateFilteredData(entity, Collections.newSetFromMap(new IdentityHashMap<>()),
+                createInMemoryReadConstraintsEvaluator(), false);
     }
 
     @Override
     public void calculateFilteredData(Collection<Entity> entities) {
-        Set<EntityId> handled = new LinkedHashSet<>();
-        entities.forEach(entity -> calculateFilteredData(entity, handled, false));
+        Set<Entity> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+        InMemoryConstraintsEvaluator evaluator = createInMemoryReadConstraintsEvaluator();
+        entities.forEach(entity -> calculateFilteredData(entity, handled, evaluator, false));
     }
 
     @Override
@@ -214,6 +231,21 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
 
     @Override
     public void checkSecurityToken(Entity entity, View view) {
+        checkSecurityToken(entity, view, new HashMap<>());
+    }
+
+    @Override
+    public void checkSecurityToken(Collection<Entity> entities, @Nullable View view) {
+        Map<MetaClass, Boolean> hasConstraints = new HashMap<>();
+        for (Entity entity : entities) {
+            checkSecurityToken(entity, view, hasConstraints);
+        }
+    }
+
+    /**
+     * @param hasConstraints cache of existing in-memory constraints by meta-class, shared by checks of many entities
+     */
+    protected void checkSecurityToken(Entity entity, @Nullable View view, Map<MetaClass, Boolean> hasConstraints) {
         if (BaseEntityInternalAccess.getSecurityToken(entity) == null) {
             MetaClass metaClass = metadata.getClassNN(entity.getClass());
             for (MetaProperty metaProperty : metaClass.getProperties()) {
@@ -223,9 +255,10 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
                     } else if (view != null && !view.containsProperty(metaProperty.getName())) {
                         continue;
                     }
-                    List<ConstraintData> existingConstraints = getConstraints(metaProperty.getRange().asClass(),
-                            constraint -> constraint.getCheckType().memory());
-                    if (CollectionUtils.isNotEmpty(existingConstraints)) {
+                    boolean existingConstraints = hasConstraints.computeIfAbsent(metaProperty.getRange().asClass(),
+                            propertyMetaClass -> CollectionUtils.isNotEmpty(getConstraints(propertyMetaClass,
+                                    constraint -> constraint.getCheckType().memory())));
+                    if (existingConstraints) {
                         throw new RowLevelSecurityException(format("Could not read security token from entity %s, " +
                                 "even though there are active constraints for the related entities.", entity),
                                 entity.getMetaClass().getName());
@@ -240,6 +273,129 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
         }
     }
 
+    @Override
+    public void restoreSecurityStateAndFilteredData(Collection<Entity> entities) {
+        securityTokenManager.readSecurityTokens(entities);
+        for (Entity entity : entities) {
+            restoreFilteredData(entity);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Entity findNotPermitted(Collection<Entity> entities, ConstraintOperationType operationType) {
+        InMemoryConstraintsEvaluator evaluator = createInMemoryConstraintsEvaluator(
+                constraint -> isInMemoryConstraintOfOperation(constraint, operationType));
+        for (Entity entity : entities) {
+            if (!evaluator.isPermitted(entity)) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public View createInMemoryConstraintsView(MetaClass metaClass) {
+        View view = new View(metaClass.getJavaClass(), false);
+        List<ConstraintData> constraints = getConstraints(metaClass, constraint ->
+                constraint.getCheckType().memory()
+                        && (constraint.getOperationType() == ConstraintOperationType.READ
+                        || constraint.getOperationType() == ConstraintOperationType.ALL));
+        for (ConstraintData constraint : constraints) {
+            String groovyScript = constraint.getGroovyScript();
+            if (StringUtils.isBlank(groovyScript)) {
+                continue;
+            }
+            int index = groovyScript.indexOf(CONSTRAINT_ENTITY_PLACEHOLDER);
+            while (index >= 0) {
+                if (!addConstraintPath(view, metaClass, groovyScript, index + CONSTRAINT_ENTITY_PLACEHOLDER.length())) {
+                    log.trace("Cannot find attributes used by constraint {} of {}", constraint.getId(), metaClass);
+                    return null;
+                }
+                index = groovyScript.indexOf(CONSTRAINT_ENTITY_PLACEHOLDER, index + 1);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Adds to the view attributes of the path starting at the given position of the constraint script,
+     * e.g. {@code .group.name} or {@code .getLogin()}.
+     * @return false if the script uses the entity itself, calls its methods or uses a reference or a collection
+     * in a way that may require attributes not known from the path
+     */
+    protected boolean addConstraintPath(View view, MetaClass metaClass, String groovyScript, int start) {
+        Matcher matcher = CONSTRAINT_PATH_SEGMENT_PATTERN.matcher(groovyScript);
+        matcher.region(start, groovyScript.length());
+
+        View currentView = view;
+        MetaClass currentMetaClass = metaClass;
+        while (matcher.lookingAt()) {
+            String name = matcher.group(1);
+            MetaProperty property = currentMetaClass.getProperty(name);
+            if (property == null && matcher.group(2) != null) {
+                Matcher getterMatcher = GETTER_PATTERN.matcher(name);
+                if (getterMatcher.matches()) {
+                    property = currentMetaClass.getProperty(StringUtils.uncapitalize(getterMatcher.group(2)));
+                }
+            }
+            if (property == null) {
+                // a method of the entity or of a referenced entity
+                return false;
+            }
+
+            if (!metadataTools.isPersistent(property)) {
+                List<String> relatedProperties = metadataTools.getRelatedProperties(property);
+                if (relatedProperties.isEmpty()) {
+                    return false;
+                }
+                for (String relatedProperty : relatedProperties) {
+                    addConstraintProperty(currentView, currentMetaClass.getPropertyNN(relatedProperty));
+                }
+                return true;
+            }
+
+            View propertyView = addConstraintProperty(currentView, property);
+            if (propertyView == null) {
+                // methods of a datatype value do not require other attributes
+                return true;
+            }
+            matcher.region(matcher.end(), groovyScript.length());
+            if (property.getRange().getCardinality().isMany()) {
+                // only the size of a collection doesn't require attributes of its elements
+                return lookingAt(COLLECTION_SIZE_PATTERN, groovyScript, matcher.regionStart());
+            }
+            currentView = propertyView;
+            currentMetaClass = property.getRange().asClass();
+        }
+        // the reference can be used as is only in a comparison, otherwise it may be assigned to a variable
+        // and its attributes are not known
+        return currentView != view && lookingAt(REFERENCE_COMPARISON_PATTERN, groovyScript, matcher.regionStart());
+    }
+
+    protected boolean lookingAt(Pattern pattern, String groovyScript, int start) {
+        Matcher matcher = pattern.matcher(groovyScript);
+        matcher.region(start, groovyScript.length());
+        return matcher.lookingAt();
+    }
+
+    @Nullable
+    protected View addConstraintProperty(View view, MetaProperty property) {
+        if (!property.getRange().isClass()) {
+            view.addProperty(property.getName());
+            return null;
+        }
+        ViewProperty viewProperty = view.getProperty(property.getName());
+        if (viewProperty != null && viewProperty.getView() != null) {
+            return viewProperty.getView();
+        }
+        //noinspection unchecked
+        View propertyView = new View(property.getRange().asClass().getJavaClass(), false);
+        view.addProperty(property.getName(), propertyView);
+        return propertyView;
+    }
+
     protected void processConstraint(QueryTransformer transformer, ConstraintData constraint, String entityName) {
         String join = constraint.getJoin();
         String where = constraint.getWhereClause();
@@ -267,13 +423,11 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     }
 
     @SuppressWarnings("unchecked")
-    protected void applyConstraints(Entity entity, Set<EntityId> handled) {
-        MetaClass metaClass = entity.getMetaClass();
-        EntityId entityId = new EntityId(referenceToEntitySupport.getReferenceId(entity), metaClass.getName());
-        if (handled.contains(entityId)) {
+    protected void applyConstraints(Entity entity, Set<Entity> handled) {
+        if (!handled.add(entity)) {
             return;
         }
-        handled.add(entityId);
+        MetaClass metaClass = entity.getMetaClass();
         if (entity instanceof BaseGenericIdEntity) {
             BaseGenericIdEntity baseGenericIdEntity = (BaseGenericIdEntity) entity;
             Multimap<String, Object> filteredData = BaseEntityInternalAccess.getFilteredData(baseGenericIdEntity);
@@ -305,16 +459,15 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     }
 
     @SuppressWarnings("unchecked")
-    protected boolean calculateFilteredData(Entity entity, Set<EntityId> handled, boolean checkPermitted) {
-        MetaClass metaClass = entity.getMetaClass();
-        if (!isPermittedInMemory(entity) && checkPermitted) {
+    protected boolean calculateFilteredData(Entity entity, Set<Entity> handled,
+                                            InMemoryConstraintsEvaluator evaluator, boolean checkPermitted) {
+        if (checkPermitted && !evaluator.isPermitted(entity)) {
             return true;
         }
-        EntityId entityId = new EntityId(referenceToEntitySupport.getReferenceId(entity), metaClass.getName());
-        if (handled.contains(entityId)) {
+        if (!handled.add(entity)) {
             return false;
         }
-        handled.add(entityId);
+        MetaClass metaClass = entity.getMetaClass();
         if (entity instanceof BaseGenericIdEntity) {
             BaseGenericIdEntity baseGenericIdEntity = (BaseGenericIdEntity) entity;
             for (MetaProperty property : metaClass.getProperties()) {
@@ -323,7 +476,7 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
                     if (value instanceof Collection) {
                         Set filtered = new LinkedHashSet();
                         for (Entity item : (Collection<Entity>) value) {
-                            if (calculateFilteredData(item, handled, true)) {
+                            if (calculateFilteredData(item, handled, evaluator, true)) {
                                 filtered.add(referenceToEntitySupport.getReferenceId(item));
                             }
                         }
@@ -332,7 +485,7 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
                         }
                     } else if (value instanceof Entity) {
                         Entity valueEntity = (Entity) value;
-                        if (calculateFilteredData(valueEntity, handled, true)) {
+                        if (calculateFilteredData(valueEntity, handled, evaluator, true)) {
                             securityTokenManager.addFiltered(baseGenericIdEntity, property.getName(),
                                     referenceToEntitySupport.getReferenceId(valueEntity));
                         }
@@ -345,37 +498,16 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     }
 
     protected boolean isPermittedInMemory(Entity entity) {
-        return isPermitted(entity, constraint ->
-                constraint.getCheckType().memory()
-                        && (constraint.getOperationType() == ConstraintOperationType.READ
-                        || constraint.getOperationType() == ConstraintOperationType.ALL));
+        return isPermitted(entity, this::isInMemoryReadConstraint);
     }
 
-    protected static class EntityId {
-        Object id;
-        String metaClassName;
-
-        public EntityId(Object id, String metaClassName) {
-            this.id = id;
-            this.metaClassName = metaClassName;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            EntityId entityId = (EntityId) o;
-
-            if (!id.equals(entityId.id)) return false;
-            return metaClassName.equals(entityId.metaClassName);
-        }
+    protected InMemoryConstraintsEvaluator createInMemoryReadConstraintsEvaluator() {
+        return createInMemoryConstraintsEvaluator(this::isInMemoryReadConstraint);
+    }
 
-        @Override
-        public int hashCode() {
-            int result = id.hashCode();
-            result = 31 * result + metaClassName.hashCode();
-            return result;
-        }
+    protected boolean isInMemoryReadConstraint(ConstraintData constraint) {
+        return constraint.getCheckType().memory()
+                && (constraint.getOperationType() == ConstraintOperationType.READ
+                || constraint.getOperationType() == ConstraintOperationType.ALL);
     }
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import javax.inject.Inject;
@@ -100,13 +101,34 @@ public class SecurityTokenManager {
      * Decrypt security token and read filtered data
      */
     public void readSecurityToken(Entity entity) {
+        readSecurityToken(entity, null);
+    }
+
+    /**
+     * Decrypt security tokens and read filtered data of many entities using a single cipher
+     */
+    public void readSecurityTokens(Collection<? extends Entity> entities) {
+        Cipher cipher = null;
+        for (Entity entity : entities) {
+            if (getSecurityToken(entity) != null) {
+                if (cipher == null) {
+                    cipher = getCipher(Cipher.DECRYPT_MODE);
+                }
+                readSecurityToken(entity, cipher);
+            }
+        }
+    }
+
+    protected void readSecurityToken(Entity entity, @Nullable Cipher cipher) {
         SecurityState securityState = getSecurityState(entity);
         if (getSecurityToken(entity) == null) {
             return;
         }
         Multimap<String, Object> filteredData = ArrayListMultimap.create();
         BaseEntityInternalAccess.setFilteredData(securityState, filteredData);
-        Cipher cipher = getCipher(Cipher.DECRYPT_MODE);
+        if (cipher == null) {
+            cipher = getCipher(Cipher.DECRYPT_MODE);
+        }
         try {
             byte[] decrypted = cipher.doFinal(getSecurityToken(securityState));
             String json = new String(decrypted, StandardCharsets.UTF_8);
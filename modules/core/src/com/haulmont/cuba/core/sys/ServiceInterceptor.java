@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.sys;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.app.MiddlewareStatisticsAccumulator;
 import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.app.ServiceStatisticsAccumulator;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.global.validation.MethodParametersValidationException;
 import com.haulmont.cuba.core.global.validation.MethodResultValidationException;
@@ -59,6 +60,8 @@ public class ServiceInterceptor {
 
     private MiddlewareStatisticsAccumulator statisticsAccumulator;
 
+    private ServiceStatisticsAccumulator serviceStatisticsAccumulator;
+
     boolean logInternalServiceInvocation;
 
     public void setUserSessions(UserSessionsAPI userSessions) {
@@ -77,6 +80,10 @@ public class ServiceInterceptor {
         this.statisticsAccumulator = statisticsAccumulator;
     }
 
+    public void setServiceStatisticsAccumulator(ServiceStatisticsAccumulator serviceStatisticsAccumulator) {
+        this.serviceStatisticsAccumulator = serviceStatisticsAccumulator;
+    }
+
     public void setConfiguration(Configuration configuration) {
         logInternalServiceInvocation = configuration.getConfig(ServerConfig.class).getLogInternalServiceInvocation();
     }
@@ -100,6 +107,8 @@ public class ServiceInterceptor {
                 return res;
             } else {
                 statisticsAccumulator.incMiddlewareRequestsCount();
+                long startTime = serviceStatisticsAccumulator.startInvocation();
+                boolean succeeded = false;
                 try {
                     // Using UserSessionsAPI directly to make sure the session's "last used" timestamp is propagated to the cluster
                     UserSession userSession = userSessions.getAndRefresh(securityContext.getSessionId(), true);
@@ -122,11 +131,14 @@ public class ServiceInterceptor {
                         log.warn("Open transaction left in {}", ctx.getSignature().toShortString());
                     }
 
+                    succeeded = true;
                     return res;
                 } catch (Throwable e) {
                     logException(e, ctx);
                     // Propagate the special exception to avoid serialization errors on remote clients
                     throw new RemoteException(e);
+                } finally {
+                    serviceStatisticsAccumulator.endInvocation(ctx.getSignature(), startTime, !succeeded);
                 }
             }
         } finally {
@@ -16,6 +16,7 @@
 
 package com.haulmont.cuba.core.sys.entitycache;
 
+import com.google.common.cache.CacheStats;
 
 import java.util.Map;
 import java.util.Set;
@@ -74,12 +75,28 @@ public interface QueryCache {
     long size();
 
     /**
-     * Returns the maximum number of entries the cache may contain.
+     * Returns the maximum number of entries the cache may contain, or the maximum estimated size of cached results
+     * in bytes if the cache is bounded by {@link #getWeight()}.
      * As the cache size grows close to the maximum, the cache
      * evicts entries that are less likely to be used again.
      */
     long getMaxSize();
 
+    /**
+     * Returns the estimated size in bytes of all cached query results or -1 if the cache doesn't estimate it.
+     */
+    default long getWeight() {
+        return -1;
+    }
+
+    /**
+     * Returns cumulative statistics of this cache. Statistics are collected only if
+     * {@link QueryCacheConfig#getQueryCacheRecordStats()} is enabled, otherwise all counters are zero.
+     */
+    default CacheStats getStats() {
+        return new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
     /**
      * Returns a view of the entries stored in this cache as a map. Modifications made to
      * the map doesn't affect the cache.
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
 import com.haulmont.cuba.core.config.defaults.DefaultInt;
+import com.haulmont.cuba.core.config.defaults.DefaultLong;
 
 
 @Source(type = SourceType.APP)
@@ -34,4 +35,35 @@ public interface QueryCacheConfig extends Config {
     @Property("cuba.queryCache.maxSize")
     @DefaultInt(100)
     int getQueryCacheMaxSize();
+
+    /**
+     * @return maximum estimated size of cached query results in bytes. If greater than zero, the cache is bounded
+     * by the size of results instead of the number of entries ({@link #getQueryCacheMaxSize()} is ignored).
+     */
+    @Property("cuba.queryCache.maxWeight")
+    @DefaultLong(0)
+    long getQueryCacheMaxWeight();
+
+    /**
+     * @return time in seconds after which a cached query is discarded since it was put into the cache.
+     * Zero means no expiration.
+     */
+    @Property("cuba.queryCache.expireAfterWriteSec")
+    @DefaultInt(0)
+    int getQueryCacheExpireAfterWriteSec();
+
+    /**
+     * @return time in seconds after which a cached query is discarded since it was last read.
+     * Zero means no expiration.
+     */
+    @Property("cuba.queryCache.expireAfterAccessSec")
+    @DefaultInt(0)
+    int getQueryCacheExpireAfterAccessSec();
+
+    /**
+     * @return whether the cache collects hit/miss statistics
+     */
+    @Property("cuba.queryCache.recordStats")
+    @DefaultBoolean(false)
+    boolean getQueryCacheRecordStats();
 }
@@ -17,6 +17,7 @@
 package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Sets;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetadataObject;
@@ -37,6 +38,9 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.TypedQuery;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Component(QueryCacheManager.NAME)
@@ -55,6 +59,8 @@ public class QueryCacheManager {
     @Inject
     protected Metadata metadata;
 
+    protected ConcurrentMap<String, TypeStatistics> typeStatistics = new ConcurrentHashMap<>();
+
     protected static final Logger log = LoggerFactory.getLogger(QueryCacheManager.class);
 
     @PostConstruct
@@ -91,6 +97,7 @@ public class QueryCacheManager {
         if (queryResult != null) {
             EntityManager em = persistence.getEntityManager();
             resultList = new ArrayList<>(queryResult.getResult().size());
+            recordHit(queryResult.getType());
             MetaClass metaClass = metadata.getClassNN(queryResult.getType());
             if (!metadata.getTools().isCacheable(metaClass)) {
                 log.warn("Using cacheable query without entity cache for {}", queryResult.getType());
@@ -113,6 +120,7 @@ public class QueryCacheManager {
         log.debug("Looking for query in cache: {}", queryKey.printDescription());
         QueryResult queryResult = queryCache.get(queryKey);
         if (queryResult != null) {
+            recordHit(queryResult.getType());
             MetaClass metaClass = metadata.getClassNN(queryResult.getType());
             if (!metadata.getTools().isCacheable(metaClass)) {
                 log.warn("Using cacheable query without entity cache for {}", queryResult.getType());
@@ -150,6 +158,7 @@ public class QueryCacheManager {
         } else {
             queryResult = new QueryResult(Collections.emptyList(), type, getDescendants(relatedTypes));
         }
+        recordMiss(type);
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
     }
@@ -169,6 +178,7 @@ public class QueryCacheManager {
         } else {
             queryResult = new QueryResult(Collections.emptyList(), type, relatedTypes, exception);
         }
+        recordMiss(type);
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
     }
@@ -229,6 +239,35 @@ public class QueryCacheManager {
         }
     }
 
+    /**
+     * Returns cumulative statistics of the query cache.
+     * Collected only if {@link QueryCacheConfig#getQueryCacheRecordStats()} is enabled.
+     */
+    public CacheStats getStatistics() {
+        return queryCache.getStats();
+    }
+
+    /**
+     * Returns query cache hits and misses by result entity type (metaClass name).
+     * A miss is counted when query results are loaded from the database and put into the cache.
+     * Collected only if {@link QueryCacheConfig#getQueryCacheRecordStats()} is enabled.
+     */
+    public Map<String, TypeStatistics> getTypeStatistics() {
+        return new TreeMap<>(typeStatistics);
+    }
+
+    protected void recordHit(String type) {
+        if (type != null && queryCacheConfig.getQueryCacheRecordStats()) {
+            typeStatistics.computeIfAbsent(type, t -> new TypeStatistics()).hitCount.increment();
+        }
+    }
+
+    protected void recordMiss(String type) {
+        if (type != null && queryCacheConfig.getQueryCacheRecordStats()) {
+            typeStatistics.computeIfAbsent(type, t -> new TypeStatistics()).missCount.increment();
+        }
+    }
+
     protected Set<String> getDescendants(Set<String> relatedTypes) {
         if (relatedTypes == null) return null;
         Set<String> newRelatedTypes = new HashSet<>();
@@ -245,6 +284,28 @@ public class QueryCacheManager {
         return newRelatedTypes;
     }
 
+    /**
+     * Query cache hit and miss counters for an entity type.
+     */
+    public static class TypeStatistics {
+        protected final LongAdder hitCount = new LongAdder();
+        protected final LongAdder missCount = new LongAdder();
+
+        public long getHitCount() {
+            return hitCount.sum();
+        }
+
+        public long getMissCount() {
+            return missCount.sum();
+        }
+
+        public double getHitRate() {
+            long hits = getHitCount();
+            long requests = hits + getMissCount();
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+    }
+
     protected static class InvalidateQueryCacheMsg implements Serializable {
         private static final long serialVersionUID = -9099037380378341477L;
 
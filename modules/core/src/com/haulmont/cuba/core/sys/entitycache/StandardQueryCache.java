@@ -18,28 +18,52 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import java.util.*;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Standard implementation of {@link QueryCache} based on Guava cache.
+ * <p>
+ * Keeps two secondary indexes: entity type name to query keys and query identifier to query key. Both indexes
+ * are maintained by the cache removal listener, so evicted and invalidated queries do not stay referenced.
+ * <p>
+ * The cache is bounded either by the number of entries or by the estimated size of query results,
+ * see {@link QueryCacheConfig}.
+ */
 @Component(QueryCache.NAME)
 public class StandardQueryCache implements QueryCache {
 
     protected Cache<QueryKey, QueryResult> data;
-    protected ConcurrentMap<String, CopyOnWriteArrayList<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, Set<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<UUID, QueryKey> idIndex = new ConcurrentHashMap<>();
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected AtomicLong weight = new AtomicLong();
+
+    // rough estimations of heap size of cached objects, for 64-bit JVM with compressed references
+    protected static final int ENTRY_OVERHEAD = 128;
+    protected static final int REFERENCE_SIZE = 4;
+    protected static final int UUID_SIZE = 32;
+    protected static final int NUMBER_SIZE = 16;
+    protected static final int STRING_OVERHEAD = 40;
 
     @Inject
     protected QueryCacheConfig queryCacheConfig;
@@ -48,7 +72,26 @@ public class StandardQueryCache implements QueryCache {
 
     @PostConstruct
     protected void init() {
-        data = CacheBuilder.newBuilder().maximumSize(queryCacheConfig.getQueryCacheMaxSize()).build();
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+
+        long maxWeight = queryCacheConfig.getQueryCacheMaxWeight();
+        if (maxWeight > 0) {
+            builder.maximumWeight(maxWeight)
+                    .weigher((QueryKey key, QueryResult value) -> weigh(key, value));
+        } else {
+            builder.maximumSize(queryCacheConfig.getQueryCacheMaxSize());
+        }
+        if (queryCacheConfig.getQueryCacheExpireAfterWriteSec() > 0) {
+            builder.expireAfterWrite(queryCacheConfig.getQueryCacheExpireAfterWriteSec(), TimeUnit.SECONDS);
+        }
+        if (queryCacheConfig.getQueryCacheExpireAfterAccessSec() > 0) {
+            builder.expireAfterAccess(queryCacheConfig.getQueryCacheExpireAfterAccessSec(), TimeUnit.SECONDS);
+        }
+        if (queryCacheConfig.getQueryCacheRecordStats()) {
+            builder.recordStats();
+        }
+
+        data = builder.removalListener(this::onRemoval).build();
     }
 
     @Override
@@ -61,16 +104,29 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            data.put(queryKey, queryResult);
-
-            for (String type : queryResult.getRelatedTypes()) {
-                CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(type);
-                if (keys == null) {
-                    typeIndex.putIfAbsent(type, new CopyOnWriteArrayList<>());
-                    keys = typeIndex.get(type);
+            ConcurrentMap<QueryKey, QueryResult> map = data.asMap();
+            UUID queryId = queryKey.getId();
+            int entryWeight = weigh(queryKey, queryResult);
+            // the weight is added before insertion, so the removal listener never subtracts it first,
+            // even if the entry is evicted or replaced right away
+            weight.addAndGet(entryWeight);
+            for (;;) {
+                // the id is indexed before insertion so that the removal listener never misses it
+                if (queryId != null) {
+                    idIndex.put(queryId, queryKey);
+                }
+                if (map.putIfAbsent(queryKey, queryResult) == null) {
+                    break;
+                }
+                // the cache keeps the instance of the first inserted key, so only its id stays indexed
+                if (queryId != null) {
+                    idIndex.remove(queryId, queryKey);
+                }
+                if (map.replace(queryKey, queryResult) != null) {
+                    break;
                 }
-                keys.add(queryKey);
             }
+            addToTypeIndex(queryKey, queryResult);
         } finally {
             readLock.unlock();
         }
@@ -78,13 +134,7 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public QueryKey findQueryKeyById(UUID queryId) {
-        Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-        for (QueryKey key : keys) {
-            if (Objects.equals(queryId, key.getId())) {
-                return key;
-            }
-        }
-        return null;
+        return queryId != null ? idIndex.get(queryId) : null;
     }
 
     @Override
@@ -104,10 +154,7 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-            if (keys == null) return;
-            log.debug("Invalidate cache for type {}", typeName);
-            Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
+            invalidateType(typeName);
         } finally {
             readLock.unlock();
         }
@@ -118,13 +165,7 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            typeNames.forEach(typeName -> {
-                        CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-                        if (keys == null) return;
-                        log.debug("Invalidate cache for type {}", typeName);
-                        Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-                    }
-            );
+            typeNames.forEach(this::invalidateType);
         } finally {
             readLock.unlock();
         }
@@ -135,18 +176,15 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-            for (QueryKey key : keys) {
-                if (Objects.equals(queryId, key.getId())) {
-                    log.debug("Invalidate query by identifier {}", queryId);
-                    data.invalidate(key);
-                    return key;
-                }
+            QueryKey key = findQueryKeyById(queryId);
+            if (key != null) {
+                log.debug("Invalidate query by identifier {}", queryId);
+                data.invalidate(key);
             }
+            return key;
         } finally {
             readLock.unlock();
         }
-        return null;
     }
 
     @Override
@@ -157,6 +195,7 @@ public class StandardQueryCache implements QueryCache {
             log.debug("Invalidate all cache");
             data.invalidateAll();
             typeIndex.clear();
+            idIndex.clear();
         } finally {
             writeLock.unlock();
         }
@@ -169,11 +208,99 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public long getMaxSize() {
-        return queryCacheConfig.getQueryCacheMaxSize();
+        long maxWeight = queryCacheConfig.getQueryCacheMaxWeight();
+        return maxWeight > 0 ? maxWeight : queryCacheConfig.getQueryCacheMaxSize();
+    }
+
+    @Override
+    public long getWeight() {
+        return weight.get();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return data.stats();
     }
 
     @Override
     public Map<QueryKey, QueryResult> asMap() {
         return Maps.newHashMap(data.asMap());
     }
+
+    protected void invalidateType(String typeName) {
+        Set<QueryKey> keys = typeIndex.get(typeName);
+        if (keys == null) return;
+        log.debug("Invalidate cache for type {}", typeName);
+        // the set is concurrent, the removal listener prunes it while iterating
+        for (QueryKey key : keys) {
+            data.invalidate(key);
+        }
+    }
+
+    protected void addToTypeIndex(QueryKey queryKey, QueryResult queryResult) {
+        if (queryResult.getRelatedTypes() == null) return;
+        for (String type : queryResult.getRelatedTypes()) {
+            typeIndex.compute(type, (t, keys) -> {
+                if (keys == null) {
+                    keys = ConcurrentHashMap.newKeySet();
+                }
+                keys.add(queryKey);
+                return keys;
+            });
+        }
+    }
+
+    /**
+     * Estimates the heap size of a cache entry in bytes. Used as the entry weight if the cache is bounded by
+     * {@link QueryCacheConfig#getQueryCacheMaxWeight()}.
+     */
+    protected int weigh(QueryKey queryKey, QueryResult queryResult) {
+        long size = ENTRY_OVERHEAD + STRING_OVERHEAD + 2L * queryKey.queryString.length();
+        List result = queryResult.getResult();
+        if (!result.isEmpty()) {
+            // result lists are homogeneous, so the first id is representative
+            size += (long) result.size() * (REFERENCE_SIZE + estimateIdSize(result.get(0)));
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    protected int estimateIdSize(Object id) {
+        if (id instanceof UUID) {
+            return UUID_SIZE;
+        } else if (id instanceof Number) {
+            return NUMBER_SIZE;
+        } else if (id instanceof String) {
+            return STRING_OVERHEAD + 2 * ((String) id).length();
+        } else {
+            // composite keys, assume a few fields
+            return ENTRY_OVERHEAD;
+        }
+    }
+
+    protected void onRemoval(RemovalNotification<QueryKey, QueryResult> notification) {
+        QueryKey queryKey = notification.getKey();
+        QueryResult queryResult = notification.getValue();
+        if (queryKey != null && queryResult != null) {
+            weight.addAndGet(-weigh(queryKey, queryResult));
+        }
+
+        // a replaced entry keeps its key, related types of the same query are always the same
+        if (notification.getCause() == RemovalCause.REPLACED) return;
+        if (queryKey == null) return;
+
+        if (queryKey.getId() != null) {
+            idIndex.remove(queryKey.getId(), queryKey);
+        }
+        if (queryResult == null || queryResult.getRelatedTypes() == null) return;
+
+        for (String type : queryResult.getRelatedTypes()) {
+            typeIndex.computeIfPresent(type, (t, keys) -> {
+                // an equal key could be put again concurrently, it must stay in the index
+                if (!data.asMap().containsKey(queryKey)) {
+                    keys.remove(queryKey);
+                }
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
 }
@@ -76,4 +76,11 @@ public interface DbmsFeatures {
      * @return true if user name must be used when providing schema name for obtaining database metadata
      */
     boolean isSchemaByUser();
+
+    /**
+     * @return maximum number of values in an IN list of a query, or 0 if the DBMS has no practical limit
+     */
+    default int getMaxInListSize() {
+        return 0;
+    }
 }
@@ -72,4 +72,9 @@ public class MssqlDbmsFeatures implements DbmsFeatures {
     public boolean isSchemaByUser() {
         return false;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getMaxInListSize() {
+        return 2000;
+    }
+}
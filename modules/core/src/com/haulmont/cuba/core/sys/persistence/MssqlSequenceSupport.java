@@ -38,11 +38,22 @@ public class MssqlSequenceSupport implements SequenceSupport {
 
     @Override
     public String modifySequenceSql(String sequenceName, long startWith) {
+        return recreateSequenceSql(sequenceName, startWith, 1);
+    }
+
+    @Override
+    public String modifySequenceSql(String sequenceName, long startWith, long increment) {
+        // the table is recreated with one row inserted, so the next value is the seed plus the increment
+        return recreateSequenceSql(sequenceName, startWith - increment, increment);
+    }
+
+    protected String recreateSequenceSql(String sequenceName, long seed, long increment) {
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
         return String.format("drop table %1$s ^ " +
-                        "create table %1$s (ID bigint identity(%2$d,1), CREATE_TS datetime) ^ " +
+                        "create table %1$s (ID bigint identity(%2$d,%4$d), CREATE_TS datetime) ^ " +
                         "insert into %1$s (CREATE_TS) values ({ts '%3$s'})",
-                sequenceName.toUpperCase(), startWith, dateFormat.format(AppBeans.get(TimeSource.class).currentTimestamp()));
+                sequenceName.toUpperCase(), seed, dateFormat.format(AppBeans.get(TimeSource.class).currentTimestamp()),
+                increment);
     }
 
     @Override
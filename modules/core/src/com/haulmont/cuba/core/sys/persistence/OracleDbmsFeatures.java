@@ -77,4 +77,9 @@ public class OracleDbmsFeatures implements DbmsFeatures {
     public boolean isSchemaByUser() {
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getMaxInListSize() {
+        return 1000;
+    }
+}
@@ -34,6 +34,12 @@ public class OracleSequenceSupport implements SequenceSupport {
         return "{call SET_SEQ_VAL('" + sequenceName + "', " + newVal + ")}";
     }
 
+    @Override
+    public String modifySequenceSql(String sequenceName, long startWith, long increment) {
+        // SET_SEQ_VAL takes the value from the sequence, so the next value is the given one plus the increment
+        return modifySequenceSql(sequenceName, startWith - increment);
+    }
+
     @Override
     public String deleteSequenceSql(String sequenceName) {
         return "drop sequence " + (sequenceName != null ? sequenceName.toUpperCase() : null);
@@ -40,6 +40,13 @@ public class PostgresSequenceSupport implements SequenceSupport {
         return "select setval('" + sequenceName.toLowerCase() + "', " + startWith + ")";
     }
 
+    @Override
+    public String modifySequenceSql(String sequenceName, long startWith, long increment) {
+        Preconditions.checkNotNullArgument(sequenceName, "sequenceName is null");
+        // is_called = false, so nextval returns the value itself instead of adding the increment to it
+        return "select setval('" + sequenceName.toLowerCase() + "', " + startWith + ", false)";
+    }
+
     @Override
     public String deleteSequenceSql(String sequenceName) {
         Preconditions.checkNotNullArgument(sequenceName, "sequenceName is null");
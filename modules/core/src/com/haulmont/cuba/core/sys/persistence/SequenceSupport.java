@@ -36,6 +36,15 @@ public interface SequenceSupport {
 
     String modifySequenceSql(String sequenceName, long startWith);
 
+    /**
+     * Returns SQL restarting the sequence so that the next value returned by it is exactly {@code startWith}, and
+     * keeping the given increment. Databases whose sequences behave this way and keep the increment when restarted
+     * use {@link #modifySequenceSql(String, long)}.
+     */
+    default String modifySequenceSql(String sequenceName, long startWith, long increment) {
+        return modifySequenceSql(sequenceName, startWith);
+    }
+
     String deleteSequenceSql(String sequenceName);
 
     String getNextValueSql(String sequenceName);
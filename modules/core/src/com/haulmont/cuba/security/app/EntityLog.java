@@ -36,6 +36,8 @@ import org.apache.commons.lang.BooleanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
@@ -69,6 +71,8 @@ public class EntityLog implements EntityLogAPI {
     protected DataManager dataManager;
     @Inject
     protected ServerConfig serverConfig;
+    @Inject
+    protected EntityLogWriter entityLogWriter;
 
     protected volatile boolean loaded;
     protected EntityLogConfig config;
@@ -102,17 +106,51 @@ public class EntityLog implements EntityLogAPI {
         List<EntityLogItem> items = context.getAttribute(EntityLog.class.getName());
         if (items == null || items.isEmpty())
             return;
+        context.setAttribute(EntityLog.class.getName(), null);
 
+        Map<Object, List<EntityLogItem>> itemsByEntityId = new LinkedHashMap<>();
         for (EntityLogItem item : items) {
-            List<EntityLogItem> sameEntityList = items.stream()
-                    .filter(entityLogItem -> entityLogItem.getObjectEntityId().equals(item.getObjectEntityId()))
-                    .collect(Collectors.toList());
+            itemsByEntityId.computeIfAbsent(item.getObjectEntityId(), id -> new ArrayList<>()).add(item);
+        }
+
+        List<EntityLogItem> itemsToSave = new ArrayList<>(itemsByEntityId.size());
+        for (List<EntityLogItem> sameEntityList : itemsByEntityId.values()) {
             EntityLogItem itemToSave = sameEntityList.get(0);
             computeChanges(itemToSave, sameEntityList);
-            saveItem(itemToSave);
+            itemsToSave.add(itemToSave);
+        }
+
+        if (config.getWriteMode() == EntityLogWriteMode.SYNC) {
+            for (EntityLogItem item : itemsToSave) {
+                saveItem(item);
+            }
+        } else {
+            List<EntityLogWriter.LogRecord> records = itemsToSave.stream()
+                    .map(this::createLogRecord)
+                    .collect(Collectors.toList());
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        entityLogWriter.enqueue(records);
+                    }
+                });
+            } else {
+                entityLogWriter.enqueue(records);
+            }
         }
     }
 
+    protected EntityLogWriter.LogRecord createLogRecord(EntityLogItem item) {
+        String createdBy = AppContext.isStarted() ?
+                userSessionSource.getUserSession().getUser().getLogin() : serverConfig.getJmxUserLogin();
+        ReferenceToEntity entityRef = item.getEntityRef();
+        return new EntityLogWriter.LogRecord(item.getId(), timeSource.currentTimestamp(), createdBy,
+                item.getEventTs(), item.getUser() != null ? item.getUser().getId() : null, item.getType().getId(),
+                item.getEntity(), entityRef.getEntityId(), entityRef.getStringEntityId(), entityRef.getIntEntityId(),
+                entityRef.getLongEntityId(), item.getChanges());
+    }
+
     private void computeChanges(EntityLogItem itemToSave, List<EntityLogItem> sameEntityList) {
         Set<String> allAttributes = sameEntityList.stream()
                 .flatMap(entityLogItem -> entityLogItem.getAttributes().stream().map(EntityLogAttr::getName))
@@ -20,7 +20,9 @@ import com.haulmont.cuba.core.config.Config;
 import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
+import com.haulmont.cuba.core.config.defaults.Default;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * {@link com.haulmont.cuba.security.app.EntityLog} configuration parameters
@@ -35,4 +37,26 @@ public interface EntityLogConfig extends Config {
     @DefaultBoolean(true)
     boolean getEnabled();
     void setEnabled(boolean value);
-}
\ No newline at end of file
+
+    /**
+     * @return How log items are written to the database
+     */
+    @Property("cuba.entityLog.writeMode")
+    @Default("SYNC")
+    EntityLogWriteMode getWriteMode();
+    void setWriteMode(EntityLogWriteMode value);
+
+    /**
+     * @return Maximum number of log items waiting in the queue to be written asynchronously
+     */
+    @Property("cuba.entityLog.writeQueueCapacity")
+    @DefaultInt(10000)
+    int getWriteQueueCapacity();
+
+    /**
+     * @return Maximum number of log items inserted by a single JDBC batch when writing asynchronously
+     */
+    @Property("cuba.entityLog.writeBatchSize")
+    @DefaultInt(500)
+    int getWriteBatchSize();
+}
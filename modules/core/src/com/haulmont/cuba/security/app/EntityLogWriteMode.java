@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+/**
+ * Defines how {@link EntityLog} writes log items to the database.
+ *
+ * @see EntityLogConfig#getWriteMode()
+ */
+public enum EntityLogWriteMode {
+
+    /**
+     * Log items are persisted in the transaction which changes the logged entities.
+     */
+    SYNC,
+
+    /**
+     * Log items are queued after the transaction is committed and written in batches by {@link EntityLogWriter}.
+     * If the queue is full, items are written in the thread that committed the transaction.
+     */
+    ASYNC,
+
+    /**
+     * The same as {@link #ASYNC}, but if the queue is full, items are saved to files in the data directory
+     * and written by {@link EntityLogWriter} later, including after the server restart.
+     */
+    ASYNC_SPILL
+}
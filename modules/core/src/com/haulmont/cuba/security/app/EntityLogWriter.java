@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
+import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import org.perf4j.StopWatch;
+import org.perf4j.slf4j.Slf4JStopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes entity log records to the database in a background thread using JDBC batch inserts.
+ * Used by {@link EntityLog} if {@link EntityLogConfig#getWriteMode()} is not {@link EntityLogWriteMode#SYNC}.
+ */
+@Component(EntityLogWriter.NAME)
+public class EntityLogWriter {
+
+    public static final String NAME = "cuba_EntityLogWriter";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityLogWriter.class);
+
+    protected static final String INSERT_SQL = "insert into SEC_ENTITY_LOG (ID, CREATE_TS, CREATED_BY, EVENT_TS, " +
+            "USER_ID, CHANGE_TYPE, ENTITY, ENTITY_ID, STRING_ENTITY_ID, INT_ENTITY_ID, LONG_ENTITY_ID, CHANGES) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    protected static final Class[] COLUMN_TYPES = {UUID.class, Date.class, String.class, Date.class,
+            UUID.class, String.class, String.class, UUID.class, String.class, Integer.class, Long.class, String.class};
+
+    protected static final String SPILL_FILE_SUFFIX = ".spill";
+
+    @Inject
+    protected Persistence persistence;
+
+    protected EntityLogConfig config;
+
+    protected GlobalConfig globalConfig;
+
+    protected BlockingQueue<LogRecord> queue = new LinkedBlockingQueue<>();
+
+    protected ExecutorService executor;
+
+    protected AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    protected volatile boolean spillFilesExist;
+
+    protected LongAdder writtenCount = new LongAdder();
+    protected LongAdder spilledCount = new LongAdder();
+    protected LongAdder failedCount = new LongAdder();
+    protected LongAdder writeCount = new LongAdder();
+    protected LongAdder writeTime = new LongAdder();
+    protected volatile long lastWriteTime;
+
+    /**
+     * Entity log item prepared for inserting into the {@code SEC_ENTITY_LOG} table.
+     */
+    public static class LogRecord implements Serializable {
+        private static final long serialVersionUID = -1734584466373470858L;
+
+        protected final Object[] values;
+
+        public LogRecord(UUID id, Date createTs, String createdBy, Date eventTs, UUID userId, String type,
+                         String entity, UUID entityId, String stringEntityId, Integer intEntityId, Long longEntityId,
+                         String changes) {
+            values = new Object[]{id, createTs, createdBy, eventTs, userId, type,
+                    entity, entityId, stringEntityId, intEntityId, longEntityId, changes};
+        }
+
+        public UUID getId() {
+            return (UUID) values[0];
+        }
+
+        @Override
+        public String toString() {
+            return "LogRecord{id=" + values[0] + ", entity=" + values[6] + "}";
+        }
+    }
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        config = configuration.getConfig(EntityLogConfig.class);
+        globalConfig = configuration.getConfig(GlobalConfig.class);
+    }
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("EntityLogWriter-%d").setDaemon(true).build());
+    }
+
+    @EventListener(AppContextInitializedEvent.class)
+    protected void applicationInitialized() {
+        if (!getSpillFiles().isEmpty()) {
+            spillFilesExist = true;
+            scheduleWrite();
+        }
+    }
+
+    @EventListener(AppContextStoppedEvent.class)
+    protected void applicationStopped() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<LogRecord> records = new ArrayList<>();
+        queue.drainTo(records);
+        if (!records.isEmpty()) {
+            log.info("Writing {} remaining entity log records", records.size());
+            writeOrSpill(records, true);
+        }
+    }
+
+    /**
+     * Puts the records to the queue to be written in background. If the queue is full, the records are written
+     * in the current thread or saved to a file, depending on {@link EntityLogConfig#getWriteMode()}.
+     *
+     * @param records records to write
+     */
+    public void enqueue(List<LogRecord> records) {
+        if (records.isEmpty())
+            return;
+
+        if (executor.isShutdown() || queue.size() + records.size() > config.getWriteQueueCapacity()) {
+            log.debug("Entity log queue is full, {} records are not queued", records.size());
+            if (config.getWriteMode() == EntityLogWriteMode.ASYNC_SPILL) {
+                spill(records);
+                scheduleWrite();
+            } else {
+                writeOrSpill(records, false);
+            }
+        } else {
+            queue.addAll(records);
+            scheduleWrite();
+        }
+    }
+
+    protected void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::writeQueued);
+            } catch (RejectedExecutionException e) {
+                writeScheduled.set(false);
+            }
+        }
+    }
+
+    protected void writeQueued() {
+        try {
+            int batchSize = config.getWriteBatchSize();
+            List<LogRecord> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                writeOrSpill(batch, config.getWriteMode() == EntityLogWriteMode.ASYNC_SPILL);
+                batch.clear();
+            }
+            if (spillFilesExist) {
+                writeSpilled();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error writing entity log", e);
+        } finally {
+            writeScheduled.set(false);
+            if (!queue.isEmpty()) {
+                scheduleWrite();
+            }
+        }
+    }
+
+    protected void writeOrSpill(List<LogRecord> records, boolean spillOnError) {
+        try {
+            write(records);
+        } catch (RuntimeException e) {
+            if (spillOnError) {
+                log.warn("Error writing entity log, {} records will be saved to file", records.size(), e);
+                spill(records);
+            } else {
+                failedCount.add(records.size());
+                log.error("Error writing entity log, {} records are lost: {}", records.size(), records, e);
+            }
+        }
+    }
+
+    /**
+     * Inserts the records into the database in a separate transaction.
+     */
+    protected void write(List<LogRecord> records) {
+        StopWatch sw = new Slf4JStopWatch("EntityLogWriter.write");
+        long start = System.currentTimeMillis();
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+            DbTypeConverter converter = persistence.getDbTypeConverter();
+
+            int[] paramTypes = new int[COLUMN_TYPES.length];
+            for (int i = 0; i < COLUMN_TYPES.length; i++) {
+                paramTypes[i] = converter.getSqlType(COLUMN_TYPES[i]);
+            }
+            Object[][] params = new Object[records.size()][];
+            for (int i = 0; i < records.size(); i++) {
+                Object[] values = records.get(i).values;
+                params[i] = new Object[values.length];
+                for (int j = 0; j < values.length; j++) {
+                    params[i][j] = values[j] == null ? null : converter.getSqlObject(values[j]);
+                }
+            }
+            try {
+                new QueryRunner().batch(em.getConnection(), INSERT_SQL, params, paramTypes);
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inserting entity log records", e);
+            }
+            tx.commit();
+        } finally {
+            sw.stop();
+        }
+        lastWriteTime = System.currentTimeMillis() - start;
+        writeTime.add(lastWriteTime);
+        writeCount.increment();
+        writtenCount.add(records.size());
+        log.debug("Written {} entity log records in {} ms", records.size(), lastWriteTime);
+    }
+
+    /**
+     * Saves the records to a file in the spill directory.
+     */
+    protected void spill(List<LogRecord> records) {
+        File dir = getSpillDir();
+        String name = System.currentTimeMillis() + "-" + UUID.randomUUID();
+        File tmpFile = new File(dir, name + ".tmp");
+        try {
+            Files.createDirectories(dir.toPath());
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeObject(new ArrayList<>(records));
+            }
+            Files.move(tmpFile.toPath(), new File(dir, name + SPILL_FILE_SUFFIX).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            spilledCount.add(records.size());
+            spillFilesExist = true;
+        } catch (IOException e) {
+            failedCount.add(records.size());
+            log.error("Error saving entity log to file, {} records are lost: {}", records.size(), records, e);
+        }
+    }
+
+    /**
+     * Writes records from the spill files in the order of their creation. Stops on the first failure.
+     */
+    protected void writeSpilled() {
+        spillFilesExist = false;
+        for (File file : getSpillFiles()) {
+            List<LogRecord> records = readSpilled(file);
+            if (records == null) {
+                if (!file.renameTo(new File(file.getPath() + ".failed"))) {
+                    spillFilesExist = true;
+                    return;
+                }
+                continue;
+            }
+            try {
+                write(records);
+            } catch (RuntimeException e) {
+                log.warn("Error writing entity log records from {}", file, e);
+                spillFilesExist = true;
+                return;
+            }
+            if (!file.delete()) {
+                log.error("Unable to delete {}, its records can be written again", file);
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<LogRecord> readSpilled(File file) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (List<LogRecord>) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error reading entity log records from {}", file, e);
+            return null;
+        }
+    }
+
+    protected List<File> getSpillFiles() {
+        File[] files = getSpillDir().listFiles((dir, name) -> name.endsWith(SPILL_FILE_SUFFIX));
+        if (files == null)
+            return Collections.emptyList();
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return Arrays.asList(files);
+    }
+
+    protected File getSpillDir() {
+        return new File(globalConfig.getDataDir(), "entitylog");
+    }
+
+    /**
+     * @return number of records waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of records written to the database by this writer
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * @return number of records saved to files because of the queue overflow or write errors
+     */
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * @return number of records which could not be written
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return duration of the last batch insert in milliseconds
+     */
+    public long getLastWriteTime() {
+        return lastWriteTime;
+    }
+
+    /**
+     * @return average duration of a batch insert in milliseconds
+     */
+    public double getAverageWriteTime() {
+        long count = writeCount.sum();
+        return count == 0 ? 0 : (double) writeTime.sum() / count;
+    }
+}
@@ -17,6 +17,7 @@ package com.haulmont.cuba.security.app;
 
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.cuba.core.app.ClusterListener;
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.Configuration;
@@ -84,6 +85,70 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    /**
+     * Compact message carrying last usage timestamps of sessions. A zero timestamp means that the session is removed,
+     * though removals are sent as {@link UserSessionInfo} for compatibility with nodes of previous versions.
+     */
+    public static class UserSessionTouchInfo implements Serializable {
+        private static final long serialVersionUID = 2604356235573213421L;
+
+        // most and least significant bits of session ids
+        protected final long[] ids;
+        protected final long[] lastUsedTs;
+
+        public UserSessionTouchInfo(List<UUID> ids, List<Long> lastUsedTs) {
+            int size = ids.size();
+            this.ids = new long[size * 2];
+            this.lastUsedTs = new long[size];
+            for (int i = 0; i < size; i++) {
+                UUID id = ids.get(i);
+                this.ids[i * 2] = id.getMostSignificantBits();
+                this.ids[i * 2 + 1] = id.getLeastSignificantBits();
+                this.lastUsedTs[i] = lastUsedTs.get(i);
+            }
+        }
+
+        public int size() {
+            return lastUsedTs.length;
+        }
+
+        public UUID getId(int index) {
+            return new UUID(ids[index * 2], ids[index * 2 + 1]);
+        }
+
+        public long getLastUsedTs(int index) {
+            return lastUsedTs[index];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s sessions", size());
+        }
+    }
+
+    /**
+     * Request for the whole sessions sent by a node which receives a touch of a session unknown to it, e.g. after
+     * a cluster partition is merged. Nodes having the sessions answer with {@link UserSessionInfo}.
+     */
+    public static class UserSessionRequestInfo implements Serializable {
+        private static final long serialVersionUID = -3466153093466851853L;
+
+        protected final List<UUID> ids;
+
+        public UserSessionRequestInfo(List<UUID> ids) {
+            this.ids = new ArrayList<>(ids);
+        }
+
+        public List<UUID> getIds() {
+            return Collections.unmodifiableList(ids);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s sessions", ids.size());
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(UserSessions.class);
 
     protected Map<UUID, UserSessionInfo> cache = new ConcurrentHashMap<>();
@@ -94,6 +159,10 @@ public class UserSessions implements UserSessionsAPI {
 
     protected volatile int touchTimeout = 1;
 
+    protected Set<UUID> touchedSessions = ConcurrentHashMap.newKeySet();
+
+    protected volatile long lastTouchesSentTs;
+
     protected ClusterManagerAPI clusterManager;
 
     protected UserSession NO_USER_SESSION;
@@ -153,6 +222,24 @@ public class UserSessions implements UserSessionsAPI {
                     }
                 }
         );
+        this.clusterManager.addListener(
+                UserSessionTouchInfo.class,
+                new ClusterListenerAdapter<UserSessionTouchInfo>() {
+                    @Override
+                    public void receive(UserSessionTouchInfo message) {
+                        receiveClusterMessage(message);
+                    }
+                }
+        );
+        this.clusterManager.addListener(
+                UserSessionRequestInfo.class,
+                new ClusterListenerAdapter<UserSessionRequestInfo>() {
+                    @Override
+                    public void receive(UserSessionRequestInfo message) {
+                        receiveClusterMessage(message);
+                    }
+                }
+        );
     }
 
     protected void receiveClusterMessage(UserSessionInfo message) {
@@ -168,6 +255,39 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    protected void receiveClusterMessage(UserSessionTouchInfo message) {
+        List<UUID> unknownIds = new ArrayList<>();
+        for (int i = 0; i < message.size(); i++) {
+            UUID id = message.getId(i);
+            long lastUsedTs = message.getLastUsedTs(i);
+            if (lastUsedTs == 0) {
+                log.debug("Removing session due to cluster message: {}", id);
+                removeSessionInfo(id);
+            } else {
+                UserSessionInfo usi = getSessionInfo(id);
+                if (usi == null) {
+                    unknownIds.add(id);
+                } else if (usi.lastUsedTs < lastUsedTs) {
+                    usi.lastUsedTs = lastUsedTs;
+                    putSessionInfo(id, usi);
+                }
+            }
+        }
+        if (!unknownIds.isEmpty()) {
+            log.debug("Requesting {} sessions unknown to this node", unknownIds.size());
+            clusterManager.send(new UserSessionRequestInfo(unknownIds));
+        }
+    }
+
+    protected void receiveClusterMessage(UserSessionRequestInfo message) {
+        for (UUID id : message.getIds()) {
+            UserSessionInfo usi = getSessionInfo(id);
+            if (usi != null && !usi.session.isSystem()) {
+                clusterManager.send(usi);
+            }
+        }
+    }
+
     protected void receiveClusterState(byte[] state) {
         if (state == null || state.length == 0)
             return;
@@ -221,8 +341,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Removed session: {}", usi);
             if (!session.isSystem()) {
-                usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                sendRemoval(Collections.singletonList(usi));
             }
         }
     }
@@ -287,7 +406,10 @@ public class UserSessions implements UserSessionsAPI {
                 if (propagate && !usi.session.isSystem()) {
                     if (now > (usi.lastSentTs + sendTimeout * 1000)) {
                         usi.lastSentTs = now;
-                        clusterManager.send(usi);
+                        touchedSessions.add(id);
+                    }
+                    if (now > (lastTouchesSentTs + sendTimeout * 1000)) {
+                        sendTouches();
                     }
                 }
             }
@@ -304,6 +426,43 @@ public class UserSessions implements UserSessionsAPI {
             usi.lastUsedTs = now;
             usi.lastSentTs = now;
             putSessionInfo(id, usi);
+            touchedSessions.remove(id);
+            clusterManager.send(usi);
+        }
+    }
+
+    /**
+     * Sends last usage timestamps of the sessions touched since the previous sending in a single message.
+     */
+    protected void sendTouches() {
+        lastTouchesSentTs = timeSource.currentTimeMillis();
+        if (touchedSessions.isEmpty())
+            return;
+
+        List<UUID> ids = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        for (UUID id : touchedSessions) {
+            if (touchedSessions.remove(id)) {
+                UserSessionInfo usi = getSessionInfo(id);
+                if (usi != null) {
+                    ids.add(id);
+                    timestamps.add(usi.lastUsedTs);
+                }
+            }
+        }
+        if (!ids.isEmpty()) {
+            clusterManager.send(new UserSessionTouchInfo(ids, timestamps));
+        }
+    }
+
+    /**
+     * Sends removal of the sessions as {@link UserSessionInfo} with a zero timestamp, which is understood by nodes
+     * of previous versions.
+     */
+    protected void sendRemoval(List<UserSessionInfo> infoList) {
+        for (UserSessionInfo usi : infoList) {
+            touchedSessions.remove(usi.session.getId());
+            usi.lastUsedTs = 0;
             clusterManager.send(usi);
         }
     }
@@ -366,8 +525,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Killed session: {}", usi);
 
-            usi.lastUsedTs = 0;
-            clusterManager.send(usi);
+            sendRemoval(Collections.singletonList(usi));
         }
     }
 
@@ -389,6 +547,8 @@ public class UserSessions implements UserSessionsAPI {
         if (!AppContext.isStarted())
             return;
 
+        sendTouches();
+
         log.trace("Processing eviction");
         long now = timeSource.currentTimeMillis();
 
@@ -396,17 +556,12 @@ public class UserSessions implements UserSessionsAPI {
                 .filter(info -> !info.session.isSystem() && now > (info.lastUsedTs + expirationTimeout * 1000))
                 .collect(Collectors.toList());
 
-        for (Iterator<UserSessionInfo> it = infoList.iterator(); it.hasNext();) {
-            UserSessionInfo usi = it.next();
+        for (UserSessionInfo usi : infoList) {
             log.debug("Removing session due to timeout: {}", usi);
 
             userSessionLog.updateSessionLogRecord(usi.getSession(), SessionAction.EXPIRATION);
-
-            it.remove();
-
-            usi.lastUsedTs = 0;
-            clusterManager.send(usi);
         }
+        sendRemoval(infoList);
     }
 
     protected UserSessionInfo getSessionInfo(UUID id) {
@@ -172,7 +172,7 @@ public interface UserSessionsAPI extends UserSessionFinder {
      *
      * Set user session ping timeout in cluster.
      * If ping is performed by {@link UserSessionsAPI#getAndRefresh},
-     * the user session is sent to the cluster only after the specified timeout.
+     * the last usage time of the user session is sent to the cluster only after the specified timeout.
      *
      * @param timeout in seconds
      */
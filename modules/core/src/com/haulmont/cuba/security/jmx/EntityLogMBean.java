@@ -36,4 +36,34 @@ public interface EntityLogMBean {
      * The configuration will be recreated from the database on next lifecycle event.
      */
     void invalidateCache();
+
+    /**
+     * @return number of log items waiting to be written asynchronously
+     */
+    int getWriteQueueSize();
+
+    /**
+     * @return number of log items written asynchronously
+     */
+    long getWrittenCount();
+
+    /**
+     * @return number of log items saved to files because of the queue overflow or write errors
+     */
+    long getSpilledCount();
+
+    /**
+     * @return number of log items which could not be written asynchronously
+     */
+    long getFailedCount();
+
+    /**
+     * @return duration of the last asynchronous batch insert, in milliseconds
+     */
+    long getLastWriteTime();
+
+    /**
+     * @return average duration of an asynchronous batch insert, in milliseconds
+     */
+    double getAverageWriteTime();
 }
@@ -172,6 +172,101 @@ public class DataManagerTest {
         assertEquals(1, list.size());
     }
 
+    @Test
+    public void testLoadByChunks() throws Exception {
+        CommitContext commitContext = new CommitContext();
+        for (int i = 0; i < 25; i++) {
+            Server server = new Server();
+            server.setName("chunk-" + i);
+            server.setRunning(i % 2 == 0);
+            commitContext.addInstanceToCommit(server);
+        }
+        dataManager.commit(commitContext);
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s where s.name like :name")
+                .setParameter("name", "chunk-%");
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        Set<UUID> ids = new HashSet<>();
+        dataManager.loadByChunks(loadContext, 10, chunk -> {
+            chunkSizes.add(chunk.size());
+            for (Server server : chunk) {
+                assertTrue(ids.add(server.getId()));
+            }
+        });
+        assertEquals(Arrays.asList(10, 10, 5), chunkSizes);
+        assertEquals(25, ids.size());
+
+        loadContext.getQuery().setMaxResults(15);
+        chunkSizes.clear();
+        dataManager.loadByChunks(loadContext, 10, chunk -> chunkSizes.add(chunk.size()));
+        assertEquals(Arrays.asList(10, 5), chunkSizes);
+
+        // the name can be null, so it cannot be used to restrict chunks
+        loadContext.getQuery().setQueryString("select s from sys$Server s where s.name like :name order by s.name");
+        try {
+            dataManager.loadByChunks(loadContext, 10, chunk -> {});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testLoadByChunksOrdered() throws Exception {
+        LoadContext<User> allContext = LoadContext.create(User.class);
+        allContext.setQueryString("select u from sec$User u order by u.login desc, u.id desc");
+        List<User> expected = dataManager.loadList(allContext);
+        assertTrue(expected.size() > 1);
+
+        LoadContext<User> loadContext = LoadContext.create(User.class);
+        loadContext.setQueryString("select u from sec$User u order by u.login desc");
+        List<User> loaded = new ArrayList<>();
+        dataManager.loadByChunks(loadContext, 1, loaded::addAll);
+        assertEquals(expected, loaded);
+    }
+
+    @Test
+    public void testKeysetPagination() throws Exception {
+        CommitContext commitContext = new CommitContext();
+        for (int i = 0; i < 25; i++) {
+            Server server = new Server();
+            // several instances with the same name to check ordering by ID
+            server.setName("keyset-" + i % 5);
+            commitContext.addInstanceToCommit(server);
+        }
+        dataManager.commit(commitContext);
+
+        LoadContext<Server> allContext = LoadContext.create(Server.class);
+        allContext.setQueryString("select s from sys$Server s where s.name like :name order by s.name desc, s.id desc")
+                .setParameter("name", "keyset-%");
+        List<Server> expected = dataManager.loadList(allContext);
+        assertEquals(25, expected.size());
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s where s.name like :name")
+                .setParameter("name", "keyset-%")
+                .setMaxResults(10);
+
+        KeysetPosition keyset = KeysetPosition.of(true, "name", "id");
+        loadContext.getQuery().setKeyset(keyset);
+
+        List<Server> loaded = new ArrayList<>();
+        List<Server> page;
+        do {
+            page = dataManager.loadList(loadContext);
+            loaded.addAll(page);
+            if (!page.isEmpty()) {
+                loadContext.getQuery().setKeyset(keyset.after(page.get(page.size() - 1)));
+            }
+        } while (page.size() == 10);
+        assertEquals(expected, loaded);
+
+        // keyset is ignored when counting
+        assertEquals(25, dataManager.getCount(loadContext));
+    }
+
     @Test
     public void testGetCount() throws Exception {
         LoadContext<User> loadContext = LoadContext.create(User.class).setQuery(
@@ -287,6 +382,42 @@ public class DataManagerTest {
         assertNotNull(saved);
     }
 
+    @Test
+    public void testBulkCommit() throws Exception {
+        CommitContext commitContext = new CommitContext();
+        commitContext.setBulkMode(true);
+        for (int i = 0; i < 25; i++) {
+            Server server = new Server();
+            server.setName("bulk-" + i);
+            commitContext.addInstanceToCommit(server);
+        }
+        Set<Entity> committed = dataManager.commit(commitContext);
+        assertEquals(25, committed.size());
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s where s.name like :name order by s.name")
+                .setParameter("name", "bulk-%");
+        List<Server> servers = dataManager.loadList(loadContext);
+        assertEquals(25, servers.size());
+
+        commitContext = new CommitContext();
+        commitContext.setBulkMode(true);
+        commitContext.setDiscardCommitted(true);
+        for (Server server : servers.subList(1, servers.size())) {
+            server.setRunning(true);
+            commitContext.addInstanceToCommit(server);
+        }
+        commitContext.addInstanceToRemove(servers.get(0));
+        committed = dataManager.commit(commitContext);
+        assertTrue(committed.isEmpty());
+
+        servers = dataManager.loadList(loadContext);
+        assertEquals(24, servers.size());
+        for (Server server : servers) {
+            assertTrue(server.getRunning());
+        }
+    }
+
     public static class MyLoadContext<E extends Entity> extends LoadContext<E> {
 
         private String info;
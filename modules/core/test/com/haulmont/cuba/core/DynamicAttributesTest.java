@@ -18,6 +18,7 @@ package com.haulmont.cuba.core;
 
 import com.google.common.collect.Lists;
 import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributeValuesCache;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
 import com.haulmont.cuba.core.app.dynamicattributes.PropertyType;
 import com.haulmont.cuba.core.entity.Category;
@@ -26,6 +27,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.Role;
 import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.entity.UserRole;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.junit.*;
@@ -263,4 +265,37 @@ public class DynamicAttributesTest {
         });
         loadedUser.setValue("+userAttribute", "newName");
     }
+
+    @Test
+    public void testAttributeValuesCache() throws Exception {
+        DynamicAttributeValuesCache attributeValuesCache = AppBeans.get(DynamicAttributeValuesCache.class);
+        AppContext.setProperty("cuba.dynamicAttributeValuesCacheMaxSize", "100");
+        try {
+            LoadContext<User> loadContext = LoadContext.create(User.class).setId(user.getId()).setLoadDynamicAttributes(true);
+            User loadedUser = dataManager.load(loadContext);
+            assertEquals("userName", loadedUser.getValue("+userAttribute"));
+
+            // the value is taken from the cache
+            QueryRunner runner = new QueryRunner(cont.persistence().getDataSource());
+            runner.update("update SYS_ATTR_VALUE set STRING_VALUE = 'changedName' where STRING_VALUE = 'userName'");
+            loadedUser = dataManager.load(loadContext);
+            assertEquals("userName", loadedUser.getValue("+userAttribute"));
+            assertEquals(group, loadedUser.getValue("+userGroupAttribute"));
+            List<Group> groupsCollection = loadedUser.getValue("+userGroupCollectionAttribute");
+            assertEquals(2, groupsCollection.size());
+
+            // the cached values are discarded when they are stored
+            loadedUser.setValue("+userAttribute", "newName");
+            dataManager.commit(loadedUser);
+            loadedUser = dataManager.load(loadContext);
+            assertEquals("newName", loadedUser.getValue("+userAttribute"));
+
+            // user2 values are not affected
+            User loadedUser2 = dataManager.load(LoadContext.create(User.class).setId(user2.getId()).setLoadDynamicAttributes(true));
+            assertEquals("changedName", loadedUser2.getValue("+userAttribute"));
+        } finally {
+            AppContext.setProperty("cuba.dynamicAttributeValuesCacheMaxSize", null);
+            attributeValuesCache.invalidateAll();
+        }
+    }
 }
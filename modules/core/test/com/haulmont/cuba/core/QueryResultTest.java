@@ -20,11 +20,13 @@ package com.haulmont.cuba.core;
 import com.haulmont.bali.db.MapListHandler;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.app.DataService;
+import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.QueryResult;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -218,6 +220,45 @@ public class QueryResultTest {
         assertEquals(5, entities.size());
     }
 
+    @Test
+    public void testInMemoryResultsRestrictedByTable() throws SQLException {
+        AppContext.setProperty("cuba.queryResultsInMemory", "true");
+        AppContext.setProperty("cuba.queryResultsMaxInListSize", "5");
+        try {
+            testThirdQuery();
+        } finally {
+            AppContext.setProperty("cuba.queryResultsInMemory", null);
+            AppContext.setProperty("cuba.queryResultsMaxInListSize", null);
+        }
+    }
+
+    @Test
+    public void testEmptyInMemoryResults() throws SQLException {
+        AppContext.setProperty("cuba.queryResultsInMemory", "true");
+        try {
+            DataService dataService = AppBeans.get(DataService.class);
+            // stale results of the same query key must not be used
+            AppBeans.get(QueryResultsManagerAPI.class).insert(112, userIds);
+
+            LoadContext.Query query1 = new LoadContext.Query("select u from sec$User u where u.email like :email")
+                    .setParameter("email", "%ccc.com");
+            LoadContext.Query query2 = new LoadContext.Query("select u from sec$User u where u.name like :name")
+                    .setParameter("name", "A-%");
+
+            LoadContext context = new LoadContext(User.class).setView(View.LOCAL);
+            context.setQueryString("select u from sec$User u where u.firstName like :firstName")
+                    .setParameter("firstName", "C-%");
+            context.getPrevQueries().add(query1);
+            context.getPrevQueries().add(query2);
+            context.setQueryKey(112);
+
+            List<Entity> entities = dataService.loadList(context);
+            assertEquals(0, entities.size());
+        } finally {
+            AppContext.setProperty("cuba.queryResultsInMemory", null);
+        }
+    }
+
     private List<Map<String, Object>> getQueryResults() throws SQLException {
         QueryRunner queryRunner = new QueryRunner(cont.persistence().getDataSource());
         return queryRunner.query("select * from SYS_QUERY_RESULT", new MapListHandler());
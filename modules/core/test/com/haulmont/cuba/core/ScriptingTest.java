@@ -22,6 +22,8 @@ import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
 import groovy.lang.Binding;
+import groovy.lang.Script;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -74,4 +76,25 @@ public class ScriptingTest {
                                        "return PersistenceHelper.isNew(instance)", binding);
         assertTrue(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompileGroovy() {
+        String text = "return instance.login == 'admin'";
+        Class<? extends Script> scriptClass = scripting.compileGroovy(text);
+        assertSame(scriptClass, scripting.compileGroovy(text));
+
+        Binding binding = new Binding();
+        Script script = InvokerHelper.createScript(scriptClass, binding);
+        User user = new User();
+        user.setLogin("admin");
+        binding.setVariable("instance", user);
+        assertEquals(true, script.run());
+        user = new User();
+        user.setLogin("user");
+        binding.setVariable("instance", user);
+        assertEquals(false, script.run());
+
+        scripting.clearCache();
+        assertNotSame(scriptClass, scripting.compileGroovy(text));
+    }
+}
@@ -20,6 +20,7 @@ package com.haulmont.cuba.core;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.cuba.core.app.UniqueNumbersAPI;
 import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.apache.commons.lang.StringUtils;
 import org.junit.ClassRule;
@@ -59,6 +60,25 @@ public class UniqueNumbersTest {
         uniqueNumbersAPI.getCurrentNumber("s1");
     }
 
+    @Test
+    public void testSetCurrentBlockNumber() throws Exception {
+        UniqueNumbersAPI uniqueNumbersAPI = AppBeans.get(UniqueNumbersAPI.NAME);
+        AppContext.setProperty("cuba.uniqueNumbersBlockDomains", "blockReset");
+        AppContext.setProperty("cuba.uniqueNumbersBlockSize", "10");
+        try {
+            uniqueNumbersAPI.getNextNumber("blockReset");
+
+            uniqueNumbersAPI.setCurrentNumber("blockReset", 1000);
+            for (int i = 1001; i <= 1025; i++) {
+                assertEquals(i, uniqueNumbersAPI.getNextNumber("blockReset"));
+            }
+        } finally {
+            uniqueNumbersAPI.deleteSequence("blockReset");
+            AppContext.setProperty("cuba.uniqueNumbersBlockDomains", null);
+            AppContext.setProperty("cuba.uniqueNumbersBlockSize", null);
+        }
+    }
+
     @Test
     public void testConcurrentModification() throws Exception {
         int threadCnt = 8;
@@ -22,6 +22,7 @@ import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.bali.db.ResultSetHandler;
 import com.haulmont.cuba.core.entity.EntitySnapshot;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.FetchGroupManager;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testmodel.multiplelinks.LinkEntity;
 import com.haulmont.cuba.testmodel.multiplelinks.MultiLinkEntity;
@@ -459,6 +460,57 @@ public class ViewTest {
         assertNull(viewRepository.getView(User.class, View.LOCAL).getProperty("group"));
     }
 
+    @Test
+    public void testSharedView() throws Exception {
+        ViewRepository viewRepository = cont.metadata().getViewRepository();
+        View view = viewRepository.getSharedView(User.class, "user.edit");
+
+        assertTrue(view.isFrozen());
+        assertSame(view, viewRepository.getSharedView(User.class, "user.edit"));
+        assertFail(() -> view.addProperty("password"));
+        assertFail(() -> view.getProperty("group").getView().addProperty("active"));
+
+        View copy = View.copy(view);
+        copy.addProperty("password");
+        assertFalse(copy.isFrozen());
+        assertNull(view.getProperty("password"));
+        assertFalse(viewRepository.getView(User.class, "user.edit").isFrozen());
+    }
+
+    @Test
+    public void testCachedFetchPlan() throws Exception {
+        FetchGroupManager fetchGroupManager = AppBeans.get(FetchGroupManager.NAME);
+        fetchGroupManager.clearFetchPlanCache();
+
+        for (int i = 0; i < 2; i++) {
+            View view = new View(User.class, false)
+                    .addProperty("login")
+                    .addProperty("group", new View(Group.class).addProperty("name"));
+            User u;
+            try (Transaction tx = cont.persistence().createTransaction()) {
+                EntityManager em = cont.persistence().getEntityManager();
+                u = em.find(User.class, userId, view);
+                tx.commit();
+            }
+            assertNotNull(u);
+            assertTrue(PersistenceHelper.isLoaded(u, "login"));
+            assertTrue(PersistenceHelper.isLoaded(u, "group"));
+            assertFalse(PersistenceHelper.isLoaded(u, "name"));
+        }
+        assertTrue(fetchGroupManager.printFetchPlanCacheStatistics().contains("hits: 1,"));
+
+        // a view with the same structure but different fetch mode requires another plan
+        View view = new View(User.class, false)
+                .addProperty("login")
+                .addProperty("group", new View(Group.class).addProperty("name"), FetchMode.BATCH);
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            em.find(User.class, userId, view);
+            tx.commit();
+        }
+        assertTrue(fetchGroupManager.printFetchPlanCacheStatistics().contains("hits: 1,"));
+    }
+
     @Test
     public void testFetchGroupIsAbsentIfViewIsFull() throws Exception {
         ViewRepository viewRepository = cont.metadata().getViewRepository();
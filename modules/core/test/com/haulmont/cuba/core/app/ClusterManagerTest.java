@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.AppComponents;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.*;
+
+public class ClusterManagerTest {
+
+    private CapturingClusterManager sender;
+    private CapturingClusterManager receiver;
+    private List<Serializable> received;
+
+    @Before
+    public void setUp() throws Exception {
+        AppContext.Internals.setAppComponents(new AppComponents("core"));
+
+        sender = new CapturingClusterManager();
+        sender.addListener(String.class, new ClusterListenerAdapter<String>() {
+            @Override
+            public void receive(String message) {
+            }
+        });
+
+        received = new ArrayList<>();
+        receiver = new CapturingClusterManager();
+        receiver.addListener(String.class, new ClusterListenerAdapter<String>() {
+            @Override
+            public void receive(String message) {
+                received.add(message);
+            }
+        });
+    }
+
+    @Test
+    public void testSingleMessage() {
+        sender.internalSend("message", false);
+
+        assertEquals(1, sender.frames.size());
+        receiver.receiveFrames(sender.frames);
+
+        assertEquals(Arrays.asList("message"), received);
+        assertStat(1);
+    }
+
+    @Test
+    public void testLegacyMessageFormat() {
+        sender.compactMessages = false;
+        receiver.compactMessages = false;
+
+        sender.internalSend("message", false);
+
+        // unframed standard serialization understood by nodes of previous versions
+        assertEquals(1, sender.frames.size());
+        assertArrayEquals(SerializationSupport.serialize("message"), sender.frames.get(0));
+
+        byte[] bytes = sender.frames.get(0);
+        receiver.receiveMessage(bytes, 0, bytes.length);
+        assertEquals(Arrays.asList("message"), received);
+        assertStat(1);
+    }
+
+    @Test
+    public void testBatch() {
+        sender.batchQueue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 25; i++) {
+            sender.batchQueue.add("message" + i);
+        }
+        sender.sendBatch();
+        sender.sendBatch();
+        sender.sendBatch();
+
+        // 10 messages per batch
+        assertEquals(3, sender.frames.size());
+        assertTrue(sender.batchQueue.isEmpty());
+        receiver.receiveFrames(sender.frames);
+
+        assertEquals(25, received.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals("message" + i, received.get(i));
+        }
+        assertStat(25);
+    }
+
+    @Test
+    public void testBatchMaxBytes() {
+        sender.batchQueue = new LinkedBlockingQueue<>();
+        char[] chars = new char[600];
+        Arrays.fill(chars, 'a');
+        for (int i = 0; i < 4; i++) {
+            sender.batchQueue.add(new String(chars));
+        }
+        sender.sendBatch();
+
+        // the batch is sent as soon as it exceeds 1000 bytes
+        assertEquals(1, sender.frames.size());
+        assertEquals(2, sender.batchQueue.size());
+        receiver.receiveFrames(sender.frames);
+        assertEquals(2, received.size());
+        assertStat(2);
+    }
+
+    private void assertStat(int count) {
+        String className = String.class.getName();
+        assertEquals(count, sender.getSentMessages(className));
+        assertEquals(count, receiver.getReceivedMessages(className));
+        assertTrue(sender.getSentBytes(className) > 0);
+        assertEquals(sender.getSentBytes(className), receiver.getReceivedBytes(className));
+    }
+
+    private static class CapturingClusterManager extends ClusterManager {
+
+        private List<byte[]> frames = new ArrayList<>();
+
+        public CapturingClusterManager() {
+            compactMessages = true;
+            messageCodec = new KryoClusterMessageCodec();
+            clusterConfig = new ClusterConfig() {
+                @Override
+                public boolean getEnabled() {
+                    return true;
+                }
+
+                @Override
+                public long getStateReceiveTimeout() {
+                    return 0;
+                }
+
+                @Override
+                public boolean getAbortOnStateReceivingFailure() {
+                    return false;
+                }
+
+                @Override
+                public int getClusterMessageSendingThreadPoolSize() {
+                    return 1;
+                }
+
+                @Override
+                public int getClusterMessageSendingQueueCapacity() {
+                    return Integer.MAX_VALUE;
+                }
+
+                @Override
+                public boolean getCompactMessagesEnabled() {
+                    return compactMessages;
+                }
+
+                @Override
+                public boolean getMessageBatchingEnabled() {
+                    return true;
+                }
+
+                @Override
+                public int getMessageBatchMaxDelay() {
+                    return 0;
+                }
+
+                @Override
+                public int getMessageBatchMaxSize() {
+                    return 10;
+                }
+
+                @Override
+                public int getMessageBatchMaxBytes() {
+                    return 1000;
+                }
+            };
+        }
+
+        @Override
+        protected void sendFrame(byte[] frame, boolean sync) {
+            frames.add(frame);
+        }
+
+        private void receiveFrames(List<byte[]> frames) {
+            for (byte[] frame : frames) {
+                receiveFrame(frame, 0, frame.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class UniqueNumbersBlockTest {
+
+    private UniqueNumbers uniqueNumbers;
+
+    private AtomicLong sequence = new AtomicLong();
+
+    private AtomicLong reservations = new AtomicLong();
+
+    private volatile long increment = 10;
+
+    private volatile CountDownLatch prefetchStarted;
+
+    private volatile CountDownLatch prefetchLatch;
+
+    @Before
+    public void setUp() throws Exception {
+        uniqueNumbers = new UniqueNumbers() {
+            @Override
+            protected int getBlockSize(String domain) {
+                return "doc".equals(domain) ? 10 : 0;
+            }
+
+            @Override
+            protected NumberBlock reserveBlock(String domain, int blockSize) {
+                reservations.incrementAndGet();
+                // simulates the block sequence of the database
+                long value = sequence.getAndAdd(increment);
+                CountDownLatch latch = prefetchLatch;
+                if (latch != null && Thread.currentThread().getName().equals("UniqueNumbersPrefetch")) {
+                    prefetchStarted.countDown();
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return new NumberBlock(value + 1, value + blockSize);
+            }
+
+            @Override
+            protected void restartBlockSequence(String domain, long value, int blockSize) {
+                sequence.set(value);
+                increment = blockSize;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        uniqueNumbers.shutdown();
+    }
+
+    @Test
+    public void testSequentialNumbers() {
+        for (int i = 1; i <= 25; i++) {
+            assertEquals(i, uniqueNumbers.getNextNumber("doc"));
+        }
+        assertEquals(25, uniqueNumbers.getCurrentNumber("doc"));
+
+        UniqueNumbers.BlockNumbers numbers = uniqueNumbers.blockNumbers.get("doc");
+        assertEquals(25, numbers.hits.get());
+        assertTrue(numbers.refills.get() >= 1);
+        assertTrue(numbers.refills.get() + numbers.prefetches.get() >= 3);
+        assertTrue(uniqueNumbers.printBlockStat().contains("doc"));
+    }
+
+    @Test
+    public void testConcurrentNumbers() throws Exception {
+        int threadCnt = 8;
+        int numbersPerThread = 1000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCnt);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCnt; i++) {
+                futures.add(executorService.submit(() -> {
+                    List<Long> result = new ArrayList<>();
+                    for (int j = 0; j < numbersPerThread; j++) {
+                        result.add(uniqueNumbers.getNextNumber("doc"));
+                    }
+                    return result;
+                }));
+            }
+            Set<Long> allNumbers = ConcurrentHashMap.newKeySet();
+            for (Future<List<Long>> future : futures) {
+                allNumbers.addAll(future.get());
+            }
+            assertEquals(threadCnt * numbersPerThread, allNumbers.size());
+            // prefetched blocks can be left unused, but each reservation must be distinct
+            assertTrue(reservations.get() >= threadCnt * numbersPerThread / 10);
+            for (Long number : allNumbers) {
+                assertTrue(number > 0 && number <= sequence.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResetBlockDomain() {
+        assertEquals(1, uniqueNumbers.getNextNumber("doc"));
+
+        increment = 1;
+        uniqueNumbers.setCurrentNumber("doc", 100);
+
+        Set<Long> numbers = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            numbers.add(uniqueNumbers.getNextNumber("doc"));
+        }
+        // two blocks are reserved after the reset and they must not overlap
+        assertEquals(20, numbers.size());
+        assertEquals(101, (long) Collections.min(numbers));
+        assertTrue(reservations.get() >= 3);
+    }
+
+    @Test
+    public void testResetDuringPrefetch() throws Exception {
+        prefetchStarted = new CountDownLatch(1);
+        prefetchLatch = new CountDownLatch(1);
+        // the prefetch of the next block starts when 2 numbers are left in the current one
+        for (int i = 1; i <= 8; i++) {
+            assertEquals(i, uniqueNumbers.getNextNumber("doc"));
+        }
+        assertTrue(prefetchStarted.await(10, TimeUnit.SECONDS));
+
+        Thread resetThread = new Thread(() -> uniqueNumbers.setCurrentNumber("doc", 100));
+        resetThread.start();
+        // let the reset run concurrently with the prefetch
+        for (int i = 0; i < 100 && resetThread.isAlive() && resetThread.getState() != Thread.State.BLOCKED; i++) {
+            Thread.sleep(10);
+        }
+        prefetchLatch.countDown();
+        resetThread.join(10000);
+        uniqueNumbers.prefetchExecutor.submit(() -> {}).get();
+
+        // the block prefetched from the sequence before the reset is discarded
+        for (int i = 101; i <= 125; i++) {
+            assertEquals(i, uniqueNumbers.getNextNumber("doc"));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import com.haulmont.cuba.core.sys.AppComponents;
+import com.haulmont.cuba.core.sys.AppContext;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ContentAddressedFileStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileStorage fileStorage;
+    private File primaryRoot;
+    private File secondaryRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        // replication to secondary roots passes the security context to writer threads
+        AppContext.Internals.setAppComponents(new AppComponents("core"));
+
+        primaryRoot = temporaryFolder.newFolder("primary");
+        secondaryRoot = temporaryFolder.newFolder("secondary");
+
+        fileStorage = new FileStorage() {
+            @Override
+            protected synchronized void writeLog(File file, boolean remove) {
+            }
+        };
+        fileStorage.storageRoots = new File[]{primaryRoot, secondaryRoot};
+        fileStorage.isContentAddressedFileStorage = true;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fileStorage.stopWriteExecutor();
+    }
+
+    @Test
+    public void testEqualFilesAreStoredOnce() throws Exception {
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+        String hash = DigestUtils.sha256Hex(content);
+
+        FileDescriptor fd1 = createFileDescriptor();
+        FileDescriptor fd2 = createFileDescriptor();
+        FileDescriptor fd3 = createFileDescriptor();
+        fileStorage.saveFile(fd1, content);
+        fileStorage.saveFile(fd2, content);
+        fileStorage.saveFile(fd3, "other content".getBytes(StandardCharsets.UTF_8));
+        awaitReplication();
+
+        for (File root : fileStorage.getStorageRoots()) {
+            File contentFile = fileStorage.getContentFile(root, hash);
+            assertTrue(contentFile.exists());
+            assertEquals(2, fileStorage.getContentReferencesDir(contentFile).list().length);
+            assertEquals(2, countContentFiles(root));
+        }
+        assertArrayEquals(content, fileStorage.loadFile(fd1));
+        assertArrayEquals(content, fileStorage.loadFile(fd2));
+        assertTrue(fileStorage.fileExists(fd2));
+
+        fileStorage.removeFile(fd1);
+        assertFalse(fileStorage.fileExists(fd1));
+        assertArrayEquals(content, fileStorage.loadFile(fd2));
+        assertTrue(fileStorage.getContentFile(primaryRoot, hash).exists());
+
+        fileStorage.removeFile(fd2);
+        assertFalse(fileStorage.fileExists(fd2));
+        for (File root : fileStorage.getStorageRoots()) {
+            File contentFile = fileStorage.getContentFile(root, hash);
+            assertFalse(contentFile.exists());
+            assertFalse(fileStorage.getContentReferencesDir(contentFile).exists());
+        }
+        assertTrue(fileStorage.fileExists(fd3));
+    }
+
+    @Test
+    public void testPlainFilesAreKept() throws Exception {
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+
+        fileStorage.isContentAddressedFileStorage = false;
+        FileDescriptor plainFd = createFileDescriptor();
+        fileStorage.saveFile(plainFd, content);
+
+        fileStorage.isContentAddressedFileStorage = true;
+        FileDescriptor fd = createFileDescriptor();
+        fileStorage.saveFile(fd, content);
+        awaitReplication();
+
+        fileStorage.removeFile(fd);
+        assertFalse(fileStorage.fileExists(fd));
+        assertFalse(fileStorage.getContentFile(primaryRoot, DigestUtils.sha256Hex(content)).exists());
+        assertArrayEquals(content, fileStorage.loadFile(plainFd));
+
+        fileStorage.removeFile(plainFd);
+        assertFalse(fileStorage.fileExists(plainFd));
+    }
+
+    @Test
+    public void testContentStorageFiles() throws Exception {
+        FileDescriptor fd = createFileDescriptor();
+        fileStorage.saveFile(fd, "some content".getBytes(StandardCharsets.UTF_8));
+        awaitReplication();
+
+        File file = new File(fileStorage.getStorageDir(primaryRoot, fd), FileStorage.getFileName(fd));
+        assertFalse(fileStorage.isContentStorageFile(primaryRoot, file));
+        assertTrue(fileStorage.isContentStorageFile(primaryRoot, fileStorage.getContentHashFile(file)));
+
+        List<File> storedFiles = FileUtils.listFiles(primaryRoot, null, true).stream()
+                .filter(f -> !fileStorage.isContentStorageFile(primaryRoot, f))
+                .collect(Collectors.toList());
+        assertEquals(Collections.singletonList(file), storedFiles);
+
+        File tempFile = new File(primaryRoot, FileStorage.CONTENT_DIR + "/" + FileStorage.TEMP_DIR + "/upload");
+        assertTrue(fileStorage.isContentStorageFile(primaryRoot, tempFile));
+    }
+
+    private long countContentFiles(File root) {
+        return FileUtils.listFiles(new File(root, FileStorage.CONTENT_DIR), null, true).stream()
+                .filter(file -> !file.getParentFile().getName().endsWith(".refs"))
+                .count();
+    }
+
+    private void awaitReplication() throws InterruptedException {
+        fileStorage.writeExecutor.shutdown();
+        assertTrue(fileStorage.writeExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private FileDescriptor createFileDescriptor() {
+        FileDescriptor fd = new FileDescriptor();
+        fd.setCreateDate(new Date());
+        fd.setName("test.txt");
+        fd.setExtension("txt");
+        return fd;
+    }
+}
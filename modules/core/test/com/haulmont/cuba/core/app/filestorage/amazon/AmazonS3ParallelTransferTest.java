@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.filestorage.amazon;
+
+import com.haulmont.bali.util.Dom4j;
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import com.haulmont.cuba.core.global.FileStorageException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.dom4j.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests multipart upload and ranged download against a local stub of the S3 API, which doesn't check signatures.
+ */
+public class AmazonS3ParallelTransferTest {
+
+    private static final int PART_SIZE = 1000;
+
+    private HttpServer server;
+    private AmazonS3FileStorage fileStorage;
+
+    private Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private AtomicInteger failingPartRequests = new AtomicInteger();
+    private AtomicInteger rangeRequests = new AtomicInteger();
+    private AtomicInteger abortedUploads = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        String endpointUrl = "http://localhost:" + server.getAddress().getPort();
+        fileStorage = new AmazonS3FileStorage();
+        fileStorage.amazonS3Config = new AmazonS3Config() {
+            @Override
+            public String getAccessKey() {
+                return "accessKey";
+            }
+
+            @Override
+            public String getSecretAccessKey() {
+                return "secretAccessKey";
+            }
+
+            @Override
+            public String getRegionName() {
+                return "us-east-1";
+            }
+
+            @Override
+            public String getBucket() {
+                return "test-bucket";
+            }
+
+            @Override
+            public int getChunkSize() {
+                return 8192;
+            }
+
+            @Override
+            public String getEndpointUrl() {
+                return endpointUrl;
+            }
+
+            @Override
+            public int getPartSize() {
+                return PART_SIZE;
+            }
+
+            @Override
+            public int getParallelism() {
+                return 3;
+            }
+
+            @Override
+            public int getMaxRetries() {
+                return 2;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fileStorage.stopTransferExecutor();
+        server.stop(0);
+    }
+
+    @Test
+    public void testMultipartUploadAndRangedDownload() throws Exception {
+        byte[] content = createContent(PART_SIZE * 5 + 123);
+        FileDescriptor fd = createFileDescriptor(content.length);
+
+        // the first request of each part fails and is repeated
+        failingPartRequests.set(6);
+        fileStorage.saveStream(fd, new ByteArrayInputStream(content));
+
+        assertEquals(1, objects.size());
+        assertArrayEquals(content, objects.values().iterator().next());
+        assertTrue(uploads.isEmpty());
+
+        try (InputStream inputStream = fileStorage.openStream(fd)) {
+            assertArrayEquals(content, IOUtils.toByteArray(inputStream));
+        }
+        assertEquals(6, rangeRequests.get());
+    }
+
+    @Test
+    public void testUploadAbortedAfterRetries() throws Exception {
+        byte[] content = createContent(PART_SIZE * 3);
+        FileDescriptor fd = createFileDescriptor(content.length);
+
+        failingPartRequests.set(Integer.MAX_VALUE);
+        try {
+            fileStorage.saveStream(fd, new ByteArrayInputStream(content));
+            fail();
+        } catch (FileStorageException e) {
+            assertEquals(FileStorageException.Type.IO_EXCEPTION, e.getType());
+        }
+        assertTrue(objects.isEmpty());
+        assertTrue(uploads.isEmpty());
+        assertEquals(1, abortedUploads.get());
+    }
+
+    @Test
+    public void testRangedDownloadOfMissingFile() throws Exception {
+        FileDescriptor fd = createFileDescriptor(PART_SIZE * 2);
+        try {
+            fileStorage.openStream(fd);
+            fail();
+        } catch (FileStorageException e) {
+            assertEquals(FileStorageException.Type.FILE_NOT_FOUND, e.getType());
+        }
+    }
+
+    private FileDescriptor createFileDescriptor(long size) {
+        FileDescriptor fd = new FileDescriptor();
+        fd.setCreateDate(new Date());
+        fd.setSize(size);
+        fd.setName("test.bin");
+        fd.setExtension("bin");
+        return fd;
+    }
+
+    private byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+        String method = exchange.getRequestMethod();
+
+        if ("POST".equals(method) && query.containsKey("uploads")) {
+            String uploadId = UUID.randomUUID().toString();
+            uploads.put(uploadId, new ConcurrentHashMap<>());
+            sendXml(exchange, "<InitiateMultipartUploadResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                    + "<Key>" + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+        } else if ("PUT".equals(method) && query.containsKey("uploadId")) {
+            if (failingPartRequests.getAndDecrement() > 0) {
+                send(exchange, 500, new byte[0]);
+                return;
+            }
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            uploads.get(query.get("uploadId")).put(partNumber, body);
+            exchange.getResponseHeaders().add("ETag", "\"etag" + partNumber + "\"");
+            send(exchange, 200, new byte[0]);
+        } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+            Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            Element root = Dom4j.readDocument(new String(body, StandardCharsets.UTF_8)).getRootElement();
+            for (Element partElement : Dom4j.elements(root, "Part")) {
+                int partNumber = Integer.parseInt(partElement.elementText("PartNumber"));
+                assertEquals("\"etag" + partNumber + "\"", partElement.elementText("ETag"));
+                object.write(parts.get(partNumber));
+            }
+            objects.put(key, object.toByteArray());
+            sendXml(exchange, "<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>");
+        } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+            uploads.remove(query.get("uploadId"));
+            abortedUploads.incrementAndGet();
+            send(exchange, 204, null);
+        } else if ("GET".equals(method)) {
+            byte[] object = objects.get(key);
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (object == null) {
+                send(exchange, 404, new byte[0]);
+            } else if (range != null) {
+                rangeRequests.incrementAndGet();
+                String[] positions = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(positions[0]);
+                int end = Math.min(Integer.parseInt(positions[1]), object.length - 1);
+                send(exchange, 206, Arrays.copyOfRange(object, start, end + 1));
+            } else {
+                send(exchange, 200, object);
+            }
+        } else {
+            send(exchange, 400, new byte[0]);
+        }
+    }
+
+    private Map<String, String> parseQuery(String query) {
+        Map<String, String> result = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                result.put(pair[0], pair.length > 1 ? pair[1] : "");
+            }
+        }
+        return result;
+    }
+
+    private void sendXml(HttpExchange exchange, String xml) throws IOException {
+        send(exchange, 200, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length == 0 ? -1 : body.length);
+        if (body != null && body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.importexport;
+
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.testmodel.sales.Customer;
+import com.haulmont.cuba.testmodel.sales.Order;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntityImportExportTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntityImportExportAPI entityImportExport;
+    private DataManager dataManager;
+    private List<Customer> customers = new ArrayList<>();
+    private List<Order> orders = new ArrayList<>();
+    private View orderView;
+    private EntityImportView orderImportView;
+
+    @Before
+    public void setUp() throws Exception {
+        AppContext.setProperty("cuba.entityImportExportChunkSize", "2");
+
+        entityImportExport = AppBeans.get(EntityImportExportAPI.class);
+        dataManager = AppBeans.get(DataManager.class);
+
+        CommitContext commitContext = new CommitContext();
+        for (int i = 0; i < 2; i++) {
+            Customer customer = new Customer();
+            customer.setName("customer" + i);
+            customers.add(customer);
+            commitContext.addInstanceToCommit(customer);
+        }
+        for (int i = 0; i < 5; i++) {
+            Order order = new Order();
+            order.setNumber("order" + i);
+            order.setCustomer(customers.get(i % 2));
+            orders.add(order);
+            commitContext.addInstanceToCommit(order);
+        }
+        dataManager.commit(commitContext);
+
+        orderView = new View(Order.class)
+                .addProperty("number")
+                .addProperty("customer", new View(Customer.class).addProperty("name"));
+        orderImportView = new EntityImportView(Order.class)
+                .addLocalProperties()
+                .addManyToOneProperty("customer", ReferenceImportBehaviour.ERROR_ON_MISSING);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        AppContext.setProperty("cuba.entityImportExportChunkSize", null);
+
+        for (Order order : orders) {
+            cont.deleteRecord("TEST_ORDER", order.getId());
+        }
+        for (Customer customer : customers) {
+            cont.deleteRecord("TEST_CUSTOMER", customer.getId());
+        }
+    }
+
+    @Test
+    public void testJsonStream() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entityImportExport.exportEntitiesToJSON(orders, orderView, outputStream);
+
+        changeOrders();
+
+        int count = entityImportExport.importEntitiesFromJson(new ByteArrayInputStream(outputStream.toByteArray()),
+                orderImportView);
+        assertEquals(orders.size(), count);
+        checkOrders();
+    }
+
+    @Test
+    public void testZipStream() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entityImportExport.exportEntitiesToZIP(orders, orderView, outputStream);
+
+        changeOrders();
+
+        int count = entityImportExport.importEntitiesFromZIP(new ByteArrayInputStream(outputStream.toByteArray()),
+                orderImportView);
+        assertEquals(orders.size(), count);
+        checkOrders();
+    }
+
+    @Test
+    public void testRepeatedEntityInNextChunk() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entityImportExport.exportEntitiesToJSON(orders, orderView, outputStream);
+
+        // customers are written in full only once, the next chunks contain their compact form
+        EntityImportView importView = new EntityImportView(Order.class)
+                .addLocalProperties()
+                .addManyToOneProperty("customer", new EntityImportView(Customer.class).addLocalProperties());
+        int count = entityImportExport.importEntitiesFromJson(new ByteArrayInputStream(outputStream.toByteArray()),
+                importView);
+        assertEquals(orders.size(), count);
+
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = dataManager.load(LoadContext.create(Customer.class).setId(customers.get(i).getId()));
+            assertNotNull(customer);
+            assertEquals("customer" + i, customer.getName());
+        }
+        checkOrders();
+    }
+
+    private void changeOrders() {
+        CommitContext commitContext = new CommitContext();
+        for (Order order : orders) {
+            Order loaded = dataManager.load(LoadContext.create(Order.class).setId(order.getId()).setView(orderView));
+            assertNotNull(loaded);
+            loaded.setNumber("changed");
+            loaded.setCustomer(null);
+            commitContext.addInstanceToCommit(loaded);
+        }
+        dataManager.commit(commitContext);
+    }
+
+    private void checkOrders() {
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = dataManager.load(LoadContext.create(Order.class).setId(orders.get(i).getId()).setView(orderView));
+            assertNotNull(order);
+            assertEquals("order" + i, order.getNumber());
+            assertEquals(customers.get(i % 2), order.getCustomer());
+        }
+    }
+}
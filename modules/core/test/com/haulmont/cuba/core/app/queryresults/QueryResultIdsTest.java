@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class QueryResultIdsTest {
+
+    @Test
+    public void testUuids() {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        List<Object> source = new ArrayList<>(uuids);
+        source.addAll(uuids.subList(0, 10));
+
+        QueryResultIds ids = QueryResultIds.of(source);
+        assertEquals(1000, ids.size());
+        for (UUID uuid : uuids) {
+            assertTrue(ids.contains(uuid));
+        }
+        assertFalse(ids.contains(UUID.randomUUID()));
+        assertFalse(ids.contains(1L));
+        assertEquals(new HashSet<>(uuids), new HashSet<>(ids.toList()));
+
+        QueryResultIds intersection = ids.intersect(Arrays.asList(uuids.get(5), UUID.randomUUID(), uuids.get(7)));
+        assertEquals(2, intersection.size());
+        assertTrue(intersection.contains(uuids.get(5)));
+        assertTrue(intersection.contains(uuids.get(7)));
+    }
+
+    @Test
+    public void testNumbers() {
+        QueryResultIds longIds = QueryResultIds.of(Arrays.asList(5L, -3L, 5L, Long.MAX_VALUE));
+        assertEquals(3, longIds.size());
+        assertEquals(Arrays.asList(-3L, 5L, Long.MAX_VALUE), longIds.toList());
+        assertTrue(longIds.contains(-3L));
+        assertFalse(longIds.contains(4L));
+        assertFalse(longIds.contains(5));
+
+        QueryResultIds intIds = QueryResultIds.of(Arrays.asList(3, 1, 2, 3));
+        assertEquals(Arrays.asList(1, 2, 3), intIds.toList());
+        assertEquals(Collections.singletonList(2), intIds.intersect(Arrays.asList(2, 4)).toList());
+        assertSame(QueryResultIds.EMPTY, intIds.intersect(Collections.singletonList(4)));
+    }
+
+    @Test
+    public void testStrings() {
+        QueryResultIds ids = QueryResultIds.of(Arrays.asList("b", "a", "b"));
+        assertEquals(Arrays.asList("a", "b"), ids.toList());
+        assertTrue(ids.contains("a"));
+        assertFalse(ids.contains("c"));
+    }
+
+    @Test
+    public void testEmpty() {
+        QueryResultIds ids = QueryResultIds.of(Collections.emptyList());
+        assertTrue(ids.isEmpty());
+        assertFalse(ids.contains(1));
+        assertTrue(ids.intersect(Collections.singletonList(1)).isEmpty());
+    }
+}
@@ -17,18 +17,27 @@
 
 package com.haulmont.cuba.core.app.scheduling;
 
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerInfoAPI;
 import com.haulmont.cuba.core.entity.ScheduledTask;
 import com.haulmont.cuba.core.entity.SchedulingType;
+import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.TimeSource;
 import com.haulmont.cuba.testsupport.TestContainer;
 import junit.framework.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -137,4 +146,153 @@ public class SchedulingTest {
         assertTrue(scheduling.setRunning(scheduledTask, true));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testNextCheckTime() throws Exception {
+        long now = date("2013-11-13 15:30:30").getTime();
+        Scheduling scheduling = new Scheduling() {
+            {
+                timeSource = new TimeSource() {
+                    @Override
+                    public Date currentTimestamp() {
+                        return new Date(now);
+                    }
+
+                    @Override
+                    public long currentTimeMillis() {
+                        return now;
+                    }
+                };
+                serverInfo = new ServerInfoAPI() {
+                    @Override
+                    public String getReleaseNumber() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getReleaseTimestamp() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getServerId() {
+                        return "localhost:8080/cuba-core";
+                    }
+                };
+            }
+
+            @Override
+            protected TimeZone getCurrentTimeZone() {
+                return TimeZone.getTimeZone("GMT-0");
+            }
+
+            @Override
+            protected long getSchedulingInterval() {
+                return 1000;
+            }
+
+            @Override
+            protected long getSchedulingMaxIdleInterval() {
+                return 24 * 60 * 60 * 1000;
+            }
+        };
+
+        ScheduledTask cronTask = new ScheduledTask();
+        cronTask.setSchedulingType(SchedulingType.CRON);
+        cronTask.setCron("0 0 * * * *");
+        assertEquals(date("2013-11-13 16:00:00"), new Date(scheduling.calculateNextCheckTime(cronTask, now)));
+
+        ScheduledTask periodTask = new ScheduledTask();
+        periodTask.setSchedulingType(SchedulingType.PERIOD);
+        periodTask.setPeriod(10);
+        // never started, so it is due now
+        assertEquals(now + 1000, scheduling.calculateNextCheckTime(periodTask, now));
+        scheduling.lastStartCache.put(periodTask, now);
+        assertEquals(now + 10000, scheduling.calculateNextCheckTime(periodTask, now));
+
+        periodTask.setStartDate(date("2013-11-13 15:00:00"));
+        periodTask.setPeriod(60);
+        periodTask.setTimeFrame(40);
+        scheduling.lastStartCache.remove(periodTask);
+        // current time frame is not used yet
+        assertEquals(now + 1000, scheduling.calculateNextCheckTime(periodTask, now));
+        scheduling.lastStartCache.put(periodTask, date("2013-11-13 15:30:00").getTime());
+        assertEquals(date("2013-11-13 15:31:00"), new Date(scheduling.calculateNextCheckTime(periodTask, now)));
+
+        periodTask.setStartDate(date("2013-11-14 10:00:00"));
+        assertEquals(date("2013-11-14 10:00:00"), new Date(scheduling.calculateNextCheckTime(periodTask, now)));
+
+        ScheduledTask delayTask = new ScheduledTask();
+        delayTask.setSchedulingType(SchedulingType.FIXED_DELAY);
+        delayTask.setPeriod(10);
+        scheduling.lastStartCache.put(delayTask, now - 5000);
+        scheduling.lastFinishCache.put(delayTask, now - 1000);
+        assertEquals(now + 9000, scheduling.calculateNextCheckTime(delayTask, now));
+
+        // running tasks are checked when finished
+        scheduling.setRunning(delayTask, true);
+        assertEquals(now + 24 * 60 * 60 * 1000, scheduling.calculateNextCheckTime(delayTask, now));
+    }
+
+    @Test
+    public void testRunDoesNotInvalidateTasks() throws Exception {
+        Scheduling scheduling = AppBeans.get(SchedulingAPI.NAME);
+
+        ScheduledTask task = cont.metadata().create(ScheduledTask.class);
+        task.setBeanName("cuba_Scheduling");
+        task.setMethodName("getActiveTasks");
+        task.setSchedulingType(SchedulingType.PERIOD);
+        task.setPeriod(60);
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            cont.persistence().getEntityManager().persist(task);
+            tx.commit();
+        }
+        try {
+            scheduling.tasksChanged = false;
+            try (Transaction tx = cont.persistence().createTransaction()) {
+                ScheduledTask managed = cont.persistence().getEntityManager().find(ScheduledTask.class, task.getId());
+                managed.setLastStartTime(new Date());
+                managed.setLastStartServer("localhost:8080/cuba-core");
+                tx.commit();
+            }
+            assertFalse(scheduling.tasksChanged);
+
+            try (Transaction tx = cont.persistence().createTransaction()) {
+                ScheduledTask managed = cont.persistence().getEntityManager().find(ScheduledTask.class, task.getId());
+                managed.setPeriod(120);
+                tx.commit();
+            }
+            assertTrue(scheduling.tasksChanged);
+        } finally {
+            cont.deleteRecord(task);
+        }
+    }
+
+    @Test
+    public void testInvalidateTasksSendsOnlyIfEventDriven() throws Exception {
+        AtomicBoolean eventDriven = new AtomicBoolean();
+        Scheduling scheduling = new Scheduling() {
+            @Override
+            protected boolean isEventDriven() {
+                return eventDriven.get();
+            }
+        };
+        List<Serializable> messages = new ArrayList<>();
+        scheduling.clusterManager = (ClusterManagerAPI) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ClusterManagerAPI.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("send")) {
+                        messages.add((Serializable) args[0]);
+                    }
+                    return null;
+                });
+
+        scheduling.invalidateTasks();
+        assertTrue(scheduling.tasksChanged);
+        assertTrue(messages.isEmpty());
+
+        eventDriven.set(true);
+        scheduling.invalidateTasks();
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0) instanceof Scheduling.TasksChangedMsg);
+    }
+}
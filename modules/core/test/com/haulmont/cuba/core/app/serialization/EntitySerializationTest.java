@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.serialization;
+
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.testmodel.sales.Customer;
+import com.haulmont.cuba.testmodel.sales.Order;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntitySerializationTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntitySerializationAPI entitySerialization;
+    private Customer customer;
+    private List<Order> orders;
+
+    @Before
+    public void setUp() throws Exception {
+        entitySerialization = AppBeans.get(EntitySerializationAPI.class);
+
+        customer = new Customer();
+        customer.setName("customer");
+        orders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = new Order();
+            order.setNumber("order" + i);
+            order.setCustomer(customer);
+            orders.add(order);
+        }
+    }
+
+    @Test
+    public void testToJsonWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        entitySerialization.toJson(orders, null, writer, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        assertEquals(entitySerialization.toJson(orders, null, EntitySerializationOption.COMPACT_REPEATED_ENTITIES),
+                writer.toString());
+    }
+
+    @Test
+    public void testEntitiesFromJsonReader() throws Exception {
+        String json = entitySerialization.toJson(orders, null, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        List<Order> result = new ArrayList<>();
+        entitySerialization.entitiesFromJson(new StringReader(json), null, (Order order) -> {
+            // the consumer can use the serialization without breaking the stream
+            assertNotNull(entitySerialization.toJson(order));
+            result.add(order);
+        }, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        assertEquals(orders, result);
+        for (int i = 0; i < orders.size(); i++) {
+            assertEquals("order" + i, result.get(i).getNumber());
+            // repeated compact entities are resolved to the instance read first
+            assertSame(result.get(0).getCustomer(), result.get(i).getCustomer());
+        }
+        assertEquals("customer", result.get(2).getCustomer().getName());
+    }
+
+    @Test
+    public void testEntitiesFromJsonReaderByBatches() throws Exception {
+        String json = entitySerialization.toJson(orders, null, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        List<List<Order>> batches = new ArrayList<>();
+        entitySerialization.entitiesFromJson(new StringReader(json), null, 2,
+                (List<Order> batch) -> batches.add(batch), EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList(orders.get(0), orders.get(1)), batches.get(0));
+        assertEquals(Arrays.asList(orders.get(2)), batches.get(1));
+
+        Order first = batches.get(0).get(0);
+        Order last = batches.get(1).get(0);
+        assertSame(first.getCustomer(), batches.get(0).get(1).getCustomer());
+
+        // the repeated entity of the next batch is resolved to the instance read in full
+        assertSame(first.getCustomer(), last.getCustomer());
+        assertEquals("customer", last.getCustomer().getName());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrozenViewTest {
+
+    @Test
+    public void testFreeze() throws Exception {
+        View groupView = new View(Group.class, "group", false)
+                .addProperty("name");
+        View view = new View(User.class, "user", false)
+                .addProperty("login")
+                .addProperty("group", groupView)
+                .freeze();
+
+        assertTrue(view.isFrozen());
+        assertTrue(groupView.isFrozen());
+
+        try {
+            view.addProperty("name");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            groupView.setLoadPartialEntities(true);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            view.getProperties().clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        View copy = View.copy(view);
+        assertFalse(copy.isFrozen());
+        assertFalse(copy.getProperty("group").getView().isFrozen());
+        copy.getProperty("group").getView().addProperty("parent");
+        assertNull(groupView.getProperty("parent"));
+    }
+
+    @Test
+    public void testExtendFrozenViews() throws Exception {
+        View view1 = new View(User.class, "user1", false)
+                .addProperty("group", new View(Group.class, false).addProperty("name"))
+                .freeze();
+        View view2 = new View(User.class, "user2", false)
+                .addProperty("group", new View(Group.class, false).addProperty("parent"))
+                .freeze();
+
+        View.ViewParams viewParams = new View.ViewParams().name("user3");
+        viewParams.src(Arrays.asList(view1, view2));
+        View view = new View(viewParams);
+
+        View groupView = view.getProperty("group").getView();
+        assertFalse(groupView.isFrozen());
+        assertTrue(groupView.containsProperty("name"));
+        assertTrue(groupView.containsProperty("parent"));
+        assertFalse(view1.getProperty("group").getView().containsProperty("parent"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.google.common.collect.Sets;
+import com.haulmont.cuba.core.sys.jpql.DomainModel;
+import com.haulmont.cuba.core.sys.jpql.JpqlSyntaxException;
+import com.haulmont.cuba.core.sys.jpql.Parser;
+import com.haulmont.cuba.core.sys.jpql.TreeToQuery;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformationCache;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformerAstBased;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.TreeVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryTransformationCacheTest {
+
+    private DomainModel model;
+    private QueryTransformationCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        EntityBuilder builder = new EntityBuilder();
+        builder.startNewEntity("sec$Group");
+        builder.addStringAttribute("name");
+        builder.addReferenceAttribute("parent", "sec$Group");
+        JpqlEntityModel groupEntity = builder.produce();
+
+        builder = new EntityBuilder();
+        builder.startNewEntity("sec$User");
+        builder.addStringAttribute("login");
+        builder.addReferenceAttribute("group", "sec$Group");
+        JpqlEntityModel userEntity = builder.produce();
+
+        model = new DomainModel(groupEntity, userEntity);
+        cache = new QueryTransformationCache(100);
+    }
+
+    @Test
+    public void testParsedTreeIsCopied() throws Exception {
+        String query = "select u from sec$User u where u.login = :login";
+        CommonTree tree1 = Parser.parse(query, true);
+        tree1.deleteChild(tree1.getChildCount() - 1);
+
+        CommonTree tree2 = Parser.parse(query, true);
+        assertNotSame(tree1, tree2);
+        assertEquals(query, toQuery(tree2));
+        assertEquals(query, toQuery(Parser.parse(query, true)));
+    }
+
+    @Test
+    public void testCachedTransformation() throws Exception {
+        String query = "select distinct u from sec$User u order by u.login";
+        for (int i = 0; i < 3; i++) {
+            QueryTransformer transformer = new QueryTransformerAstBased(model, query, cache);
+            assertTrue(transformer.removeDistinct());
+            transformer.removeOrderBy();
+            transformer.addJoinAndWhere("join {E}.group g", "g.name = :session$groupName");
+            transformer.addWhere("{E}.login like :login");
+
+            assertEquals("select u from sec$User u join u.group g " +
+                    "where (g.name = :session$groupName) and (u.login like :login)", transformer.getResult());
+            assertEquals(Sets.newHashSet("session$groupName", "login"), transformer.getAddedParams());
+        }
+
+        // the same operations with other arguments are not taken from the cache
+        QueryTransformer transformer = new QueryTransformerAstBased(model, query, cache);
+        assertTrue(transformer.removeDistinct());
+        transformer.removeOrderBy();
+        transformer.addWhere("{E}.group.name = :groupName");
+        assertEquals("select u from sec$User u where u.group.name = :groupName", transformer.getResult());
+        assertEquals(Sets.newHashSet("groupName"), transformer.getAddedParams());
+
+        transformer = new QueryTransformerAstBased(model, query, cache);
+        transformer.replaceWithCount();
+        assertEquals("select count(distinct u) from sec$User u", transformer.getResult());
+    }
+
+    @Test
+    public void testDeferredOperationsAreAppliedOnCacheMiss() throws Exception {
+        String query = "select u from sec$User u";
+
+        QueryTransformer transformer = new QueryTransformerAstBased(model, query, cache);
+        transformer.addWhere("{E}.login = :login");
+        assertEquals("select u from sec$User u where u.login = :login", transformer.getResult());
+
+        transformer = new QueryTransformerAstBased(model, query, cache);
+        transformer.addWhere("{E}.login = :login");
+        transformer.replaceWithSelectId();
+        assertEquals("select u.id from sec$User u where u.login = :login", transformer.getResult());
+
+        transformer.reset();
+        transformer.replaceWithCount();
+        assertEquals("select count(u) from sec$User u", transformer.getResult());
+        assertTrue(transformer.getAddedParams().isEmpty());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        String query = "select u from sec$User u";
+        for (int i = 0; i < 2; i++) {
+            QueryTransformer transformer = new QueryTransformerAstBased(model, query, cache);
+            try {
+                transformer.addWhere("{E}.login == :login");
+                fail();
+            } catch (JpqlSyntaxException e) {
+                // expected
+            }
+        }
+    }
+
+    private String toQuery(CommonTree tree) {
+        TreeToQuery treeToQuery = new TreeToQuery();
+        new TreeVisitor().visit(tree, treeToQuery);
+        return treeToQuery.getQueryString().trim();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PersistenceSecurityImplTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private PersistenceSecurityImpl persistenceSecurity;
+    private MetaClass metaClass;
+
+    @Before
+    public void setUp() throws Exception {
+        persistenceSecurity = new PersistenceSecurityImpl();
+        persistenceSecurity.metadataTools = cont.metadata().getTools();
+        metaClass = cont.metadata().getClassNN(User.class);
+    }
+
+    @Test
+    public void testConstraintPaths() {
+        View view = createView("{E}.group.name == 'Company' && {E}.getLogin().startsWith('a')");
+        assertNotNull(view);
+        assertNotNull(view.getProperty("login"));
+        assertNotNull(view.getProperty("group"));
+        assertNotNull(view.getProperty("group").getView().getProperty("name"));
+
+        view = createView("{E}.group != null && {E}.userRoles.size() > 0");
+        assertNotNull(view);
+        assertNotNull(view.getProperty("group"));
+        assertNotNull(view.getProperty("userRoles"));
+    }
+
+    @Test
+    public void testUnknownConstraintPaths() {
+        // attributes of an aliased reference or collection elements are unknown
+        assertNull(createView("def g = {E}.group; g.name == 'Company'"));
+        assertNull(createView("{E}.userRoles.any { it.role.name == 'Administrators' }"));
+        assertNull(createView("def u = {E}; u.login == 'admin'"));
+        assertNull(createView("{E}.toString() == 'admin'"));
+    }
+
+    private View createView(String groovyScript) {
+        View view = new View(User.class, false);
+        int index = groovyScript.indexOf(PersistenceSecurityImpl.CONSTRAINT_ENTITY_PLACEHOLDER);
+        while (index >= 0) {
+            if (!persistenceSecurity.addConstraintPath(view, metaClass, groovyScript,
+                    index + PersistenceSecurityImpl.CONSTRAINT_ENTITY_PLACEHOLDER.length())) {
+                return null;
+            }
+            index = groovyScript.indexOf(PersistenceSecurityImpl.CONSTRAINT_ENTITY_PLACEHOLDER, index + 1);
+        }
+        return view;
+    }
+}
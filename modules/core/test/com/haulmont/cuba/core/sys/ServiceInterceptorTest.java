@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.sys;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.app.ServiceStatisticsAccumulator;
 import com.haulmont.cuba.core.app.TestingService;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.RemoteException;
@@ -125,6 +126,34 @@ public class ServiceInterceptorTest {
         }
     }
 
+    @Test
+    public void testStatistics() throws Exception {
+        TestingService service = AppBeans.get(TestingService.class);
+        ServiceStatisticsAccumulator accumulator = AppBeans.get(ServiceStatisticsAccumulator.class);
+        accumulator.reset();
+
+        service.declarativeTransaction();
+        service.declarativeTransaction();
+        try {
+            service.executeWithException();
+        } catch (Exception e) {
+            // expected
+        }
+
+        String statistics = accumulator.printStatistics();
+        assertTrue(statistics.contains("TestingService.declarativeTransaction() invocations=2 errors=0 sampled=2"));
+        assertTrue(statistics.contains("TestingService.executeWithException() invocations=1 errors=1 sampled=1"));
+
+        accumulator.setSamplingPercent(0);
+        try {
+            accumulator.reset();
+            service.declarativeTransaction();
+            assertEquals("", accumulator.printStatistics());
+        } finally {
+            accumulator.setSamplingPercent(100);
+        }
+    }
+
     @Test
     public void testNewThread() throws Exception {
         ServiceInterceptorTestService service = AppBeans.get(ServiceInterceptorTestService.class);
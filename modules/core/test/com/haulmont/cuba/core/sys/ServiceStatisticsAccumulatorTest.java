@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.cuba.core.app.ServiceStatisticsAccumulator;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that collecting service statistics in {@link ServiceInterceptor} adds negligible overhead to a service
+ * invocation.
+ */
+public class ServiceStatisticsAccumulatorTest {
+
+    private static final int WARMUP_INVOCATIONS = 200_000;
+    private static final int INVOCATIONS = 1_000_000;
+
+    // generous bound to keep the test stable on slow build agents, the expected cost is well below a microsecond
+    private static final long MAX_OVERHEAD_NANOS = 2000;
+
+    @Test
+    public void testOverhead() throws Exception {
+        MethodSignature signature = new TestMethodSignature(Object.class.getMethod("toString"));
+
+        for (int percent : new int[]{0, 10, 100}) {
+            ServiceStatisticsAccumulator accumulator = new ServiceStatisticsAccumulator();
+            accumulator.setSamplingPercent(percent);
+
+            invoke(accumulator, signature, WARMUP_INVOCATIONS);
+            accumulator.reset();
+
+            long start = System.nanoTime();
+            invoke(accumulator, signature, INVOCATIONS);
+            long overhead = (System.nanoTime() - start) / INVOCATIONS;
+            System.out.println("Service statistics overhead with " + percent + "% sampling: " + overhead + " ns");
+
+            assertTrue("overhead " + overhead + " ns", overhead < MAX_OVERHEAD_NANOS);
+            if (percent == 0) {
+                assertTrue(accumulator.getStatistics().isEmpty());
+            } else {
+                ServiceStatisticsAccumulator.MethodStatistics statistics = accumulator.getStatistics().get(0);
+                assertEquals(INVOCATIONS, statistics.getInvocations());
+                assertEquals(INVOCATIONS / 10, statistics.getErrors());
+                long sampled = statistics.getLatency().getCount();
+                assertTrue(percent == 100 ? sampled == INVOCATIONS : sampled > 0 && sampled < INVOCATIONS);
+            }
+        }
+    }
+
+    private void invoke(ServiceStatisticsAccumulator accumulator, MethodSignature signature, int count) {
+        for (int i = 0; i < count; i++) {
+            long startTime = accumulator.startInvocation();
+            accumulator.endInvocation(signature, startTime, i % 10 == 0);
+        }
+    }
+
+    private static class TestMethodSignature implements MethodSignature {
+
+        private final Method method;
+
+        private TestMethodSignature(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Class getReturnType() {
+            return method.getReturnType();
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Class[] getParameterTypes() {
+            return method.getParameterTypes();
+        }
+
+        @Override
+        public String[] getParameterNames() {
+            return new String[0];
+        }
+
+        @Override
+        public Class[] getExceptionTypes() {
+            return method.getExceptionTypes();
+        }
+
+        @Override
+        public String toShortString() {
+            return method.getName();
+        }
+
+        @Override
+        public String toLongString() {
+            return method.toString();
+        }
+
+        @Override
+        public String getName() {
+            return method.getName();
+        }
+
+        @Override
+        public int getModifiers() {
+            return method.getModifiers();
+        }
+
+        @Override
+        public Class getDeclaringType() {
+            return method.getDeclaringClass();
+        }
+
+        @Override
+        public String getDeclaringTypeName() {
+            return method.getDeclaringClass().getName();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class StandardQueryCacheTest {
+
+    private StandardQueryCache queryCache;
+
+    @Before
+    public void setUp() throws Exception {
+        queryCache = createCache(0);
+    }
+
+    private StandardQueryCache createCache(long maxWeight) {
+        return createCache(new StandardQueryCache(), maxWeight);
+    }
+
+    private StandardQueryCache createCache(StandardQueryCache queryCache, long maxWeight) {
+        queryCache.queryCacheConfig = new QueryCacheConfig() {
+            @Override
+            public boolean getQueryCacheEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getQueryCacheMaxSize() {
+                return 100;
+            }
+
+            @Override
+            public long getQueryCacheMaxWeight() {
+                return maxWeight;
+            }
+
+            @Override
+            public int getQueryCacheExpireAfterWriteSec() {
+                return 0;
+            }
+
+            @Override
+            public int getQueryCacheExpireAfterAccessSec() {
+                return 0;
+            }
+
+            @Override
+            public boolean getQueryCacheRecordStats() {
+                return true;
+            }
+        };
+        queryCache.init();
+        return queryCache;
+    }
+
+    @Test
+    public void testFindAndInvalidateById() {
+        QueryKey key = createKey("select u from sec$User u", 0);
+        queryCache.put(key, createResult("sec$User"));
+
+        assertSame(key, queryCache.findQueryKeyById(key.getId()));
+        assertSame(key, queryCache.invalidate(key.getId()));
+        assertNull(queryCache.get(key));
+        assertNull(queryCache.findQueryKeyById(key.getId()));
+        assertNull(queryCache.invalidate(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testReplaceKeepsFirstKey() {
+        QueryKey key1 = createKey("select u from sec$User u", 0);
+        QueryKey key2 = createKey("select u from sec$User u", 0);
+        queryCache.put(key1, createResult("sec$User"));
+        queryCache.put(key2, createResult("sec$User"));
+
+        assertEquals(1, queryCache.size());
+        assertSame(key1, queryCache.findQueryKeyById(key1.getId()));
+        assertNull(queryCache.findQueryKeyById(key2.getId()));
+
+        queryCache.invalidate("sec$User");
+        assertEquals(0, queryCache.size());
+        assertTrue(queryCache.idIndex.isEmpty());
+        assertTrue(queryCache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testInvalidateByType() {
+        QueryKey userKey = createKey("select u from sec$User u", 0);
+        QueryKey groupKey = createKey("select g from sec$Group g", 0);
+        queryCache.put(userKey, createResult("sec$User", "sec$Group"));
+        queryCache.put(groupKey, createResult("sec$Group"));
+
+        queryCache.invalidate("sec$User");
+        assertNull(queryCache.get(userKey));
+        assertNotNull(queryCache.get(groupKey));
+        assertFalse(queryCache.typeIndex.containsKey("sec$User"));
+        assertEquals(Collections.singleton(groupKey), queryCache.typeIndex.get("sec$Group"));
+
+        queryCache.invalidate(Sets.newHashSet("sec$Group"));
+        assertNull(queryCache.get(groupKey));
+        assertTrue(queryCache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testEvictionPrunesIndexes() {
+        for (int i = 0; i < 1000; i++) {
+            queryCache.put(createKey("select u from sec$User u", i), createResult("sec$User"));
+        }
+
+        assertTrue(queryCache.size() <= 100);
+        assertEquals(queryCache.size(), queryCache.idIndex.size());
+        assertEquals(queryCache.size(), queryCache.typeIndex.get("sec$User").size());
+
+        queryCache.invalidateAll();
+        assertEquals(0, queryCache.size());
+        assertTrue(queryCache.idIndex.isEmpty());
+        assertTrue(queryCache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testWeight() {
+        StandardQueryCache queryCache = createCache(400_000);
+
+        QueryKey smallKey = createKey("select u from sec$User u", 0);
+        queryCache.put(smallKey, createResult(1, "sec$User"));
+        long smallWeight = queryCache.getWeight();
+        assertTrue(smallWeight > 0);
+
+        QueryKey bigKey = createKey("select u from sec$User u", 1);
+        queryCache.put(bigKey, createResult(1000, "sec$User"));
+        assertTrue(queryCache.getWeight() > smallWeight + 1000 * 32);
+
+        // does not fit into the maximum weight, so some entries are evicted
+        for (int i = 0; i < 20; i++) {
+            queryCache.put(createKey("select g from sec$Group g", i), createResult(1000, "sec$Group"));
+        }
+        assertTrue(queryCache.getWeight() <= 400_000);
+        assertTrue(queryCache.size() < 22);
+
+        queryCache.invalidateAll();
+        assertEquals(0, queryCache.getWeight());
+    }
+
+    @Test
+    public void testMaxSize() {
+        assertEquals(100, queryCache.getMaxSize());
+        assertEquals(400_000, createCache(400_000).getMaxSize());
+    }
+
+    @Test
+    public void testWeightConsistency() throws Exception {
+        AtomicBoolean negative = new AtomicBoolean();
+        StandardQueryCache queryCache = createCache(new StandardQueryCache() {
+            @Override
+            protected void onRemoval(RemovalNotification<QueryKey, QueryResult> notification) {
+                super.onRemoval(notification);
+                if (weight.get() < 0) {
+                    negative.set(true);
+                }
+            }
+        }, 100_000);
+
+        // replaced entry
+        QueryKey key = createKey("select u from sec$User u", 0);
+        queryCache.put(key, createResult(10, "sec$User"));
+        queryCache.put(createKey("select u from sec$User u", 0), createResult(20, "sec$User"));
+        assertEquals(queryCache.weigh(key, queryCache.get(key)), queryCache.getWeight());
+
+        // entry exceeding the maximum weight is evicted right away
+        queryCache.put(createKey("select g from sec$Group g", 0), createResult(10_000, "sec$Group"));
+        assertEquals(sumWeights(queryCache), queryCache.getWeight());
+        assertFalse(negative.get());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        QueryKey randomKey = createKey("select u from sec$User u", random.nextInt(50));
+                        if (random.nextInt(10) == 0) {
+                            queryCache.invalidate(randomKey);
+                        } else {
+                            queryCache.put(randomKey, createResult(random.nextInt(1, 200), "sec$User"));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(negative.get());
+        assertEquals(sumWeights(queryCache), queryCache.getWeight());
+        assertTrue(queryCache.getWeight() <= 100_000);
+    }
+
+    private long sumWeights(StandardQueryCache queryCache) {
+        long sum = 0;
+        for (Map.Entry<QueryKey, QueryResult> entry : queryCache.asMap().entrySet()) {
+            sum += queryCache.weigh(entry.getKey(), entry.getValue());
+        }
+        return sum;
+    }
+
+    @Test
+    public void testStats() {
+        QueryKey key = createKey("select u from sec$User u", 0);
+        queryCache.put(key, createResult("sec$User"));
+        queryCache.get(key);
+        queryCache.get(createKey("select u from sec$User u", 1));
+
+        assertEquals(1, queryCache.getStats().hitCount());
+        assertEquals(1, queryCache.getStats().missCount());
+    }
+
+    private QueryKey createKey(String queryString, int firstRow) {
+        return new QueryKey(queryString, firstRow, 0, true, false, null, null);
+    }
+
+    private QueryResult createResult(String type, String... relatedTypes) {
+        return createResult(1, type, relatedTypes);
+    }
+
+    private QueryResult createResult(int count, String type, String... relatedTypes) {
+        Set<String> types = Sets.newHashSet(relatedTypes);
+        types.add(type);
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return new QueryResult(ids, type, types);
+    }
+}
@@ -251,6 +251,39 @@ public class DataManagerCommitConstraintTest {
         }
     }
 
+    @Test
+    public void testBulkUpdateConstraintNotPassed() throws LoginException {
+        LoginWorker lw = AppBeans.get(LoginWorker.NAME);
+        DataManager dataManager = AppBeans.get(DataManager.NAME);
+        UserSession userSession = lw.login("constraintuserupdate", passwordEncryption.getPlainHash(PASSWORD), Locale.getDefault());
+        assertNotNull(userSession);
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        try {
+            dataManager = dataManager.secure();
+            CommitContext commitContext = new CommitContext();
+            commitContext.setBulkMode(true);
+            for (User testUser : new User[]{testUserUpdate2, testUserUpdate1}) {
+                User user = dataManager.load(new LoadContext<>(User.class).
+                        setId(testUser.getId()).setView(View.LOCAL));
+                user.setName("newName");
+                commitContext.addInstanceToCommit(user);
+            }
+            dataManager.commit(commitContext);
+
+            fail();
+        } catch (RowLevelSecurityException e) {
+            User user = dataManager.load(new LoadContext<>(User.class).
+                    setId(testUserUpdate2.getId()).setView(View.LOCAL));
+            assertEquals(user.getName(), "oldName");
+        }
+        finally {
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+    }
+
     @Test
     public void testDeleteConstraintNotPassed() throws LoginException {
         LoginWorker lw = AppBeans.get(LoginWorker.NAME);
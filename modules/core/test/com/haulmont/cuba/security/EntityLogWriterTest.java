@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security;
+
+import com.haulmont.cuba.security.app.EntityLogConfig;
+import com.haulmont.cuba.security.app.EntityLogWriteMode;
+import com.haulmont.cuba.security.app.EntityLogWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class EntityLogWriterTest {
+
+    private TestEntityLogWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        writer = new TestEntityLogWriter(Files.createTempDirectory("entitylog").toFile());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writer.shutdown();
+    }
+
+    @Test
+    public void testBatches() {
+        writer.enqueue(createRecords(5));
+        writer.enqueue(createRecords(3));
+        assertEquals(8, writer.getQueueSize());
+
+        writer.writeQueued();
+
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(Arrays.asList(3, 3, 2), writer.batchSizes);
+        assertEquals(8, writer.getWrittenCount());
+    }
+
+    @Test
+    public void testOverflowWritesInCurrentThread() {
+        writer.enqueue(createRecords(8));
+        writer.enqueue(createRecords(5));
+
+        assertEquals(8, writer.getQueueSize());
+        assertEquals(Collections.singletonList(5), writer.batchSizes);
+    }
+
+    @Test
+    public void testOverflowSpillsToFile() {
+        writer.mode = EntityLogWriteMode.ASYNC_SPILL;
+        List<EntityLogWriter.LogRecord> spilled = createRecords(5);
+        writer.enqueue(createRecords(8));
+        writer.enqueue(spilled);
+
+        assertEquals(8, writer.getQueueSize());
+        assertTrue(writer.batchSizes.isEmpty());
+        assertEquals(5, writer.getSpilledCount());
+        assertEquals(1, writer.getSpillDir().list().length);
+
+        writer.writeQueued();
+
+        assertEquals(13, writer.getWrittenCount());
+        assertEquals(getIds(spilled), writer.written.subList(8, 13));
+        assertEquals(0, writer.getSpillDir().list().length);
+    }
+
+    @Test
+    public void testWriteErrorSpillsToFile() {
+        writer.mode = EntityLogWriteMode.ASYNC_SPILL;
+        writer.enqueue(createRecords(2));
+        writer.failing = true;
+        writer.writeQueued();
+
+        assertEquals(0, writer.getWrittenCount());
+        assertEquals(2, writer.getSpilledCount());
+
+        writer.failing = false;
+        writer.enqueue(createRecords(1));
+        writer.writeQueued();
+
+        assertEquals(3, writer.getWrittenCount());
+        assertEquals(0, writer.getSpillDir().list().length);
+    }
+
+    private List<EntityLogWriter.LogRecord> createRecords(int count) {
+        List<EntityLogWriter.LogRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new EntityLogWriter.LogRecord(UUID.randomUUID(), new Date(), "admin", new Date(),
+                    UUID.randomUUID(), "M", "sec$User", UUID.randomUUID(), null, null, null, "name=admin"));
+        }
+        return records;
+    }
+
+    private static List<UUID> getIds(List<EntityLogWriter.LogRecord> records) {
+        List<UUID> ids = new ArrayList<>();
+        for (EntityLogWriter.LogRecord record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+
+    private static class TestEntityLogWriter extends EntityLogWriter {
+
+        private File spillDir;
+        private EntityLogWriteMode mode = EntityLogWriteMode.ASYNC;
+        private boolean failing;
+        private List<Integer> batchSizes = new ArrayList<>();
+        private List<UUID> written = new ArrayList<>();
+
+        public TestEntityLogWriter(File spillDir) {
+            this.spillDir = spillDir;
+            executor = Executors.newSingleThreadExecutor();
+            config = new EntityLogConfig() {
+                @Override
+                public boolean getEnabled() {
+                    return true;
+                }
+
+                @Override
+                public void setEnabled(boolean value) {
+                }
+
+                @Override
+                public EntityLogWriteMode getWriteMode() {
+                    return mode;
+                }
+
+                @Override
+                public void setWriteMode(EntityLogWriteMode value) {
+                }
+
+                @Override
+                public int getWriteQueueCapacity() {
+                    return 10;
+                }
+
+                @Override
+                public int getWriteBatchSize() {
+                    return 3;
+                }
+            };
+        }
+
+        @Override
+        protected void scheduleWrite() {
+            // write explicitly in tests
+        }
+
+        @Override
+        protected void writeQueued() {
+            super.writeQueued();
+        }
+
+        @Override
+        protected void write(List<LogRecord> records) {
+            if (failing)
+                throw new RuntimeException("Test write error");
+            batchSizes.add(records.size());
+            written.addAll(getIds(records));
+            writtenCount.add(records.size());
+        }
+
+        @Override
+        protected File getSpillDir() {
+            return spillDir;
+        }
+
+        private void shutdown() {
+            executor.shutdown();
+            for (File file : spillDir.listFiles()) {
+                file.delete();
+            }
+            spillDir.delete();
+        }
+    }
+}
@@ -17,8 +17,10 @@
 package com.haulmont.cuba.security;
 
 import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.app.LoginWorker;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.security.global.LoginException;
@@ -252,6 +254,40 @@ public class InMemoryConstraintTest {
         }
     }
 
+    @Test
+    public void testCountByChunks() throws LoginException {
+        LoginWorker lw = AppBeans.get(LoginWorker.NAME);
+
+        UserSession userSession = lw.login("constraintUser3", passwordEncryption.getPlainHash(PASSWORD), Locale.getDefault());
+        assertNotNull(userSession);
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        try {
+            PersistenceSecurity persistenceSecurity = AppBeans.get(PersistenceSecurity.NAME);
+            View constraintsView = persistenceSecurity.createInMemoryConstraintsView(cont.metadata().getClassNN(User.class));
+            assertNotNull(constraintsView);
+            assertEquals(1, constraintsView.getProperties().size());
+            assertNotNull(constraintsView.getProperty("login"));
+
+            AppContext.setProperty("cuba.inMemoryConstraintsCountChunkSize", "7");
+
+            DataManager dataManager = AppBeans.get(DataManager.NAME);
+            dataManager = dataManager.secure();
+            LoadContext loadContext = new LoadContext(User.class).setView(View.LOCAL);
+            loadContext.setQuery(new LoadContext.Query("select u from sec$User u where (u.login like 'user%' or u.login like 'constraintUser%') order by u.login desc"));
+            assertEquals(38, dataManager.getCount(loadContext));
+
+            AppContext.setProperty("cuba.inMemoryConstraintsCountLimit", "10");
+            assertEquals(11, dataManager.getCount(loadContext));
+        } finally {
+            AppContext.setProperty("cuba.inMemoryConstraintsCountChunkSize", null);
+            AppContext.setProperty("cuba.inMemoryConstraintsCountLimit", null);
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+    }
+
     @Test
     public void testLoadingLastPage() throws LoginException {
         LoginWorker lw = AppBeans.get(LoginWorker.NAME);
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.ClusterManager;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.sys.AppComponents;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.global.UserSession;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UserSessionsTest {
+
+    private long now = 10000;
+    private CapturingClusterManager clusterManager;
+    private UserSessions userSessions;
+    private UserSession session;
+
+    @Before
+    public void setUp() throws Exception {
+        AppContext.Internals.setAppComponents(new AppComponents("core"));
+
+        clusterManager = new CapturingClusterManager();
+        userSessions = createUserSessions(clusterManager);
+
+        session = new UserSession(UUID.randomUUID(), new User(), Collections.emptyList(), Locale.ENGLISH, false);
+        userSessions.putSessionInfo(session.getId(), new UserSessions.UserSessionInfo(session, now));
+    }
+
+    @Test
+    public void testReceiveNewerTouch() {
+        userSessions.receiveClusterMessage(touch(session.getId(), now + 5000));
+
+        UserSessions.UserSessionInfo usi = userSessions.getSessionInfo(session.getId());
+        assertNotNull(usi);
+        assertEquals(now + 5000, usi.getLastUsedTs());
+        assertSame(session, usi.getSession());
+    }
+
+    @Test
+    public void testReceiveOlderTouch() {
+        userSessions.receiveClusterMessage(touch(session.getId(), now - 5000));
+
+        UserSessions.UserSessionInfo usi = userSessions.getSessionInfo(session.getId());
+        assertNotNull(usi);
+        assertEquals(now, usi.getLastUsedTs());
+
+        assertTrue(clusterManager.messages.isEmpty());
+    }
+
+    @Test
+    public void testReceiveUnknownTouch() {
+        CapturingClusterManager otherClusterManager = new CapturingClusterManager();
+        UserSessions otherUserSessions = createUserSessions(otherClusterManager);
+
+        // a touch doesn't carry the session, so the whole session is requested
+        otherUserSessions.receiveClusterMessage(touch(session.getId(), now + 5000));
+        assertNull(otherUserSessions.getSessionInfo(session.getId()));
+        assertEquals(1, otherClusterManager.messages.size());
+        UserSessions.UserSessionRequestInfo request =
+                (UserSessions.UserSessionRequestInfo) otherClusterManager.messages.get(0);
+        assertEquals(Collections.singletonList(session.getId()), request.getIds());
+
+        userSessions.receiveClusterMessage(request);
+        assertEquals(1, clusterManager.messages.size());
+        UserSessions.UserSessionInfo usi = (UserSessions.UserSessionInfo) clusterManager.messages.get(0);
+        assertSame(session, usi.getSession());
+
+        otherUserSessions.receiveClusterMessage(usi);
+        assertNotNull(otherUserSessions.getSessionInfo(session.getId()));
+    }
+
+    @Test
+    public void testRemoval() {
+        UserSessions otherUserSessions = createUserSessions(new CapturingClusterManager());
+        otherUserSessions.putSessionInfo(session.getId(), new UserSessions.UserSessionInfo(session, now));
+
+        userSessions.touchedSessions.add(session.getId());
+        userSessions.remove(session);
+        assertNull(userSessions.getSessionInfo(session.getId()));
+        assertTrue(userSessions.touchedSessions.isEmpty());
+
+        // removal is sent in the format understood by nodes of previous versions
+        assertEquals(1, clusterManager.messages.size());
+        UserSessions.UserSessionInfo message = (UserSessions.UserSessionInfo) clusterManager.messages.get(0);
+        assertEquals(session.getId(), message.getSession().getId());
+        assertEquals(0, message.getLastUsedTs());
+
+        otherUserSessions.receiveClusterMessage(message);
+        assertNull(otherUserSessions.getSessionInfo(session.getId()));
+
+        // compact removal is still understood
+        otherUserSessions.putSessionInfo(session.getId(), new UserSessions.UserSessionInfo(session, now));
+        otherUserSessions.receiveClusterMessage(touch(session.getId(), 0));
+        assertNull(otherUserSessions.getSessionInfo(session.getId()));
+
+        // removal of an unknown session is not propagated
+        userSessions.remove(session);
+        assertEquals(1, clusterManager.messages.size());
+    }
+
+    private UserSessions.UserSessionTouchInfo touch(UUID id, long lastUsedTs) {
+        return new UserSessions.UserSessionTouchInfo(Collections.singletonList(id),
+                Collections.singletonList(lastUsedTs));
+    }
+
+    private UserSessions createUserSessions(ClusterManager clusterManager) {
+        UserSessions userSessions = new UserSessions();
+        userSessions.timeSource = new TimeSource() {
+            @Override
+            public Date currentTimestamp() {
+                return new Date(now);
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        };
+        userSessions.setClusterManager(clusterManager);
+        return userSessions;
+    }
+
+    private static class CapturingClusterManager extends ClusterManager {
+
+        private List<Serializable> messages = new ArrayList<>();
+
+        @Override
+        public void send(Serializable message) {
+            messages.add(message);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.cache;
+
+import com.haulmont.chile.core.model.Instance;
+
+import java.util.*;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Secondary index of {@link CacheSet} items by a value of an entity attribute.
+ * <p>
+ * A {@link Type#HASH} index resolves equality lookups, a {@link Type#SORTED} index also resolves range lookups.
+ * Items are expected to be {@link Instance}s, the indexed value is obtained with {@link Instance#getValueEx(String)}.
+ * <p>
+ * An index created by {@link #derive()} shares all items with the source index and keeps only its own changes,
+ * like {@link DeltaCollection} does for cache items. Shared data is never modified.
+ * <p>
+ * Index is not thread-safe, it must not be modified after it becomes visible to readers.
+ *
+ * @see PropertyPredicate
+ * @deprecated Will be removed in release 7.0
+ */
+@Deprecated
+public class CacheIndex {
+
+    public enum Type {
+        HASH,
+        SORTED
+    }
+
+    protected final String property;
+    protected final Type type;
+
+    // full index shared between derived indexes, null if this index is full itself
+    protected final CacheIndex base;
+    // items of the base index which are removed in this index
+    protected Set<Object> removed;
+
+    protected Map<Object, Set<Object>> buckets;
+    protected Set<Object> nullBucket;
+    // items removed from the cache can be id-only copies, so keys are remembered for each item
+    protected Map<Object, Object> itemKeys;
+    // own data is shared with another derived index and must be copied before modification
+    protected boolean shared;
+
+    public CacheIndex(String property, Type type) {
+        this(property, type, null);
+    }
+
+    protected CacheIndex(String property, Type type, CacheIndex base) {
+        checkNotNull(property);
+        checkNotNull(type);
+        this.property = property;
+        this.type = type;
+        this.base = base;
+        this.removed = new HashSet<>();
+        this.buckets = type == Type.SORTED ? new TreeMap<>() : new HashMap<>();
+        this.nullBucket = new LinkedHashSet<>();
+        this.itemKeys = new HashMap<>();
+    }
+
+    /**
+     * @return indexed attribute path
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Creates an empty index with the same property and type.
+     */
+    public CacheIndex createEmpty() {
+        return new CacheIndex(property, type);
+    }
+
+    /**
+     * Creates an index containing the same items, which can be modified without affecting this index.
+     * Takes constant time, the changes of this index relative to its base are copied on the first modification.
+     */
+    public CacheIndex derive() {
+        CacheIndex derived = new CacheIndex(property, type, base != null ? base : this);
+        if (base != null) {
+            derived.removed = removed;
+            derived.buckets = buckets;
+            derived.nullBucket = nullBucket;
+            derived.itemKeys = itemKeys;
+            derived.shared = true;
+            shared = true;
+        }
+        return derived;
+    }
+
+    /**
+     * @return number of changes relative to the shared base index
+     */
+    public int getDeltaSize() {
+        return base != null ? removed.size() + itemKeys.size() : 0;
+    }
+
+    public void addAll(Collection<?> items) {
+        for (Object item : items) {
+            add(item);
+        }
+    }
+
+    public void add(Object item) {
+        if (item == null) return;
+        // replace an equal item which may have a different attribute value
+        remove(item);
+
+        ensureOwnData();
+        Object key = getKey(item);
+        itemKeys.put(item, key);
+        getBucket(key, true).add(item);
+    }
+
+    public void removeAll(Collection<?> items) {
+        for (Object item : items) {
+            remove(item);
+        }
+    }
+
+    public void remove(Object item) {
+        if (item == null) return;
+
+        if (itemKeys.containsKey(item)) {
+            ensureOwnData();
+            Object key = itemKeys.remove(item);
+            Set<Object> bucket = getBucket(key, false);
+            if (bucket != null) {
+                bucket.remove(item);
+                if (bucket.isEmpty() && key != null) {
+                    buckets.remove(key);
+                }
+            }
+        }
+        if (base != null && base.itemKeys.containsKey(item) && !removed.contains(item)) {
+            ensureOwnData();
+            removed.add(item);
+        }
+    }
+
+    public void clear() {
+        ensureOwnData();
+        buckets.clear();
+        nullBucket.clear();
+        itemKeys.clear();
+        if (base != null) {
+            removed.addAll(base.itemKeys.keySet());
+        }
+    }
+
+    public int size() {
+        return base != null ? base.size() - removed.size() + itemKeys.size() : itemKeys.size();
+    }
+
+    /**
+     * @return items having the given attribute value, never null
+     */
+    public Collection<Object> get(Object key) {
+        Set<Object> bucket = getBucket(key, false);
+        Collection<Object> own = bucket != null ? Collections.unmodifiableSet(bucket) : Collections.emptySet();
+        if (base == null) {
+            return own;
+        }
+        List<Object> result = new ArrayList<>();
+        addVisible(base.get(key), result);
+        result.addAll(own);
+        return result;
+    }
+
+    /**
+     * @return items having any of the given attribute values, never null
+     */
+    public Collection<Object> getAll(Collection<?> keys) {
+        if (keys.size() == 1) {
+            return get(keys.iterator().next());
+        }
+        List<Object> result = new ArrayList<>();
+        for (Object key : new LinkedHashSet<>(keys)) {
+            result.addAll(get(key));
+        }
+        return result;
+    }
+
+    /**
+     * Selects items with attribute values in the given range. Not null values only are considered.
+     *
+     * @param from          lower bound or null if not bounded
+     * @param fromInclusive whether the lower bound is included
+     * @param to            upper bound or null if not bounded
+     * @param toInclusive   whether the upper bound is included
+     * @return matching items or null if the index is not sorted
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Object> getRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        if (type != Type.SORTED) return null;
+
+        List<Object> result = new ArrayList<>();
+        if (from != null && to != null && ((Comparable) from).compareTo(to) > 0) {
+            return result;
+        }
+        if (base != null) {
+            addVisible(base.getRange(from, fromInclusive, to, toInclusive), result);
+        }
+
+        NavigableMap<Object, Set<Object>> map = (NavigableMap<Object, Set<Object>>) buckets;
+        if (from != null && to != null) {
+            map = map.subMap(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            map = map.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            map = map.headMap(to, toInclusive);
+        }
+        for (Set<Object> bucket : map.values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    protected void addVisible(Collection<Object> baseItems, List<Object> result) {
+        if (removed.isEmpty()) {
+            result.addAll(baseItems);
+        } else {
+            for (Object item : baseItems) {
+                if (!removed.contains(item)) {
+                    result.add(item);
+                }
+            }
+        }
+    }
+
+    protected void ensureOwnData() {
+        if (!shared) return;
+
+        removed = new HashSet<>(removed);
+        Map<Object, Set<Object>> bucketsCopy = type == Type.SORTED ? new TreeMap<>() : new HashMap<>();
+        for (Map.Entry<Object, Set<Object>> entry : buckets.entrySet()) {
+            bucketsCopy.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        buckets = bucketsCopy;
+        nullBucket = new LinkedHashSet<>(nullBucket);
+        itemKeys = new HashMap<>(itemKeys);
+        shared = false;
+    }
+
+    protected Object getKey(Object item) {
+        if (item instanceof Instance) {
+            return ((Instance) item).getValueEx(property);
+        }
+        return null;
+    }
+
+    protected Set<Object> getBucket(Object key, boolean create) {
+        if (key == null) {
+            return nullBucket;
+        }
+        if (create) {
+            return buckets.computeIfAbsent(key, k -> new LinkedHashSet<>());
+        }
+        return buckets.get(key);
+    }
+
+    @Override
+    public String toString() {
+        return type + " index on '" + property + "' (" + size() + " items)";
+    }
+}
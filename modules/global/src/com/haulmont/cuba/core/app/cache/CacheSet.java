@@ -28,6 +28,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Set of elements for ObjectsCache.
+ * <p>
+ * The set can have {@link CacheIndex}es on entity attributes. Queries with {@link PropertyPredicate}s on indexed
+ * attributes take candidates from the index instead of scanning all items. Indexes are maintained automatically
+ * when items are modified in the "for update" mode, see {@link #setForUpdate(boolean)}.
  *
  * @deprecated Will be removed in release 7.0
  */
@@ -38,6 +42,8 @@ public class CacheSet implements Cloneable {
     protected Set<Object> addedItems = Sets.newHashSet();
     protected Set<Object> removedItems = Sets.newHashSet();
 
+    protected Map<String, CacheIndex> indexes = new HashMap<>();
+
     private Collection<Object> items;
 
     public CacheSet() {
@@ -65,6 +71,40 @@ public class CacheSet implements Cloneable {
     }
 
 
+    /**
+     * Adds the index and fills it with the current items.
+     */
+    public void addIndex(CacheIndex index) {
+        checkNotNull(index);
+        index.clear();
+        if (items != null) {
+            index.addAll(items);
+        }
+        indexes.put(index.getProperty(), index);
+    }
+
+    /**
+     * @return index on the attribute or null if the attribute is not indexed
+     */
+    public CacheIndex getIndex(String property) {
+        return indexes.get(property);
+    }
+
+    public Collection<CacheIndex> getIndexes() {
+        return Collections.unmodifiableCollection(indexes.values());
+    }
+
+    /**
+     * Replaces indexes of this set with the given ones without filling them. The caller is responsible for
+     * the indexes being consistent with the items.
+     */
+    public void setIndexes(Collection<CacheIndex> indexes) {
+        this.indexes = new HashMap<>();
+        for (CacheIndex index : indexes) {
+            this.indexes.put(index.getProperty(), index);
+        }
+    }
+
     public Set<Object> getAddedItems() {
         return addedItems;
     }
@@ -90,7 +130,12 @@ public class CacheSet implements Cloneable {
     public CacheSet query(Predicate selector) {
         checkNotNull(selector);
 
-        LinkedList<Object> setItems = new LinkedList<>();
+        Collection<Object> indexed = selectByIndex(selector);
+        if (indexed != null) {
+            return new CacheSet(new ArrayList<>(indexed));
+        }
+
+        List<Object> setItems = new ArrayList<>();
         CollectionUtils.select(items, selector, setItems);
         return new CacheSet(setItems);
     }
@@ -104,8 +149,13 @@ public class CacheSet implements Cloneable {
     public CacheSet querySequential(Predicate... selectors) {
         checkNotNull(selectors);
 
+        IndexedCandidates candidates = selectCandidates(Arrays.asList(selectors));
+        if (candidates != null) {
+            return new CacheSet(candidates.filter(new ArrayList<>()));
+        }
+
         Collection<Object> resultCollection = new ArrayList<>(items);
-        Collection<Object> filterCollection = new LinkedList<>();
+        Collection<Object> filterCollection = new ArrayList<>();
         Collection<Object> tempCollection;
 
         int i = 0;
@@ -132,6 +182,11 @@ public class CacheSet implements Cloneable {
     public int countConjunction(Predicate... selectors) {
         checkNotNull(selectors);
 
+        IndexedCandidates candidates = selectCandidates(Arrays.asList(selectors));
+        if (candidates != null) {
+            return candidates.count();
+        }
+
         ConjunctionPredicate predicate = new ConjunctionPredicate(selectors);
 
         return CollectionUtils.countMatches(items, predicate);
@@ -141,12 +196,21 @@ public class CacheSet implements Cloneable {
         checkNotNull(selectors);
         checkNotNull(amplifyingSelector);
 
-        ConjunctionPredicate conjunctionPredicate = new ConjunctionPredicate(selectors);
+        Collection<Object> source = items;
+        ConjunctionPredicate conjunctionPredicate;
+
+        IndexedCandidates candidates = selectCandidates(selectors);
+        if (candidates != null) {
+            source = candidates.items;
+            conjunctionPredicate = new ConjunctionPredicate(candidates.remaining);
+        } else {
+            conjunctionPredicate = new ConjunctionPredicate(selectors);
+        }
 
         int count1 = 0;
         int count2 = 0;
 
-        for (Object item : items) {
+        for (Object item : source) {
             if (conjunctionPredicate.evaluate(item)) {
                 count1++;
                 if (amplifyingSelector.evaluate(item)) {
@@ -165,13 +229,73 @@ public class CacheSet implements Cloneable {
      * @return CacheSet
      */
     public CacheSet queryConjunction(Predicate... selectors) {
+        checkNotNull(selectors);
+
+        IndexedCandidates candidates = selectCandidates(Arrays.asList(selectors));
+        if (candidates != null) {
+            return new CacheSet(candidates.filter(new ArrayList<>()));
+        }
+
         return query(new ConjunctionPredicate(selectors));
     }
 
+    /**
+     * Selects items matching the predicate using an index.
+     *
+     * @return matching items or null if the predicate cannot be resolved through an index
+     */
+    protected Collection<Object> selectByIndex(Predicate selector) {
+        if (indexes.isEmpty() || !(selector instanceof PropertyPredicate)) {
+            return null;
+        }
+        PropertyPredicate propertyPredicate = (PropertyPredicate) selector;
+        CacheIndex index = indexes.get(propertyPredicate.getProperty());
+        return index != null ? propertyPredicate.select(index) : null;
+    }
+
+    /**
+     * Chooses the most selective of indexed predicates.
+     *
+     * @return candidate items and predicates which are still to be checked, or null if no predicate is indexed
+     */
+    protected IndexedCandidates selectCandidates(Collection<Predicate> selectors) {
+        if (indexes.isEmpty()) {
+            return null;
+        }
+
+        Collection<Object> bestItems = null;
+        Predicate bestSelector = null;
+        for (Predicate selector : selectors) {
+            Collection<Object> selected = selectByIndex(selector);
+            if (selected != null && (bestItems == null || selected.size() < bestItems.size())) {
+                bestItems = selected;
+                bestSelector = selector;
+            }
+        }
+        if (bestItems == null) {
+            return null;
+        }
+
+        List<Predicate> remaining = new ArrayList<>(selectors.size() - 1);
+        for (Predicate selector : selectors) {
+            if (selector != bestSelector) {
+                remaining.add(selector);
+            }
+        }
+        return new IndexedCandidates(bestItems, remaining);
+    }
+
     @Override
     public Object clone() throws CloneNotSupportedException {
         CacheSet cloneInstance = (CacheSet) super.clone();
-        cloneInstance.items = new ArrayList<>(items);
+        if (items instanceof DeltaCollection) {
+            // copy-on-write, the clone can be modified without affecting this set
+            cloneInstance.items = ((DeltaCollection) items).derive();
+        } else {
+            cloneInstance.items = new ArrayList<>(items);
+        }
+        // indexes are shared, the clone is intended for reading
+        cloneInstance.indexes = new HashMap<>(indexes);
         return cloneInstance;
     }
 
@@ -184,6 +308,44 @@ public class CacheSet implements Cloneable {
         return (items != null) ? items.size() : 0;
     }
 
+    protected static class IndexedCandidates {
+        protected final Collection<Object> items;
+        protected final List<Predicate> remaining;
+
+        protected IndexedCandidates(Collection<Object> items, List<Predicate> remaining) {
+            this.items = items;
+            this.remaining = remaining;
+        }
+
+        protected boolean matches(Object item) {
+            for (Predicate predicate : remaining) {
+                if (!predicate.evaluate(item))
+                    return false;
+            }
+            return true;
+        }
+
+        protected <C extends Collection<Object>> C filter(C result) {
+            for (Object item : items) {
+                if (matches(item))
+                    result.add(item);
+            }
+            return result;
+        }
+
+        protected int count() {
+            if (remaining.isEmpty()) {
+                return items.size();
+            }
+            int count = 0;
+            for (Object item : items) {
+                if (matches(item))
+                    count++;
+            }
+            return count;
+        }
+    }
+
     /**
      * Predicate with conjunction operation
      */
@@ -258,13 +420,21 @@ public class CacheSet implements Cloneable {
         @Override
         public boolean add(E o) {
             addedItems.add(o);
-            return items.add(o);
+            boolean added = items.add(o);
+            if (added) {
+                indexAdd(o);
+            }
+            return added;
         }
 
         @Override
         public boolean remove(Object o) {
             removedItems.add(o);
-            return items.remove(o);
+            boolean removed = items.remove(o);
+            if (removed) {
+                indexRemove(o);
+            }
+            return removed;
         }
 
         @Override
@@ -275,14 +445,20 @@ public class CacheSet implements Cloneable {
         @Override
         public boolean addAll(Collection<? extends E> c) {
             addedItems.addAll(c);
-            return items.addAll(c);
+            boolean added = items.addAll(c);
+            if (added) {
+                c.forEach(DifferencesDecorator.this::indexAdd);
+            }
+            return added;
         }
 
         @Override
         public boolean retainAll(Collection<?> c) {
             for (E item : items) {
-                if (!c.contains(item))
+                if (!c.contains(item)) {
                     removedItems.add(item);
+                    indexRemove(item);
+                }
             }
             return items.retainAll(c);
         }
@@ -290,12 +466,30 @@ public class CacheSet implements Cloneable {
         @Override
         public boolean removeAll(Collection<?> c) {
             removedItems.addAll(c);
-            return items.removeAll(c);
+            boolean removed = items.removeAll(c);
+            if (removed) {
+                c.forEach(DifferencesDecorator.this::indexRemove);
+            }
+            return removed;
         }
 
         @Override
         public void clear() {
+            removedItems.addAll(items);
             items.clear();
+            indexes.values().forEach(CacheIndex::clear);
+        }
+
+        protected void indexAdd(Object item) {
+            for (CacheIndex index : indexes.values()) {
+                index.add(item);
+            }
+        }
+
+        protected void indexRemove(Object item) {
+            for (CacheIndex index : indexes.values()) {
+                index.remove(item);
+            }
         }
 
         protected class IteratorDecorator implements Iterator<E> {
@@ -321,6 +515,7 @@ public class CacheSet implements Cloneable {
             public void remove() {
                 removedItems.add(current);
                 iterator.remove();
+                indexRemove(current);
             }
         }
     }
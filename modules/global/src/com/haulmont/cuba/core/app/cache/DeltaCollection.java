@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.cache;
+
+import java.util.*;
+
+/**
+ * Collection of cache items consisting of a shared base set and own changes: removed base items and added items.
+ * <p>
+ * {@link #derive()} creates a new collection with the same items in constant time, the changes are copied on the
+ * first modification. This allows to apply incremental updates to a cache in time proportional to the size of
+ * the changes and to publish the result as a new snapshot without affecting readers of the previous one.
+ * When the changes become large, the collection should be compacted with {@link #compact()}.
+ * <p>
+ * Items are unique: adding an item equal to a contained one replaces it.
+ * Not thread-safe, a collection must not be modified after it becomes visible to readers.
+ *
+ * @deprecated Will be removed in release 7.0
+ */
+@Deprecated
+public class DeltaCollection extends AbstractCollection<Object> {
+
+    // never modified
+    protected final Set<Object> base;
+    // items of the base set which are removed or replaced
+    protected Set<Object> removed;
+    protected Set<Object> added;
+    // changes are shared with another derived collection and must be copied before modification
+    protected boolean shared;
+
+    public DeltaCollection(Collection<?> items) {
+        this(new LinkedHashSet<>(items), new HashSet<>(), new LinkedHashSet<>());
+    }
+
+    protected DeltaCollection(Set<Object> base, Set<Object> removed, Set<Object> added) {
+        this.base = base;
+        this.removed = removed;
+        this.added = added;
+    }
+
+    /**
+     * Creates a collection containing the same items, which can be modified without affecting this collection.
+     */
+    public DeltaCollection derive() {
+        DeltaCollection derived = new DeltaCollection(base, removed, added);
+        derived.shared = true;
+        shared = true;
+        return derived;
+    }
+
+    /**
+     * Creates a collection containing the same items without shared data.
+     */
+    public DeltaCollection compact() {
+        return new DeltaCollection(this);
+    }
+
+    /**
+     * @return number of changes relative to the shared base set
+     */
+    public int getDeltaSize() {
+        return removed.size() + added.size();
+    }
+
+    @Override
+    public int size() {
+        return base.size() - removed.size() + added.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return added.contains(o) || (base.contains(o) && !removed.contains(o));
+    }
+
+    @Override
+    public boolean add(Object o) {
+        ensureOwnChanges();
+        if (added.remove(o)) {
+            // a set keeps the existing element, so remove it first to store the new instance
+            added.add(o);
+            return true;
+        }
+        if (base.contains(o)) {
+            removed.add(o);
+        }
+        added.add(o);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (added.contains(o)) {
+            ensureOwnChanges();
+            added.remove(o);
+            return true;
+        }
+        if (base.contains(o) && !removed.contains(o)) {
+            ensureOwnChanges();
+            removed.add(o);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c) {
+            modified |= remove(o);
+        }
+        return modified;
+    }
+
+    @Override
+    public void clear() {
+        ensureOwnChanges();
+        removed.addAll(base);
+        added.clear();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new DeltaIterator();
+    }
+
+    protected void ensureOwnChanges() {
+        if (shared) {
+            removed = new HashSet<>(removed);
+            added = new LinkedHashSet<>(added);
+            shared = false;
+        }
+    }
+
+    protected class DeltaIterator implements Iterator<Object> {
+        protected Iterator<Object> baseIterator = base.iterator();
+        protected Iterator<Object> addedIterator;
+        protected Object next;
+        protected boolean hasNext;
+        protected Object current;
+        protected boolean currentInBase;
+
+        protected DeltaIterator() {
+            advance();
+        }
+
+        protected void advance() {
+            while (baseIterator != null && baseIterator.hasNext()) {
+                Object item = baseIterator.next();
+                if (!removed.contains(item)) {
+                    next = item;
+                    hasNext = true;
+                    return;
+                }
+            }
+            if (addedIterator == null) {
+                baseIterator = null;
+                // copied so that removal through the iterator does not break the iteration
+                addedIterator = new ArrayList<>(added).iterator();
+            }
+            hasNext = addedIterator.hasNext();
+            next = hasNext ? addedIterator.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            currentInBase = baseIterator != null;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            ensureOwnChanges();
+            if (currentInBase) {
+                removed.add(current);
+            } else {
+                added.remove(current);
+            }
+            current = null;
+        }
+    }
+}
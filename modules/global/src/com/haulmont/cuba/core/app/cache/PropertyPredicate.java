@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.cache;
+
+import com.haulmont.chile.core.model.Instance;
+import org.apache.commons.collections4.Predicate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Predicate on a value of an entity attribute. If the {@link CacheSet} has a {@link CacheIndex} on the attribute,
+ * matching items are taken from the index instead of scanning the whole set.
+ * <p>
+ * Use static factory methods to create instances:
+ * <pre>
+ *     cacheSet.queryConjunction(PropertyPredicate.equal("code", code), otherPredicate);
+ * </pre>
+ *
+ * @deprecated Will be removed in release 7.0
+ */
+@Deprecated
+public abstract class PropertyPredicate implements Predicate {
+
+    protected final String property;
+
+    protected PropertyPredicate(String property) {
+        checkNotNull(property);
+        this.property = property;
+    }
+
+    /**
+     * Matches items having attribute value equal to the given value.
+     */
+    public static PropertyPredicate equal(String property, Object value) {
+        return new Equal(property, value);
+    }
+
+    /**
+     * Matches items having attribute value equal to any of the given values.
+     */
+    public static PropertyPredicate in(String property, Collection<?> values) {
+        return new In(property, values);
+    }
+
+    /**
+     * Matches items having not null attribute value in the given range.
+     * Requires a {@link CacheIndex.Type#SORTED} index to be resolved through the index.
+     *
+     * @param from lower bound, inclusive, or null if not bounded
+     * @param to   upper bound, inclusive, or null if not bounded
+     */
+    public static PropertyPredicate between(String property, Comparable from, Comparable to) {
+        return new Range(property, from, true, to, true);
+    }
+
+    /**
+     * Matches items having not null attribute value greater than the given value.
+     */
+    public static PropertyPredicate greater(String property, Comparable value) {
+        return new Range(property, value, false, null, false);
+    }
+
+    /**
+     * Matches items having not null attribute value less than the given value.
+     */
+    public static PropertyPredicate less(String property, Comparable value) {
+        return new Range(property, null, false, value, false);
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    @Override
+    public boolean evaluate(Object object) {
+        return object instanceof Instance && test(((Instance) object).getValueEx(property));
+    }
+
+    /**
+     * Tests the attribute value.
+     */
+    protected abstract boolean test(Object value);
+
+    /**
+     * Selects matching items from the index.
+     *
+     * @return matching items or null if the index cannot be used for this predicate
+     */
+    protected abstract Collection<Object> select(CacheIndex index);
+
+    protected static class Equal extends PropertyPredicate {
+        protected final Object value;
+
+        public Equal(String property, Object value) {
+            super(property);
+            this.value = value;
+        }
+
+        @Override
+        protected boolean test(Object value) {
+            return Objects.equals(this.value, value);
+        }
+
+        @Override
+        protected Collection<Object> select(CacheIndex index) {
+            return index.get(value);
+        }
+    }
+
+    protected static class In extends PropertyPredicate {
+        protected final Set<Object> values;
+
+        public In(String property, Collection<?> values) {
+            super(property);
+            checkNotNull(values);
+            this.values = new HashSet<>(values);
+        }
+
+        @Override
+        protected boolean test(Object value) {
+            return values.contains(value);
+        }
+
+        @Override
+        protected Collection<Object> select(CacheIndex index) {
+            return index.getAll(values);
+        }
+    }
+
+    protected static class Range extends PropertyPredicate {
+        protected final Comparable from;
+        protected final boolean fromInclusive;
+        protected final Comparable to;
+        protected final boolean toInclusive;
+
+        public Range(String property, Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+            super(property);
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected boolean test(Object value) {
+            if (value == null) {
+                return false;
+            }
+            if (from != null) {
+                int cmp = from.compareTo(value);
+                if (cmp > 0 || (cmp == 0 && !fromInclusive)) {
+                    return false;
+                }
+            }
+            if (to != null) {
+                int cmp = to.compareTo(value);
+                if (cmp < 0 || (cmp == 0 && !toInclusive)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected Collection<Object> select(CacheIndex index) {
+            return index.getRange(from, fromInclusive, to, toInclusive);
+        }
+    }
+}
@@ -22,6 +22,8 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
 import com.haulmont.chile.core.model.MetaClass;
@@ -42,11 +44,15 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.haulmont.cuba.core.entity.BaseEntityInternalAccess.*;
@@ -108,6 +114,28 @@ public class EntitySerialization implements EntitySerializationAPI {
         return createGsonForSerialization(view, options).toJson(entities);
     }
 
+    @Override
+    public void toJson(Collection<? extends Entity> entities,
+                       @Nullable View view,
+                       Writer writer,
+                       EntitySerializationOption... options) {
+        context.remove();
+        Gson gson = createGsonForSerialization(view, options);
+        try {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            jsonWriter.beginArray();
+            for (Entity entity : entities) {
+                gson.toJson(entity, Entity.class, jsonWriter);
+            }
+            jsonWriter.endArray();
+            jsonWriter.flush();
+        } catch (IOException e) {
+            throw new EntitySerializationException("Error writing entities to JSON", e);
+        } finally {
+            context.remove();
+        }
+    }
+
     @Override
     public String objectToJson(Object object, EntitySerializationOption... options) {
         context.remove();
@@ -132,6 +160,64 @@ public class EntitySerialization implements EntitySerializationAPI {
         return createGsonForDeserialization(metaClass, options).fromJson(json, collectionType);
     }
 
+    @Override
+    public <T extends Entity> void entitiesFromJson(Reader reader,
+                                                    @Nullable MetaClass metaClass,
+                                                    Consumer<T> consumer,
+                                                    EntitySerializationOption... options) {
+        context.remove();
+        // the consumer may use the serialization itself, so the context of the stream is restored before each read
+        EntitySerializationContext streamContext = context.get();
+        Gson gson = createGsonForDeserialization(metaClass, options);
+        try {
+            JsonReader jsonReader = gson.newJsonReader(reader);
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                context.set(streamContext);
+                T entity = gson.fromJson(jsonReader, Entity.class);
+                consumer.accept(entity);
+            }
+            jsonReader.endArray();
+        } catch (IOException e) {
+            throw new EntitySerializationException("Error reading entities from JSON", e);
+        } finally {
+            context.remove();
+        }
+    }
+
+    @Override
+    public <T extends Entity> void entitiesFromJson(Reader reader,
+                                                    @Nullable MetaClass metaClass,
+                                                    int batchSize,
+                                                    Consumer<List<T>> batchConsumer,
+                                                    EntitySerializationOption... options) {
+        context.remove();
+        // the consumer may use the serialization itself, so the context of the stream is restored before each read
+        EntitySerializationContext streamContext = context.get();
+        Gson gson = createGsonForDeserialization(metaClass, options);
+        try {
+            JsonReader jsonReader = gson.newJsonReader(reader);
+            jsonReader.beginArray();
+            List<T> batch = new ArrayList<>();
+            while (jsonReader.hasNext()) {
+                context.set(streamContext);
+                batch.add(gson.fromJson(jsonReader, Entity.class));
+                if (batch.size() >= batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            jsonReader.endArray();
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+        } catch (IOException e) {
+            throw new EntitySerializationException("Error reading entities from JSON", e);
+        } finally {
+            context.remove();
+        }
+    }
+
     @Override
     public <T> T objectFromJson(String json, Class<T> clazz, EntitySerializationOption... options) {
         context.remove();
@@ -22,7 +22,11 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
 import javax.annotation.Nullable;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Class that is used for serialization and deserialization of entities to JSON.
@@ -74,6 +78,21 @@ public interface EntitySerializationAPI {
      */
     String toJson(Entity entity);
 
+    /**
+     * Serializes a collection of entities to the JSON array and writes it to the given writer. Method works like the
+     * {@link #toJson(Collection, View, EntitySerializationOption...)}, but entities are written one by one, so the
+     * whole JSON string is never built in memory. The writer is flushed but not closed.
+     *
+     * @param entities a collection of entities to be serialized
+     * @param view     a view that defines which entity properties should be added to the result JSON object
+     * @param writer   a writer to output the JSON array
+     * @param options  options specifying how an entity should be serialized
+     */
+    void toJson(Collection<? extends Entity> entities,
+                @Nullable View view,
+                Writer writer,
+                EntitySerializationOption... options);
+
     /**
      * An overloaded version of the {@link #toJson(Collection, View, EntitySerializationOption...)} method with a null
      * {@code view} parameter and with no serialization options.
@@ -124,6 +143,42 @@ public interface EntitySerializationAPI {
                                                                 @Nullable MetaClass metaClass,
                                                                 EntitySerializationOption... options);
 
+    /**
+     * Deserializes a JSON array of objects read from the given reader and passes the entities to the consumer one by
+     * one, as soon as each of them is read. Method works like the
+     * {@link #entitiesCollectionFromJson(String, MetaClass, EntitySerializationOption...)}, but neither the JSON
+     * string nor the result collection is kept in memory. Entities repeated in the compact form are resolved to the
+     * instances read earlier from the same stream. The reader is not closed.
+     *
+     * @param reader    a reader providing a JSON array of objects
+     * @param metaClass a metaClass of the entities that will be created
+     * @param consumer  a consumer that receives deserialized entities
+     * @param options   options specifying how a JSON object graph was serialized
+     */
+    <T extends Entity> void entitiesFromJson(Reader reader,
+                                             @Nullable MetaClass metaClass,
+                                             Consumer<T> consumer,
+                                             EntitySerializationOption... options);
+
+    /**
+     * Deserializes a JSON array of objects read from the given reader and passes the entities to the consumer by
+     * batches of the given size. Method works like the
+     * {@link #entitiesFromJson(Reader, MetaClass, Consumer, EntitySerializationOption...)}. Entities repeated in the
+     * compact form are resolved to the instances read earlier from the same stream, including the previous batches.
+     * The reader is not closed.
+     *
+     * @param reader        a reader providing a JSON array of objects
+     * @param metaClass     a metaClass of the entities that will be created
+     * @param batchSize     a maximum number of entities in a batch
+     * @param batchConsumer a consumer that receives batches of deserialized entities
+     * @param options       options specifying how a JSON object graph was serialized
+     */
+    <T extends Entity> void entitiesFromJson(Reader reader,
+                                             @Nullable MetaClass metaClass,
+                                             int batchSize,
+                                             Consumer<List<T>> batchConsumer,
+                                             EntitySerializationOption... options);
+
     /**
      * Deserializes an object of any class from JSON. Date fields are deserialized according to the {@link
      * com.haulmont.chile.core.datatypes.impl.DateTimeDatatype} format, entities object and fields of Entity type are
@@ -22,6 +22,7 @@ import com.haulmont.bali.util.Dom4j;
 import com.haulmont.chile.core.annotations.MetaProperty;
 import com.haulmont.chile.core.annotations.NamePattern;
 import com.haulmont.cuba.core.app.scheduled.MethodParameterInfo;
+import com.haulmont.cuba.core.entity.annotation.Listeners;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 import com.haulmont.cuba.core.global.PersistenceHelper;
 import org.apache.commons.lang.StringUtils;
@@ -44,6 +45,7 @@ import java.util.List;
  */
 @Entity(name = "sys$ScheduledTask")
 @Table(name = "SYS_SCHEDULED_TASK")
+@Listeners("cuba_ScheduledTaskEntityListener")
 @NamePattern("#name|beanName,methodName,className,scriptName")
 @SystemLevel
 public class ScheduledTask extends BaseUuidEntity implements Creatable, Updatable, SoftDelete {
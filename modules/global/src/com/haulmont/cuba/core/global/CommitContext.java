@@ -38,6 +38,7 @@ public class CommitContext implements Serializable {
 
     protected boolean softDeletion = true;
     protected boolean discardCommitted;
+    protected boolean bulkMode;
     protected Map<String, Object> dbHints = new HashMap<>();
 
     /**
@@ -189,6 +190,24 @@ public class CommitContext implements Serializable {
         this.discardCommitted = discardCommitted;
     }
 
+    /**
+     * @return whether a large number of instances is committed by phases, see {@link #setBulkMode(boolean)}
+     */
+    public boolean isBulkMode() {
+        return bulkMode;
+    }
+
+    /**
+     * Set to true to commit a large number of instances, e.g. imported data. In this mode, all instances are
+     * persisted or merged first, then security tokens and row-level constraints are checked for all of them at once.
+     * If {@link #isDiscardCommitted()} is true, merged instances are not reloaded.
+     * <p>SQL statements are sent in JDBC batches if batch writing is enabled by the
+     * {@code eclipselink.jdbc.batch-writing} application property.</p>
+     */
+    public void setBulkMode(boolean bulkMode) {
+        this.bulkMode = bulkMode;
+    }
+
     private View getViewFromRepository(Entity entity, String viewName) {
         Metadata metadata = AppBeans.get(Metadata.NAME);
         return metadata.getViewRepository().getView(metadata.getClass(entity.getClass()), viewName);
@@ -24,6 +24,7 @@ import com.haulmont.cuba.core.entity.KeyValueEntity;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -59,6 +60,22 @@ public interface DataManager {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads entity instances by chunks and passes each chunk to the consumer. Use this method to process large
+     * result sets: only one chunk is kept in memory, and every chunk is loaded in a separate transaction with
+     * the same security and dynamic attributes processing as {@link #loadList(LoadContext)}.
+     * <p>Each chunk is restricted by the key of the last instance of the previous chunk, see {@link KeysetPosition}.
+     * So the query must either be not ordered, then the instances are loaded in the order of their primary keys,
+     * or be ordered by a single mandatory persistent property included in the view. The entity must have a simple
+     * primary key. If max results of the query is set, it limits the total number of loaded instances; first result
+     * is not supported.</p>
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @param chunkSize maximum number of instances in a chunk
+     * @param consumer  receives lists of detached instances
+     * @throws IllegalArgumentException if the query order or the entity cannot be used to load by chunks
+     */
+    <E extends Entity> void loadByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer);
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @param context   defines the query
@@ -225,7 +225,7 @@ public class EntityStates {
     public void checkLoadedWithView(Entity entity, String viewName) {
         checkNotNullArgument(viewName);
 
-        checkLoadedWithView(entity, viewRepository.getView(entity.getMetaClass(), viewName));
+        checkLoadedWithView(entity, viewRepository.getSharedView(entity.getMetaClass(), viewName));
     }
 
     protected boolean isLoadedWithView(Entity entity, View view, Set<Entity> visited) {
@@ -301,7 +301,7 @@ public class EntityStates {
     public boolean isLoadedWithView(Entity entity, String viewName) {
         checkNotNullArgument(viewName);
 
-        return isLoadedWithView(entity, viewRepository.getView(entity.getMetaClass(), viewName));
+        return isLoadedWithView(entity, viewRepository.getSharedView(entity.getMetaClass(), viewName));
     }
 
     /**
@@ -147,6 +147,13 @@ public interface GlobalConfig extends Config {
     @DefaultBoolean(true)
     boolean getUseAstBasedJpqlTransformer();
 
+    /**
+     * @return maximum number of memoized results of JPQL query transformations. 0 disables memoization.
+     */
+    @Property("cuba.jpqlTransformationCacheSize")
+    @DefaultInt(1000)
+    int getJpqlTransformationCacheSize();
+
     /**
      * @return Overridden AppFolderEditWindow class name
      */
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
+
+import javax.annotation.Nullable;
+import javax.persistence.Lob;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Position in the results of a query for keyset (seek) pagination.
+ * <p>If set to {@link LoadContext.Query#setKeyset(KeysetPosition)}, the query is ordered by the keyset properties
+ * and returns only instances following the last seen values of these properties. Unlike
+ * {@link LoadContext.Query#setFirstResult(int)}, the database does not have to skip the previous rows, so loading
+ * a page deep in a large table is as fast as loading the first one.</p>
+ * <p>The keyset properties must define a deterministic order, i.e. the last property must be the primary key and
+ * the properties must not contain nulls. See {@link #create(MetaClass, String, boolean)}.</p>
+ * Typical usage:
+ * <pre>
+ *     KeysetPosition keyset = KeysetPosition.create(metaClass, "eventTs", true);
+ *     LoadContext.Query query = LoadContext.createQuery("select e from sec$EntityLog e")
+ *             .setKeyset(keyset)
+ *             .setMaxResults(50);
+ *     List&lt;EntityLogItem&gt; page = dataManager.loadList(LoadContext.create(EntityLogItem.class).setQuery(query));
+ *     // next page
+ *     query.setKeyset(keyset.after(page.get(page.size() - 1)));
+ * </pre>
+ */
+public class KeysetPosition implements Serializable {
+
+    private static final long serialVersionUID = -3172873532937012155L;
+
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ORDER_BY_PROPERTY_PATTERN = Pattern.compile(
+            "order\\s+by\\s+([\\w$]+)\\.([\\w$]+)(?:\\s+(asc|desc))?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private final List<String> properties;
+    private final boolean descending;
+    private final List<Object> values;
+
+    /**
+     * @param properties    properties of the query entity defining the order, the last one must be the primary key
+     * @param descending    whether the order is descending
+     * @param values        last seen values of the properties, or null to load from the beginning
+     */
+    public KeysetPosition(List<String> properties, boolean descending, @Nullable List<Object> values) {
+        Preconditions.checkNotNullArgument(properties, "properties is null");
+        if (properties.isEmpty())
+            throw new IllegalArgumentException("Keyset properties are empty");
+        if (values != null && values.size() != properties.size())
+            throw new IllegalArgumentException("Number of keyset values " + values.size()
+                    + " does not match number of properties " + properties.size());
+        this.properties = Collections.unmodifiableList(new ArrayList<>(properties));
+        this.descending = descending;
+        this.values = values == null ? null : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    /**
+     * Creates a position at the beginning of results ordered by the given properties.
+     * @param descending    whether the order is descending
+     * @param properties    properties of the query entity defining the order, the last one must be the primary key
+     */
+    public static KeysetPosition of(boolean descending, String... properties) {
+        return new KeysetPosition(Arrays.asList(properties), descending, null);
+    }
+
+    /**
+     * Creates a position at the beginning of results sorted by the given property, if this order is deterministic.
+     * The primary key is appended to the keyset to make the order unique.
+     *
+     * @param metaClass     entity meta-class
+     * @param sortProperty  name of a property of the entity, or null to sort by the primary key only
+     * @param descending    whether the order is descending
+     * @return the position or null if the entity has no simple primary key, or the property is not persistent, is
+     * a reference, a LOB or can contain nulls
+     */
+    @Nullable
+    public static KeysetPosition create(MetaClass metaClass, @Nullable String sortProperty, boolean descending) {
+        MetadataTools metadataTools = AppBeans.get(MetadataTools.NAME);
+
+        MetaProperty primaryKey = metadataTools.getPrimaryKeyProperty(metaClass);
+        if (primaryKey == null || metadataTools.hasCompositePrimaryKey(metaClass))
+            return null;
+        if (sortProperty == null || sortProperty.equals(primaryKey.getName()))
+            return of(descending, primaryKey.getName());
+
+        MetaProperty metaProperty = metaClass.getProperty(sortProperty);
+        if (metaProperty == null
+                || !metaProperty.getRange().isDatatype()
+                || !metaProperty.isMandatory()
+                || !metadataTools.isPersistent(metaProperty)
+                || metaProperty.getAnnotatedElement().isAnnotationPresent(Lob.class))
+            return null;
+
+        return of(descending, sortProperty, primaryKey.getName());
+    }
+
+    /**
+     * Creates a position at the beginning of results of the given query keeping its order. The query must either be
+     * not ordered, then the results are ordered by the primary key, or be ordered by a single property of the query
+     * entity allowed by {@link #create(MetaClass, String, boolean)}.
+     *
+     * @param metaClass     meta-class of the query entity
+     * @param queryString   JPQL query
+     * @return the position
+     * @throws IllegalArgumentException if the order of the query cannot be used for keyset pagination
+     */
+    public static KeysetPosition create(MetaClass metaClass, String queryString) {
+        String sortProperty = null;
+        boolean descending = false;
+        Matcher orderByMatcher = ORDER_BY_PATTERN.matcher(queryString);
+        if (orderByMatcher.find()) {
+            Matcher propertyMatcher = ORDER_BY_PROPERTY_PATTERN.matcher(queryString)
+                    .region(orderByMatcher.start(), queryString.length());
+            String alias = QueryTransformerFactory.createParser(queryString).getEntityAlias();
+            if (!propertyMatcher.lookingAt() || !propertyMatcher.group(1).equals(alias))
+                throw new IllegalArgumentException("Keyset pagination supports ordering by a single property of " +
+                        "the query entity only: " + queryString.substring(orderByMatcher.start()));
+            sortProperty = propertyMatcher.group(2);
+            descending = "desc".equalsIgnoreCase(propertyMatcher.group(3));
+        }
+
+        KeysetPosition keyset = create(metaClass, sortProperty, descending);
+        if (keyset == null)
+            throw new IllegalArgumentException(sortProperty == null ?
+                    "Keyset pagination requires an entity with a simple primary key: " + metaClass :
+                    "Keyset pagination requires a mandatory persistent property to order by: " + sortProperty);
+        return keyset;
+    }
+
+    /**
+     * Creates a position following the given instance.
+     * @param entity    the last instance of the previous page, must have the keyset properties loaded
+     */
+    public KeysetPosition after(Entity entity) {
+        Preconditions.checkNotNullArgument(entity, "entity is null");
+        List<Object> lastValues = new ArrayList<>(properties.size());
+        for (String property : properties) {
+            Object value = entity.getValueEx(property);
+            if (value instanceof IdProxy) {
+                value = ((IdProxy) value).getNN();
+            }
+            if (value == null)
+                throw new IllegalStateException("Keyset property '" + property + "' is null in " + entity);
+            lastValues.add(value);
+        }
+        return new KeysetPosition(properties, descending, lastValues);
+    }
+
+    /**
+     * @return properties defining the order, the last one is the primary key
+     */
+    public List<String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return whether the order is descending
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return last seen values of the properties, or null if the results are loaded from the beginning
+     */
+    @Nullable
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        KeysetPosition that = (KeysetPosition) o;
+
+        return descending == that.descending
+                && properties.equals(that.properties)
+                && Objects.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = properties.hashCode();
+        result = 31 * result + (descending ? 1 : 0);
+        result = 31 * result + (values != null ? values.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPosition{" +
+                "properties=" + properties +
+                (descending ? ", descending" : "") +
+                ", values=" + values +
+                '}';
+    }
+}
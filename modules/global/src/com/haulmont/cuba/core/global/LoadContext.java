@@ -20,6 +20,7 @@ import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.Entity;
 
+import javax.annotation.Nullable;
 import javax.persistence.TemporalType;
 import java.io.Serializable;
 import java.util.*;
@@ -293,6 +294,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private int firstResult;
         private int maxResults;
         private boolean cacheable;
+        private KeysetPosition keyset;
 
         /**
          * @param queryString JPQL query string. Only named parameters are supported.
@@ -400,6 +402,26 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return cacheable;
         }
 
+        /**
+         * Sets the keyset pagination mode. The query is ordered by the keyset properties, and if the keyset contains
+         * last seen values, only instances following them are returned. The results offset, if any, is applied
+         * after the keyset restriction.
+         * @param keyset    keyset position or null to use the query as is
+         * @return this query instance for chaining
+         */
+        public Query setKeyset(@Nullable KeysetPosition keyset) {
+            this.keyset = keyset;
+            return this;
+        }
+
+        /**
+         * @return keyset position if the query uses keyset pagination
+         */
+        @Nullable
+        public KeysetPosition getKeyset() {
+            return keyset;
+        }
+
         /**
          * Creates a copy of this Query instance.
          */
@@ -409,6 +431,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.firstResult = firstResult;
             query.maxResults = maxResults;
             query.cacheable = cacheable;
+            query.keyset = keyset;
             return query;
         }
 
@@ -422,6 +445,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             if (firstResult != query.firstResult) return false;
             if (maxResults != query.maxResults) return false;
             if (!parameters.equals(query.parameters)) return false;
+            if (!Objects.equals(keyset, query.keyset)) return false;
             return queryString.equals(query.queryString);
         }
 
@@ -431,6 +455,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             result = 31 * result + queryString.hashCode();
             result = 31 * result + firstResult;
             result = 31 * result + maxResults;
+            result = 31 * result + (keyset != null ? keyset.hashCode() : 0);
             return result;
         }
 
@@ -440,6 +465,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
                     "queryString='" + queryString + '\'' +
                     ", firstResult=" + firstResult +
                     ", maxResults=" + maxResults +
+                    (keyset != null ? ", keyset=" + keyset : "") +
                     '}';
         }
     }
@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.global;
 
 import com.haulmont.cuba.core.sys.jpql.DomainModel;
 import com.haulmont.cuba.core.sys.jpql.DomainModelBuilder;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformationCache;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
@@ -34,9 +35,13 @@ public class QueryTransformerFactory {
 
     protected volatile DomainModel domainModel;
 
+    protected QueryTransformationCache transformationCache = new QueryTransformationCache(0);
+
     @Inject
     public void setConfiguration(Configuration configuration) {
-        useAst = configuration.getConfig(GlobalConfig.class).getUseAstBasedJpqlTransformer();
+        GlobalConfig globalConfig = configuration.getConfig(GlobalConfig.class);
+        useAst = globalConfig.getUseAstBasedJpqlTransformer();
+        transformationCache = new QueryTransformationCache(globalConfig.getJpqlTransformationCacheSize());
     }
 
     public static QueryTransformer createTransformer(String query) {
@@ -53,7 +58,7 @@ public class QueryTransformerFactory {
                 DomainModelBuilder builder = AppBeans.get(DomainModelBuilder.NAME);
                 domainModel = builder.produce();
             }
-            return AppBeans.getPrototype(QueryTransformer.NAME, domainModel, query);
+            return AppBeans.getPrototype(QueryTransformer.NAME, domainModel, query, transformationCache);
         } else {
             return new QueryTransformerRegex(query);
         }
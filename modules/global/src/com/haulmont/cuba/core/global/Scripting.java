@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.global;
 
 import groovy.lang.Binding;
+import groovy.lang.Script;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -61,6 +62,18 @@ public interface Scripting {
      */
     <T> T evaluateGroovy(String text, Map<String, Object> context);
 
+    /**
+     * Compiles Groovy expression into a script class.
+     * <p>Instances of the class created by {@link org.codehaus.groovy.runtime.InvokerHelper#createScript(Class, Binding)}
+     * can be run many times with different variables in the binding, which is cheaper than
+     * {@link #evaluateGroovy(String, Binding)} for bulk evaluations of the same expression. A script instance is not
+     * thread-safe. Compiled classes are cached until {@link #clearCache()} is invoked, so the method should be used
+     * for a limited set of expressions.</p>
+     * @param text      expression text
+     * @return          compiled script class
+     */
+    Class<? extends Script> compileGroovy(String text);
+
     /**
      * Runs Groovy script.
      * The script must be located as file under <em>conf</em> directory, or as a classpath resource.
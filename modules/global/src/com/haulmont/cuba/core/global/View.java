@@ -107,6 +107,8 @@ public class View implements Serializable {
 
     private boolean loadPartialEntities;
 
+    private transient boolean frozen;
+
     public View(Class<? extends Entity> entityClass) {
         this(entityClass, "", true);
     }
@@ -170,8 +172,14 @@ public class View implements Serializable {
 
                 if (sourcePropertyView != null && isNotEmpty(sourcePropertyView.getProperties())) {
 
-                    Map<String, ViewProperty> thisViewProperties = thisProperties.get(sourcePropertyName).getView().properties;
-                    putProperties(thisViewProperties, sourcePropertyView.getProperties());
+                    ViewProperty thisProperty = thisProperties.get(sourcePropertyName);
+                    View thisPropertyView = thisProperty.getView();
+                    if (thisPropertyView.isFrozen()) {
+                        thisPropertyView = copy(thisPropertyView);
+                        thisProperties.put(sourcePropertyName,
+                                new ViewProperty(sourcePropertyName, thisPropertyView, thisProperty.getFetchMode()));
+                    }
+                    putProperties(thisPropertyView.properties, sourcePropertyView.getProperties());
                 }
 
             } else {
@@ -214,7 +222,7 @@ public class View implements Serializable {
      * @return collection of properties
      */
     public Collection<ViewProperty> getProperties() {
-        return properties.values();
+        return frozen ? Collections.unmodifiableCollection(properties.values()) : properties.values();
     }
 
     /**
@@ -225,12 +233,14 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name, @Nullable View view, FetchMode fetchMode) {
+        checkNotFrozen();
         properties.put(name, new ViewProperty(name, view, fetchMode));
         return this;
     }
 
     @Deprecated
     public View addProperty(String name, @Nullable View view, boolean lazy) {
+        checkNotFrozen();
         properties.put(name, new ViewProperty(name, view, lazy));
         return this;
     }
@@ -242,6 +252,7 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name, View view) {
+        checkNotFrozen();
         properties.put(name, new ViewProperty(name, view));
         return this;
     }
@@ -252,6 +263,7 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name) {
+        checkNotFrozen();
         properties.put(name, new ViewProperty(name, null));
         return this;
     }
@@ -315,10 +327,44 @@ public class View implements Serializable {
      * @return this view instance for chaining
      */
     public View setLoadPartialEntities(boolean loadPartialEntities) {
+        checkNotFrozen();
         this.loadPartialEntities = loadPartialEntities;
         return this;
     }
 
+    /**
+     * Makes this view and all its nested views immutable. Immutable views can be shared between threads and
+     * callers without copying, any attempt to modify them throws {@link IllegalStateException}.
+     * Use {@link #copy(View)} to get a modifiable copy.
+     *
+     * @return this view instance
+     */
+    public View freeze() {
+        if (!frozen) {
+            frozen = true;
+            for (ViewProperty property : properties.values()) {
+                if (property.getView() != null) {
+                    property.getView().freeze();
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return true if the view is immutable
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    protected void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException(String.format("View %s is immutable, use View.copy() to modify it", this));
+        }
+    }
+
     /**
      * DEPRECATED since v.6
      */
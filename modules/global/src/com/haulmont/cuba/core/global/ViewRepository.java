@@ -59,6 +59,43 @@ public interface ViewRepository {
     @Nullable
     View findView(MetaClass metaClass, String name);
 
+    /**
+     * Get a shared immutable instance of View for an entity. Unlike {@link #getView(MetaClass, String)}, the view
+     * is not copied on each call, so use it when the view is only read. Use {@link View#copy(View)} to modify it.
+     *
+     * @param entityClass   entity class
+     * @param name          view name
+     * @return              view instance. Throws {@link com.haulmont.cuba.core.global.ViewNotFoundException} if not found.
+     */
+    default View getSharedView(Class<? extends Entity> entityClass, String name) {
+        return getView(entityClass, name);
+    }
+
+    /**
+     * Get a shared immutable instance of View for an entity. Unlike {@link #getView(MetaClass, String)}, the view
+     * is not copied on each call, so use it when the view is only read. Use {@link View#copy(View)} to modify it.
+     *
+     * @param metaClass     entity class
+     * @param name          view name
+     * @return              view instance. Throws {@link com.haulmont.cuba.core.global.ViewNotFoundException} if not found.
+     */
+    default View getSharedView(MetaClass metaClass, String name) {
+        return getView(metaClass, name);
+    }
+
+    /**
+     * Searches for a shared immutable instance of View for an entity.
+     *
+     * @param metaClass     entity class
+     * @param name          view name
+     * @return              view instance or null if no view found
+     * @see #getSharedView(MetaClass, String)
+     */
+    @Nullable
+    default View findSharedView(MetaClass metaClass, String name) {
+        return findView(metaClass, name);
+    }
+
     /**
      * Returns names of views defined for the metaClass
      * @param metaClass entity class
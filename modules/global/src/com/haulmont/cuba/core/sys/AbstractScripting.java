@@ -48,6 +48,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -66,6 +67,7 @@ public abstract class AbstractScripting implements Scripting {
     protected volatile GroovyScriptEngine gse;
     protected volatile CubaGroovyClassLoader gcl;
     protected GenericKeyedObjectPool<String, Script> pool;
+    protected final Map<String, Class<? extends Script>> compiledScripts = new ConcurrentHashMap<>();
 
     protected GlobalConfig globalConfig;
 
@@ -231,6 +233,11 @@ public abstract class AbstractScripting implements Scripting {
         return (T) evaluateGroovy(text, binding);
     }
 
+    @Override
+    public Class<? extends Script> compileGroovy(String text) {
+        return compiledScripts.computeIfAbsent(text, key -> createScript(key).getClass());
+    }
+
     @Override
     public <T> T runGroovyScript(String name, Binding binding) {
         try {
@@ -302,6 +309,7 @@ public abstract class AbstractScripting implements Scripting {
         getGroovyClassLoader().clearCache();
         javaClassLoader.clearCache();
         getPool().clear();
+        compiledScripts.clear();
         GroovyScriptEngine gse = getGroovyScriptEngine();
         try {
             Field scriptCacheField = gse.getClass().getDeclaredField("scriptCache");
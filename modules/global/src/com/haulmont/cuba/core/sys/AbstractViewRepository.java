@@ -25,6 +25,9 @@ import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.Range;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrTokenizer;
@@ -40,12 +43,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -66,6 +70,8 @@ public class AbstractViewRepository implements ViewRepository {
 
     protected Map<MetaClass, Map<String, View>> storage = new ConcurrentHashMap<>();
 
+    protected Map<MetaClass, Map<String, View>> sharedViews = new ConcurrentHashMap<>();
+
     @Inject
     protected Metadata metadata;
 
@@ -74,6 +80,8 @@ public class AbstractViewRepository implements ViewRepository {
 
     protected volatile boolean initialized;
 
+    protected AtomicLong version = new AtomicLong();
+
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
 
     protected void checkInitialized() {
@@ -97,27 +105,162 @@ public class AbstractViewRepository implements ViewRepository {
         StopWatch initTiming = new Slf4JStopWatch("ViewRepository.init." + getClass().getSimpleName());
 
         storage.clear();
+        sharedViews.clear();
+        version.incrementAndGet();
         readFileNames.clear();
 
         String configName = AppContext.getProperty("cuba.viewsConfig");
         if (!StringUtils.isBlank(configName)) {
-            Element rootElem = DocumentHelper.createDocument().addElement("views");
+            String snapshotFileName = AppContext.getProperty("cuba.viewsSnapshotFile");
+            File snapshotFile = StringUtils.isBlank(snapshotFileName) ? null : new File(snapshotFileName);
 
-            StrTokenizer tokenizer = new StrTokenizer(configName);
-            for (String fileName : tokenizer.getTokenArray()) {
-                addFile(rootElem, fileName);
-            }
+            if (snapshotFile == null || !loadSnapshot(configName, snapshotFile)) {
+                Element rootElem = DocumentHelper.createDocument().addElement("views");
 
-            checkDuplicates(rootElem);
+                StrTokenizer tokenizer = new StrTokenizer(configName);
+                for (String fileName : tokenizer.getTokenArray()) {
+                    addFile(rootElem, fileName);
+                }
 
-            for (Element viewElem : Dom4j.elements(rootElem, "view")) {
-                deployView(rootElem, viewElem, new HashSet<>());
+                checkDuplicates(rootElem);
+
+                for (Element viewElem : Dom4j.elements(rootElem, "view")) {
+                    deployView(rootElem, viewElem, new HashSet<>());
+                }
+
+                if (snapshotFile != null) {
+                    saveSnapshot(configName, snapshotFile);
+                }
             }
         }
 
         initTiming.stop();
     }
 
+    /**
+     * Loads deployed views from the snapshot file written by {@link #saveSnapshot(String, File)}. The snapshot is used
+     * only if it was created for the same views configuration, all views XML files have the same content and the
+     * entities have the same properties as the current metadata.
+     *
+     * @return true if the views are loaded, false if they must be deployed from XML
+     */
+    protected boolean loadSnapshot(String configName, File file) {
+        if (!file.exists()) {
+            return false;
+        }
+
+        ViewsSnapshot snapshot;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            snapshot = (ViewsSnapshot) SerializationSupport.deserialize(stream);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read views snapshot {}: {}", file, e.toString());
+            return false;
+        }
+
+        if (!configName.equals(snapshot.configName)
+                || !getMetadataChecksum().equals(snapshot.metadataChecksum)) {
+            log.info("Views snapshot {} is outdated, deploying views from XML", file);
+            return false;
+        }
+        for (Map.Entry<String, String> entry : snapshot.fileChecksums.entrySet()) {
+            if (!entry.getValue().equals(getFileChecksum(entry.getKey()))) {
+                log.info("Views config {} is changed, deploying views from XML", entry.getKey());
+                return false;
+            }
+        }
+
+        Map<MetaClass, Map<String, View>> views = new HashMap<>();
+        for (Map.Entry<String, Map<String, View>> entry : snapshot.views.entrySet()) {
+            MetaClass metaClass = metadata.getClass(entry.getKey());
+            if (metaClass == null) {
+                log.info("Views snapshot {} contains unknown entity {}, deploying views from XML", file, entry.getKey());
+                return false;
+            }
+            views.put(metaClass, new ConcurrentHashMap<>(entry.getValue()));
+        }
+
+        storage.putAll(views);
+        readFileNames.addAll(snapshot.fileChecksums.keySet());
+
+        log.info("Views are loaded from snapshot {}", file);
+        return true;
+    }
+
+    /**
+     * Saves deployed views to the snapshot file together with checksums of the views XML files and the metadata.
+     */
+    protected void saveSnapshot(String configName, File file) {
+        ViewsSnapshot snapshot = new ViewsSnapshot();
+        snapshot.configName = configName;
+        snapshot.metadataChecksum = getMetadataChecksum();
+        for (String fileName : readFileNames) {
+            String checksum = getFileChecksum(fileName);
+            if (checksum == null) {
+                return;
+            }
+            snapshot.fileChecksums.put(fileName, checksum);
+        }
+        for (Map.Entry<MetaClass, Map<String, View>> entry : storage.entrySet()) {
+            snapshot.views.put(entry.getKey().getName(), new HashMap<>(entry.getValue()));
+        }
+
+        // write to a temporary file first, so other nodes sharing the directory never read a partial snapshot
+        File tempFile = new File(file.getPath() + "." + UuidProvider.createUuid() + ".tmp");
+        try {
+            FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                SerializationSupport.serialize(snapshot, stream);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            log.info("Views snapshot is saved to {}", file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to save views snapshot {}: {}", file, e.toString());
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    @Nullable
+    protected String getFileChecksum(String fileName) {
+        try (InputStream stream = resources.getResourceAsStream(fileName)) {
+            return stream == null ? null : DigestUtils.sha256Hex(stream);
+        } catch (IOException e) {
+            log.warn("Unable to read views config {}: {}", fileName, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @return checksum of the metadata which affects deployment of views: entities, their properties, property types,
+     * persistence and name patterns
+     */
+    protected String getMetadataChecksum() {
+        MetadataTools tools = metadata.getTools();
+
+        List<MetaClass> metaClasses = new ArrayList<>(metadata.getSession().getClasses());
+        metaClasses.sort(Comparator.comparing(MetaClass::getName));
+
+        StringBuilder sb = new StringBuilder();
+        for (MetaClass metaClass : metaClasses) {
+            sb.append(metaClass.getName()).append('=').append(metaClass.getJavaClass().getName()).append('[');
+            for (MetaProperty metaProperty : tools.getNamePatternProperties(metaClass, true)) {
+                sb.append(metaProperty.getName()).append(',');
+            }
+            sb.append("]{");
+            for (MetaProperty metaProperty : metaClass.getProperties()) {
+                Range range = metaProperty.getRange();
+                sb.append(metaProperty.getName()).append(':')
+                        .append(metaProperty.getJavaType().getName()).append(':')
+                        .append(range.isClass() ? range.asClass().getName() + ":" + range.getCardinality() : "")
+                        .append(tools.isPersistent(metaProperty) ? ":p" : "")
+                        .append(tools.isSystem(metaProperty) ? ":s" : "")
+                        .append(':').append(tools.getRelatedProperties(metaProperty))
+                        .append(';');
+            }
+            sb.append('}');
+        }
+        return DigestUtils.sha256Hex(sb.toString());
+    }
+
     protected void checkDuplicates(Element rootElem) {
         Set<String> checked = new HashSet<>();
         for (Element viewElem : Dom4j.elements(rootElem, "view")) {
@@ -180,6 +323,15 @@ public class AbstractViewRepository implements ViewRepository {
 
     public void reset() {
         initialized = false;
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return number which changes each time views are deployed or the repository is reset. Can be used to discard
+     * data computed from the deployed views.
+     */
+    public long getVersion() {
+        return version.get();
     }
 
     /**
@@ -242,6 +394,58 @@ public class AbstractViewRepository implements ViewRepository {
         }
     }
 
+    @Override
+    public View getSharedView(Class<? extends Entity> entityClass, String name) {
+        return getSharedView(metadata.getClassNN(entityClass), name);
+    }
+
+    @Override
+    public View getSharedView(MetaClass metaClass, String name) {
+        Preconditions.checkNotNullArgument(metaClass, "MetaClass is null");
+
+        View view = findSharedView(metaClass, name);
+
+        if (view == null) {
+            throw new ViewNotFoundException(String.format("View %s/%s not found", metaClass.getName(), name));
+        }
+        return view;
+    }
+
+    @Override
+    @Nullable
+    public View findSharedView(MetaClass metaClass, @Nullable String name) {
+        if (metaClass == null) {
+            throw new IllegalArgumentException("Passed metaClass should not be null");
+        }
+
+        if (name == null) {
+            return null;
+        }
+
+        if (initialized) {
+            Map<String, View> views = sharedViews.get(metaClass);
+            View view = views == null ? null : views.get(name);
+            if (view != null) {
+                return view;
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            checkInitialized();
+
+            View view = retrieveView(metaClass, name, new HashSet<>());
+            if (view == null) {
+                return null;
+            }
+            View sharedView = copyView(view).freeze();
+            sharedViews.computeIfAbsent(metaClass, key -> new ConcurrentHashMap<>()).put(name, sharedView);
+            return sharedView;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     protected View copyView(@Nullable View view) {
         if (view == null) {
             return null;
@@ -439,6 +643,10 @@ public class AbstractViewRepository implements ViewRepository {
     }
 
     protected View deployView(Element rootElem, Element viewElem, Set<ViewInfo> visited) {
+        // a deployed view can override views included in other views, so shared copies are created again on demand
+        sharedViews.clear();
+        version.incrementAndGet();
+
         String viewName = getViewName(viewElem);
         MetaClass metaClass = getMetaClass(viewElem);
 
@@ -724,6 +932,16 @@ public class AbstractViewRepository implements ViewRepository {
         }
     }
 
+    protected static class ViewsSnapshot implements Serializable {
+
+        private static final long serialVersionUID = -2851826487436296173L;
+
+        protected String configName;
+        protected String metadataChecksum;
+        protected Map<String, String> fileChecksums = new LinkedHashMap<>();
+        protected Map<String, Map<String, View>> views = new HashMap<>();
+    }
+
     protected static class ViewInfo {
         protected Class javaClass;
         protected String name;
@@ -30,7 +30,10 @@ import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.UserSession;
+import groovy.lang.Binding;
+import groovy.lang.Script;
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.codehaus.groovy.runtime.MethodClosure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +43,7 @@ import javax.inject.Inject;
 import java.text.ParseException;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.haulmont.cuba.security.entity.ConstraintOperationType.ALL;
@@ -153,16 +157,17 @@ public class SecurityImpl implements Security {
 
     @Override
     public boolean isPermitted(Entity entity, ConstraintOperationType targetOperationType) {
-        return isPermitted(entity,
-                constraint -> {
-                    ConstraintOperationType operationType = constraint.getOperationType();
-                    return constraint.getCheckType().memory()
-                            && (
-                            (targetOperationType == ALL && operationType != CUSTOM)
-                                    || operationType == targetOperationType
-                                    || operationType == ALL
-                    );
-                });
+        return isPermitted(entity, constraint -> isInMemoryConstraintOfOperation(constraint, targetOperationType));
+    }
+
+    protected boolean isInMemoryConstraintOfOperation(ConstraintData constraint, ConstraintOperationType targetOperationType) {
+        ConstraintOperationType operationType = constraint.getOperationType();
+        return constraint.getCheckType().memory()
+                && (
+                (targetOperationType == ALL && operationType != CUSTOM)
+                        || operationType == targetOperationType
+                        || operationType == ALL
+        );
     }
 
     @Override
@@ -215,33 +220,55 @@ public class SecurityImpl implements Security {
     }
 
     protected boolean isPermitted(Entity entity, ConstraintData constraint) {
-        String metaClassName = entity.getMetaClass().getName();
         String groovyScript = constraint.getGroovyScript();
         if (constraint.getCheckType().memory() && StringUtils.isNotBlank(groovyScript)) {
-            try {
-                Object o = evaluateConstraintScript(entity, groovyScript);
-                if (Boolean.FALSE.equals(o)) {
-                    log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
-                            metaClassName, entity.getId(), constraint.getCheckType());
-                    return false;
-                }
-            } catch (Exception e) {
-                log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
-                        "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+            return isPermitted(entity, constraint, () -> evaluateConstraintScript(entity, groovyScript));
+        }
+        return true;
+    }
+
+    /**
+     * Checks the entity against the result of the constraint's Groovy script. The entity is filtered out if the script
+     * fails.
+     */
+    protected boolean isPermitted(Entity entity, ConstraintData constraint, Supplier<Object> scriptEvaluation) {
+        String metaClassName = entity.getMetaClass().getName();
+        try {
+            Object o = scriptEvaluation.get();
+            if (Boolean.FALSE.equals(o)) {
+                log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
+                        metaClassName, entity.getId(), constraint.getCheckType());
                 return false;
             }
+        } catch (Exception e) {
+            log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
+                    "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+            return false;
         }
         return true;
     }
 
     @Override
     public Object evaluateConstraintScript(Entity entity, String groovyScript) {
-        Map<String, Object> context = new HashMap<>();
+        Map<String, Object> context = createGroovyConstraintsContext();
         context.put("__entity__", entity);
+        return scripting.evaluateGroovy(groovyScript.replace("{E}", "__entity__"), context);
+    }
+
+    protected Map<String, Object> createGroovyConstraintsContext() {
+        Map<String, Object> context = new HashMap<>();
         context.put("parse", new MethodClosure(this, "parseValue"));
         context.put("userSession", userSessionSource.getUserSession());
         fillGroovyConstraintsContext(context);
-        return scripting.evaluateGroovy(groovyScript.replace("{E}", "__entity__"), context);
+        return context;
+    }
+
+    /**
+     * Creates an object checking a series of entities against in-memory constraints selected by the predicate.
+     * Use it instead of {@link #isPermitted(Entity, Predicate)} when many entities are checked in a row.
+     */
+    protected InMemoryConstraintsEvaluator createInMemoryConstraintsEvaluator(Predicate<ConstraintData> predicate) {
+        return new InMemoryConstraintsEvaluator(predicate);
     }
 
     /**
@@ -285,4 +312,78 @@ public class SecurityImpl implements Security {
                     "See the log for details.", clazz, string), null);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks entities against in-memory constraints. Constraint scripts are compiled once and each of them is
+     * evaluated by a single script instance with a binding shared by all entities, so the check does not borrow
+     * scripts from the pool and does not create a binding for each entity. Constraints are selected once per
+     * entity class, results are remembered per entity instance. The object is not thread-safe and should be
+     * discarded after checking the series of entities.
+     */
+    protected class InMemoryConstraintsEvaluator {
+
+        protected final Predicate<ConstraintData> predicate;
+        protected final Map<MetaClass, List<CompiledConstraint>> constraints = new HashMap<>();
+        protected final Map<Entity, Boolean> results = new IdentityHashMap<>();
+        protected Binding binding;
+
+        public InMemoryConstraintsEvaluator(Predicate<ConstraintData> predicate) {
+            this.predicate = predicate;
+        }
+
+        public boolean isPermitted(Entity entity) {
+            List<CompiledConstraint> compiledConstraints = constraints.get(entity.getMetaClass());
+            if (compiledConstraints == null) {
+                compiledConstraints = getConstraints(entity.getMetaClass(), predicate).stream()
+                        .filter(constraint -> constraint.getCheckType().memory()
+                                && StringUtils.isNotBlank(constraint.getGroovyScript()))
+                        .map(CompiledConstraint::new)
+                        .collect(Collectors.toList());
+                constraints.put(entity.getMetaClass(), compiledConstraints);
+            }
+            if (compiledConstraints.isEmpty()) {
+                return true;
+            }
+            Boolean result = results.get(entity);
+            if (result == null) {
+                result = true;
+                for (CompiledConstraint compiledConstraint : compiledConstraints) {
+                    if (!compiledConstraint.isPermitted(entity)) {
+                        result = false;
+                        break;
+                    }
+                }
+                results.put(entity, result);
+            }
+            return result;
+        }
+
+        protected Binding getBinding() {
+            if (binding == null) {
+                binding = new Binding(createGroovyConstraintsContext());
+            }
+            return binding;
+        }
+
+        protected class CompiledConstraint {
+
+            protected final ConstraintData constraint;
+            protected Script script;
+
+            public CompiledConstraint(ConstraintData constraint) {
+                this.constraint = constraint;
+            }
+
+            public boolean isPermitted(Entity entity) {
+                return SecurityImpl.this.isPermitted(entity, constraint, () -> {
+                    if (script == null) {
+                        String text = constraint.getGroovyScript().replace("{E}", "__entity__");
+                        script = InvokerHelper.createScript(scripting.compileGroovy(text), getBinding());
+                    }
+                    script.getBinding().setVariable("__entity__", entity);
+                    return script.run();
+                });
+            }
+        }
+    }
+}
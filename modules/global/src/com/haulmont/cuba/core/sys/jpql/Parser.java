@@ -16,71 +16,119 @@
  */
 package com.haulmont.cuba.core.sys.jpql;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.haulmont.cuba.core.sys.jpql.antlr2.JPA2Lexer;
 import com.haulmont.cuba.core.sys.jpql.antlr2.JPA2Parser;
+import com.haulmont.cuba.core.sys.jpql.tree.BaseCustomNode;
 import com.haulmont.cuba.core.sys.jpql.tree.JoinVariableNode;
 import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.runtime.TokenStream;
+import org.antlr.runtime.tree.CommonErrorNode;
 import org.antlr.runtime.tree.CommonTree;
 import org.antlr.runtime.tree.TreeVisitor;
 import org.apache.commons.lang.StringUtils;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * Parses JPQL queries and their fragments.
+ * <p>
+ * Trees parsed without errors are cached by the input string, and each call returns a copy of the cached tree,
+ * so callers may modify it.
+ */
 public class Parser {
+
+    private static final int MAX_CACHED_TREES = 2000;
+
+    private static final Cache<String, CommonTree> parsedTrees = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TREES)
+            .build();
+
     public static CommonTree parse(String input, boolean failOnErrors) throws RecognitionException {
-        JPA2Parser parser = createParser(input);
-        JPA2Parser.ql_statement_return aReturn = parser.ql_statement();
-        CommonTree tree = (CommonTree) aReturn.getTree();
-        if (failOnErrors) {
-            checkTreeForExceptions(input, tree);
+        String key = "ql_statement:" + input;
+        CommonTree tree = getCachedTree(key);
+        if (tree == null) {
+            JPA2Parser parser = createParser(input);
+            JPA2Parser.ql_statement_return aReturn = parser.ql_statement();
+            tree = (CommonTree) aReturn.getTree();
+            if (failOnErrors) {
+                checkTreeForExceptions(input, tree);
+            }
+            cacheTree(key, tree);
         }
         return tree;
     }
 
     public static CommonTree parseWhereClause(String input) throws RecognitionException {
-        JPA2Parser parser = createParser(input);
-        JPA2Parser.where_clause_return aReturn = parser.where_clause();
-        CommonTree tree = (CommonTree) aReturn.getTree();
-        checkTreeForExceptions(input, tree);
+        String key = "where_clause:" + input;
+        CommonTree tree = getCachedTree(key);
+        if (tree == null) {
+            JPA2Parser parser = createParser(input);
+            JPA2Parser.where_clause_return aReturn = parser.where_clause();
+            tree = (CommonTree) aReturn.getTree();
+            checkTreeForExceptions(input, tree);
+            cacheTree(key, tree);
+        }
         return tree;
     }
 
     public static List<JoinVariableNode> parseJoinClause(String join) throws RecognitionException {
-        JPA2Parser parser = createParser(join);
-        JPA2Parser.join_section_return aReturn = parser.join_section();
-        CommonTree tree = (CommonTree) aReturn.getTree();
+        String key = "join_section:" + join;
+        CommonTree tree = getCachedTree(key);
         if (tree == null) {
-            parser = createParser("join " + join);
-            aReturn = parser.join_section();
+            JPA2Parser parser = createParser(join);
+            JPA2Parser.join_section_return aReturn = parser.join_section();
             tree = (CommonTree) aReturn.getTree();
+            if (tree == null) {
+                parser = createParser("join " + join);
+                aReturn = parser.join_section();
+                tree = (CommonTree) aReturn.getTree();
+            }
+            checkTreeForExceptions(join, tree);
+            cacheTree(key, tree);
         }
         if (tree instanceof JoinVariableNode) {
-            checkTreeForExceptions(join, tree);
             return Collections.singletonList((JoinVariableNode) tree);
         } else {
-            List<JoinVariableNode> joins = tree.getChildren().stream()
+            return tree.getChildren().stream()
                     .filter(node -> node instanceof JoinVariableNode)
                     .map(JoinVariableNode.class::cast)
                     .collect(Collectors.toList());
-            checkTreeForExceptions(join, tree);
-            return joins;
         }
     }
 
     public static CommonTree parseSelectionSource(String input) throws RecognitionException {
-        JPA2Parser parser = createParser(input);
-        JPA2Parser.identification_variable_declaration_or_collection_member_declaration_return aReturn =
-                parser.identification_variable_declaration_or_collection_member_declaration();
-        CommonTree tree = (CommonTree) aReturn.getTree();
-        checkTreeForExceptions(input, tree);
+        String key = "selection_source:" + input;
+        CommonTree tree = getCachedTree(key);
+        if (tree == null) {
+            JPA2Parser parser = createParser(input);
+            JPA2Parser.identification_variable_declaration_or_collection_member_declaration_return aReturn =
+                    parser.identification_variable_declaration_or_collection_member_declaration();
+            tree = (CommonTree) aReturn.getTree();
+            checkTreeForExceptions(input, tree);
+            cacheTree(key, tree);
+        }
         return tree;
     }
 
+    @Nullable
+    private static CommonTree getCachedTree(String key) {
+        CommonTree tree = parsedTrees.getIfPresent(key);
+        return tree != null ? BaseCustomNode.dupTree(tree) : null;
+    }
+
+    private static void cacheTree(String key, CommonTree tree) {
+        if (tree != null && findErrorNodes(tree).isEmpty()) {
+            parsedTrees.put(key, BaseCustomNode.dupTree(tree));
+        }
+    }
+
     private static JPA2Parser createParser(String input) {
         if (input.contains("~"))
             throw new IllegalArgumentException("Input string cannot contain \"~\"");
@@ -92,11 +140,7 @@ public class Parser {
     }
 
     private static void checkTreeForExceptions(String input, CommonTree tree) {
-        TreeVisitor visitor = new TreeVisitor();
-        ErrorNodesFinder errorNodesFinder = new ErrorNodesFinder();
-        visitor.visit(tree, errorNodesFinder);
-
-        List<ErrorRec> errors = errorNodesFinder.getErrorNodes().stream()
+        List<ErrorRec> errors = findErrorNodes(tree).stream()
                 .map(node -> new ErrorRec(node, "CommonErrorNode"))
                 .collect(Collectors.toList());
 
@@ -104,4 +148,11 @@ public class Parser {
             throw new JpqlSyntaxException(String.format("Errors found for input jpql:[%s]", StringUtils.strip(input)), errors);
         }
     }
-}
+
+    private static List<CommonErrorNode> findErrorNodes(CommonTree tree) {
+        TreeVisitor visitor = new TreeVisitor();
+        ErrorNodesFinder errorNodesFinder = new ErrorNodesFinder();
+        visitor.visit(tree, errorNodesFinder);
+        return errorNodesFinder.getErrorNodes();
+    }
+}
\ No newline at end of file
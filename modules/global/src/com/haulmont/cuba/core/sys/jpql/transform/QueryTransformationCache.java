@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.jpql.transform;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Memoizes results of {@link QueryTransformerAstBased}. A transformation is identified by the source query and
+ * the sequence of operations applied to it, so an entry exists only if the sequence has been applied successfully.
+ */
+public class QueryTransformationCache {
+
+    protected Cache<String, Entry> entries;
+
+    public QueryTransformationCache(int maxSize) {
+        entries = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    @Nullable
+    public Entry get(String key) {
+        return entries.getIfPresent(key);
+    }
+
+    public void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * State of the transformation after a sequence of operations.
+     */
+    public static class Entry {
+        protected final Set<String> addedParams;
+        protected final boolean returnValue;
+        protected final String result;
+
+        public Entry(Set<String> addedParams, boolean returnValue, @Nullable String result) {
+            this.addedParams = ImmutableSet.copyOf(addedParams);
+            this.returnValue = returnValue;
+            this.result = result;
+        }
+
+        /**
+         * @return parameters added by the operations
+         */
+        public Set<String> getAddedParams() {
+            return addedParams;
+        }
+
+        /**
+         * @return value returned by the last operation, e.g. by {@link QueryTransformerAstBased#removeDistinct()}
+         */
+        public boolean getReturnValue() {
+            return returnValue;
+        }
+
+        /**
+         * @return resulting query or null if it has not been built yet
+         */
+        @Nullable
+        public String getResult() {
+            return result;
+        }
+    }
+}
@@ -33,7 +33,9 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 import static java.lang.String.format;
 
@@ -47,10 +49,20 @@ public class QueryTransformerAstBased implements QueryTransformer {
     private Set<String> addedParams = new HashSet<>();
     private String returnedEntityName;
     private String mainEntityName;
+    private QueryTransformationCache transformationCache;
+    private String transformationKey;
+    private List<BooleanSupplier> deferredOperations = new ArrayList<>();
 
     public QueryTransformerAstBased(DomainModel model, String query) {
+        this(model, query, null);
+    }
+
+    public QueryTransformerAstBased(DomainModel model, String query,
+                                    @Nullable QueryTransformationCache transformationCache) {
         this.model = model;
         this.query = query;
+        this.transformationCache = transformationCache;
+        this.transformationKey = query;
     }
 
     private QueryTreeTransformer getQueryTransformer() {
@@ -99,6 +111,22 @@ public class QueryTransformerAstBased implements QueryTransformer {
 
     @Override
     public String getResult() {
+        if (transformationCache == null) {
+            return buildResult();
+        }
+
+        QueryTransformationCache.Entry entry = transformationCache.get(transformationKey);
+        if (entry != null && entry.getResult() != null) {
+            return entry.getResult();
+        }
+        applyDeferredOperations();
+        String result = buildResult();
+        transformationCache.put(transformationKey,
+                new QueryTransformationCache.Entry(addedParams, entry != null && entry.getReturnValue(), result));
+        return result;
+    }
+
+    private String buildResult() {
         CommonTree tree = getQueryTransformer().getTree();
         TreeVisitor visitor = new TreeVisitor();
 
@@ -115,7 +143,9 @@ public class QueryTransformerAstBased implements QueryTransformer {
 
     @Override
     public void handleCaseInsensitiveParam(String paramName) {
-        getQueryTransformer().handleCaseInsensitiveParam(paramName);
+        transform(operation("handleCaseInsensitiveParam", paramName), () -> {
+            getQueryTransformer().handleCaseInsensitiveParam(paramName);
+        });
     }
 
     /**
@@ -124,27 +154,32 @@ public class QueryTransformerAstBased implements QueryTransformer {
      */
     @Override
     public void addWhere(String where) {
-        EntityReferenceInferer inferrer = new EntityReferenceInferer(getMainEntityName());
-        EntityReference ref = inferrer.infer(getQueryTransformer());
-        if (where.contains("{E}")) {
-            where = ref.replaceEntries(where, "\\{E\\}");
-        }
-        try {
-            CommonTree whereTree = Parser.parseWhereClause("where " + where);
-            addWhere(whereTree, ref, false);
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+        transform(operation("addWhere", where), () -> {
+            EntityReferenceInferer inferrer = new EntityReferenceInferer(getMainEntityName());
+            EntityReference ref = inferrer.infer(getQueryTransformer());
+            String condition = where;
+            if (condition.contains("{E}")) {
+                condition = ref.replaceEntries(condition, "\\{E\\}");
+            }
+            try {
+                CommonTree whereTree = Parser.parseWhereClause("where " + condition);
+                addWhere(whereTree, ref, false);
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
     public void addWhereAsIs(String where) {
-        try {
-            CommonTree whereTree = Parser.parseWhereClause("where " + where);
-            addWhere(whereTree, null, false);
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+        transform(operation("addWhereAsIs", where), () -> {
+            try {
+                CommonTree whereTree = Parser.parseWhereClause("where " + where);
+                addWhere(whereTree, null, false);
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     /**
@@ -154,141 +189,226 @@ public class QueryTransformerAstBased implements QueryTransformer {
      */
     @Override
     public void mergeWhere(String statement) {
-        EntityReferenceInferer inferer = new EntityReferenceInferer(getMainEntityName());
-        EntityReference ref = inferer.infer(getQueryTransformer());
-        try {
-            CommonTree statementTree = Parser.parse(statement, true);
-            CommonTree whereClause = (CommonTree) statementTree.getFirstChildWithType(JPA2Lexer.T_CONDITION);
-            addWhere(whereClause, ref, true);
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+        transform(operation("mergeWhere", statement), () -> {
+            EntityReferenceInferer inferer = new EntityReferenceInferer(getMainEntityName());
+            EntityReference ref = inferer.infer(getQueryTransformer());
+            try {
+                CommonTree statementTree = Parser.parse(statement, true);
+                CommonTree whereClause = (CommonTree) statementTree.getFirstChildWithType(JPA2Lexer.T_CONDITION);
+                addWhere(whereClause, ref, true);
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
     public void addJoinAndWhere(String join, String where) {
-        EntityReferenceInferer inferer = new EntityReferenceInferer(getMainEntityName());
-        EntityReference ref = inferer.infer(getQueryTransformer());
-        if (where.contains("{E}")) {
-            where = ref.replaceEntries(where, "\\{E\\}");
-        }
-        if (join.contains("{E}")) {
-            join = ref.replaceEntries(join, "\\{E\\}");
-        }
-        String[] strings = join.split(",");
-        join = strings[0];
-        try {
-            if (StringUtils.isNotBlank(join)) {
-                List<JoinVariableNode> joinVariableNodes = Parser.parseJoinClause(join);
-                boolean firstJoin = true;
-                for (JoinVariableNode joinVariableNode : joinVariableNodes) {
-                    getQueryTransformer().mixinJoinIntoTree(joinVariableNode, ref, firstJoin);
-                    firstJoin = false;
-                }
+        transform(operation("addJoinAndWhere", join, where), () -> {
+            EntityReferenceInferer inferer = new EntityReferenceInferer(getMainEntityName());
+            EntityReference ref = inferer.infer(getQueryTransformer());
+            String condition = where;
+            if (condition.contains("{E}")) {
+                condition = ref.replaceEntries(condition, "\\{E\\}");
             }
-            for (int i = 1; i < strings.length; i++) {
-                CommonTree selectionSource = Parser.parseSelectionSource(strings[i]);
-                getQueryTransformer().addSelectionSource(selectionSource);
+            String joins = join;
+            if (joins.contains("{E}")) {
+                joins = ref.replaceEntries(joins, "\\{E\\}");
             }
-            CommonTree whereTree = Parser.parseWhereClause("where " + where);
-            addWhere(whereTree, ref, false);
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+            String[] strings = joins.split(",");
+            String firstJoin = strings[0];
+            try {
+                if (StringUtils.isNotBlank(firstJoin)) {
+                    List<JoinVariableNode> joinVariableNodes = Parser.parseJoinClause(firstJoin);
+                    boolean first = true;
+                    for (JoinVariableNode joinVariableNode : joinVariableNodes) {
+                        getQueryTransformer().mixinJoinIntoTree(joinVariableNode, ref, first);
+                        first = false;
+                    }
+                }
+                for (int i = 1; i < strings.length; i++) {
+                    CommonTree selectionSource = Parser.parseSelectionSource(strings[i]);
+                    getQueryTransformer().addSelectionSource(selectionSource);
+                }
+                CommonTree whereTree = Parser.parseWhereClause("where " + condition);
+                addWhere(whereTree, ref, false);
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
     public void addJoinAsIs(String join) {
-        String[] strings = join.split(",");
-        join = strings[0];
-        try {
-            List<JoinVariableNode> joinVariableNodes = Parser.parseJoinClause(join);
-            for (JoinVariableNode joinVariableNode : joinVariableNodes) {
-                getQueryTransformer().mixinJoinIntoTree(joinVariableNode, new EntityNameEntityReference(getMainEntityName()), false);
-            }
-            for (int i = 1; i < strings.length; i++) {
-                CommonTree selectionSource = Parser.parseSelectionSource(strings[i]);
-                getQueryTransformer().addSelectionSource(selectionSource);
+        transform(operation("addJoinAsIs", join), () -> {
+            String[] strings = join.split(",");
+            try {
+                List<JoinVariableNode> joinVariableNodes = Parser.parseJoinClause(strings[0]);
+                for (JoinVariableNode joinVariableNode : joinVariableNodes) {
+                    getQueryTransformer().mixinJoinIntoTree(joinVariableNode, new EntityNameEntityReference(getMainEntityName()), false);
+                }
+                for (int i = 1; i < strings.length; i++) {
+                    CommonTree selectionSource = Parser.parseSelectionSource(strings[i]);
+                    getQueryTransformer().addSelectionSource(selectionSource);
+                }
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
             }
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+        });
     }
 
     @Override
     public void addFirstSelectionSource(String selection) {
-        try {
-            getQueryTransformer().addFirstSelectionSource(Parser.parseSelectionSource(selection));
-        } catch (RecognitionException e) {
-            throw new RuntimeException(e);
-        }
+        transform(operation("addFirstSelectionSource", selection), () -> {
+            try {
+                getQueryTransformer().addFirstSelectionSource(Parser.parseSelectionSource(selection));
+            } catch (RecognitionException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
     public void replaceWithCount() {
-        EntityReferenceInferer inferer = new EntityReferenceInferer(getReturnedEntityName());
-        EntityReference ref = inferer.infer(getQueryTransformer());
-        getQueryTransformer().replaceWithCount(ref);
+        transform(operation("replaceWithCount"), () -> {
+            EntityReferenceInferer inferer = new EntityReferenceInferer(getReturnedEntityName());
+            EntityReference ref = inferer.infer(getQueryTransformer());
+            getQueryTransformer().replaceWithCount(ref);
+        });
     }
 
     @Override
     public void replaceWithSelectId() {
-        getQueryTransformer().replaceWithSelectId("id");
+        transform(operation("replaceWithSelectId"), () -> {
+            getQueryTransformer().replaceWithSelectId("id");
+        });
     }
 
     @Override
     public void replaceWithSelectId(String pkName) {
-        getQueryTransformer().replaceWithSelectId(pkName);
+        transform(operation("replaceWithSelectId", pkName), () -> {
+            getQueryTransformer().replaceWithSelectId(pkName);
+        });
     }
 
     @Override
     public void replaceWithSelectEntityVariable(String selectEntityVariable) {
-        getQueryTransformer().replaceWithSelectEntityVariable(selectEntityVariable);
+        transform(operation("replaceWithSelectEntityVariable", selectEntityVariable), () -> {
+            getQueryTransformer().replaceWithSelectEntityVariable(selectEntityVariable);
+        });
     }
 
     @Override
     public boolean removeDistinct() {
-        return getQueryTransformer().removeDistinct();
+        return apply(operation("removeDistinct"), () -> getQueryTransformer().removeDistinct());
     }
 
     @Override
     public void addDistinct() {
-        getQueryTransformer().addDistinct();
+        transform(operation("addDistinct"), () -> {
+            getQueryTransformer().addDistinct();
+        });
     }
 
     @Override
     public void replaceOrderBy(boolean desc, String... properties) {
-        EntityReferenceInferer inferer = new EntityReferenceInferer(getReturnedEntityName());
-        EntityReference ref = inferer.infer(getQueryTransformer());
-        PathEntityReference[] paths = Arrays.stream(properties)
-                .map(ref::addFieldPath).toArray(PathEntityReference[]::new);
-        getQueryTransformer().replaceOrderBy(desc, paths);
+        transform(operation("replaceOrderBy", String.valueOf(desc), String.join(",", properties)), () -> {
+            EntityReferenceInferer inferer = new EntityReferenceInferer(getReturnedEntityName());
+            EntityReference ref = inferer.infer(getQueryTransformer());
+            PathEntityReference[] paths = Arrays.stream(properties)
+                    .map(ref::addFieldPath).toArray(PathEntityReference[]::new);
+            getQueryTransformer().replaceOrderBy(desc, paths);
+        });
     }
 
     @Override
     public void addEntityInGroupBy(String entityAlias) {
-        getQueryTransformer().addEntityInGroupBy(entityAlias);
+        transform(operation("addEntityInGroupBy", entityAlias), () -> {
+            getQueryTransformer().addEntityInGroupBy(entityAlias);
+        });
     }
 
     @Override
     public void removeOrderBy() {
-        getQueryTransformer().removeOrderBy();
+        transform(operation("removeOrderBy"), () -> {
+            getQueryTransformer().removeOrderBy();
+        });
     }
 
     @Override
     public void replaceEntityName(String newName) {
-        getQueryTransformer().replaceEntityName(newName);
+        transform(operation("replaceEntityName", newName), () -> {
+            getQueryTransformer().replaceEntityName(newName);
+        });
     }
 
     @Override
     public void reset() {
         queryTreeTransformer = null;
         addedParams.clear();
+        deferredOperations.clear();
+        transformationKey = query;
     }
 
     @Override
     public void replaceInCondition(String paramName) {
-        getQueryTransformer().replaceInCondition(paramName);
+        transform(operation("replaceInCondition", paramName), () -> {
+            getQueryTransformer().replaceInCondition(paramName);
+        });
+    }
+
+    private void transform(String operation, Runnable action) {
+        apply(operation, () -> {
+            action.run();
+            return false;
+        });
+    }
+
+    /**
+     * Applies the operation to the query tree. If the same sequence of operations has already been applied
+     * to the query, the operation is deferred until the tree is needed, because the result can be taken from the cache.
+     */
+    private boolean apply(String operation, BooleanSupplier action) {
+        if (transformationCache == null) {
+            return action.getAsBoolean();
+        }
+
+        String key = transformationKey + operation;
+
+        QueryTransformationCache.Entry entry = queryTreeTransformer == null ? transformationCache.get(key) : null;
+        if (entry != null) {
+            deferredOperations.add(action);
+            addedParams.clear();
+            addedParams.addAll(entry.getAddedParams());
+            transformationKey = key;
+            return entry.getReturnValue();
+        }
+
+        applyDeferredOperations();
+        boolean value = action.getAsBoolean();
+        transformationKey = key;
+        if (transformationCache.get(key) == null) {
+            transformationCache.put(key, new QueryTransformationCache.Entry(addedParams, value, null));
+        }
+        return value;
+    }
+
+    private String operation(String name, String... args) {
+        StringBuilder sb = new StringBuilder().append('\u0000').append(name);
+        for (String arg : args) {
+            sb.append('\u0001').append(arg);
+        }
+        return sb.toString();
+    }
+
+    private void applyDeferredOperations() {
+        if (!deferredOperations.isEmpty()) {
+            getQueryTransformer();
+            for (BooleanSupplier operation : deferredOperations) {
+                operation.getAsBoolean();
+            }
+            deferredOperations.clear();
+        }
     }
 
     private void addWhere(CommonTree whereTree, EntityReference ref, boolean replaceVariableName) {
@@ -52,11 +52,32 @@ public class BaseCustomNode extends CommonTree implements TreeToQueryCapable {
                 (CommonTree) getParent().getChild(getChildIndex() - 1);
     }
 
+    @Override
+    public Tree dupNode() {
+        BaseCustomNode result = new BaseCustomNode(token);
+        dupChildren(result);
+        return result;
+    }
+
     protected void dupChildren(CommonTree result) {
-        for (Object child : children) {
-            CommonTree t = (CommonTree) child;
-            Tree copy = t.dupNode();
-            result.addChild(copy);
+        if (children != null) {
+            for (Object child : children) {
+                result.addChild(dupTree((CommonTree) child));
+            }
+        }
+    }
+
+    /**
+     * Creates a deep copy of the tree. Custom nodes copy their children in {@link #dupNode()}, while plain nodes
+     * are copied without children.
+     */
+    public static CommonTree dupTree(CommonTree tree) {
+        CommonTree copy = (CommonTree) tree.dupNode();
+        if (!(tree instanceof BaseCustomNode)) {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                copy.addChild(dupTree((CommonTree) tree.getChild(i)));
+            }
         }
+        return copy;
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.servlet;
+
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Part of a file sent in response to a download request. Supports conditional requests by the {@code ETag} and
+ * {@code Last-Modified} headers and partial requests by the {@code Range} and {@code If-Range} headers.
+ */
+public class FileDownloadRange {
+
+    protected final long start;
+    protected final long length;
+    protected final boolean partial;
+
+    protected FileDownloadRange(long start, long length, boolean partial) {
+        this.start = start;
+        this.length = length;
+        this.partial = partial;
+    }
+
+    /**
+     * Sets validator headers of the file defined by the file descriptor and determines which part of the file must be
+     * sent.
+     *
+     * @param fd       file descriptor
+     * @param size     actual size of the file, or null if it is unknown
+     * @param request  download request
+     * @param response download response
+     * @return range to send, or null if the response is completed with the "Not Modified" or "Range Not Satisfiable"
+     * status
+     */
+    @Nullable
+    public static FileDownloadRange prepare(FileDescriptor fd, @Nullable Long size,
+                                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return prepare(getETag(fd, size), getLastModified(fd), size, request, response);
+    }
+
+    /**
+     * Sets validator headers and determines which part of the file must be sent. If the request is partial, sets the
+     * response status, the {@code Content-Range} and {@code Content-Length} headers.
+     *
+     * @param eTag         entity tag of the file content, or null if it is unknown
+     * @param lastModified modification time of the file in milliseconds, or -1 if it is unknown
+     * @param size         actual size of the file, or null if it is unknown
+     * @param request      download request
+     * @param response     download response
+     * @return range to send, or null if the response is completed with the "Not Modified" or "Range Not Satisfiable"
+     * status
+     */
+    @Nullable
+    public static FileDownloadRange prepare(@Nullable String eTag, long lastModified, @Nullable Long size,
+                                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return null;
+        }
+
+        FileDownloadRange fullRange = new FileDownloadRange(0, size != null ? size : -1, false);
+        if (size == null) {
+            return fullRange;
+        }
+        response.setHeader("Accept-Ranges", "bytes");
+
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader == null || !isRangeValid(eTag, lastModified, request)) {
+            return fullRange;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            ranges = null;
+        }
+        // multipart responses are not supported, so the whole file is sent for several ranges
+        if (ranges != null && ranges.size() > 1) {
+            return fullRange;
+        }
+        if (ranges == null || ranges.isEmpty() || size == 0) {
+            sendRangeNotSatisfiable(size, response);
+            return null;
+        }
+
+        HttpRange range = ranges.get(0);
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            sendRangeNotSatisfiable(size, response);
+            return null;
+        }
+        if (start >= size || start > end) {
+            sendRangeNotSatisfiable(size, response);
+            return null;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        response.setHeader("Content-Length", String.valueOf(end - start + 1));
+        return new FileDownloadRange(start, end - start + 1, true);
+    }
+
+    /**
+     * @return entity tag of the file content defined by the file descriptor
+     */
+    public static String getETag(FileDescriptor fd, @Nullable Long size) {
+        return "\"" + fd.getId() + "-" + (size != null ? size : fd.getSize()) + "-" + getLastModified(fd) + "\"";
+    }
+
+    /**
+     * @return modification time in milliseconds of the file defined by the file descriptor, or -1 if it is unknown
+     */
+    public static long getLastModified(FileDescriptor fd) {
+        Date date = fd.getUpdateTs() != null ? fd.getUpdateTs() : fd.getCreateDate();
+        return date != null ? date.getTime() : -1;
+    }
+
+    protected static boolean isRangeValid(@Nullable String eTag, long lastModified, HttpServletRequest request) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // a weak tag never matches, because only strong comparison is allowed for ranges
+            return ifRange.equals(eTag);
+        }
+        try {
+            long ifRangeDate = request.getDateHeader("If-Range");
+            return lastModified >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    protected static void sendRangeNotSatisfiable(long size, HttpServletResponse response) throws IOException {
+        response.setHeader("Content-Range", "bytes */" + size);
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    /**
+     * Skips the bytes of the stream preceding the range.
+     *
+     * @param inputStream stream providing the whole file
+     */
+    public void skipToStart(InputStream inputStream) throws IOException {
+        long remaining = start;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (inputStream.read() < 0) {
+                    throw new EOFException("Unexpected end of stream at position " + (start - remaining));
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * @return position of the first byte to send
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return number of bytes to send, or -1 if the whole file of unknown size must be sent
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return true if only a part of the file is sent with the "Partial Content" status
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+}
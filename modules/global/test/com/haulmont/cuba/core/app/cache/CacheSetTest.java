@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.cache;
+
+import com.haulmont.bali.datastruct.Pair;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.User;
+import org.apache.commons.collections4.Predicate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSetTest {
+
+    private List<Object> users;
+    private Group group1;
+    private Group group2;
+
+    @Before
+    public void setUp() throws Exception {
+        group1 = new Group();
+        group1.setName("group1");
+        group2 = new Group();
+        group2.setName("group2");
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            User user = new User();
+            user.setLogin(String.format("user%03d", i));
+            user.setName(i % 2 == 0 ? "even" : "odd");
+            user.setGroup(i < 10 ? group1 : group2);
+            user.setActive(i % 3 == 0);
+            users.add(user);
+        }
+    }
+
+    @Test
+    public void testIndexedQueriesMatchScan() {
+        CacheSet plain = new CacheSet(new ArrayList<>(users));
+        CacheSet indexed = createIndexedSet();
+
+        Predicate active = item -> Boolean.TRUE.equals(((User) item).getActive());
+        List<Predicate[]> queries = Arrays.asList(
+                new Predicate[]{PropertyPredicate.equal("name", "even")},
+                new Predicate[]{PropertyPredicate.equal("group.name", "group1"), active},
+                new Predicate[]{PropertyPredicate.equal("name", "odd"), PropertyPredicate.equal("group.name", "group1")},
+                new Predicate[]{PropertyPredicate.in("login", Arrays.asList("user001", "user002", "none"))},
+                new Predicate[]{PropertyPredicate.between("login", "user010", "user019"), active},
+                new Predicate[]{PropertyPredicate.greater("login", "user090")},
+                new Predicate[]{PropertyPredicate.less("login", "user005"), PropertyPredicate.equal("name", "odd")},
+                new Predicate[]{PropertyPredicate.between("name", "a", "z")}
+        );
+
+        for (Predicate[] query : queries) {
+            assertEquals(asSet(plain.queryConjunction(query)), asSet(indexed.queryConjunction(query)));
+            assertEquals(asSet(plain.querySequential(query)), asSet(indexed.querySequential(query)));
+            assertEquals(plain.countConjunction(query), indexed.countConjunction(query));
+            Pair<Integer, Integer> expected = plain.countConjunction(Arrays.asList(query), active);
+            Pair<Integer, Integer> actual = indexed.countConjunction(Arrays.asList(query), active);
+            assertEquals(expected.getFirst(), actual.getFirst());
+            assertEquals(expected.getSecond(), actual.getSecond());
+            if (query.length == 1) {
+                assertEquals(asSet(plain.query(query[0])), asSet(indexed.query(query[0])));
+            }
+        }
+    }
+
+    @Test
+    public void testIndexesFollowUpdates() {
+        CacheSet cacheSet = createIndexedSet();
+        cacheSet.setForUpdate(true);
+        Collection<Object> items = cacheSet.getItems();
+
+        User removed = (User) users.get(0);
+        items.remove(removed);
+
+        // replace an item with a modified copy
+        User changed = new User();
+        changed.setId(((User) users.get(1)).getId());
+        changed.setLogin("changed");
+        changed.setName("odd");
+        changed.setGroup(group1);
+        items.remove(changed);
+        items.add(changed);
+
+        cacheSet.setForUpdate(false);
+
+        assertEquals(0, cacheSet.countConjunction(PropertyPredicate.equal("login", "user000")));
+        assertEquals(0, cacheSet.countConjunction(PropertyPredicate.equal("login", "user001")));
+        assertEquals(1, cacheSet.countConjunction(PropertyPredicate.equal("login", "changed")));
+        assertEquals(49, cacheSet.countConjunction(PropertyPredicate.equal("name", "even")));
+        assertEquals(99, cacheSet.getIndex("login").size());
+
+        Collection result = cacheSet.queryConjunction(PropertyPredicate.equal("login", "changed")).getItems();
+        assertTrue(result.iterator().next() == changed);
+    }
+
+    @Test
+    public void testDerivedSetDoesNotAffectSource() {
+        CacheSet source = new CacheSet(new DeltaCollection(users));
+        source.addIndex(new CacheIndex("name", CacheIndex.Type.HASH));
+        source.addIndex(new CacheIndex("login", CacheIndex.Type.SORTED));
+
+        CacheSet previous = source;
+        List<Object> expected = new ArrayList<>(users);
+        for (int i = 0; i < 5; i++) {
+            CacheSet derived = derive(previous);
+            derived.setForUpdate(true);
+            Collection<Object> items = derived.getItems();
+
+            User removed = (User) expected.remove(i);
+            items.remove(removed);
+
+            User changed = (User) expected.get(10 + i);
+            User copy = new User();
+            copy.setId(changed.getId());
+            copy.setLogin("changed" + i);
+            copy.setName("even");
+            items.remove(copy);
+            items.add(copy);
+            expected.set(10 + i, copy);
+
+            derived.setForUpdate(false);
+
+            assertEquals(100 - i, previous.getSize());
+            assertEquals(99 - i, derived.getSize());
+            assertEquals(new HashSet<>(expected), new HashSet<>(derived.getItems()));
+
+            CacheSet plain = new CacheSet(new ArrayList<>(expected));
+            for (Predicate predicate : Arrays.<Predicate>asList(
+                    PropertyPredicate.equal("name", "even"),
+                    PropertyPredicate.equal("login", "changed" + i),
+                    PropertyPredicate.equal("login", removed.getLogin()),
+                    PropertyPredicate.between("login", "changed", "user020"))) {
+                assertEquals(asSet(plain.query(predicate)), asSet(derived.query(predicate)));
+            }
+            assertEquals(1, previous.countConjunction(PropertyPredicate.equal("login", removed.getLogin())));
+
+            previous = derived;
+        }
+        assertEquals(100, source.getSize());
+        assertEquals(50, source.countConjunction(PropertyPredicate.equal("name", "even")));
+    }
+
+    private CacheSet derive(CacheSet source) {
+        CacheSet derived = new CacheSet(((DeltaCollection) source.getItems()).derive());
+        List<CacheIndex> indexes = new ArrayList<>();
+        for (CacheIndex index : source.getIndexes()) {
+            indexes.add(index.derive());
+        }
+        derived.setIndexes(indexes);
+        return derived;
+    }
+
+    private CacheSet createIndexedSet() {
+        CacheSet cacheSet = new CacheSet(new ArrayList<>(users));
+        cacheSet.addIndex(new CacheIndex("name", CacheIndex.Type.HASH));
+        cacheSet.addIndex(new CacheIndex("group.name", CacheIndex.Type.HASH));
+        cacheSet.addIndex(new CacheIndex("login", CacheIndex.Type.SORTED));
+        return cacheSet;
+    }
+
+    private Set<Object> asSet(CacheSet cacheSet) {
+        return new HashSet<>(cacheSet.getItems());
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.servlet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FileDownloadRangeTest {
+
+    private static final String ETAG = "\"file-100\"";
+    private static final long LAST_MODIFIED = 1500000000000L;
+    private static final long SIZE = 100;
+
+    private Map<String, String> requestHeaders;
+    private Map<String, String> responseHeaders;
+    private int status;
+
+    @Before
+    public void setUp() throws Exception {
+        requestHeaders = new HashMap<>();
+        responseHeaders = new HashMap<>();
+        status = HttpServletResponse.SC_OK;
+    }
+
+    @Test
+    public void testNoRange() throws Exception {
+        FileDownloadRange range = prepare();
+
+        assertRange(range, 0, SIZE, false);
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals("bytes", responseHeaders.get("Accept-Ranges"));
+        assertEquals(ETAG, responseHeaders.get("ETag"));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        requestHeaders.put("Range", "bytes=10-19");
+
+        assertPartial(prepare(), 10, 19);
+    }
+
+    @Test
+    public void testSuffixRange() throws Exception {
+        requestHeaders.put("Range", "bytes=-30");
+        assertPartial(prepare(), 70, 99);
+
+        // the suffix longer than the file selects the whole file
+        requestHeaders.put("Range", "bytes=-300");
+        assertPartial(prepare(), 0, 99);
+    }
+
+    @Test
+    public void testOpenEndedRange() throws Exception {
+        requestHeaders.put("Range", "bytes=90-");
+        assertPartial(prepare(), 90, 99);
+
+        // the end past the file is truncated
+        requestHeaders.put("Range", "bytes=90-1000");
+        assertPartial(prepare(), 90, 99);
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() throws Exception {
+        requestHeaders.put("Range", "bytes=100-");
+
+        assertNull(prepare());
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, status);
+        assertEquals("bytes */100", responseHeaders.get("Content-Range"));
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        requestHeaders.put("Range", "bytes=0-9,20-29");
+
+        // multipart responses are not supported
+        assertRange(prepare(), 0, SIZE, false);
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertNull(responseHeaders.get("Content-Range"));
+    }
+
+    @Test
+    public void testIfRange() throws Exception {
+        requestHeaders.put("Range", "bytes=10-19");
+
+        requestHeaders.put("If-Range", ETAG);
+        assertPartial(prepare(), 10, 19);
+
+        requestHeaders.put("If-Range", formatDate(LAST_MODIFIED));
+        assertPartial(prepare(), 10, 19);
+    }
+
+    @Test
+    public void testIfRangeNotMatching() throws Exception {
+        requestHeaders.put("Range", "bytes=10-19");
+
+        requestHeaders.put("If-Range", "\"other\"");
+        assertRange(prepare(), 0, SIZE, false);
+
+        requestHeaders.put("If-Range", "W/" + ETAG);
+        assertRange(prepare(), 0, SIZE, false);
+
+        requestHeaders.put("If-Range", formatDate(LAST_MODIFIED - 60000));
+        assertRange(prepare(), 0, SIZE, false);
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertNull(responseHeaders.get("Content-Range"));
+    }
+
+    @Test
+    public void testUnknownSize() throws Exception {
+        requestHeaders.put("Range", "bytes=10-19");
+
+        FileDownloadRange range = FileDownloadRange.prepare(ETAG, LAST_MODIFIED, null,
+                createRequest(), createResponse());
+        assertRange(range, 0, -1, false);
+        assertNull(responseHeaders.get("Accept-Ranges"));
+    }
+
+    @Test
+    public void testSkipToStart() throws Exception {
+        requestHeaders.put("Range", "bytes=10-19");
+        FileDownloadRange range = prepare();
+
+        byte[] bytes = new byte[(int) SIZE];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+        range.skipToStart(inputStream);
+        assertEquals(10, inputStream.read());
+    }
+
+    private FileDownloadRange prepare() throws Exception {
+        responseHeaders.clear();
+        status = HttpServletResponse.SC_OK;
+        return FileDownloadRange.prepare(ETAG, LAST_MODIFIED, SIZE, createRequest(), createResponse());
+    }
+
+    private void assertPartial(FileDownloadRange range, long start, long end) {
+        assertRange(range, start, end - start + 1, true);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes " + start + "-" + end + "/" + SIZE, responseHeaders.get("Content-Range"));
+        assertEquals(String.valueOf(end - start + 1), responseHeaders.get("Content-Length"));
+    }
+
+    private void assertRange(FileDownloadRange range, long start, long length, boolean partial) {
+        assertNotNull(range);
+        assertEquals(start, range.getStart());
+        assertEquals(length, range.getLength());
+        assertEquals(partial, range.isPartial());
+    }
+
+    private String formatDate(long time) {
+        return createDateFormat().format(new Date(time));
+    }
+
+    private SimpleDateFormat createDateFormat() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return dateFormat;
+    }
+
+    private HttpServletRequest createRequest() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return "GET";
+                        case "getHeader":
+                            return requestHeaders.get((String) args[0]);
+                        case "getHeaders":
+                            String value = requestHeaders.get((String) args[0]);
+                            return Collections.enumeration(value != null
+                                    ? Collections.singletonList(value) : Collections.emptyList());
+                        case "getDateHeader":
+                            String date = requestHeaders.get((String) args[0]);
+                            if (date == null) {
+                                return -1L;
+                            }
+                            try {
+                                return createDateFormat().parse(date).getTime();
+                            } catch (ParseException e) {
+                                throw new IllegalArgumentException(e);
+                            }
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private HttpServletResponse createResponse() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setHeader":
+                        case "addHeader":
+                            responseHeaders.put((String) args[0], (String) args[1]);
+                            return null;
+                        case "setDateHeader":
+                        case "addDateHeader":
+                            responseHeaders.put((String) args[0], formatDate((Long) args[1]));
+                            return null;
+                        case "getHeader":
+                            return responseHeaders.get((String) args[0]);
+                        case "containsHeader":
+                            return responseHeaders.containsKey((String) args[0]);
+                        case "setStatus":
+                        case "sendError":
+                            status = (Integer) args[0];
+                            return null;
+                        case "getStatus":
+                            return status;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -35,6 +35,7 @@ import org.perf4j.StopWatch;
 import org.perf4j.slf4j.Slf4JStopWatch;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
 import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
@@ -84,6 +85,14 @@ public class CollectionDatasourceImpl<T extends Entity<K>, K>
     protected boolean sortOnDb = AppBeans.<Configuration>get(Configuration.NAME)
             .getConfig(ClientConfig.class).getCollectionDatasourceDbSortEnabled();
 
+    protected boolean keysetPaging = AppBeans.<Configuration>get(Configuration.NAME)
+            .getConfig(ClientConfig.class).getCollectionDatasourceKeysetPagingEnabled();
+
+    // query without paging and keyset position following the last loaded page, if the page was loaded by keyset
+    protected LoadContext.Query keysetQuery;
+    protected KeysetPosition nextPageKeyset;
+    protected int nextPageFirstResult;
+
     protected LoadContext.Query lastQuery;
     protected LinkedList<LoadContext.Query> prevQueries = new LinkedList<>();
     protected Integer queryKey;
@@ -642,8 +651,25 @@ public class CollectionDatasourceImpl<T extends Entity<K>, K>
             setSortDirection(q);
         }
 
-        if (firstResult > 0)
-            q.setFirstResult(firstResult);
+        KeysetPosition keyset = createPagingKeyset();
+        if (keyset != null) {
+            LoadContext.Query queryWithoutPaging = q.copy();
+            if (firstResult > 0 && firstResult == nextPageFirstResult
+                    && nextPageKeyset != null && queryWithoutPaging.equals(keysetQuery)) {
+                // the next page follows the last loaded one, so continue from its last instance
+                q.setKeyset(nextPageKeyset);
+            } else {
+                q.setKeyset(keyset);
+                if (firstResult > 0)
+                    q.setFirstResult(firstResult);
+            }
+            keysetQuery = queryWithoutPaging;
+        } else {
+            keysetQuery = null;
+            if (firstResult > 0)
+                q.setFirstResult(firstResult);
+        }
+        nextPageKeyset = null;
 
         if (maxResults > 0) {
             q.setMaxResults(maxResults);
@@ -671,12 +697,41 @@ public class CollectionDatasourceImpl<T extends Entity<K>, K>
         detachListener(data.values());
         data.clear();
 
+        T lastEntity = null;
         for (T entity : entities) {
             data.put(entity.getId(), entity);
             attachListener(entity);
+            lastEntity = entity;
         }
 
         lastQuery = context.getQuery();
+
+        if (lastQuery != null && lastQuery.getKeyset() != null && lastEntity != null && entities.size() == maxResults) {
+            KeysetPosition keyset = lastQuery.getKeyset();
+            T entity = lastEntity;
+            if (keyset.getProperties().stream().allMatch(property -> PersistenceHelper.isLoaded(entity, property))) {
+                nextPageKeyset = keyset.after(lastEntity);
+                nextPageFirstResult = firstResult + maxResults;
+            }
+        }
+    }
+
+    /**
+     * @return keyset position to load the first page by keyset, or null if the datasource is not paged or is not
+     * sorted on DB by an attribute providing deterministic order
+     * @see ClientConfig#getCollectionDatasourceKeysetPagingEnabled()
+     */
+    @Nullable
+    protected KeysetPosition createPagingKeyset() {
+        if (!keysetPaging || maxResults <= 0 || !sortOnDb || sortInfos == null)
+            return null;
+
+        MetaPropertyPath propertyPath = sortInfos[0].getPropertyPath();
+        if (propertyPath == null || propertyPath.getMetaProperties().length != 1)
+            return null;
+
+        return KeysetPosition.create(metaClass, propertyPath.getMetaProperty().getName(),
+                !Sortable.Order.ASC.equals(sortInfos[0].getOrder()));
     }
 
     @Override
@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.sys;
 
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.client.testsupport.CubaClientTestCase;
+import com.haulmont.cuba.client.testsupport.TestViewRepositoryClient;
 import com.haulmont.cuba.core.global.View;
 import com.haulmont.cuba.core.global.ViewProperty;
 import com.haulmont.cuba.gui.data.impl.testmodel1.TestDetailEntity;
@@ -26,6 +27,7 @@ import com.haulmont.cuba.gui.data.impl.testmodel1.TestMasterEntity;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Collection;
 
 import static junit.framework.Assert.assertNotNull;
@@ -89,4 +91,28 @@ public class AbstractViewRepositoryTest extends CubaClientTestCase {
         assertTrue(detail.getView().containsProperty("embeddable"));
         assertTrue(detail.getView().containsProperty("parts"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void snapshot() throws Exception {
+        String viewsConfig = "/com/haulmont/cuba/gui/data/impl/testmodel1/test-views.xml";
+        assertNotNull(viewRepository.getView(testMasterEntity, "withDetails"));
+
+        File file = File.createTempFile("views", ".snapshot");
+        try {
+            viewRepository.saveSnapshot(viewsConfig, file);
+
+            TestViewRepositoryClient repository = new TestViewRepositoryClient(null);
+            repository.setMetadata(metadata);
+            assertTrue(repository.loadSnapshot(viewsConfig, file));
+
+            View view = repository.storage.get(testMasterEntity).get("withDetails");
+            assertNotNull(view);
+            assertTrue(view.containsProperty("details"));
+            assertTrue(repository.readFileNames.contains(viewsConfig));
+
+            assertFalse(new TestViewRepositoryClient(null).loadSnapshot("another-views.xml", file));
+        } finally {
+            file.delete();
+        }
+    }
+}
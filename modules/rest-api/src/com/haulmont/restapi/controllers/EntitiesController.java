@@ -60,17 +60,22 @@ public class EntitiesController {
                                                    @RequestParam(required = false) String view,
                                                    @RequestParam(required = false) Integer limit,
                                                    @RequestParam(required = false) Integer offset,
+                                                   @RequestParam(required = false) String after,
                                                    @RequestParam(required = false) String sort,
                                                    @RequestParam(required = false) Boolean returnNulls,
                                                    @RequestParam(required = false) Boolean returnCount,
                                                    @RequestParam(required = false) Boolean dynamicAttributes,
                                                    @RequestParam(required = false) String modelVersion) {
         EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.loadEntitiesList(entityName, view, limit,
-                offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
+                offset, after, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
         ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
         if (BooleanUtils.isTrue(returnCount)) {
             responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
         }
+        if (entitiesSearchResult.getNextPageAfter() != null) {
+            responseBuilder.header(EntitiesControllerManager.NEXT_PAGE_AFTER_HEADER,
+                    entitiesSearchResult.getNextPageAfter());
+        }
         return responseBuilder.body(entitiesSearchResult.getJson());
     }
 
@@ -80,17 +85,22 @@ public class EntitiesController {
                                                         @RequestParam(required = false) String view,
                                                         @RequestParam(required = false) Integer limit,
                                                         @RequestParam(required = false) Integer offset,
+                                                        @RequestParam(required = false) String after,
                                                         @RequestParam(required = false) String sort,
                                                         @RequestParam(required = false) Boolean returnNulls,
                                                         @RequestParam(required = false) Boolean returnCount,
                                                         @RequestParam(required = false) Boolean dynamicAttributes,
                                                         @RequestParam(required = false) String modelVersion) {
         EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, filter,
-                view, limit, offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
+                view, limit, offset, after, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
         ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
         if (BooleanUtils.isTrue(returnCount)) {
             responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
         }
+        if (entitiesSearchResult.getNextPageAfter() != null) {
+            responseBuilder.header(EntitiesControllerManager.NEXT_PAGE_AFTER_HEADER,
+                    entitiesSearchResult.getNextPageAfter());
+        }
         return responseBuilder.body(entitiesSearchResult.getJson());
     }
 
@@ -104,6 +114,10 @@ public class EntitiesController {
         if (returnCount != null && returnCount.getAsBoolean()) {
             responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
         }
+        if (entitiesSearchResult.getNextPageAfter() != null) {
+            responseBuilder.header(EntitiesControllerManager.NEXT_PAGE_AFTER_HEADER,
+                    entitiesSearchResult.getNextPageAfter());
+        }
         return responseBuilder.body(entitiesSearchResult.getJson());
     }
 
@@ -20,6 +20,7 @@ import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
+import com.haulmont.cuba.core.sys.servlet.FileDownloadRange;
 import com.haulmont.restapi.exception.RestAPIException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.BooleanUtils;
@@ -32,6 +33,7 @@ import org.springframework.web.bind.annotation.*;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
@@ -63,6 +65,7 @@ public class FileDownloadController {
     @GetMapping("/{fileDescriptorId}")
     public void downloadFile(@PathVariable String fileDescriptorId,
                              @RequestParam(required = false) Boolean attachment,
+                             HttpServletRequest request,
                              HttpServletResponse response) {
         UUID uuid;
         try {
@@ -86,7 +89,15 @@ public class FileDownloadController {
             response.setHeader("Content-Disposition", (BooleanUtils.isTrue(attachment) ? "attachment" : "inline")
                     + "; filename=\"" + fd.getName() + "\"");
 
-            downloadFromMiddlewareAndWriteResponse(fd, response);
+            FileDownloadRange range = FileDownloadRange.prepare(fd, fd.getSize(), request, response);
+            if (range == null) {
+                return;
+            }
+            if (range.isPartial()) {
+                downloadFromMiddlewareAndWriteResponse(fd, range, response);
+            } else {
+                downloadFromMiddlewareAndWriteResponse(fd, response);
+            }
         } catch (Exception e) {
             log.error("Error on downloading the file {}", fileDescriptorId, e);
             throw new RestAPIException("Error on downloading the file", "", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -105,6 +116,19 @@ public class FileDownloadController {
         }
     }
 
+    protected void downloadFromMiddlewareAndWriteResponse(FileDescriptor fd, FileDownloadRange range,
+                                                          HttpServletResponse response) throws IOException {
+        ServletOutputStream os = response.getOutputStream();
+        try (InputStream is = fileLoader.openStream(fd, range.getStart())) {
+            IOUtils.copyLarge(is, os, 0, range.getLength());
+            os.flush();
+        } catch (FileStorageException e) {
+            throw new RestAPIException("Unable to download file from FileStorage",
+                    "Unable to download file from FileStorage: " + fd.getId(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     protected String getContentType(FileDescriptor fd) {
         if (StringUtils.isEmpty(fd.getExtension())) {
             return FileTypesHelper.DEFAULT_MIME_TYPE;
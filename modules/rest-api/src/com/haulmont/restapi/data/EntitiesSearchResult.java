@@ -19,12 +19,19 @@ package com.haulmont.restapi.data;
 public class EntitiesSearchResult {
     protected String json;
     protected Long count;
+    protected String nextPageAfter;
 
     public EntitiesSearchResult(String json, Long count) {
         this.json = json;
         this.count = count;
     }
 
+    public EntitiesSearchResult(String json, Long count, String nextPageAfter) {
+        this.json = json;
+        this.count = count;
+        this.nextPageAfter = nextPageAfter;
+    }
+
     public String getJson() {
         return json;
     }
@@ -32,4 +39,12 @@ public class EntitiesSearchResult {
     public Long getCount() {
         return count;
     }
+
+    /**
+     * @return value of the {@code after} parameter to load the next page by keyset, or null if the page cannot be
+     * continued this way
+     */
+    public String getNextPageAfter() {
+        return nextPageAfter;
+    }
 }
@@ -45,6 +45,8 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -54,6 +56,16 @@ import java.util.*;
 @Component("cuba_EntitiesControllerManager")
 public class EntitiesControllerManager {
 
+    /**
+     * Prefix of the {@code after} parameter value containing the last values of the sort order instead of an ID.
+     */
+    public static final String KEYSET_CURSOR_PREFIX = "keyset:";
+
+    /**
+     * Response header containing the {@code after} parameter value to load the next page by keyset.
+     */
+    public static final String NEXT_PAGE_AFTER_HEADER = "X-Next-Page-After";
+
     @Inject
     protected DataManager dataManager;
 
@@ -129,15 +141,39 @@ public class EntitiesControllerManager {
                                                  @Nullable Boolean returnCount,
                                                  @Nullable Boolean dynamicAttributes,
                                                  @Nullable String modelVersion) {
+        return loadEntitiesList(entityName, viewName, limit, offset, null, sort, returnNulls, returnCount,
+                dynamicAttributes, modelVersion);
+    }
+
+    /**
+     * Loads entities list.
+     *
+     * @param after ID of the last entity of the previous page or the keyset cursor returned with it, see
+     *              {@link EntitiesSearchResult#getNextPageAfter()}. If specified, the page is loaded by keyset, i.e.
+     *              the results are restricted to the entities following the given one in the sort order. Sorting is
+     *              allowed only by a mandatory persistent attribute or ID in this case. Unlike the ID, the cursor
+     *              remains valid if the last entity is deleted.
+     */
+    public EntitiesSearchResult loadEntitiesList(String entityName,
+                                                 @Nullable String viewName,
+                                                 @Nullable Integer limit,
+                                                 @Nullable Integer offset,
+                                                 @Nullable String after,
+                                                 @Nullable String sort,
+                                                 @Nullable Boolean returnNulls,
+                                                 @Nullable Boolean returnCount,
+                                                 @Nullable Boolean dynamicAttributes,
+                                                 @Nullable String modelVersion) {
         entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
         MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
         checkCanReadEntity(metaClass);
 
         String queryString = "select e from " + entityName + " e";
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls, dynamicAttributes, modelVersion,
-                metaClass, new HashMap<>());
+        EntitiesSearchResult page = _loadEntitiesPage(queryString, viewName, limit, offset, after, sort, returnNulls,
+                dynamicAttributes, modelVersion, metaClass, new HashMap<>());
 
-        json = restControllerUtils.transformJsonIfRequired(entityName, modelVersion, JsonTransformationDirection.TO_VERSION, json);
+        String json = restControllerUtils.transformJsonIfRequired(entityName, modelVersion,
+                JsonTransformationDirection.TO_VERSION, page.getJson());
 
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
@@ -145,15 +181,36 @@ public class EntitiesControllerManager {
                     .setQuery(LoadContext.createQuery(queryString));
             count = dataManager.getCount(ctx);
         }
-        return new EntitiesSearchResult(json, count);
+        return new EntitiesSearchResult(json, count, page.getNextPageAfter());
+
+    }
 
+    public EntitiesSearchResult searchEntities(String entityName,
+                                               String filterJson,
+                                               @Nullable String viewName,
+                                               @Nullable Integer limit,
+                                               @Nullable Integer offset,
+                                               @Nullable String sort,
+                                               @Nullable Boolean returnNulls,
+                                               @Nullable Boolean returnCount,
+                                               @Nullable Boolean dynamicAttributes,
+                                               @Nullable String modelVersion) {
+        return searchEntities(entityName, filterJson, viewName, limit, offset, null, sort, returnNulls, returnCount,
+                dynamicAttributes, modelVersion);
     }
 
+    /**
+     * Searches entities by the filter.
+     *
+     * @param after ID of the last entity of the previous page, see {@link #loadEntitiesList(String, String, Integer,
+     *              Integer, String, String, Boolean, Boolean, Boolean, String)}
+     */
     public EntitiesSearchResult searchEntities(String entityName,
                                                String filterJson,
                                                @Nullable String viewName,
                                                @Nullable Integer limit,
                                                @Nullable Integer offset,
+                                               @Nullable String after,
                                                @Nullable String sort,
                                                @Nullable Boolean returnNulls,
                                                @Nullable Boolean returnCount,
@@ -178,7 +235,7 @@ public class EntitiesControllerManager {
         Map<String, Object> queryParameters = filterParseResult.getQueryParameters();
 
         String queryString = "select e from " + entityName + " e where " + jpqlWhere;
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
+        EntitiesSearchResult page = _loadEntitiesPage(queryString, viewName, limit, offset, after, sort, returnNulls,
                 dynamicAttributes, modelVersion, metaClass, queryParameters);
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
@@ -187,7 +244,7 @@ public class EntitiesControllerManager {
             count = dataManager.getCount(ctx);
         }
 
-        return new EntitiesSearchResult(json, count);
+        return new EntitiesSearchResult(page.getJson(), count, page.getNextPageAfter());
     }
 
     public EntitiesSearchResult searchEntities(String entityName, String searchRequestBody) {
@@ -203,6 +260,7 @@ public class EntitiesControllerManager {
                 searchEntitiesRequest.getViewName(),
                 searchEntitiesRequest.getLimit(),
                 searchEntitiesRequest.getOffset(),
+                searchEntitiesRequest.getAfter(),
                 searchEntitiesRequest.getSort(),
                 searchEntitiesRequest.getReturnNulls(),
                 searchEntitiesRequest.getReturnCount(),
@@ -215,15 +273,35 @@ public class EntitiesControllerManager {
                                        @Nullable String viewName,
                                        @Nullable Integer limit,
                                        @Nullable Integer offset,
+                                       @Nullable String after,
                                        @Nullable String sort,
                                        @Nullable Boolean returnNulls,
                                        @Nullable Boolean dynamicAttributes,
                                        @Nullable String modelVersion,
                                        MetaClass metaClass,
                                        Map<String, Object> queryParameters) {
+        return _loadEntitiesPage(queryString, viewName, limit, offset, after, sort, returnNulls, dynamicAttributes,
+                modelVersion, metaClass, queryParameters).getJson();
+    }
+
+    /**
+     * Loads a page of entities. Besides the JSON, the result contains the keyset cursor of the last loaded entity
+     * if the page can be continued by keyset, see {@link #createKeysetCursor(MetaClass, KeysetPosition)}.
+     */
+    protected EntitiesSearchResult _loadEntitiesPage(String queryString,
+                                                     @Nullable String viewName,
+                                                     @Nullable Integer limit,
+                                                     @Nullable Integer offset,
+                                                     @Nullable String after,
+                                                     @Nullable String sort,
+                                                     @Nullable Boolean returnNulls,
+                                                     @Nullable Boolean dynamicAttributes,
+                                                     @Nullable String modelVersion,
+                                                     MetaClass metaClass,
+                                                     Map<String, Object> queryParameters) {
         LoadContext<Entity> ctx = new LoadContext<>(metaClass);
+        boolean descSortOrder = false;
         if (!Strings.isNullOrEmpty(sort)) {
-            boolean descSortOrder = false;
             if (sort.startsWith("-")) {
                 descSortOrder = true;
                 sort = sort.substring(1);
@@ -244,6 +322,9 @@ public class EntitiesControllerManager {
         if (queryParameters != null) {
             query.setParameters(queryParameters);
         }
+        if (!Strings.isNullOrEmpty(after)) {
+            query.setKeyset(createKeysetPosition(metaClass, after, Strings.emptyToNull(sort), descSortOrder));
+        }
         ctx.setQuery(query);
 
         View view = null;
@@ -263,7 +344,16 @@ public class EntitiesControllerManager {
 
         String json = entitySerializationAPI.toJson(entities, view, serializationOptions.toArray(new EntitySerializationOption[0]));
         json = restControllerUtils.transformJsonIfRequired(metaClass.getName(), modelVersion, JsonTransformationDirection.TO_VERSION, json);
-        return json;
+
+        String nextPageAfter = null;
+        if (offset == null && !entities.isEmpty()) {
+            KeysetPosition keyset = KeysetPosition.create(metaClass, Strings.emptyToNull(sort), descSortOrder);
+            Entity last = entities.get(entities.size() - 1);
+            if (keyset != null && isKeysetLoaded(last, keyset)) {
+                nextPageAfter = createKeysetCursor(metaClass, keyset.after(last));
+            }
+        }
+        return new EntitiesSearchResult(json, null, nextPageAfter);
     }
 
     public CreatedEntityInfo createEntity(String entityJson, String entityName, String modelVersion) {
@@ -397,6 +487,126 @@ public class EntitiesControllerManager {
         }
     }
 
+    protected KeysetPosition createKeysetPosition(MetaClass metaClass, String after, @Nullable String sort,
+                                                  boolean descSortOrder) {
+        KeysetPosition keyset = KeysetPosition.create(metaClass, sort, descSortOrder);
+        if (keyset == null) {
+            throw new RestAPIException("Invalid keyset pagination",
+                    sort == null ?
+                            String.format("Entities %s cannot be paged by the last entity ID", metaClass.getName()) :
+                            String.format("Entities %s sorted by %s cannot be paged by the last entity ID", metaClass.getName(), sort),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        if (after.startsWith(KEYSET_CURSOR_PREFIX)) {
+            return parseKeysetCursor(metaClass, keyset, after);
+        }
+
+        Object id = getIdFromString(after, metaClass);
+        if (keyset.getProperties().size() == 1) {
+            // paging by ID only, the last entity is not needed and can even be deleted already
+            if (id instanceof IdProxy) {
+                id = ((IdProxy) id).getNN();
+            }
+            return new KeysetPosition(keyset.getProperties(), descSortOrder, Collections.singletonList(id));
+        }
+
+        LoadContext<Entity> ctx = new LoadContext<>(metaClass)
+                .setId(id)
+                .setView(View.LOCAL)
+                .setSoftDeletion(false);
+        Entity entity = dataManager.load(ctx);
+        if (entity == null) {
+            throw new RestAPIException("Entity not found",
+                    String.format("Entity %s with id %s not found, use the keyset cursor returned in the %s header " +
+                            "to page by values of the last entity", metaClass.getName(), after, NEXT_PAGE_AFTER_HEADER),
+                    HttpStatus.NOT_FOUND);
+        }
+
+        return keyset.after(entity);
+    }
+
+    protected boolean isKeysetLoaded(Entity entity, KeysetPosition keyset) {
+        for (String property : keyset.getProperties()) {
+            if (!PersistenceHelper.isLoaded(entity, property) || entity.getValue(property) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the last values of the keyset properties, so the next page can be loaded even if the last entity
+     * of the current page has been deleted meanwhile.
+     *
+     * @return the cursor or null if the values cannot be encoded
+     */
+    @Nullable
+    protected String createKeysetCursor(MetaClass metaClass, KeysetPosition keyset) {
+        List<Object> values = keyset.getValues();
+        if (values == null) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Date) {
+                strings.add(String.valueOf(((Date) value).getTime()));
+            } else if (value instanceof String || value instanceof Number || value instanceof UUID
+                    || value instanceof Boolean) {
+                strings.add(value.toString());
+            } else {
+                return null;
+            }
+        }
+        byte[] bytes = new Gson().toJson(strings).getBytes(StandardCharsets.UTF_8);
+        return KEYSET_CURSOR_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    protected KeysetPosition parseKeysetCursor(MetaClass metaClass, KeysetPosition keyset, String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor.substring(KEYSET_CURSOR_PREFIX.length()));
+            String[] strings = new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), String[].class);
+            List<String> properties = keyset.getProperties();
+            if (strings == null || strings.length != properties.size()) {
+                throw new IllegalArgumentException("Number of values does not match the sort order");
+            }
+            List<Object> values = new ArrayList<>(strings.length);
+            for (int i = 0; i < strings.length; i++) {
+                Class<?> javaType = metaClass.getPropertyNN(properties.get(i)).getJavaType();
+                values.add(parseKeysetValue(javaType, strings[i]));
+            }
+            return new KeysetPosition(properties, keyset.isDescending(), values);
+        } catch (RuntimeException e) {
+            throw new RestAPIException("Invalid keyset pagination",
+                    String.format("Cannot convert %s into a position in entities %s", cursor, metaClass.getName()),
+                    HttpStatus.BAD_REQUEST,
+                    e);
+        }
+    }
+
+    protected Object parseKeysetValue(Class<?> javaType, String value) {
+        if (String.class.equals(javaType)) {
+            return value;
+        } else if (UUID.class.equals(javaType)) {
+            return UUID.fromString(value);
+        } else if (Long.class.equals(javaType)) {
+            return Long.valueOf(value);
+        } else if (Integer.class.equals(javaType)) {
+            return Integer.valueOf(value);
+        } else if (Short.class.equals(javaType)) {
+            return Short.valueOf(value);
+        } else if (Double.class.equals(javaType)) {
+            return Double.valueOf(value);
+        } else if (BigDecimal.class.equals(javaType)) {
+            return new BigDecimal(value);
+        } else if (Boolean.class.equals(javaType)) {
+            return Boolean.valueOf(value);
+        } else if (Date.class.isAssignableFrom(javaType)) {
+            return new Date(Long.parseLong(value));
+        }
+        throw new IllegalArgumentException("Unsupported type of keyset value: " + javaType);
+    }
+
     protected void checkEntityIsNotNull(String entityName, String entityId, Entity entity) {
         if (entity == null) {
             throw new RestAPIException("Entity not found",
@@ -463,6 +673,7 @@ public class EntitiesControllerManager {
         protected String viewName;
         protected Integer limit;
         protected Integer offset;
+        protected String after;
         protected String sort;
         protected Boolean returnNulls;
         protected Boolean returnCount;
@@ -488,6 +699,10 @@ public class EntitiesControllerManager {
             return offset;
         }
 
+        public String getAfter() {
+            return after;
+        }
+
         public String getSort() {
             return sort;
         }
@@ -524,6 +739,10 @@ public class EntitiesControllerManager {
             this.offset = offset;
         }
 
+        public void setAfter(String after) {
+            this.after = after;
+        }
+
         public void setSort(String sort) {
             this.sort = sort;
         }